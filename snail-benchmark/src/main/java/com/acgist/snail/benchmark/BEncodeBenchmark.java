@@ -0,0 +1,121 @@
+package com.acgist.snail.benchmark;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.format.BEncodeDecoder;
+import com.acgist.snail.format.BEncodeEncoder;
+import com.acgist.snail.logger.LoggerConfig;
+import com.acgist.snail.net.PacketSizeException;
+import com.acgist.snail.utils.ArrayUtils;
+
+/**
+ * B编码基准测试
+ * 种子文件：多文件种子（解析种子）
+ * DHT消息：查找节点请求（DHT网络消息）
+ * 
+ * @author acgist
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BEncodeBenchmark {
+
+	/**
+	 * 种子文件数量
+	 */
+	private static final int FILE_SIZE = 256;
+	/**
+	 * 种子Piece数量
+	 */
+	private static final int PIECE_SIZE = 4096;
+
+	/**
+	 * 种子数据
+	 */
+	private Map<String, Object> torrent;
+	/**
+	 * 种子B编码数据
+	 */
+	private byte[] torrentBytes;
+	/**
+	 * DHT消息
+	 */
+	private Map<String, Object> message;
+	/**
+	 * DHT消息B编码数据
+	 */
+	private byte[] messageBytes;
+
+	@Setup
+	public void setup() {
+		LoggerConfig.off();
+		final List<Object> files = new ArrayList<>();
+		for (int index = 0; index < FILE_SIZE; index++) {
+			final Map<String, Object> file = new LinkedHashMap<>();
+			file.put("length", (long) index * SystemConfig.ONE_MB);
+			file.put("path", List.of("snail", "benchmark-" + index + ".data"));
+			files.add(file);
+		}
+		final Map<String, Object> info = new LinkedHashMap<>();
+		info.put("files", files);
+		info.put("name", "snail-benchmark");
+		info.put("piece length", 4L * SystemConfig.ONE_MB);
+		info.put("pieces", ArrayUtils.random(PIECE_SIZE * SystemConfig.SHA1_HASH_LENGTH));
+		this.torrent = new LinkedHashMap<>();
+		this.torrent.put("announce", "udp://tracker.acgist.com:6969/announce");
+		this.torrent.put("announce-list", List.of(List.of("udp://tracker.acgist.com:6969/announce"), List.of("http://tracker.acgist.com/announce")));
+		this.torrent.put("created by", "snail");
+		this.torrent.put("creation date", System.currentTimeMillis() / 1000);
+		this.torrent.put("info", info);
+		this.torrentBytes = BEncodeEncoder.encodeMap(this.torrent);
+		final Map<String, Object> arguments = new LinkedHashMap<>();
+		arguments.put("id", ArrayUtils.random(SystemConfig.SHA1_HASH_LENGTH));
+		arguments.put("target", ArrayUtils.random(SystemConfig.SHA1_HASH_LENGTH));
+		this.message = new LinkedHashMap<>();
+		this.message.put("t", ArrayUtils.random(2));
+		this.message.put("y", "q");
+		this.message.put("q", "find_node");
+		this.message.put("a", arguments);
+		this.messageBytes = BEncodeEncoder.encodeMap(this.message);
+	}
+
+	@Benchmark
+	public Map<String, Object> decodeTorrent() throws PacketSizeException {
+		return BEncodeDecoder.newInstance(this.torrentBytes).nextMap();
+	}
+
+	@Benchmark
+	public byte[] encodeTorrent() {
+		return BEncodeEncoder.encodeMap(this.torrent);
+	}
+
+	@Benchmark
+	public Map<String, Object> decodeMessage() throws PacketSizeException {
+		return BEncodeDecoder.newInstance(this.messageBytes).nextMap();
+	}
+
+	@Benchmark
+	public byte[] encodeMessage() {
+		return BEncodeEncoder.encodeMap(this.message);
+	}
+
+}
@@ -0,0 +1,173 @@
+package com.acgist.snail.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import com.acgist.snail.format.JSON;
+import com.acgist.snail.logger.Logger;
+import com.acgist.snail.logger.LoggerFactory;
+
+/**
+ * 基准测试结果对比
+ * 对比JMH测试结果（JSON格式）和基线结果：测试分数和每次操作分配内存大小（gc.alloc.rate.norm）。
+ * 吞吐量模式分数越大越好，其他模式分数越小越好，分数变差超过{@link #REGRESSION_THRESHOLD}标记性能退化。
+ * 
+ * @author acgist
+ */
+public final class BenchmarkComparator {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(BenchmarkComparator.class);
+
+	/**
+	 * 性能退化阈值：{@value}
+	 */
+	public static final double REGRESSION_THRESHOLD = 0.1D;
+	/**
+	 * 吞吐量模式：{@value}
+	 */
+	private static final String MODE_THROUGHPUT = "thrpt";
+	/**
+	 * 内存分配统计：{@value}
+	 */
+	private static final String METRIC_ALLOC = "gc.alloc.rate.norm";
+	/**
+	 * 科学计数法数值
+	 * JSON工具不支持科学计数法：转为字符串之后解析
+	 */
+	private static final Pattern EXPONENT_NUMBER = Pattern.compile("(?<=[:\\[,]\\s{0,16})(-?\\d+(?:\\.\\d+)?[eE][-+]?\\d+)");
+
+	private BenchmarkComparator() {
+	}
+
+	/**
+	 * 对比测试结果
+	 * 
+	 * @param baseline 基线结果文件
+	 * @param result 测试结果文件
+	 * 
+	 * @return 性能退化数量
+	 * 
+	 * @throws IOException IO异常
+	 */
+	public static final int compare(String baseline, String result) throws IOException {
+		final Map<String, Score> baselineScores = load(baseline);
+		final Map<String, Score> resultScores = load(result);
+		int regression = 0;
+		LOGGER.info("基准测试对比：{} -> {}", baseline, result);
+		for (Map.Entry<String, Score> entry : resultScores.entrySet()) {
+			final String name = entry.getKey();
+			final Score score = entry.getValue();
+			final Score baselineScore = baselineScores.get(name);
+			if(baselineScore == null) {
+				LOGGER.info("{}：{} {}（没有基线）", name, format(score.score), score.unit);
+				continue;
+			}
+			final double change = change(baselineScore.score, score.score);
+			// 吞吐量模式分数越大越好
+			final double worse = MODE_THROUGHPUT.equals(score.mode) ? -change : change;
+			final boolean regress = worse > REGRESSION_THRESHOLD;
+			if(regress) {
+				regression++;
+			}
+			LOGGER.info(
+				"{}：{} -> {} {}（{}%）内存分配：{} -> {} B/op{}",
+				name,
+				format(baselineScore.score), format(score.score), score.unit,
+				format(change * 100),
+				format(baselineScore.alloc), format(score.alloc),
+				regress ? "（性能退化）" : ""
+			);
+		}
+		LOGGER.info("基准测试对比完成：性能退化数量：{}", regression);
+		return regression;
+	}
+
+	/**
+	 * 加载测试结果
+	 * 
+	 * @param file 测试结果文件
+	 * 
+	 * @return 测试名称（包含参数）=测试分数
+	 * 
+	 * @throws IOException IO异常
+	 */
+	public static final Map<String, Score> load(String file) throws IOException {
+		final String content = EXPONENT_NUMBER.matcher(Files.readString(Paths.get(file))).replaceAll("\"$1\"");
+		final Map<String, Score> scores = new LinkedHashMap<>();
+		for (Object object : JSON.ofString(content).getList()) {
+			final JSON benchmark = object instanceof JSON json ? json : JSON.ofString(object.toString());
+			final StringBuilder name = new StringBuilder(benchmark.getString("benchmark"));
+			final JSON params = benchmark.getJSON("params");
+			if(params != null) {
+				// 参数排序：保证名称一致
+				new TreeMap<>(params.getMap()).forEach((key, value) -> name.append(':').append(key).append('=').append(value));
+			}
+			final JSON primaryMetric = benchmark.getJSON("primaryMetric");
+			final JSON secondaryMetrics = benchmark.getJSON("secondaryMetrics");
+			double alloc = Double.NaN;
+			if(secondaryMetrics != null && secondaryMetrics.get(METRIC_ALLOC) != null) {
+				alloc = number(secondaryMetrics.getJSON(METRIC_ALLOC).get("score"));
+			}
+			scores.put(name.toString(), new Score(
+				benchmark.getString("mode"),
+				number(primaryMetric.get("score")),
+				primaryMetric.getString("scoreUnit"),
+				alloc
+			));
+		}
+		return scores;
+	}
+
+	/**
+	 * @param value 数值
+	 * 
+	 * @return 数值
+	 */
+	private static final double number(Object value) {
+		if(value instanceof Number number) {
+			return number.doubleValue();
+		}
+		return value == null ? Double.NaN : Double.parseDouble(value.toString());
+	}
+
+	/**
+	 * @param baseline 基线分数
+	 * @param score 测试分数
+	 * 
+	 * @return 变化比例
+	 */
+	private static final double change(double baseline, double score) {
+		if(baseline == 0D) {
+			return 0D;
+		}
+		return (score - baseline) / baseline;
+	}
+
+	/**
+	 * @param value 数值
+	 * 
+	 * @return 格式化数值
+	 */
+	private static final String format(double value) {
+		return String.format("%.3f", value);
+	}
+
+	/**
+	 * 测试分数
+	 * 
+	 * @param mode 测试模式
+	 * @param score 测试分数
+	 * @param unit 分数单位
+	 * @param alloc 每次操作分配内存大小
+	 * 
+	 * @author acgist
+	 */
+	public static final record Score(String mode, double score, String unit, double alloc) {
+	}
+
+}
@@ -0,0 +1,92 @@
+package com.acgist.snail.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.logger.LoggerConfig;
+import com.acgist.snail.net.torrent.InfoHash;
+import com.acgist.snail.net.torrent.codec.MSECipher;
+import com.acgist.snail.utils.ArrayUtils;
+
+/**
+ * MSE加密基准测试
+ * 原地加密缓冲区：直接缓冲区和堆缓冲区
+ * 
+ * @author acgist
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MSECipherBenchmark {
+
+	/**
+	 * 数据长度（KB）
+	 */
+	@Param({ "1", "16" })
+	private int length;
+
+	/**
+	 * 加密工具
+	 */
+	private MSECipher cipher;
+	/**
+	 * 堆缓冲区
+	 */
+	private ByteBuffer heap;
+	/**
+	 * 直接缓冲区
+	 */
+	private ByteBuffer direct;
+	/**
+	 * 字节数组
+	 */
+	private byte[] bytes;
+
+	@Setup
+	public void setup() {
+		LoggerConfig.off();
+		final InfoHash infoHash = InfoHash.newInstance(ArrayUtils.random(SystemConfig.SHA1_HASH_LENGTH));
+		this.cipher = MSECipher.newSender(ArrayUtils.random(16), infoHash);
+		this.bytes = ArrayUtils.random(this.length * SystemConfig.ONE_KB);
+		this.heap = ByteBuffer.allocate(this.bytes.length);
+		this.heap.put(this.bytes).flip();
+		this.direct = ByteBuffer.allocateDirect(this.bytes.length);
+		this.direct.put(this.bytes).flip();
+	}
+
+	@Benchmark
+	public ByteBuffer encryptHeap() {
+		this.heap.rewind();
+		this.cipher.encrypt(this.heap);
+		return this.heap;
+	}
+
+	@Benchmark
+	public ByteBuffer encryptDirect() {
+		this.direct.rewind();
+		this.cipher.encrypt(this.direct);
+		return this.direct;
+	}
+
+	@Benchmark
+	public byte[] encryptBytes() {
+		return this.cipher.encrypt(this.bytes);
+	}
+
+}
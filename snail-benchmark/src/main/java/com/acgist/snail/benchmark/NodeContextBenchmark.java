@@ -0,0 +1,82 @@
+package com.acgist.snail.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.acgist.snail.config.DhtConfig;
+import com.acgist.snail.logger.LoggerConfig;
+import com.acgist.snail.net.torrent.dht.NodeContext;
+import com.acgist.snail.net.torrent.dht.NodeSession;
+import com.acgist.snail.utils.ArrayUtils;
+
+/**
+ * DHT查找节点基准测试
+ * 每次测试使用独立进程：节点上下文是单例
+ * 
+ * @author acgist
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NodeContextBenchmark {
+
+	/**
+	 * 查找目标数量
+	 */
+	private static final int TARGET_SIZE = 1024;
+
+	/**
+	 * 节点数量
+	 */
+	@Param({ "1024", "16384" })
+	private int nodeSize;
+
+	/**
+	 * 查找目标
+	 */
+	private byte[][] targets;
+	/**
+	 * 查找目标索引
+	 */
+	private int index;
+
+	@Setup
+	public void setup() {
+		LoggerConfig.off();
+		final NodeContext context = NodeContext.getInstance();
+		for (int index = 0; index < this.nodeSize; index++) {
+			context.newNodeSession(ArrayUtils.random(DhtConfig.NODE_ID_LENGTH), "0", 0);
+		}
+		this.targets = new byte[TARGET_SIZE][];
+		for (int index = 0; index < TARGET_SIZE; index++) {
+			this.targets[index] = ArrayUtils.random(DhtConfig.NODE_ID_LENGTH);
+		}
+	}
+
+	@Benchmark
+	public List<NodeSession> findNode() {
+		this.index = (this.index + 1) % TARGET_SIZE;
+		return NodeContext.getInstance().findNode(this.targets[this.index]);
+	}
+
+	@Benchmark
+	public NodeSession newNodeSession() {
+		return NodeContext.getInstance().newNodeSession(ArrayUtils.random(DhtConfig.NODE_ID_LENGTH), "0", 0);
+	}
+
+}
@@ -0,0 +1,120 @@
+package com.acgist.snail.benchmark;
+
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.acgist.snail.config.PeerConfig;
+import com.acgist.snail.logger.LoggerConfig;
+import com.acgist.snail.net.NetException;
+import com.acgist.snail.net.torrent.codec.PeerUnpackMessageCodec;
+import com.acgist.snail.net.torrent.peer.PeerSubMessageHandler;
+import com.acgist.snail.utils.ArrayUtils;
+
+/**
+ * Peer消息拆包基准测试
+ * 模拟TCP分段读取：HAVE消息和PIECE消息交替，按照分段大小切片解码。
+ * 消息代理已经握手但是不可用：只会解析消息类型，测试结果主要是拆包消耗。
+ * 
+ * @author acgist
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PeerUnpackMessageCodecBenchmark {
+
+	/**
+	 * HAVE消息数量
+	 */
+	private static final int HAVE_SIZE = 64;
+	/**
+	 * PIECE消息数量
+	 */
+	private static final int PIECE_SIZE = 16;
+	/**
+	 * PIECE消息数据长度
+	 */
+	private static final int SLICE_LENGTH = 16 * 1024;
+
+	/**
+	 * 分段大小
+	 */
+	@Param({ "1460", "16384" })
+	private int segmentLength;
+
+	/**
+	 * 消息数据
+	 */
+	private ByteBuffer messages;
+	/**
+	 * 分段数据
+	 */
+	private ByteBuffer segment;
+	/**
+	 * 拆包器
+	 */
+	private PeerUnpackMessageCodec codec;
+
+	@Setup(Level.Trial)
+	public void setup() throws ReflectiveOperationException {
+		LoggerConfig.off();
+		final byte[] slice = ArrayUtils.random(SLICE_LENGTH);
+		final int haveLength = Integer.BYTES + 1 + Integer.BYTES;
+		final int pieceLength = Integer.BYTES + 1 + 2 * Integer.BYTES + SLICE_LENGTH;
+		this.messages = ByteBuffer.allocate(HAVE_SIZE * haveLength + PIECE_SIZE * pieceLength);
+		final int havePerPiece = HAVE_SIZE / PIECE_SIZE;
+		for (int index = 0; index < PIECE_SIZE; index++) {
+			for (int jndex = 0; jndex < havePerPiece; jndex++) {
+				this.messages
+					.putInt(1 + Integer.BYTES)
+					.put(PeerConfig.Type.HAVE.id())
+					.putInt(index * havePerPiece + jndex);
+			}
+			this.messages
+				.putInt(1 + 2 * Integer.BYTES + SLICE_LENGTH)
+				.put(PeerConfig.Type.PIECE.id())
+				.putInt(index)
+				.putInt(0)
+				.put(slice);
+		}
+		this.messages.flip();
+		this.segment = ByteBuffer.allocate(this.segmentLength);
+		final PeerSubMessageHandler handler = PeerSubMessageHandler.newInstance();
+		// 跳过握手：直接解析消息
+		final Field handshakeRecv = PeerSubMessageHandler.class.getDeclaredField("handshakeRecv");
+		handshakeRecv.setAccessible(true);
+		handshakeRecv.setBoolean(handler, true);
+		this.codec = new PeerUnpackMessageCodec(handler);
+	}
+
+	@Benchmark
+	public int decode() throws NetException {
+		final ByteBuffer messages = this.messages.duplicate();
+		while(messages.hasRemaining()) {
+			final int length = Math.min(this.segmentLength, messages.remaining());
+			this.segment.clear();
+			this.segment.put(messages.slice(messages.position(), length));
+			messages.position(messages.position() + length);
+			this.segment.flip();
+			this.codec.decode(this.segment);
+		}
+		return messages.position();
+	}
+
+}
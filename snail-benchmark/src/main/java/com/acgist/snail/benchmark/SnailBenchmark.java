@@ -0,0 +1,96 @@
+package com.acgist.snail.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.acgist.snail.logger.Logger;
+import com.acgist.snail.logger.LoggerFactory;
+import com.acgist.snail.utils.FileUtils;
+
+/**
+ * 基准测试启动器
+ * 支持所有JMH命令行参数，默认开启GC和内存分配统计（gc.alloc.rate.norm：每次操作分配内存大小）。
+ * 测试结果使用JSON格式保存到{@link #RESULT_FOLDER}目录，如果存在基线结果自动对比。
+ * 基线结果：使用参数{@code -baseline 文件路径}指定，默认使用{@link #BASELINE_FILE}。
+ * 
+ * 运行所有测试：java -jar snail.benchmark-{version}.jar
+ * 运行指定测试：java -jar snail.benchmark-{version}.jar BEncodeBenchmark -baseline benchmark/baseline.json
+ * 
+ * @author acgist
+ */
+public final class SnailBenchmark {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SnailBenchmark.class);
+
+	/**
+	 * 测试结果目录：{@value}
+	 */
+	public static final String RESULT_FOLDER = "benchmark";
+	/**
+	 * 默认基线结果：{@value}
+	 */
+	public static final String BASELINE_FILE = RESULT_FOLDER + "/baseline.json";
+	/**
+	 * 基线结果参数：{@value}
+	 */
+	private static final String ARG_BASELINE = "-baseline";
+
+	private SnailBenchmark() {
+	}
+
+	/**
+	 * @param args JMH命令行参数
+	 * 
+	 * @throws CommandLineOptionException 命令行参数异常
+	 * @throws RunnerException 基准测试异常
+	 * @throws IOException IO异常
+	 */
+	public static final void main(String[] args) throws CommandLineOptionException, RunnerException, IOException {
+		String baseline = BASELINE_FILE;
+		final List<String> jmhArgs = new ArrayList<>();
+		for (int index = 0; index < args.length; index++) {
+			if(ARG_BASELINE.equals(args[index]) && index + 1 < args.length) {
+				baseline = args[++index];
+			} else {
+				jmhArgs.add(args[index]);
+			}
+		}
+		final CommandLineOptions commandLineOptions = new CommandLineOptions(jmhArgs.toArray(String[]::new));
+		final ChainedOptionsBuilder builder = new OptionsBuilder()
+			.parent(commandLineOptions)
+			.addProfiler(GCProfiler.class);
+		if(commandLineOptions.getIncludes().isEmpty()) {
+			builder.include(SnailBenchmark.class.getPackageName() + ".*");
+		}
+		final String result;
+		if(commandLineOptions.getResult().hasValue()) {
+			result = commandLineOptions.getResult().get();
+		} else {
+			final String time = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
+			result = FileUtils.file(RESULT_FOLDER, "result-" + time + ".json");
+			FileUtils.buildFolder(RESULT_FOLDER);
+			builder.result(result).resultFormat(ResultFormatType.JSON);
+		}
+		new Runner(builder.build()).run();
+		LOGGER.info("基准测试结果：{}", result);
+		if(new File(baseline).exists()) {
+			BenchmarkComparator.compare(baseline, result);
+		} else {
+			LOGGER.info("没有基线结果（复制测试结果作为基线结果）：{}", baseline);
+		}
+	}
+
+}
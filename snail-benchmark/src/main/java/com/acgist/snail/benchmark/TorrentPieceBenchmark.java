@@ -0,0 +1,78 @@
+package com.acgist.snail.benchmark;
+
+import java.security.MessageDigest;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.logger.LoggerConfig;
+import com.acgist.snail.net.torrent.TorrentPiece;
+import com.acgist.snail.utils.ArrayUtils;
+import com.acgist.snail.utils.DigestUtils;
+
+/**
+ * Piece校验基准测试
+ * 对比Piece校验和直接计算SHA-1消耗
+ * 
+ * @author acgist
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TorrentPieceBenchmark {
+
+	/**
+	 * Piece大小（KB）
+	 */
+	@Param({ "256", "1024", "4096" })
+	private int pieceLength;
+
+	/**
+	 * Piece数据
+	 */
+	private byte[] data;
+	/**
+	 * Piece
+	 */
+	private TorrentPiece piece;
+	/**
+	 * SHA-1
+	 */
+	private MessageDigest digest;
+
+	@Setup
+	public void setup() {
+		LoggerConfig.off();
+		final int length = this.pieceLength * SystemConfig.ONE_KB;
+		this.data = ArrayUtils.random(length);
+		this.piece = TorrentPiece.newInstance(length, 0, 0, length, DigestUtils.sha1(this.data), true);
+		this.piece.write(0, this.data);
+		this.digest = DigestUtils.sha1();
+	}
+
+	@Benchmark
+	public boolean verify() {
+		return this.piece.verify();
+	}
+
+	@Benchmark
+	public byte[] sha1() {
+		this.digest.reset();
+		return this.digest.digest(this.data);
+	}
+
+}
@@ -0,0 +1,163 @@
+package com.acgist.snail.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.context.ITaskSessionStatus.Status;
+import com.acgist.snail.context.entity.TaskEntity;
+import com.acgist.snail.context.session.TaskSession;
+import com.acgist.snail.context.wrapper.DescriptionWrapper;
+import com.acgist.snail.format.BEncodeDecoder;
+import com.acgist.snail.format.BEncodeEncoder;
+import com.acgist.snail.logger.LoggerConfig;
+import com.acgist.snail.net.DownloadException;
+import com.acgist.snail.net.NetException;
+import com.acgist.snail.net.torrent.InfoHash;
+import com.acgist.snail.net.torrent.Torrent;
+import com.acgist.snail.net.torrent.TorrentPiece;
+import com.acgist.snail.net.torrent.TorrentSession;
+import com.acgist.snail.net.torrent.TorrentStream;
+import com.acgist.snail.protocol.Protocol.Type;
+import com.acgist.snail.utils.ArrayUtils;
+import com.acgist.snail.utils.FileUtils;
+
+/**
+ * 挑选下载Piece基准测试
+ * 使用内存种子新建文件流（稀疏文件不会写入数据），Peer随机拥有一半Piece。
+ * 
+ * @author acgist
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TorrentStreamBenchmark {
+
+	/**
+	 * Piece大小
+	 */
+	private static final long PIECE_LENGTH = 256L * SystemConfig.ONE_KB;
+	/**
+	 * 文件名称
+	 */
+	private static final String FILE_NAME = "snail-benchmark.data";
+
+	/**
+	 * Piece数量
+	 */
+	@Param({ "4096", "65536" })
+	private int pieceSize;
+
+	/**
+	 * 下载目录
+	 */
+	private File folder;
+	/**
+	 * 文件流
+	 */
+	private TorrentStream torrentStream;
+	/**
+	 * BT任务信息
+	 */
+	private TorrentSession torrentSession;
+	/**
+	 * Peer已经下载Piece位图
+	 */
+	private BitSet peerPieces;
+	/**
+	 * Peer推荐Piece位图
+	 */
+	private BitSet suggestPieces;
+	/**
+	 * 指定下载Piece索引
+	 */
+	private int piecePos;
+	/**
+	 * 随机数
+	 */
+	private Random random;
+
+	@Setup
+	public void setup() throws IOException, NetException, DownloadException {
+		LoggerConfig.off();
+		this.folder = Files.createTempDirectory("snail-benchmark").toFile();
+		final long size = PIECE_LENGTH * this.pieceSize;
+		final Map<String, Object> info = new LinkedHashMap<>();
+		info.put("length", size);
+		info.put("name", FILE_NAME);
+		info.put("piece length", PIECE_LENGTH);
+		info.put("pieces", ArrayUtils.random(this.pieceSize * SystemConfig.SHA1_HASH_LENGTH));
+		final Map<String, Object> map = new LinkedHashMap<>();
+		map.put("info", info);
+		final Torrent torrent = Torrent.valueOf(BEncodeDecoder.newInstance(BEncodeEncoder.encodeMap(map)).next());
+		final InfoHash infoHash = InfoHash.newInstance(BEncodeEncoder.encodeMap(info));
+		torrent.infoHash(infoHash);
+		final TaskEntity entity = new TaskEntity();
+		entity.setName(FILE_NAME);
+		entity.setType(Type.TORRENT);
+		entity.setFile(this.folder.getAbsolutePath());
+		entity.setStatus(Status.AWAIT);
+		entity.setDescription(DescriptionWrapper.newEncoder(List.of(FILE_NAME)).serialize());
+		this.torrentSession = TorrentSession.newInstance(infoHash, torrent);
+		this.torrentSession.upload(TaskSession.newInstance(entity));
+		this.torrentStream = TorrentStream.newInstance(
+			PIECE_LENGTH,
+			FileUtils.file(this.folder.getAbsolutePath(), "pick-" + FILE_NAME),
+			size,
+			0L,
+			false,
+			this.torrentSession.torrentStreamGroup()
+		);
+		this.torrentStream.install();
+		this.random = new Random(0);
+		this.peerPieces = new BitSet(this.pieceSize);
+		for (int index = 0; index < this.pieceSize; index++) {
+			if(this.random.nextBoolean()) {
+				this.peerPieces.set(index);
+			}
+		}
+		this.suggestPieces = new BitSet();
+	}
+
+	@TearDown
+	public void tearDown() throws DownloadException {
+		this.torrentStream.release();
+		this.torrentSession.releaseUpload();
+		FileUtils.delete(this.folder);
+	}
+
+	@Benchmark
+	public TorrentPiece pick() {
+		this.piecePos = (this.piecePos + 1) % this.pieceSize;
+		final TorrentPiece piece = this.torrentStream.pick(this.piecePos, this.peerPieces, this.suggestPieces);
+		if(piece != null) {
+			// 释放Piece：保持下载状态不变
+			this.torrentStream.undone(piece);
+		}
+		return piece;
+	}
+
+}
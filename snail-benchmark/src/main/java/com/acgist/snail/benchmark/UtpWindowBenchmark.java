@@ -0,0 +1,67 @@
+package com.acgist.snail.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.acgist.snail.config.UtpConfig;
+import com.acgist.snail.logger.LoggerConfig;
+import com.acgist.snail.net.torrent.utp.UtpWindow;
+import com.acgist.snail.utils.ArrayUtils;
+
+/**
+ * UTP发送窗口基准测试
+ * 连续发送多个数据包之后响应最后一个数据包
+ * 
+ * @author acgist
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtpWindowBenchmark {
+
+	/**
+	 * 每次响应发送数据包数量
+	 */
+	@Param({ "1", "16" })
+	private int batch;
+
+	/**
+	 * 发送窗口
+	 */
+	private UtpWindow window;
+	/**
+	 * 数据包数据
+	 */
+	private byte[] data;
+
+	@Setup
+	public void setup() {
+		LoggerConfig.off();
+		this.window = UtpWindow.newSendInstance();
+		this.data = ArrayUtils.random(UtpConfig.PACKET_MAX_LENGTH);
+	}
+
+	@Benchmark
+	public boolean buildAck() {
+		short seqnr = 0;
+		for (int index = 0; index < this.batch; index++) {
+			seqnr = this.window.build(this.data).getSeqnr();
+		}
+		return this.window.ack(seqnr, UtpConfig.WND_SIZE);
+	}
+
+}
@@ -1,8 +1,12 @@
 package com.acgist.snail.gui.javafx.window.main;
 
 import java.net.URL;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.stream.Collectors;
 
 import com.acgist.snail.context.ITaskSession;
@@ -28,7 +32,7 @@ import com.acgist.snail.protocol.ProtocolContext;
 import com.acgist.snail.utils.FileUtils;
 import com.acgist.snail.utils.StringUtils;
 
-import javafx.application.Platform;
+import javafx.animation.AnimationTimer;
 import javafx.beans.binding.DoubleBinding;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -108,6 +112,38 @@ public final class MainController extends Controller {
 	 * <p>任务列表显示筛选</p>
 	 */
 	private Filter filter = Filter.ALL;
+	/**
+	 * <p>表格数据</p>
+	 * <p>增量修改：不会重建表格数据</p>
+	 */
+	private final ObservableList<ITaskSession> tasks = FXCollections.observableArrayList();
+	/**
+	 * <p>表格行</p>
+	 * <p>表格只会创建可见区域的行（循环使用）</p>
+	 */
+	private final Set<TableRow<ITaskSession>> rows = Collections.newSetFromMap(new WeakHashMap<>());
+	/**
+	 * <p>帧数统计</p>
+	 */
+	private long frames;
+	/**
+	 * <p>帧数统计开始时间（纳秒）</p>
+	 */
+	private long framesTime = System.nanoTime();
+	/**
+	 * <p>是否统计帧数</p>
+	 */
+	private boolean framesStatistics;
+	/**
+	 * <p>帧数统计定时器</p>
+	 * <p>定时器运行时每帧都会触发界面脉冲：只在统计窗口显示时运行</p>
+	 */
+	private final AnimationTimer framesTimer = new AnimationTimer() {
+		@Override
+		public void handle(long now) {
+			MainController.this.frames++;
+		}
+	};
 	
 	@Override
 	public void initialize(URL location, ResourceBundle resources) {
@@ -125,6 +161,7 @@ public final class MainController extends Controller {
 		this.taskCell(this.completedDate, Pos.CENTER, false, false, this.taskTable.widthProperty().multiply(2D).divide(10D));
 		// 设置行
 		this.taskTable.setRowFactory(this.rowFactory);
+		this.taskTable.setItems(this.tasks);
 		// 绑定属性
 		this.taskTable.prefWidthProperty().bind(this.root.widthProperty());
 		this.taskTable.prefHeightProperty().bind(this.root.prefHeightProperty().subtract(80D));
@@ -136,6 +173,28 @@ public final class MainController extends Controller {
 		// 定时刷新
 		TaskDisplay.getInstance().newScheduled(this);
 	}
+	
+	/**
+	 * <p>开始帧数统计</p>
+	 * 
+	 * @see com.acgist.snail.gui.javafx.window.statistics.StatisticsWindow#show()
+	 */
+	public void startFrames() {
+		this.frames = 0;
+		this.framesTime = System.nanoTime();
+		this.framesStatistics = true;
+		this.framesTimer.start();
+	}
+	
+	/**
+	 * <p>结束帧数统计</p>
+	 * 
+	 * @see com.acgist.snail.gui.javafx.window.statistics.StatisticsController#release()
+	 */
+	public void stopFrames() {
+		this.framesTimer.stop();
+		this.framesStatistics = false;
+	}
 
 	/**
 	 * <p>新建没有下载任务时的提示信息</p>
@@ -249,35 +308,74 @@ public final class MainController extends Controller {
 	
 	/**
 	 * <p>刷新任务列表</p>
-	 * <p>重新设置表格数据</p>
+	 * <p>增量修改表格数据：删除不显示任务、添加新的任务，保持表格排序和选中。</p>
 	 */
 	public void refreshTaskList() {
-		final ObservableList<ITaskSession> obs = FXCollections.observableArrayList();
-		TaskContext.getInstance().allTask().stream()
-			.filter(session -> {
-				if(this.filter == Filter.ALL) {
-					return true;
-				} else if(this.filter == Filter.DOWNLOAD) {
-					return session.statusRunning();
-				} else if(this.filter == Filter.COMPLETED) {
-					return session.statusCompleted();
-				} else {
-					return true;
-				}
-			})
-			.forEach(obs::add);
-		this.taskTable.setItems(obs);
+		final List<ITaskSession> list = TaskContext.getInstance().allTask().stream()
+			.filter(this::filter)
+			.collect(Collectors.toList());
+		final Set<ITaskSession> showTasks = new HashSet<>(list);
+		this.tasks.removeIf(session -> !showTasks.contains(session));
+		final Set<ITaskSession> oldTasks = new HashSet<>(this.tasks);
+		final List<ITaskSession> newTasks = list.stream()
+			.filter(session -> !oldTasks.contains(session))
+			.collect(Collectors.toList());
+		if(!newTasks.isEmpty()) {
+			this.tasks.addAll(newTasks);
+		}
 	}
 	
 	/**
 	 * <p>刷新任务状态</p>
-	 * <p>不设置表格数据，只刷新任务状态。</p>
+	 * <p>只刷新状态变化并且可见的任务行</p>
+	 * 
+	 * @see TaskContext#dirtyTasks()
 	 */
 	public void refreshTaskStatus() {
-		// 刷新Table
-		this.taskTable.refresh();
+		final long time = System.nanoTime();
+		final Set<ITaskSession> dirtyTasks = TaskContext.getInstance().dirtyTasks();
+		// 筛选状态变化：重新筛选任务
+		if(this.filter != Filter.ALL && dirtyTasks.stream().anyMatch(session -> this.filter(session) != this.tasks.contains(session))) {
+			this.refreshTaskList();
+		}
+		int count = 0;
+		for (TableRow<ITaskSession> row : this.rows) {
+			final ITaskSession session = row.getItem();
+			if(row.isVisible() && !row.isEmpty() && session != null && dirtyTasks.contains(session)) {
+				row.getChildrenUnmodifiable().stream()
+					.filter(TaskTableCell.class::isInstance)
+					.map(TaskTableCell.class::cast)
+					.forEach(TaskTableCell::refresh);
+				count++;
+			}
+		}
 		// 上传速度
-		Platform.runLater(() -> this.uploadBuffer.setText(FileUtils.formatSpeed(StatisticsContext.getInstance().uploadSpeed())));
+		this.uploadBuffer.setText(FileUtils.formatSpeed(StatisticsContext.getInstance().uploadSpeed()));
+		// 刷新统计
+		final long now = System.nanoTime();
+		if(this.framesStatistics) {
+			final double fps = this.frames * 1_000_000_000D / Math.max(1L, now - this.framesTime);
+			this.frames = 0;
+			this.framesTime = now;
+			LOGGER.debug("刷新任务状态：{}-{}，耗时：{}微秒，FPS：{}", dirtyTasks.size(), count, (now - time) / 1000, String.format("%.1f", fps));
+		} else {
+			LOGGER.debug("刷新任务状态：{}-{}，耗时：{}微秒", dirtyTasks.size(), count, (now - time) / 1000);
+		}
+	}
+	
+	/**
+	 * <p>判断任务是否显示</p>
+	 * 
+	 * @param session 任务信息
+	 * 
+	 * @return 是否显示
+	 */
+	private boolean filter(ITaskSession session) {
+		return switch (this.filter) {
+			case DOWNLOAD -> session.statusRunning();
+			case COMPLETED -> session.statusCompleted();
+			default -> true;
+		};
 	}
 	
 	/**
@@ -367,6 +465,7 @@ public final class MainController extends Controller {
 	 */
 	private Callback<TableView<ITaskSession>, TableRow<ITaskSession>> rowFactory = tableView -> {
 		final TableRow<ITaskSession> row = new TableRow<>();
+		this.rows.add(row);
 		// 右键菜单
 		row.setContextMenu(TaskMenu.getInstance());
 		// 左键双击
@@ -1,14 +1,18 @@
 package com.acgist.snail.gui.javafx.window.main;
 
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.acgist.snail.config.SystemConfig;
 import com.acgist.snail.context.SystemThreadContext;
 import com.acgist.snail.logger.Logger;
 import com.acgist.snail.logger.LoggerFactory;
 
+import javafx.application.Platform;
+
 /**
  * <p>任务列表刷新器</p>
+ * <p>刷新请求合并：JavaFX线程执行之前的多次刷新请求只会执行一次</p>
  * 
  * @author acgist
  */
@@ -30,6 +34,14 @@ public final class TaskDisplay {
 	 * <p>初始化锁</p>
 	 */
 	private final Object lock = new Object();
+	/**
+	 * <p>是否等待刷新任务数据</p>
+	 */
+	private final AtomicBoolean taskListPending = new AtomicBoolean(false);
+	/**
+	 * <p>是否等待刷新任务状态</p>
+	 */
+	private final AtomicBoolean taskStatusPending = new AtomicBoolean(false);
 	
 	private TaskDisplay() {
 	}
@@ -61,14 +73,26 @@ public final class TaskDisplay {
 	 * <p>刷新任务数据</p>
 	 */
 	public void refreshTaskList() {
-		this.controller().refreshTaskList();
+		final MainController mainController = this.controller();
+		if(this.taskListPending.compareAndSet(false, true)) {
+			Platform.runLater(() -> {
+				this.taskListPending.set(false);
+				mainController.refreshTaskList();
+			});
+		}
 	}
 	
 	/**
 	 * <p>刷新任务状态</p>
 	 */
 	public void refreshTaskStatus() {
-		this.controller().refreshTaskStatus();
+		final MainController mainController = this.controller();
+		if(this.taskStatusPending.compareAndSet(false, true)) {
+			Platform.runLater(() -> {
+				this.taskStatusPending.set(false);
+				mainController.refreshTaskStatus();
+			});
+		}
 	}
 	
 	/**
@@ -1,5 +1,7 @@
 package com.acgist.snail.gui.javafx.window.main;
 
+import java.util.Objects;
+
 import com.acgist.snail.context.ITaskSession;
 import com.acgist.snail.context.ITaskSession.FileType;
 import com.acgist.snail.gui.javafx.Fonts;
@@ -8,11 +10,13 @@ import com.acgist.snail.gui.javafx.Tooltips;
 import javafx.geometry.Pos;
 import javafx.scene.control.Label;
 import javafx.scene.control.TableCell;
+import javafx.scene.control.TableColumn;
 import javafx.scene.layout.HBox;
 import javafx.scene.text.Text;
 
 /**
  * <p>任务单元格</p>
+ * <p>单元格节点循环使用：刷新时只修改文本</p>
  * 
  * @author acgist
  */
@@ -30,6 +34,22 @@ public final class TaskTableCell extends TableCell<ITaskSession, String> {
 	 * <p>是否显示Tooltip</p>
 	 */
 	private final boolean tooltip;
+	/**
+	 * <p>单元格容器</p>
+	 */
+	private final HBox box;
+	/**
+	 * <p>单元格文本</p>
+	 */
+	private final Text text;
+	/**
+	 * <p>文件类型</p>
+	 */
+	private FileType fileType;
+	/**
+	 * <p>文件类型图标</p>
+	 */
+	private Label fileTypeLabel;
 	
 	/**
 	 * @param pos 对齐方式
@@ -40,29 +60,53 @@ public final class TaskTableCell extends TableCell<ITaskSession, String> {
 		this.pos = pos;
 		this.icon = icon;
 		this.tooltip = tooltip;
+		this.box = new HBox();
+		this.text = new Text();
+		if(this.pos != null) {
+			this.box.setAlignment(this.pos);
+		}
+		this.box.getChildren().add(this.text);
+	}
+	
+	/**
+	 * <p>刷新单元格</p>
+	 * <p>重新读取单元格数据</p>
+	 */
+	public void refresh() {
+		final int index = this.getIndex();
+		final TableColumn<ITaskSession, String> column = this.getTableColumn();
+		if(column == null || index < 0 || index >= this.getTableView().getItems().size()) {
+			return;
+		}
+		this.updateItem(column.getCellData(index), false);
 	}
 	
 	@Override
 	public void updateItem(String value, boolean empty) {
 		super.updateItem(value, empty);
-		final HBox box = new HBox();
-		final ITaskSession taskSession = this.getTableRow().getItem();
-		if(taskSession != null) {
-			final Text name = new Text(value);
-			if(this.pos != null) {
-				box.setAlignment(this.pos);
-			}
-			if(this.icon) {
-				final FileType fileType = taskSession.getFileType();
-				final Label fileLabel = Fonts.fileTypeIconLabel(fileType);
-				box.getChildren().add(fileLabel);
+		final ITaskSession taskSession = this.getTableRow() == null ? null : this.getTableRow().getItem();
+		if(empty || taskSession == null) {
+			this.setGraphic(null);
+			this.setTooltip(null);
+			return;
+		}
+		if(this.icon) {
+			final FileType newFileType = taskSession.getFileType();
+			if(this.fileTypeLabel == null || this.fileType != newFileType) {
+				this.box.getChildren().remove(this.fileTypeLabel);
+				this.fileType = newFileType;
+				this.fileTypeLabel = Fonts.fileTypeIconLabel(newFileType);
+				this.box.getChildren().add(0, this.fileTypeLabel);
 			}
+		}
+		// 文本没有变化不用修改
+		if(!Objects.equals(value, this.text.getText())) {
+			this.text.setText(value);
 			if(this.tooltip) {
 				this.setTooltip(Tooltips.newTooltip(value));
 			}
-			box.getChildren().add(name);
 		}
-		this.setGraphic(box);
+		this.setGraphic(this.box);
 	}
 	
 }
@@ -0,0 +1,620 @@
+package com.acgist.snail.gui.javafx.window.statistics;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.function.IntConsumer;
+
+import com.acgist.snail.gui.javafx.Themes;
+import com.acgist.snail.gui.javafx.Tooltips;
+import com.acgist.snail.utils.NumberUtils;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Tooltip;
+import javafx.scene.input.MouseButton;
+import javafx.scene.paint.Color;
+
+/**
+ * <p>Piece位图工具</p>
+ * <p>画布格子数量固定，Piece数量超过格子数量时多个Piece聚合成一个区块，区块颜色根据下载进度和可用进度渐变。</p>
+ * <p>数据变化时只会重画变化的区块；左键点击区块放大显示区块范围，右键点击返回上级范围，每个区块只有一个Piece时左键点击指定下载Piece。</p>
+ * <p>注意：所有方法必须在JavaFX线程调用</p>
+ * 
+ * @author acgist
+ */
+public final class PieceMapPainter {
+	
+	/**
+	 * <p>默认填充高宽：{@value}</p>
+	 */
+	private static final int DEFAULT_WH = 12;
+	/**
+	 * <p>默认列数：{@value}</p>
+	 */
+	private static final int DEFAULT_COL = 50;
+	/**
+	 * <p>默认最大行数：{@value}</p>
+	 */
+	private static final int DEFAULT_MAX_ROW = 40;
+	/**
+	 * <p>边框高宽：{@value}</p>
+	 */
+	private static final int BORDER_WH = 1;
+	
+	/**
+	 * <p>填充高宽</p>
+	 */
+	private final int wh;
+	/**
+	 * <p>列数</p>
+	 */
+	private final int col;
+	/**
+	 * <p>行数</p>
+	 */
+	private final int row;
+	/**
+	 * <p>格子数量</p>
+	 */
+	private final int cells;
+	/**
+	 * <p>Piece数量</p>
+	 */
+	private final int length;
+	/**
+	 * <p>可用进度高度</p>
+	 */
+	private final int availableWh;
+	/**
+	 * <p>已经下载Piece位图（快照）</p>
+	 */
+	private final BitSet pieces;
+	/**
+	 * <p>选择下载Piece位图（快照）</p>
+	 */
+	private final BitSet selectPieces;
+	/**
+	 * <p>可用Piece位图（快照）</p>
+	 */
+	private final BitSet availablePieces;
+	/**
+	 * <p>需要重画区块</p>
+	 */
+	private final BitSet dirtyBuckets;
+	/**
+	 * <p>放大范围：开始位置、结束位置</p>
+	 */
+	private final Deque<int[]> zoomRanges;
+	/**
+	 * <p>鼠标选择事件</p>
+	 */
+	private final IntConsumer mouseSelect;
+	/**
+	 * <p>已经下载颜色</p>
+	 */
+	private final Color completedColor = Themes.COLOR_GREEN;
+	/**
+	 * <p>选择下载颜色</p>
+	 */
+	private final Color selectColor = Themes.COLOR_YELLOW;
+	/**
+	 * <p>没有选择颜色</p>
+	 */
+	private final Color noneColor = Themes.COLOR_GRAY;
+	/**
+	 * <p>可用颜色</p>
+	 */
+	private final Color availableColor = Themes.COLOR_BLUD;
+	/**
+	 * <p>不可用颜色</p>
+	 */
+	private final Color unavailableColor = Themes.COLOR_RED;
+	/**
+	 * <p>边框颜色</p>
+	 */
+	private final Color borderColor = Color.BLACK;
+	/**
+	 * <p>背景颜色</p>
+	 */
+	private final Color backgroundColor = Color.WHITE;
+	/**
+	 * <p>鼠标位置颜色</p>
+	 */
+	private final Color mouseColor = Themes.COLOR_RED;
+	/**
+	 * <p>当前范围开始位置（包含）</p>
+	 */
+	private int begin;
+	/**
+	 * <p>当前范围结束位置（不包含）</p>
+	 */
+	private int end;
+	/**
+	 * <p>区块大小：每个区块Piece数量</p>
+	 */
+	private int bucketSize;
+	/**
+	 * <p>区块数量</p>
+	 */
+	private int bucketCount;
+	/**
+	 * <p>鼠标位置（区块索引）</p>
+	 */
+	private int mouseIndex = -1;
+	/**
+	 * <p>图片宽度</p>
+	 */
+	private int width;
+	/**
+	 * <p>图片高度</p>
+	 */
+	private int height;
+	/**
+	 * <p>画布</p>
+	 */
+	private Canvas canvas;
+	/**
+	 * <p>画笔</p>
+	 */
+	private GraphicsContext graphics;
+	/**
+	 * <p>工具提示</p>
+	 */
+	private Tooltip tooltip;
+	
+	/**
+	 * @param wh 填充高宽
+	 * @param col 列数
+	 * @param maxRow 最大行数
+	 * @param length Piece数量
+	 * @param mouseSelect 鼠标选择事件
+	 */
+	private PieceMapPainter(int wh, int col, int maxRow, int length, IntConsumer mouseSelect) {
+		if(wh <= 0 || col <= 0 || maxRow <= 0 || length <= 0) {
+			throw new IllegalArgumentException("参数错误");
+		}
+		this.wh = wh;
+		this.col = col;
+		this.row = Math.min(maxRow, NumberUtils.ceilDiv(length, col));
+		this.cells = this.col * this.row;
+		this.length = length;
+		this.availableWh = Math.max(2, wh / 4);
+		this.pieces = new BitSet();
+		this.selectPieces = new BitSet();
+		this.availablePieces = new BitSet();
+		this.dirtyBuckets = new BitSet();
+		this.zoomRanges = new ArrayDeque<>();
+		this.mouseSelect = mouseSelect;
+		this.range(0, length);
+	}
+	
+	/**
+	 * <p>新建工具</p>
+	 * 
+	 * @param length Piece数量
+	 * @param mouseSelect 鼠标选择事件
+	 * 
+	 * @return PieceMapPainter
+	 */
+	public static final PieceMapPainter newInstance(int length, IntConsumer mouseSelect) {
+		return new PieceMapPainter(DEFAULT_WH, DEFAULT_COL, DEFAULT_MAX_ROW, length, mouseSelect);
+	}
+	
+	/**
+	 * <p>新建工具</p>
+	 * 
+	 * @param wh 填充高宽
+	 * @param col 列数
+	 * @param maxRow 最大行数
+	 * @param length Piece数量
+	 * @param mouseSelect 鼠标选择事件
+	 * 
+	 * @return PieceMapPainter
+	 */
+	public static final PieceMapPainter newInstance(int wh, int col, int maxRow, int length, IntConsumer mouseSelect) {
+		return new PieceMapPainter(wh, col, maxRow, length, mouseSelect);
+	}
+	
+	/**
+	 * <p>新建画布、画笔，画出背景和边框。</p>
+	 * 
+	 * @return PieceMapPainter
+	 */
+	public PieceMapPainter build() {
+		// 宽度：列数 * (宽度 + 边框) + 右边框
+		this.width = this.col * (this.wh + BORDER_WH) + BORDER_WH;
+		// 高度：行数 * (高度 + 边框) + 底边框
+		this.height = this.row * (this.wh + BORDER_WH) + BORDER_WH;
+		this.canvas = new Canvas(this.width, this.height);
+		this.graphics = this.canvas.getGraphicsContext2D();
+		this.tooltip = Tooltips.newTooltip("");
+		Tooltip.install(this.canvas, this.tooltip);
+		this.canvas.setOnMouseMoved(event -> this.moved(event.getX(), event.getY()));
+		this.canvas.setOnMouseExited(event -> this.exited());
+		this.canvas.setOnMouseClicked(event -> this.clicked(event.getButton()));
+		this.drawBackground();
+		this.drawBorder();
+		return this;
+	}
+	
+	/**
+	 * <p>刷新数据</p>
+	 * <p>对比上次数据快照，只重画变化的区块。</p>
+	 * 
+	 * @param pieces 已经下载Piece位图
+	 * @param selectPieces 选择下载Piece位图
+	 * @param availablePieces 可用Piece位图
+	 * 
+	 * @return PieceMapPainter
+	 */
+	public PieceMapPainter refresh(BitSet pieces, BitSet selectPieces, BitSet availablePieces) {
+		this.diff(this.pieces, pieces);
+		this.diff(this.selectPieces, selectPieces);
+		this.diff(this.availablePieces, availablePieces);
+		this.drawDirty();
+		return this;
+	}
+	
+	/**
+	 * <p>Piece下载完成</p>
+	 * <p>只重画Piece所在区块</p>
+	 * 
+	 * @param index Piece索引
+	 * 
+	 * @return PieceMapPainter
+	 */
+	public PieceMapPainter have(int index) {
+		if(index < 0 || index >= this.length || this.pieces.get(index)) {
+			return this;
+		}
+		this.pieces.set(index);
+		this.dirty(index);
+		this.drawDirty();
+		return this;
+	}
+	
+	/**
+	 * <p>放大显示范围</p>
+	 * 
+	 * @param begin 开始位置（包含）
+	 * @param end 结束位置（不包含）
+	 * 
+	 * @return PieceMapPainter
+	 */
+	public PieceMapPainter zoom(int begin, int end) {
+		final int zoomBegin = Math.max(0, begin);
+		final int zoomEnd = Math.min(this.length, end);
+		if(zoomBegin >= zoomEnd || (zoomBegin == this.begin && zoomEnd == this.end)) {
+			return this;
+		}
+		this.zoomRanges.push(new int[] { this.begin, this.end });
+		this.range(zoomBegin, zoomEnd);
+		this.drawAll();
+		return this;
+	}
+	
+	/**
+	 * <p>返回上级显示范围</p>
+	 * 
+	 * @return PieceMapPainter
+	 */
+	public PieceMapPainter zoomOut() {
+		final int[] range = this.zoomRanges.poll();
+		if(range == null) {
+			return this;
+		}
+		this.range(range[0], range[1]);
+		this.drawAll();
+		return this;
+	}
+	
+	/**
+	 * <p>设置显示范围并且计算区块</p>
+	 * 
+	 * @param begin 开始位置（包含）
+	 * @param end 结束位置（不包含）
+	 */
+	private void range(int begin, int end) {
+		this.begin = begin;
+		this.end = end;
+		this.bucketSize = NumberUtils.ceilDiv(end - begin, this.cells);
+		this.bucketCount = NumberUtils.ceilDiv(end - begin, this.bucketSize);
+		this.mouseIndex = -1;
+	}
+	
+	/**
+	 * <p>对比数据快照并且标记变化区块</p>
+	 * 
+	 * @param snapshot 数据快照
+	 * @param bitSet 最新数据
+	 */
+	private void diff(BitSet snapshot, BitSet bitSet) {
+		if(bitSet == null) {
+			return;
+		}
+		final BitSet diff = (BitSet) bitSet.clone();
+		diff.xor(snapshot);
+		if(diff.isEmpty()) {
+			return;
+		}
+		// 同一区块只需标记一次：直接跳到下个区块
+		int index = diff.nextSetBit(this.begin);
+		while(index >= 0 && index < this.end) {
+			final int bucket = this.dirty(index);
+			index = diff.nextSetBit(this.bucketBegin(bucket + 1));
+		}
+		snapshot.xor(diff);
+	}
+	
+	/**
+	 * <p>标记Piece所在区块需要重画</p>
+	 * 
+	 * @param index Piece索引
+	 * 
+	 * @return 区块索引
+	 */
+	private int dirty(int index) {
+		final int bucket = (index - this.begin) / this.bucketSize;
+		if(index >= this.begin && index < this.end) {
+			this.dirtyBuckets.set(bucket);
+		}
+		return bucket;
+	}
+	
+	/**
+	 * <p>背景</p>
+	 */
+	private void drawBackground() {
+		this.graphics.save();
+		this.graphics.clearRect(0, 0, this.width, this.height);
+		this.graphics.setFill(this.backgroundColor);
+		this.graphics.fillRect(0, 0, this.width, this.height);
+		this.graphics.restore();
+	}
+	
+	/**
+	 * <p>边框</p>
+	 */
+	private void drawBorder() {
+		this.graphics.save();
+		this.graphics.setStroke(this.borderColor);
+		this.graphics.setLineWidth(BORDER_WH);
+		final int colRowWh = this.wh + BORDER_WH;
+		// 列
+		int x = 0;
+		for (int index = 0; index < this.col; index++) {
+			x = index * colRowWh;
+			this.graphics.strokeLine(x, 0, x, this.height);
+		}
+		// 右边框
+		final int right = this.width - BORDER_WH;
+		this.graphics.strokeLine(right, 0, right, this.height);
+		// 行
+		int y = 0;
+		for (int index = 0; index < this.row; index++) {
+			y = index * colRowWh;
+			this.graphics.strokeLine(0, y, this.width, y);
+		}
+		// 底边框
+		final int bottom = this.height - BORDER_WH;
+		this.graphics.strokeLine(0, bottom, this.width, bottom);
+		this.graphics.restore();
+	}
+	
+	/**
+	 * <p>重画所有区块</p>
+	 */
+	private void drawAll() {
+		this.dirtyBuckets.set(0, this.cells);
+		this.drawDirty();
+	}
+	
+	/**
+	 * <p>重画变化区块</p>
+	 */
+	private void drawDirty() {
+		if(this.graphics == null || this.dirtyBuckets.isEmpty()) {
+			return;
+		}
+		this.graphics.save();
+		int bucket = this.dirtyBuckets.nextSetBit(0);
+		while(bucket >= 0 && bucket < this.cells) {
+			this.drawFill(bucket);
+			bucket = this.dirtyBuckets.nextSetBit(bucket + 1);
+		}
+		this.graphics.restore();
+		this.dirtyBuckets.clear();
+		if(this.mouseIndex >= 0) {
+			this.drawMouse(this.mouseIndex);
+		}
+	}
+	
+	/**
+	 * <p>填充区块</p>
+	 * <p>填充颜色：没有选择下载使用灰色，选择下载根据下载进度从黄色渐变到绿色。</p>
+	 * <p>可用进度：区块底部根据没有下载Piece的可用进度从红色渐变到蓝色。</p>
+	 * 
+	 * @param bucket 区块索引
+	 */
+	private void drawFill(int bucket) {
+		final int x = this.x(bucket);
+		final int y = this.y(bucket);
+		if(bucket >= this.bucketCount) {
+			this.graphics.setFill(this.backgroundColor);
+			this.graphics.fillRect(x, y, this.wh, this.wh);
+			return;
+		}
+		final int bucketBegin = this.bucketBegin(bucket);
+		final int bucketEnd = this.bucketBegin(bucket + 1);
+		final BitSet completed = this.pieces.get(bucketBegin, bucketEnd);
+		final BitSet wanted = this.selectPieces.get(bucketBegin, bucketEnd);
+		wanted.or(completed);
+		final int wantedSize = wanted.cardinality();
+		if(wantedSize == 0) {
+			this.graphics.setFill(this.noneColor);
+			this.graphics.fillRect(x, y, this.wh, this.wh);
+			return;
+		}
+		final int completedSize = completed.cardinality();
+		this.graphics.setFill(this.selectColor.interpolate(this.completedColor, (double) completedSize / wantedSize));
+		this.graphics.fillRect(x, y, this.wh, this.wh);
+		final int missingSize = wantedSize - completedSize;
+		if(missingSize > 0) {
+			// 没有下载Piece可用进度
+			wanted.andNot(completed);
+			wanted.and(this.availablePieces.get(bucketBegin, bucketEnd));
+			final double available = (double) wanted.cardinality() / missingSize;
+			this.graphics.setFill(this.unavailableColor.interpolate(this.availableColor, available));
+			this.graphics.fillRect(x, y + this.wh - this.availableWh, this.wh, this.availableWh);
+		}
+	}
+	
+	/**
+	 * <p>画出鼠标位置</p>
+	 * 
+	 * @param bucket 区块索引
+	 */
+	private void drawMouse(int bucket) {
+		this.graphics.save();
+		this.graphics.setStroke(this.mouseColor);
+		this.graphics.setLineWidth(2);
+		this.graphics.strokeRect(this.x(bucket) + 1, this.y(bucket) + 1, this.wh - 2, this.wh - 2);
+		this.graphics.restore();
+	}
+	
+	/**
+	 * <p>鼠标移动</p>
+	 * 
+	 * @param mouseX 鼠标位置x
+	 * @param mouseY 鼠标位置y
+	 */
+	private void moved(double mouseX, double mouseY) {
+		final int colRowWh = this.wh + BORDER_WH;
+		final int colCount = (int) (mouseX / colRowWh);
+		final int rowCount = (int) (mouseY / colRowWh);
+		final int bucket = colCount < this.col ? rowCount * this.col + colCount : -1;
+		if(this.mouseIndex == bucket) {
+			// 没有变化
+			return;
+		}
+		this.exited();
+		if(bucket >= 0 && bucket < this.bucketCount) {
+			this.mouseIndex = bucket;
+			this.drawMouse(bucket);
+			this.tooltip.setText(this.bucketInfo(bucket));
+		}
+	}
+	
+	/**
+	 * <p>鼠标退出</p>
+	 */
+	private void exited() {
+		final int bucket = this.mouseIndex;
+		this.mouseIndex = -1;
+		if(bucket >= 0) {
+			this.dirtyBuckets.set(bucket);
+			this.drawDirty();
+		}
+	}
+	
+	/**
+	 * <p>鼠标点击</p>
+	 * 
+	 * @param button 鼠标按键
+	 */
+	private void clicked(MouseButton button) {
+		if(button == MouseButton.SECONDARY) {
+			this.zoomOut();
+			return;
+		}
+		final int bucket = this.mouseIndex;
+		if(bucket < 0) {
+			return;
+		}
+		final int bucketBegin = this.bucketBegin(bucket);
+		if(this.bucketSize > 1) {
+			this.zoom(bucketBegin, this.bucketBegin(bucket + 1));
+		} else if(
+			this.mouseSelect != null &&
+			this.selectPieces.get(bucketBegin) &&
+			!this.pieces.get(bucketBegin)
+		) {
+			this.mouseSelect.accept(bucketBegin);
+		}
+	}
+	
+	/**
+	 * <p>区块描述</p>
+	 * 
+	 * @param bucket 区块索引
+	 * 
+	 * @return 区块描述
+	 */
+	private String bucketInfo(int bucket) {
+		final int bucketBegin = this.bucketBegin(bucket);
+		final int bucketEnd = this.bucketBegin(bucket + 1);
+		if(bucketEnd - bucketBegin == 1) {
+			return "Piece：" + bucketBegin;
+		}
+		final int completedSize = this.pieces.get(bucketBegin, bucketEnd).cardinality();
+		return "Piece：" + bucketBegin + "-" + (bucketEnd - 1) + "\n已下载：" + completedSize + "/" + (bucketEnd - bucketBegin);
+	}
+	
+	/**
+	 * @param bucket 区块索引
+	 * 
+	 * @return 区块开始位置（包含）
+	 */
+	private int bucketBegin(int bucket) {
+		return (int) Math.min(this.end, this.begin + (long) bucket * this.bucketSize);
+	}
+	
+	/**
+	 * @param bucket 区块索引
+	 * 
+	 * @return 区块x坐标
+	 */
+	private int x(int bucket) {
+		return (bucket % this.col) * (this.wh + BORDER_WH) + BORDER_WH;
+	}
+	
+	/**
+	 * @param bucket 区块索引
+	 * 
+	 * @return 区块y坐标
+	 */
+	private int y(int bucket) {
+		return (bucket / this.col) * (this.wh + BORDER_WH) + BORDER_WH;
+	}
+	
+	/**
+	 * <p>获取区块大小</p>
+	 * 
+	 * @return 区块大小
+	 */
+	public int bucketSize() {
+		return this.bucketSize;
+	}
+	
+	/**
+	 * <p>获取Piece数量</p>
+	 * 
+	 * @return Piece数量
+	 */
+	public int length() {
+		return this.length;
+	}
+	
+	/**
+	 * <p>获取画布</p>
+	 * 
+	 * @return 画布
+	 */
+	public Canvas canvas() {
+		Objects.requireNonNull(this.canvas, "没有新建画布");
+		return this.canvas;
+	}
+	
+}
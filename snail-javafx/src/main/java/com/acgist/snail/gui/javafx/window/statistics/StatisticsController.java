@@ -7,6 +7,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.ResourceBundle;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
@@ -14,10 +16,12 @@ import com.acgist.snail.config.PeerConfig;
 import com.acgist.snail.config.SystemConfig;
 import com.acgist.snail.context.StatisticsContext;
 import com.acgist.snail.context.SystemContext;
+import com.acgist.snail.context.SystemThreadContext;
 import com.acgist.snail.gui.javafx.Alerts;
 import com.acgist.snail.gui.javafx.Themes;
 import com.acgist.snail.gui.javafx.Tooltips;
 import com.acgist.snail.gui.javafx.window.Controller;
+import com.acgist.snail.gui.javafx.window.main.MainWindow;
 import com.acgist.snail.logger.Logger;
 import com.acgist.snail.logger.LoggerFactory;
 import com.acgist.snail.net.NatContext;
@@ -35,6 +39,7 @@ import com.acgist.snail.utils.NetUtils;
 import com.acgist.snail.utils.StringUtils;
 import com.acgist.snail.utils.ThreadUtils;
 
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
@@ -76,6 +81,10 @@ public final class StatisticsController extends Controller {
 	 * <p>位图列长：{@value}</p>
 	 */
 	private static final int COL = 50;
+	/**
+	 * <p>Piece位图最大行数：{@value}</p>
+	 */
+	private static final int PIECE_MAX_ROW = 36;
 	/**
 	 * <p>图表宽度：{@value}</p>
 	 */
@@ -145,6 +154,18 @@ public final class StatisticsController extends Controller {
 	 * <p>是否隐藏未知终端</p>
 	 */
 	private boolean hiddenUnknownClient = false;
+	/**
+	 * <p>Piece位图工具</p>
+	 */
+	private PieceMapPainter piecePainter;
+	/**
+	 * <p>Piece位图工具InfoHashHex</p>
+	 */
+	private String piecePainterInfoHashHex;
+	/**
+	 * <p>Piece统计刷新定时任务</p>
+	 */
+	private ScheduledFuture<?> pieceScheduled;
 	
 	@Override
 	public void initialize(URL location, ResourceBundle resources) {
@@ -154,7 +175,12 @@ public final class StatisticsController extends Controller {
 	@Override
 	public void release() {
 		super.release();
+		MainWindow.getInstance().controller().stopFrames();
 		this.statisticsBoxClear();
+		SystemThreadContext.shutdown(this.pieceScheduled);
+		this.pieceScheduled = null;
+		this.piecePainter = null;
+		this.piecePainterInfoHashHex = null;
 	}
 	
 	/**
@@ -458,39 +484,18 @@ public final class StatisticsController extends Controller {
 		if(infoHashHex == null) {
 			return;
 		}
-		final var peers = PeerContext.getInstance().listPeerSession(infoHashHex);
-		final var availableCount = new AtomicInteger(0);
-		final var pexCount = new AtomicInteger(0);
-		final var dhtCount = new AtomicInteger(0);
-		final var lsdCount = new AtomicInteger(0);
-		final var trackerCount = new AtomicInteger(0);
-		final var connectCount = new AtomicInteger(0);
-		final var holepunchCount = new AtomicInteger(0);
-		peers.forEach(peer -> {
-			if(peer.available()) {
-				availableCount.incrementAndGet();
-			}
-			peer.sources().forEach(source -> {
-				switch (source) {
-					case DHT -> dhtCount.incrementAndGet();
-					case PEX -> pexCount.incrementAndGet();
-					case LSD -> lsdCount.incrementAndGet();
-					case TRACKER -> trackerCount.incrementAndGet();
-					case CONNECT -> connectCount.incrementAndGet();
-					case HOLEPUNCH -> holepunchCount.incrementAndGet();
-					default -> LOGGER.warn("未知来源：{}", source);
-				}
-			});
-		});
+		// 没有连接的Peer没有Peer信息：使用Peer存档统计
+		final PeerContext peerContext = PeerContext.getInstance();
+		final var sources = peerContext.sources(infoHashHex);
 		final ObservableList<PieChart.Data> pieChartData = FXCollections.observableArrayList(
-			new PieChart.Data("DHT", dhtCount.get()),
-			new PieChart.Data("PEX", pexCount.get()),
-			new PieChart.Data("LSD", lsdCount.get()),
-			new PieChart.Data("Tracker", trackerCount.get()),
-			new PieChart.Data("Connect", connectCount.get()),
-			new PieChart.Data("Holepunch", holepunchCount.get())
+			new PieChart.Data("DHT", sources.getOrDefault(PeerConfig.Source.DHT, 0)),
+			new PieChart.Data("PEX", sources.getOrDefault(PeerConfig.Source.PEX, 0)),
+			new PieChart.Data("LSD", sources.getOrDefault(PeerConfig.Source.LSD, 0)),
+			new PieChart.Data("Tracker", sources.getOrDefault(PeerConfig.Source.TRACKER, 0)),
+			new PieChart.Data("Connect", sources.getOrDefault(PeerConfig.Source.CONNECT, 0)),
+			new PieChart.Data("Holepunch", sources.getOrDefault(PeerConfig.Source.HOLEPUNCH, 0))
 		);
-		final String title = String.format("总量：%d 可用数量：%d", peers.size(), availableCount.get());
+		final String title = String.format("总量：%d 可用数量：%d", peerContext.size(infoHashHex), peerContext.availableSize(infoHashHex));
 		final PieChart pieChart = this.buildPieChart(title, pieChartData);
 		// 添加节点
 		this.statisticsBoxClear().add(pieChart);
@@ -647,6 +652,7 @@ public final class StatisticsController extends Controller {
 	
 	/**
 	 * <p>Piece统计</p>
+	 * <p>同一个任务重复使用Piece位图工具，只会重画变化的区块。</p>
 	 */
 	private void buildSelectPieceStatistics() {
 		final String infoHashHex = this.selectInfoHashHex();
@@ -662,38 +668,53 @@ public final class StatisticsController extends Controller {
 			return;
 		}
 		final int pieceSize = torrent.getInfo().pieceSize();
-		if(pieceSize > CanvasPainter.MAX_LENGTH) {
-			Alerts.warn("警告", "当前Piece数量超过最大显示数量：" + pieceSize);
-			return;
+		if(
+			this.piecePainter == null ||
+			this.piecePainter.length() != pieceSize ||
+			!infoHashHex.equals(this.piecePainterInfoHashHex)
+		) {
+			this.piecePainter = PieceMapPainter.newInstance(WH, COL, PIECE_MAX_ROW, pieceSize, this::piecePos).build();
+			this.piecePainterInfoHashHex = infoHashHex;
+		}
+		this.refreshPieceStatistics();
+		if(this.pieceScheduled == null) {
+			this.pieceScheduled = SystemThreadContext.scheduledAtFixedRate(
+				SystemConfig.REFRESH_INTERVAL,
+				SystemConfig.REFRESH_INTERVAL,
+				TimeUnit.SECONDS,
+				() -> Platform.runLater(this::refreshPieceStatistics)
+			);
 		}
-		// 已经下载Pieces
-		final BitSet pieces = torrentSession.pieces();
-		// 选择下载Pieces
-		final BitSet selectPieces = torrentSession.selectPieces();
-		// 鼠标可选Pieces
-		final BitSet mousePieces = new BitSet();
-		mousePieces.or(selectPieces);
-		mousePieces.andNot(pieces);
-		final Color[] colors = new Color[] { Themes.COLOR_GREEN, Themes.COLOR_YELLOW };
-		final CanvasPainter painter = CanvasPainter.newInstance(
-			WH, COL, pieceSize,
-			new BitSet[] { pieces, selectPieces },
-			colors,
-			mousePieces, this::piecePos
-		)
-			.build()
-			.draw();
 		final HBox healthBox = this.buildStatisticsInfo("健康度：" + torrentSession.health() + "%");
-		final String[] tabs = new String[] { "已下载", "未下载", "不下载" };
-		final Color[] tabColors = new Color[] { Themes.COLOR_GREEN, Themes.COLOR_YELLOW, Themes.COLOR_GRAY };
+		final String[] tabs = new String[] { "已下载", "未下载", "不下载", "有来源", "无来源" };
+		final Color[] tabColors = new Color[] { Themes.COLOR_GREEN, Themes.COLOR_YELLOW, Themes.COLOR_GRAY, Themes.COLOR_BLUD, Themes.COLOR_RED };
 		final HBox painterBox = this.buildPainterInfo(tabs, tabColors);
 		// 添加节点
 		final var statisticsBoxNode = this.statisticsBoxClear();
 		statisticsBoxNode.add(healthBox);
-		statisticsBoxNode.add(painter.canvas());
+		statisticsBoxNode.add(this.piecePainter.canvas());
 		statisticsBoxNode.add(painterBox);
 	}
 	
+	/**
+	 * <p>刷新Piece统计</p>
+	 * <p>可用Pieces：所有Peer可用Piece位图合集</p>
+	 */
+	private void refreshPieceStatistics() {
+		final PieceMapPainter painter = this.piecePainter;
+		if(this.filter != Filter.PIECE || painter == null) {
+			return;
+		}
+		final String infoHashHex = this.piecePainterInfoHashHex;
+		final var torrentSession = TorrentContext.getInstance().torrentSession(infoHashHex);
+		if(torrentSession == null) {
+			return;
+		}
+		final BitSet availablePieces = new BitSet();
+		PeerContext.getInstance().listPeerSession(infoHashHex).forEach(peer -> availablePieces.or(peer.availablePieces()));
+		painter.refresh(torrentSession.pieces(), torrentSession.selectPieces(), availablePieces);
+	}
+	
 	/**
 	 * <p>获取选中InfoHashHex</p>
 	 * 
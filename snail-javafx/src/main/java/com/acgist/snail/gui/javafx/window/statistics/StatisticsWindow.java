@@ -1,6 +1,7 @@
 package com.acgist.snail.gui.javafx.window.statistics;
 
 import com.acgist.snail.gui.javafx.window.Window;
+import com.acgist.snail.gui.javafx.window.main.MainWindow;
 
 import javafx.stage.Modality;
 import javafx.stage.Stage;
@@ -35,6 +36,8 @@ public final class StatisticsWindow extends Window<StatisticsController> {
 	@Override
 	public void show() {
 		this.controller.statistics();
+		// 统计窗口显示时统计帧数：隐藏时释放资源结束统计
+		MainWindow.getInstance().controller().startFrames();
 		super.show();
 	}
 	
@@ -0,0 +1,63 @@
+package com.acgist.snail.gui.javafx;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.context.SystemThreadContext;
+import com.acgist.snail.gui.javafx.window.statistics.PieceMapPainter;
+import com.acgist.snail.logger.Logger;
+import com.acgist.snail.logger.LoggerFactory;
+import com.acgist.snail.utils.ThreadUtils;
+
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.scene.Group;
+import javafx.scene.Scene;
+import javafx.stage.Stage;
+
+public class PieceMapPainterTest extends Application {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PieceMapPainterTest.class);
+
+	@Override
+	public void start(Stage primaryStage) throws Exception {
+		final int size = 1_000_000;
+		final BitSet pieces = new BitSet();
+		final BitSet selectPieces = new BitSet();
+		final BitSet availablePieces = new BitSet();
+		final Random random = new Random();
+		selectPieces.set(100_000, 900_000);
+		for (int index = 0; index < size; index++) {
+			if(random.nextInt(4) == 0) {
+				availablePieces.set(index);
+			}
+		}
+		final PieceMapPainter painter = PieceMapPainter.newInstance(size, index -> LOGGER.info("点击：{}", index));
+		long time = System.currentTimeMillis();
+		painter.build().refresh(pieces, selectPieces, availablePieces);
+		LOGGER.info("全部重画：{}", System.currentTimeMillis() - time);
+		final Group root = new Group();
+		root.getChildren().add(painter.canvas());
+		SystemThreadContext.submit(() -> {
+			while(true) {
+				final int index = 100_000 + random.nextInt(800_000);
+				Platform.runLater(() -> painter.have(index));
+				ThreadUtils.sleep(10);
+			}
+		});
+		final Scene scene = new Scene(root);
+		primaryStage.setScene(scene);
+		primaryStage.setTitle("Piece位图");
+		primaryStage.show();
+	}
+
+	@Test
+	void test() {
+		assertDoesNotThrow(() -> launch());
+	}
+
+}
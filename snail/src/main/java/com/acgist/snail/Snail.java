@@ -15,6 +15,8 @@ import com.acgist.snail.net.DownloadException;
 import com.acgist.snail.net.NatInitializer;
 import com.acgist.snail.net.application.ApplicationClient;
 import com.acgist.snail.net.application.ApplicationServer;
+import com.acgist.snail.net.application.MetricsServer;
+import com.acgist.snail.net.application.StreamServer;
 import com.acgist.snail.net.torrent.TorrentInitializer;
 import com.acgist.snail.net.torrent.dht.DhtInitializer;
 import com.acgist.snail.net.torrent.lsd.LocalServiceDiscoveryInitializer;
@@ -135,6 +137,8 @@ public final class Snail {
 			INSTANCE.available = false;
 			if(INSTANCE.buildApplication) {
 				ApplicationServer.getInstance().close();
+				MetricsServer.getInstance().close();
+				StreamServer.getInstance().close();
 			}
 			// 优先销毁任务
 			TaskInitializer.newInstance().destroy();
@@ -205,6 +209,10 @@ public final class Snail {
 			INSTANCE.available = true;
 			if(INSTANCE.buildApplication) {
 				INSTANCE.available = ApplicationServer.getInstance().listen();
+				if(INSTANCE.available) {
+					MetricsServer.getInstance().listen();
+					StreamServer.getInstance().listen();
+				}
 			}
 			if(INSTANCE.available) {
 				ProtocolContext.getInstance().available(INSTANCE.available);
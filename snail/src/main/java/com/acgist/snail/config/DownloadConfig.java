@@ -72,6 +72,24 @@ public final class DownloadConfig extends PropertiesConfig {
 	 * @see #memoryBuffer
 	 */
 	private static final String DOWNLOAD_MEMORY_BUFFER = "acgist.download.memory.buffer";
+	/**
+	 * 上传位置（单个）配置名称
+	 * 
+	 * @see #uploadSlots
+	 */
+	private static final String DOWNLOAD_UPLOAD_SLOTS = "acgist.download.upload.slots";
+	/**
+	 * 文件句柄（全局）配置名称
+	 * 
+	 * @see #fileHandles
+	 */
+	private static final String DOWNLOAD_FILE_HANDLES = "acgist.download.file.handles";
+	/**
+	 * Piece内存（全局）（MB）配置名称
+	 * 
+	 * @see #pieceMemory
+	 */
+	private static final String DOWNLOAD_PIECE_MEMORY = "acgist.download.piece.memory";
 	
 	/**
 	 * 下载目录
@@ -119,6 +137,27 @@ public final class DownloadConfig extends PropertiesConfig {
 	 * @see #memoryBuffer
 	 */
 	private int memoryBufferByte;
+	/**
+	 * 上传位置（单个）
+	 * 小于等于零：根据上传速度自动计算
+	 */
+	private int uploadSlots;
+	/**
+	 * 上传位置（单个）（自动计算）
+	 * 
+	 * @see #uploadBufferByte
+	 */
+	private int autoUploadSlots;
+	/**
+	 * 文件句柄（全局）
+	 * 同时打开文件最大数量
+	 */
+	private int fileHandles;
+	/**
+	 * Piece内存（全局）（MB）
+	 * 下载中Piece数据最大内存：超过以后暂停挑选Piece
+	 */
+	private int pieceMemory;
 	
 	private static final DownloadConfig INSTANCE = new DownloadConfig();
 	
@@ -149,6 +188,9 @@ public final class DownloadConfig extends PropertiesConfig {
 		this.buffer = this.getInteger(DOWNLOAD_BUFFER, 1024);
 		this.lastPath = this.getString(DOWNLOAD_LAST_PATH);
 		this.memoryBuffer = this.getInteger(DOWNLOAD_MEMORY_BUFFER, 8);
+		this.uploadSlots = this.getInteger(DOWNLOAD_UPLOAD_SLOTS, 0);
+		this.fileHandles = this.getInteger(DOWNLOAD_FILE_HANDLES, 512);
+		this.pieceMemory = this.getInteger(DOWNLOAD_PIECE_MEMORY, 256);
 		// 记录日志
 		LOGGER.debug("下载目录：{}", this.path);
 		LOGGER.debug("下载数量：{}", this.size);
@@ -157,6 +199,9 @@ public final class DownloadConfig extends PropertiesConfig {
 		LOGGER.debug("下载速度（单个）（KB）：{}", this.buffer);
 		LOGGER.debug("最后一次选择目录：{}", this.lastPath);
 		LOGGER.debug("磁盘缓存（单个）（MB）：{}", this.memoryBuffer);
+		LOGGER.debug("上传位置（单个）：{}", this.uploadSlots);
+		LOGGER.debug("文件句柄（全局）：{}", this.fileHandles);
+		LOGGER.debug("Piece内存（全局）（MB）：{}", this.pieceMemory);
 	}
 	
 	@Override
@@ -169,6 +214,9 @@ public final class DownloadConfig extends PropertiesConfig {
 		data.put(DOWNLOAD_BUFFER, Objects.toString(this.buffer, "1024"));
 		data.put(DOWNLOAD_LAST_PATH, this.lastPath);
 		data.put(DOWNLOAD_MEMORY_BUFFER, Objects.toString(this.memoryBuffer, "8"));
+		data.put(DOWNLOAD_UPLOAD_SLOTS, Objects.toString(this.uploadSlots, "0"));
+		data.put(DOWNLOAD_FILE_HANDLES, Objects.toString(this.fileHandles, "512"));
+		data.put(DOWNLOAD_PIECE_MEMORY, Objects.toString(this.pieceMemory, "256"));
 		this.persistent(data, DOWNLOAD_CONFIG);
 	}
 	
@@ -307,6 +355,90 @@ public final class DownloadConfig extends PropertiesConfig {
 	private void refreshBuffer() {
 		this.downloadBufferByte = this.buffer * SystemConfig.ONE_KB;
 		this.uploadBufferByte = this.downloadBufferByte / DOWNLOAD_UPLOAD_SCALE;
+		this.refreshUploadSlots();
+	}
+	
+	/**
+	 * @param uploadSlots 上传位置（单个）（小于等于零：自动计算）
+	 */
+	public static final void setUploadSlots(int uploadSlots) {
+		if(INSTANCE.uploadSlots == uploadSlots) {
+			return;
+		}
+		INSTANCE.uploadSlots = uploadSlots;
+		INSTANCE.persistent();
+	}
+	
+	/**
+	 * 没有配置上传位置时使用上传速度自动计算
+	 * 
+	 * @return 上传位置（单个）
+	 */
+	public static final int getUploadSlots() {
+		if(INSTANCE.uploadSlots > 0) {
+			return INSTANCE.uploadSlots;
+		}
+		return INSTANCE.autoUploadSlots;
+	}
+	
+	/**
+	 * @param fileHandles 文件句柄（全局）
+	 */
+	public static final void setFileHandles(int fileHandles) {
+		if(INSTANCE.fileHandles == fileHandles) {
+			return;
+		}
+		INSTANCE.fileHandles = fileHandles;
+		INSTANCE.persistent();
+	}
+	
+	/**
+	 * @return 文件句柄（全局）
+	 */
+	public static final int getFileHandles() {
+		return INSTANCE.fileHandles;
+	}
+	
+	/**
+	 * @param pieceMemory Piece内存（全局）（MB）
+	 */
+	public static final void setPieceMemory(int pieceMemory) {
+		if(INSTANCE.pieceMemory == pieceMemory) {
+			return;
+		}
+		INSTANCE.pieceMemory = pieceMemory;
+		INSTANCE.persistent();
+	}
+	
+	/**
+	 * @return Piece内存（全局）（MB）
+	 */
+	public static final int getPieceMemory() {
+		return INSTANCE.pieceMemory;
+	}
+	
+	/**
+	 * @return Piece内存（全局）（B）
+	 */
+	public static final long getPieceMemoryByte() {
+		return (long) INSTANCE.pieceMemory * SystemConfig.ONE_MB;
+	}
+	
+	/**
+	 * 刷新上传位置
+	 * 上传速度越大上传位置越多：保证每个上传位置都有足够的上传速度
+	 */
+	private void refreshUploadSlots() {
+		final int uploadBufferKB = this.uploadBufferByte / SystemConfig.ONE_KB;
+		if(uploadBufferKB < 9) {
+			this.autoUploadSlots = 2;
+		} else if(uploadBufferKB < 15) {
+			this.autoUploadSlots = 3;
+		} else if(uploadBufferKB < 42) {
+			this.autoUploadSlots = 4;
+		} else {
+			this.autoUploadSlots = (int) Math.sqrt(uploadBufferKB * 0.6D);
+		}
 	}
 	
 	/**
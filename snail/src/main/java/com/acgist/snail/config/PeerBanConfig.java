@@ -0,0 +1,98 @@
+package com.acgist.snail.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import com.acgist.snail.logger.Logger;
+import com.acgist.snail.logger.LoggerFactory;
+import com.acgist.snail.net.torrent.peer.PeerContext;
+import com.acgist.snail.utils.StringUtils;
+
+/**
+ * 禁用Peer配置
+ * 
+ * @author acgist
+ */
+public final class PeerBanConfig extends PropertiesConfig {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(PeerBanConfig.class);
+	
+	/**
+	 * 禁用Peer配置文件
+	 */
+	public static final String PEER_BAN_CONFIG = "/config/bt.peer.ban.properties";
+	/**
+	 * 禁用时间（毫秒）：{@value}
+	 * 超过禁用时间自动解除禁用：动态IP地址可能被其他用户使用
+	 */
+	public static final long BAN_DURATION = 24L * 60 * 60 * SystemConfig.ONE_SECOND_MILLIS;
+	
+	/**
+	 * 禁用Peer
+	 * host=禁用时间（毫秒）
+	 */
+	private final Map<String, Long> bans = new LinkedHashMap<>();
+	
+	private static final PeerBanConfig INSTANCE = new PeerBanConfig();
+	
+	public static final PeerBanConfig getInstance() {
+		return INSTANCE;
+	}
+	
+	private PeerBanConfig() {
+		super(PEER_BAN_CONFIG);
+		this.init();
+		this.release();
+	}
+	
+	@Override
+	public void init() {
+		this.properties.entrySet().forEach(entry -> {
+			final String host = (String) entry.getKey();
+			final String time = (String) entry.getValue();
+			if(StringUtils.isNotEmpty(host) && StringUtils.isNumeric(time)) {
+				final long banTime = Long.parseLong(time);
+				if(expired(banTime)) {
+					LOGGER.debug("禁用Peer已经过期：{}", host);
+				} else {
+					this.bans.put(host, banTime);
+				}
+			} else {
+				LOGGER.warn("禁用Peer加载失败：{}-{}", host, time);
+			}
+		});
+		if(LOGGER.isDebugEnabled()) {
+			LOGGER.debug("加载禁用Peer数量：{}", this.bans.size());
+		}
+	}
+	
+	@Override
+	public void persistent() {
+		final Map<String, String> data = PeerContext.getInstance().bans().entrySet().stream()
+			.collect(Collectors.toMap(Map.Entry::getKey, entry -> String.valueOf(entry.getValue())));
+		this.persistent(data, PEER_BAN_CONFIG);
+		if(LOGGER.isDebugEnabled()) {
+			LOGGER.debug("保存禁用Peer数量：{}", data.size());
+		}
+	}
+	
+	/**
+	 * 判断禁用是否过期
+	 * 
+	 * @param banTime 禁用时间（毫秒）
+	 * 
+	 * @return 是否过期
+	 */
+	public static final boolean expired(long banTime) {
+		return System.currentTimeMillis() - banTime > BAN_DURATION;
+	}
+	
+	/**
+	 * @return 禁用Peer
+	 */
+	public Map<String, Long> bans() {
+		return this.bans;
+	}
+	
+}
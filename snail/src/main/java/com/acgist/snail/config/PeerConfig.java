@@ -51,6 +51,7 @@ public final class PeerConfig extends PropertiesConfig {
 	 * @see #RESERVED_FAST_PROTOCOL
 	 * @see #RESERVED_NAT_TRAVERSAL
 	 * @see #RESERVED_EXTENSION_PROTOCOL
+	 * @see #RESERVED_V2_PROTOCOL
 	 */
 	public static final byte[] RESERVED = {0, 0, 0, 0, 0, 0, 0, 0};
 	/**
@@ -94,6 +95,13 @@ public final class PeerConfig extends PropertiesConfig {
 	 * @see ExtensionMessageHandler
 	 */
 	public static final byte RESERVED_EXTENSION_PROTOCOL = 1 << 4;
+	/**
+	 * BitTorrent v2保留位
+	 * [7]-0x10：BitTorrent v2
+	 * 
+	 * @see PeerSubMessageHandler
+	 */
+	public static final byte RESERVED_V2_PROTOCOL = 1 << 4;
 	/**
 	 * 握手消息长度
 	 */
@@ -254,7 +262,20 @@ public final class PeerConfig extends PropertiesConfig {
 		/**
 		 * 快速允许
 		 */
-		ALLOWED_FAST((byte) 0x11);
+		ALLOWED_FAST((byte) 0x11),
+		/**
+		 * Hash请求
+		 * 协议链接：http://www.bittorrent.org/beps/bep_0052.html
+		 */
+		HASH_REQUEST((byte) 0x15),
+		/**
+		 * Hash
+		 */
+		HASHES((byte) 0x16),
+		/**
+		 * Hash拒绝
+		 */
+		HASH_REJECT((byte) 0x17);
 		
 		/**
 		 * 消息ID
@@ -662,6 +683,7 @@ public final class PeerConfig extends PropertiesConfig {
 		RESERVED[7] |= RESERVED_PEER_EXCHANGE;
 		RESERVED[7] |= RESERVED_FAST_PROTOCOL;
 		RESERVED[5] |= RESERVED_EXTENSION_PROTOCOL;
+		RESERVED[7] |= RESERVED_V2_PROTOCOL;
 	}
 	
 	private static final PeerConfig INSTANCE = new PeerConfig();
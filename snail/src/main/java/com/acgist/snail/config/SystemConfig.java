@@ -135,6 +135,10 @@ public final class SystemConfig extends PropertiesConfig {
 	 * SHA-1散列值长度
 	 */
 	public static final int SHA1_HASH_LENGTH = 20;
+	/**
+	 * SHA-256散列值长度
+	 */
+	public static final int SHA256_HASH_LENGTH = 32;
 	/**
 	 * GBK编码
 	 */
@@ -177,6 +181,11 @@ public final class SystemConfig extends PropertiesConfig {
 	 * FTP匿名密码
 	 */
 	private String ftpPassword;
+	/**
+	 * FTP分段下载连接数量
+	 * 小于等于一时使用单个连接下载
+	 */
+	private int ftpSegmentSize;
 	/**
 	 * 作者
 	 */
@@ -213,10 +222,32 @@ public final class SystemConfig extends PropertiesConfig {
 	 * BT服务端口（外网端口：Peer、DHT、UTP、STUN）
 	 */
 	private int torrentPortExt = 0;
+	/**
+	 * 系统指标端口（本地服务：文本格式指标）
+	 * 小于等于零不启动监听
+	 */
+	private int metricsPort;
+	/**
+	 * 边下边播端口（本地服务：HTTP Range读取文件）
+	 * 小于等于零不启动监听
+	 */
+	private int streamPort;
 	/**
 	 * 单个任务Peer数量（同时下载）
 	 */
 	private int peerSize;
+	/**
+	 * 全局Peer连接数量（所有任务）
+	 */
+	private int peerConnectSize;
+	/**
+	 * 全局Peer半开连接数量（所有任务同时连接）
+	 */
+	private int peerHalfOpenSize;
+	/**
+	 * 单个任务Peer存档数量（没有连接）
+	 */
+	private int peerStoreSize;
 	/**
 	 * 单个任务Tracker数量
 	 */
@@ -253,6 +284,11 @@ public final class SystemConfig extends PropertiesConfig {
 	 * Peer（连接、接入）优化周期（秒）
 	 */
 	private int peerOptimizeInterval;
+	/**
+	 * 是否使用虚拟线程执行下载任务
+	 * 运行环境不支持虚拟线程时使用缓存线程池
+	 */
+	private boolean virtualThread;
 	/**
 	 * 软件信息
 	 * 
@@ -294,6 +330,7 @@ public final class SystemConfig extends PropertiesConfig {
 		this.version = this.getString("acgist.system.version");
 		this.ftpUser = this.getString("acgist.system.ftp.user");
 		this.ftpPassword = this.getString("acgist.system.ftp.password");
+		this.ftpSegmentSize = this.getInteger("acgist.system.ftp.segment.size", 4);
 		this.author = this.getString("acgist.system.author");
 		this.source = this.getString("acgist.system.source");
 		this.support = this.getString("acgist.system.support");
@@ -301,7 +338,12 @@ public final class SystemConfig extends PropertiesConfig {
 		this.stunServer = this.getString("acgist.system.stun.server");
 		this.servicePort = this.getInteger("acgist.system.service.port", 16888);
 		this.torrentPort = this.getInteger("acgist.system.torrent.port", 18888);
+		this.metricsPort = this.getInteger("acgist.system.metrics.port", 0);
+		this.streamPort = this.getInteger("acgist.system.stream.port", 0);
 		this.peerSize = this.getInteger("acgist.system.peer.size", 20);
+		this.peerConnectSize = this.getInteger("acgist.system.peer.connect.size", 500);
+		this.peerHalfOpenSize = this.getInteger("acgist.system.peer.half.open.size", 32);
+		this.peerStoreSize = this.getInteger("acgist.system.peer.store.size", 2000);
 		this.trackerSize = this.getInteger("acgist.system.tracker.size", 50);
 		this.pieceRepeatSize = this.getInteger("acgist.system.piece.repeat.size", 8);
 		this.dhtInterval = this.getInteger("acgist.system.dht.interval", 120);
@@ -311,6 +353,7 @@ public final class SystemConfig extends PropertiesConfig {
 		this.stunInterval = this.getInteger("acgist.system.stun.interval", 30);
 		this.trackerInterval = this.getInteger("acgist.system.tracker.interval", 120);
 		this.peerOptimizeInterval = this.getInteger("acgist.system.peer.optimize.interval", 60);
+		this.virtualThread = this.getBoolean("acgist.system.virtual.thread", false);
 		this.nameEnAndVersion = SymbolConfig.Symbol.SPACE.join(this.nameEn, this.version);
 		// 记录日志
 		LOGGER.debug("软件名称：{}", this.name);
@@ -318,6 +361,7 @@ public final class SystemConfig extends PropertiesConfig {
 		LOGGER.debug("软件版本：{}", this.version);
 		LOGGER.debug("FTP匿名用户：{}", this.ftpUser);
 		LOGGER.debug("FTP匿名密码：{}", this.ftpPassword);
+		LOGGER.debug("FTP分段下载连接数量：{}", this.ftpSegmentSize);
 		LOGGER.debug("作者：{}", this.author);
 		LOGGER.debug("官网与源码：{}", this.source);
 		LOGGER.debug("问题与建议：{}", this.support);
@@ -325,7 +369,12 @@ public final class SystemConfig extends PropertiesConfig {
 		LOGGER.debug("STUN服务器：{}", this.stunServer);
 		LOGGER.debug("系统服务端口（本地服务：启动检测）：{}", this.servicePort);
 		LOGGER.debug("BT服务端口（本地端口：Peer、DHT、UTP、STUN）：{}", this.torrentPort);
+		LOGGER.debug("系统指标端口（本地服务：文本格式指标）：{}", this.metricsPort);
+		LOGGER.debug("边下边播端口（本地服务：HTTP Range读取文件）：{}", this.streamPort);
 		LOGGER.debug("单个任务Peer数量（同时下载）：{}", this.peerSize);
+		LOGGER.debug("全局Peer连接数量（所有任务）：{}", this.peerConnectSize);
+		LOGGER.debug("全局Peer半开连接数量（所有任务同时连接）：{}", this.peerHalfOpenSize);
+		LOGGER.debug("单个任务Peer存档数量（没有连接）：{}", this.peerStoreSize);
 		LOGGER.debug("单个任务Tracker数量：{}", this.trackerSize);
 		LOGGER.debug("任务即将完成时可以重复下载的Piece数量：{}", this.pieceRepeatSize);
 		LOGGER.debug("DHT执行周期（秒）：{}", this.dhtInterval);
@@ -335,6 +384,7 @@ public final class SystemConfig extends PropertiesConfig {
 		LOGGER.debug("Stun消息执行周期（秒）：{}", this.stunInterval);
 		LOGGER.debug("Tracker执行周期（秒）：{}", this.trackerInterval);
 		LOGGER.debug("Peer（连接、接入）优化周期（秒）：{}", this.peerOptimizeInterval);
+		LOGGER.debug("是否使用虚拟线程执行下载任务：{}", this.virtualThread);
 		LOGGER.debug("软件信息：{}", this.nameEnAndVersion);
 	}
 
@@ -373,6 +423,13 @@ public final class SystemConfig extends PropertiesConfig {
 		return INSTANCE.ftpPassword;
 	}
 	
+	/**
+	 * @return FTP分段下载连接数量
+	 */
+	public static final int getFtpSegmentSize() {
+		return INSTANCE.ftpSegmentSize;
+	}
+	
 	/**
 	 * @return 作者
 	 */
@@ -449,6 +506,20 @@ public final class SystemConfig extends PropertiesConfig {
 		return NetUtils.portToShort(getTorrentPortExt());
 	}
 	
+	/**
+	 * @return 系统指标端口（本地服务：文本格式指标）
+	 */
+	public static final int getMetricsPort() {
+		return INSTANCE.metricsPort;
+	}
+	
+	/**
+	 * @return 边下边播端口（本地服务：HTTP Range读取文件）
+	 */
+	public static final int getStreamPort() {
+		return INSTANCE.streamPort;
+	}
+	
 	/**
 	 * @return 单个任务Peer数量（同时下载）
 	 */
@@ -456,6 +527,27 @@ public final class SystemConfig extends PropertiesConfig {
 		return INSTANCE.peerSize;
 	}
 	
+	/**
+	 * @return 全局Peer连接数量（所有任务）
+	 */
+	public static final int getPeerConnectSize() {
+		return INSTANCE.peerConnectSize;
+	}
+	
+	/**
+	 * @return 全局Peer半开连接数量（所有任务同时连接）
+	 */
+	public static final int getPeerHalfOpenSize() {
+		return INSTANCE.peerHalfOpenSize;
+	}
+	
+	/**
+	 * @return 单个任务Peer存档数量（没有连接）
+	 */
+	public static final int getPeerStoreSize() {
+		return INSTANCE.peerStoreSize;
+	}
+	
 	/**
 	 * @return 单个任务Tracker数量
 	 */
@@ -518,6 +610,13 @@ public final class SystemConfig extends PropertiesConfig {
 	public static final int getPeerOptimizeInterval() {
 		return INSTANCE.peerOptimizeInterval;
 	}
+	
+	/**
+	 * @return 是否使用虚拟线程执行下载任务
+	 */
+	public static final boolean getVirtualThread() {
+		return INSTANCE.virtualThread;
+	}
 
 	/**
 	 * @return 软件信息
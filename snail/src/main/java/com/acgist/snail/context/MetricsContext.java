@@ -0,0 +1,470 @@
+package com.acgist.snail.context;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import com.acgist.snail.logger.Logger;
+import com.acgist.snail.logger.LoggerFactory;
+
+/**
+ * <p>系统指标上下文</p>
+ * <p>组件注册指标：计数器（Counter）、仪表（Gauge）、直方图（Histogram）</p>
+ * <p>计数器和直方图使用LongAdder累加，仪表只在查询时计算，所以可以在生产环境一直开启。</p>
+ * <p>指标名称支持标签：snail_task_download_speed{protocol="torrent"}</p>
+ * <p>查询方式：系统消息（METRICS）、文本格式（{@link com.acgist.snail.net.application.MetricsServer}）</p>
+ * 
+ * @author acgist
+ */
+public final class MetricsContext implements IContext {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(MetricsContext.class);
+	
+	private static final MetricsContext INSTANCE = new MetricsContext();
+	
+	public static final MetricsContext getInstance() {
+		return INSTANCE;
+	}
+	
+	/**
+	 * <p>指标类型：计数器</p>
+	 */
+	public static final String TYPE_COUNTER = "counter";
+	/**
+	 * <p>指标类型：仪表</p>
+	 */
+	public static final String TYPE_GAUGE = "gauge";
+	/**
+	 * <p>指标类型：直方图</p>
+	 */
+	public static final String TYPE_HISTOGRAM = "histogram";
+	/**
+	 * <p>直方图无限区间：{@value}</p>
+	 */
+	private static final String BUCKET_INF = "+Inf";
+	
+	/**
+	 * <p>指标</p>
+	 * <p>指标名称=指标</p>
+	 */
+	private final Map<String, Metric> metrics;
+	
+	private MetricsContext() {
+		this.metrics = new ConcurrentHashMap<>();
+		final Runtime runtime = Runtime.getRuntime();
+		this.gauge("snail_jvm_memory_used_bytes", "虚拟机已用内存", () -> runtime.totalMemory() - runtime.freeMemory());
+		this.gauge("snail_jvm_memory_max_bytes", "虚拟机最大内存", runtime::maxMemory);
+		this.gauge("snail_jvm_threads", "虚拟机活动线程数量", Thread::activeCount);
+	}
+	
+	/**
+	 * <p>获取计数器（没有时注册）</p>
+	 * 
+	 * @param name 指标名称
+	 * @param help 指标描述
+	 * 
+	 * @return 计数器
+	 */
+	public Counter counter(String name, String help) {
+		return this.register(name, Counter.class, () -> new Counter(name, help));
+	}
+	
+	/**
+	 * <p>注册仪表</p>
+	 * <p>已经注册的仪表直接替换：组件重新加载时替换取值方法</p>
+	 * 
+	 * @param name 指标名称
+	 * @param help 指标描述
+	 * @param supplier 取值方法
+	 */
+	public void gauge(String name, String help, LongSupplier supplier) {
+		final Metric old = this.metrics.put(name, new Gauge(name, help, supplier));
+		if(old != null && !(old instanceof Gauge)) {
+			LOGGER.warn("指标类型替换：{}-{}", name, old.type);
+		}
+	}
+	
+	/**
+	 * <p>获取直方图（没有时注册）</p>
+	 * 
+	 * @param name 指标名称
+	 * @param help 指标描述
+	 * @param buckets 区间上限（升序）
+	 * 
+	 * @return 直方图
+	 */
+	public Histogram histogram(String name, String help, long ... buckets) {
+		return this.register(name, Histogram.class, () -> new Histogram(name, help, buckets));
+	}
+	
+	/**
+	 * <p>删除指标</p>
+	 * 
+	 * @param name 指标名称
+	 */
+	public void remove(String name) {
+		this.metrics.remove(name);
+	}
+	
+	/**
+	 * <p>注册指标</p>
+	 * 
+	 * @param <T> 指标类型
+	 * 
+	 * @param name 指标名称
+	 * @param clazz 指标类型
+	 * @param builder 指标构建器
+	 * 
+	 * @return 指标
+	 */
+	private <T extends Metric> T register(String name, Class<T> clazz, Supplier<T> builder) {
+		final Metric metric = this.metrics.computeIfAbsent(name, key -> builder.get());
+		if(clazz.isInstance(metric)) {
+			return clazz.cast(metric);
+		}
+		throw new IllegalArgumentException("指标类型错误：" + name + "-" + metric.type);
+	}
+	
+	/**
+	 * @return 所有指标
+	 * 
+	 * @see #metrics(String)
+	 */
+	public Map<String, Object> metrics() {
+		return this.metrics(null);
+	}
+	
+	/**
+	 * <p>查询指标</p>
+	 * <p>计数器和仪表：数值</p>
+	 * <p>直方图：count=数量、sum=总和、buckets=区间上限=数量（累计）</p>
+	 * 
+	 * @param prefix 指标名称前缀（为空查询所有指标）
+	 * 
+	 * @return 指标名称=指标数值
+	 */
+	public Map<String, Object> metrics(String prefix) {
+		final Map<String, Object> map = new TreeMap<>();
+		this.metrics.values().stream()
+			.filter(metric -> prefix == null || metric.name.startsWith(prefix))
+			.forEach(metric -> map.put(metric.name, metric.value()));
+		return map;
+	}
+	
+	/**
+	 * <p>文本格式指标</p>
+	 * <p>兼容Prometheus文本格式：相同名称（不含标签）的指标一起输出</p>
+	 * 
+	 * @return 文本格式指标
+	 */
+	public String exposition() {
+		final Map<String, List<Metric>> families = new TreeMap<>();
+		this.metrics.values().forEach(metric -> families.computeIfAbsent(metric.family, key -> new ArrayList<>()).add(metric));
+		final StringBuilder builder = new StringBuilder();
+		families.forEach((family, list) -> {
+			list.sort(Comparator.comparing(metric -> metric.name));
+			final Metric first = list.get(0);
+			builder.append("# HELP ").append(family).append(' ').append(first.help).append('\n');
+			builder.append("# TYPE ").append(family).append(' ').append(first.type).append('\n');
+			list.forEach(metric -> metric.exposition(builder));
+		});
+		return builder.toString();
+	}
+	
+	/**
+	 * <p>指标</p>
+	 * 
+	 * @author acgist
+	 */
+	public abstract static class Metric {
+		
+		/**
+		 * <p>指标名称（包含标签）</p>
+		 */
+		protected final String name;
+		/**
+		 * <p>指标描述</p>
+		 */
+		protected final String help;
+		/**
+		 * <p>指标类型</p>
+		 */
+		protected final String type;
+		/**
+		 * <p>指标名称（不含标签）</p>
+		 */
+		protected final String family;
+		/**
+		 * <p>指标标签（不含括号）</p>
+		 */
+		protected final String labels;
+		
+		/**
+		 * @param name 指标名称
+		 * @param help 指标描述
+		 * @param type 指标类型
+		 */
+		protected Metric(String name, String help, String type) {
+			this.name = name;
+			this.help = help;
+			this.type = type;
+			final int index = name.indexOf('{');
+			if(index < 0) {
+				this.family = name;
+				this.labels = null;
+			} else {
+				this.family = name.substring(0, index);
+				this.labels = name.substring(index + 1, name.length() - 1);
+			}
+		}
+		
+		/**
+		 * @return 指标数值
+		 */
+		protected abstract Object value();
+		
+		/**
+		 * <p>输出文本格式指标</p>
+		 * 
+		 * @param builder 文本
+		 */
+		protected abstract void exposition(StringBuilder builder);
+		
+		/**
+		 * <p>输出指标行</p>
+		 * 
+		 * @param builder 文本
+		 * @param suffix 名称后缀
+		 * @param label 附加标签
+		 * @param value 数值
+		 */
+		protected void line(StringBuilder builder, String suffix, String label, long value) {
+			builder.append(this.family).append(suffix);
+			if(this.labels != null || label != null) {
+				builder.append('{');
+				if(this.labels != null) {
+					builder.append(this.labels);
+				}
+				if(this.labels != null && label != null) {
+					builder.append(',');
+				}
+				if(label != null) {
+					builder.append(label);
+				}
+				builder.append('}');
+			}
+			builder.append(' ').append(value).append('\n');
+		}
+		
+	}
+	
+	/**
+	 * <p>计数器</p>
+	 * <p>只增不减</p>
+	 * 
+	 * @author acgist
+	 */
+	public static final class Counter extends Metric {
+		
+		/**
+		 * <p>数值</p>
+		 */
+		private final LongAdder adder;
+		
+		/**
+		 * @param name 指标名称
+		 * @param help 指标描述
+		 */
+		private Counter(String name, String help) {
+			super(name, help, TYPE_COUNTER);
+			this.adder = new LongAdder();
+		}
+		
+		/**
+		 * <p>加一</p>
+		 */
+		public void increment() {
+			this.adder.increment();
+		}
+		
+		/**
+		 * @param value 增加数值
+		 */
+		public void add(long value) {
+			this.adder.add(value);
+		}
+		
+		/**
+		 * @return 数值
+		 */
+		public long get() {
+			return this.adder.sum();
+		}
+		
+		@Override
+		protected Object value() {
+			return this.get();
+		}
+		
+		@Override
+		protected void exposition(StringBuilder builder) {
+			this.line(builder, "", null, this.get());
+		}
+		
+	}
+	
+	/**
+	 * <p>仪表</p>
+	 * <p>查询时计算数值</p>
+	 * 
+	 * @author acgist
+	 */
+	public static final class Gauge extends Metric {
+		
+		/**
+		 * <p>取值方法</p>
+		 */
+		private final LongSupplier supplier;
+		
+		/**
+		 * @param name 指标名称
+		 * @param help 指标描述
+		 * @param supplier 取值方法
+		 */
+		private Gauge(String name, String help, LongSupplier supplier) {
+			super(name, help, TYPE_GAUGE);
+			this.supplier = supplier;
+		}
+		
+		/**
+		 * @return 数值
+		 */
+		public long get() {
+			try {
+				return this.supplier.getAsLong();
+			} catch (Exception e) {
+				LOGGER.error("指标取值异常：{}", this.name, e);
+			}
+			return 0L;
+		}
+		
+		@Override
+		protected Object value() {
+			return this.get();
+		}
+		
+		@Override
+		protected void exposition(StringBuilder builder) {
+			this.line(builder, "", null, this.get());
+		}
+		
+	}
+	
+	/**
+	 * <p>直方图</p>
+	 * <p>区间数量分别记录，查询时累计。</p>
+	 * 
+	 * @author acgist
+	 */
+	public static final class Histogram extends Metric {
+		
+		/**
+		 * <p>区间上限（升序）</p>
+		 */
+		private final long[] bounds;
+		/**
+		 * <p>区间数量（最后一个是无限区间）</p>
+		 */
+		private final LongAdder[] buckets;
+		/**
+		 * <p>总和</p>
+		 */
+		private final LongAdder sum;
+		
+		/**
+		 * @param name 指标名称
+		 * @param help 指标描述
+		 * @param bounds 区间上限
+		 */
+		private Histogram(String name, String help, long[] bounds) {
+			super(name, help, TYPE_HISTOGRAM);
+			this.bounds = bounds.clone();
+			Arrays.sort(this.bounds);
+			this.buckets = new LongAdder[this.bounds.length + 1];
+			for (int index = 0; index < this.buckets.length; index++) {
+				this.buckets[index] = new LongAdder();
+			}
+			this.sum = new LongAdder();
+		}
+		
+		/**
+		 * <p>记录数值</p>
+		 * 
+		 * @param value 数值
+		 */
+		public void record(long value) {
+			int index = Arrays.binarySearch(this.bounds, value);
+			if(index < 0) {
+				// 插入位置：第一个大于数值的区间
+				index = -index - 1;
+			}
+			this.buckets[index].increment();
+			this.sum.add(value);
+		}
+		
+		/**
+		 * @return 数量
+		 */
+		public long count() {
+			long count = 0L;
+			for (LongAdder bucket : this.buckets) {
+				count += bucket.sum();
+			}
+			return count;
+		}
+		
+		/**
+		 * @return 总和
+		 */
+		public long sum() {
+			return this.sum.sum();
+		}
+		
+		@Override
+		protected Object value() {
+			long count = 0L;
+			final Map<String, Object> buckets = new LinkedHashMap<>();
+			for (int index = 0; index < this.buckets.length; index++) {
+				count += this.buckets[index].sum();
+				buckets.put(index < this.bounds.length ? String.valueOf(this.bounds[index]) : BUCKET_INF, count);
+			}
+			final Map<String, Object> value = new LinkedHashMap<>();
+			value.put("count", count);
+			value.put("sum", this.sum());
+			value.put("buckets", buckets);
+			return value;
+		}
+		
+		@Override
+		protected void exposition(StringBuilder builder) {
+			long count = 0L;
+			for (int index = 0; index < this.buckets.length; index++) {
+				count += this.buckets[index].sum();
+				final String bound = index < this.bounds.length ? String.valueOf(this.bounds[index]) : BUCKET_INF;
+				this.line(builder, "_bucket", "le=\"" + bound + "\"", count);
+			}
+			this.line(builder, "_sum", null, this.sum());
+			this.line(builder, "_count", null, count);
+		}
+		
+	}
+	
+}
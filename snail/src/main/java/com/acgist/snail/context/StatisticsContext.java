@@ -19,6 +19,11 @@ public final class StatisticsContext extends StatisticsGetter implements IContex
 	
 	private StatisticsContext() {
 		super(new StatisticsSession());
+		final MetricsContext context = MetricsContext.getInstance();
+		context.gauge("snail_upload_bytes", "累计上传大小（B）", this::uploadSize);
+		context.gauge("snail_download_bytes", "累计下载大小（B）", this::downloadSize);
+		context.gauge("snail_upload_speed", "系统上传速度（B/s）", this::uploadSpeed);
+		context.gauge("snail_download_speed", "系统下载速度（B/s）", this::downloadSpeed);
 	}
 	
 	@Override
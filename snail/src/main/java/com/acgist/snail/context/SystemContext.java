@@ -14,6 +14,7 @@ import com.acgist.snail.net.TcpClient;
 import com.acgist.snail.net.TcpServer;
 import com.acgist.snail.net.UdpServer;
 import com.acgist.snail.net.http.HttpClient;
+import com.acgist.snail.net.torrent.tracker.HttpTrackerSession;
 import com.acgist.snail.utils.FileUtils;
 
 /**
@@ -176,6 +177,7 @@ public final class SystemContext implements IContext {
 				TcpClient.shutdown();
 				TcpServer.shutdown();
 				UdpServer.shutdown();
+				HttpTrackerSession.shutdown();
 				// 关闭线程池
 				SystemThreadContext.shutdown();
 				LOGGER.info("系统已关闭");
@@ -1,9 +1,11 @@
 package com.acgist.snail.context;
 
+import java.lang.reflect.Method;
 import java.nio.channels.AsynchronousChannelGroup;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -13,6 +15,7 @@ import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
+import com.acgist.snail.config.SystemConfig;
 import com.acgist.snail.logger.Logger;
 import com.acgist.snail.logger.LoggerFactory;
 
@@ -66,10 +69,30 @@ public final class SystemThreadContext implements IContext {
 	 * TCP服务端线程名称
 	 */
 	public static final String SNAIL_THREAD_TCP_SERVER = SNAIL_THREAD + "-TCP-Server";
+	/**
+	 * Tracker线程名称
+	 */
+	public static final String SNAIL_THREAD_TRACKER = SNAIL_THREAD + "-Tracker";
 	/**
 	 * 下载器线程名称
 	 */
 	public static final String SNAIL_THREAD_DOWNLOADER = SNAIL_THREAD + "-Downloader";
+	/**
+	 * FTP分段下载线程名称
+	 */
+	public static final String SNAIL_THREAD_FTP = SNAIL_THREAD + "-FTP";
+	/**
+	 * 文件校验线程名称
+	 */
+	public static final String SNAIL_THREAD_VERIFY = SNAIL_THREAD + "-Verify";
+	/**
+	 * Piece校验线程名称
+	 */
+	public static final String SNAIL_THREAD_HASH = SNAIL_THREAD + "-Hash";
+	/**
+	 * 边下边播线程名称
+	 */
+	public static final String SNAIL_THREAD_STREAM = SNAIL_THREAD + "-Stream";
 	/**
 	 * 系统线程池：异步执行、防止卡顿
 	 */
@@ -94,11 +117,39 @@ public final class SystemThreadContext implements IContext {
 	 * CPU核心数量
 	 */
 	public static final int DEFAULT_THREAD_SIZE = Runtime.getRuntime().availableProcessors();
+	/**
+	 * 虚拟线程构建器方法：Thread.ofVirtual()
+	 * 运行环境不支持虚拟线程时为空
+	 */
+	private static final Method OF_VIRTUAL;
+	/**
+	 * 虚拟线程池方法：Executors.newThreadPerTaskExecutor(ThreadFactory)
+	 * 运行环境不支持虚拟线程时为空
+	 */
+	private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
 	
 	static {
 		EXECUTOR = newExecutor(threadSize(4, 8), threadSize(16, 32), Short.MAX_VALUE, 60L, SNAIL_THREAD);
 		EXECUTOR_SCHEDULED = newScheduledExecutor(threadSize(2, 4), SNAIL_THREAD_SCHEDULED);
+		metrics(SNAIL_THREAD, EXECUTOR);
+		metrics(SNAIL_THREAD_SCHEDULED, EXECUTOR_SCHEDULED);
+		Method ofVirtual = null;
+		Method newThreadPerTaskExecutor = null;
+		try {
+			// 编译版本没有虚拟线程：使用反射调用
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+			// 验证是否可用（预览版本没有开启预览特性抛出异常）
+			newVirtualThreadFactory(ofVirtual, SNAIL_THREAD);
+		} catch (Exception | LinkageError e) {
+			LOGGER.debug("运行环境不支持虚拟线程：{}", e.getMessage());
+			ofVirtual = null;
+			newThreadPerTaskExecutor = null;
+		}
+		OF_VIRTUAL = ofVirtual;
+		NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
 		LOGGER.info("系统默认线程数量：{}", DEFAULT_THREAD_SIZE);
+		LOGGER.info("是否支持虚拟线程：{}", supportVirtualThread());
 	}
 	
 	private SystemThreadContext() {
@@ -221,6 +272,69 @@ public final class SystemThreadContext implements IContext {
 		);
 	}
 	
+	/**
+	 * 新建任务线程池
+	 * 用来执行长时间阻塞任务（下载器、BT任务）
+	 * 配置使用虚拟线程并且运行环境支持虚拟线程时使用虚拟线程池，否则使用缓存线程池。
+	 * 
+	 * @param name 线程池名称
+	 * 
+	 * @return 任务线程池
+	 * 
+	 * @see SystemConfig#getVirtualThread()
+	 */
+	public static final ExecutorService newTaskExecutor(String name) {
+		if(SystemConfig.getVirtualThread()) {
+			return newVirtualExecutor(name);
+		}
+		return newCacheExecutor(0, 60L, name);
+	}
+	
+	/**
+	 * 新建虚拟线程池
+	 * 每个任务使用一个虚拟线程，运行环境不支持虚拟线程时使用缓存线程池。
+	 * 
+	 * @param name 线程池名称
+	 * 
+	 * @return 虚拟线程池
+	 */
+	public static final ExecutorService newVirtualExecutor(String name) {
+		if(supportVirtualThread()) {
+			try {
+				return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, newVirtualThreadFactory(OF_VIRTUAL, name));
+			} catch (Exception e) {
+				LOGGER.error("新建虚拟线程池异常：{}", name, e);
+			}
+		}
+		return newCacheExecutor(0, 60L, name);
+	}
+	
+	/**
+	 * 注册线程池指标：活动线程数量、线程数量、等待任务数量
+	 * 虚拟线程池没有线程池指标
+	 * 
+	 * @param name 线程池名称
+	 * @param executor 线程池
+	 */
+	public static final void metrics(String name, ExecutorService executor) {
+		if(executor instanceof ThreadPoolExecutor pool) {
+			final MetricsContext context = MetricsContext.getInstance();
+			final String label = "{pool=\"" + name + "\"}";
+			context.gauge("snail_thread_pool_active" + label, "线程池活动线程数量", pool::getActiveCount);
+			context.gauge("snail_thread_pool_size" + label, "线程池线程数量", pool::getPoolSize);
+			context.gauge("snail_thread_pool_queue" + label, "线程池等待任务数量", () -> pool.getQueue().size());
+		}
+	}
+	
+	/**
+	 * 判断运行环境是否支持虚拟线程
+	 * 
+	 * @return 是否支持虚拟线程
+	 */
+	public static final boolean supportVirtualThread() {
+		return OF_VIRTUAL != null && NEW_THREAD_PER_TASK_EXECUTOR != null;
+	}
+	
 	/**
 	 * 新建定时线程池
 	 * 
@@ -258,6 +372,24 @@ public final class SystemThreadContext implements IContext {
 		};
 	}
 	
+	/**
+	 * 新建虚拟线程工厂
+	 * Thread.ofVirtual().name(poolName + "-", 1).factory()
+	 * 
+	 * @param ofVirtual 虚拟线程构建器方法
+	 * @param poolName 线程池名称
+	 * 
+	 * @return 虚拟线程工厂
+	 * 
+	 * @throws ReflectiveOperationException 反射异常
+	 */
+	private static final ThreadFactory newVirtualThreadFactory(Method ofVirtual, String poolName) throws ReflectiveOperationException {
+		final Object builder = ofVirtual.invoke(null);
+		final Class<?> builderClass = ofVirtual.getReturnType();
+		final Object namedBuilder = builderClass.getMethod("name", String.class, long.class).invoke(builder, poolName + "-", 1L);
+		return (ThreadFactory) builderClass.getMethod("factory").invoke(namedBuilder);
+	}
+	
 	/**
 	 * 关闭系统线程池
 	 */
@@ -1,8 +1,13 @@
 package com.acgist.snail.context;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import com.acgist.snail.config.DownloadConfig;
@@ -12,6 +17,7 @@ import com.acgist.snail.gui.GuiContext;
 import com.acgist.snail.logger.Logger;
 import com.acgist.snail.logger.LoggerFactory;
 import com.acgist.snail.net.DownloadException;
+import com.acgist.snail.protocol.Protocol.Type;
 import com.acgist.snail.protocol.ProtocolContext;
 import com.acgist.snail.utils.CollectionUtils;
 
@@ -34,6 +40,20 @@ public final class TaskContext implements IContext {
 	 * 任务队列
 	 */
 	private final List<ITaskSession> tasks;
+	/**
+	 * 状态变化任务
+	 * 刷新任务状态时合并发送
+	 */
+	private final Set<ITaskSession> dirtyTasks;
+	/**
+	 * 状态变化版本
+	 */
+	private final AtomicLong dirtyVersion;
+	/**
+	 * 任务状态变化版本
+	 * 其他订阅者（任务状态推送）根据版本获取状态变化任务，不会清除界面刷新的状态变化任务。
+	 */
+	private final Map<ITaskSession, Long> dirtyVersions;
 	/**
 	 * 下载器线程池
 	 */
@@ -41,7 +61,46 @@ public final class TaskContext implements IContext {
 	
 	private TaskContext() {
 		this.tasks = new ArrayList<>(DownloadConfig.getSize());
-		this.executor = SystemThreadContext.newCacheExecutor(0, 60L, SystemThreadContext.SNAIL_THREAD_DOWNLOADER);
+		this.dirtyTasks = ConcurrentHashMap.newKeySet();
+		this.dirtyVersion = new AtomicLong(0L);
+		this.dirtyVersions = new ConcurrentHashMap<>();
+		this.executor = SystemThreadContext.newTaskExecutor(SystemThreadContext.SNAIL_THREAD_DOWNLOADER);
+		this.registerMetrics();
+	}
+	
+	/**
+	 * 注册任务指标：任务数量、下载中任务数量、协议速度
+	 */
+	private void registerMetrics() {
+		final MetricsContext context = MetricsContext.getInstance();
+		SystemThreadContext.metrics(SystemThreadContext.SNAIL_THREAD_DOWNLOADER, this.executor);
+		context.gauge("snail_task_size", "任务数量", () -> {
+			synchronized (this.tasks) {
+				return this.tasks.size();
+			}
+		});
+		context.gauge("snail_task_running_size", "下载中任务数量", () -> this.allTask().stream().filter(ITaskSession::statusRunning).count());
+		context.gauge("snail_task_dirty_size", "状态变化任务数量", this.dirtyTasks::size);
+		for (Type type : Type.values()) {
+			final String label = "{protocol=\"" + type.name().toLowerCase() + "\"}";
+			context.gauge("snail_task_upload_speed" + label, "协议上传速度（B/s）", () -> this.speed(type, false));
+			context.gauge("snail_task_download_speed" + label, "协议下载速度（B/s）", () -> this.speed(type, true));
+		}
+	}
+	
+	/**
+	 * 统计协议速度
+	 * 
+	 * @param type 协议类型
+	 * @param download 下载速度：true-下载速度；false-上传速度；
+	 * 
+	 * @return 协议速度
+	 */
+	private long speed(Type type, boolean download) {
+		return this.allTask().stream()
+			.filter(session -> session.getType() == type)
+			.mapToLong(session -> download ? session.statistics().downloadSpeed() : session.statistics().uploadSpeed())
+			.sum();
 	}
 	
 	/**
@@ -98,6 +157,8 @@ public final class TaskContext implements IContext {
 			LOGGER.debug("删除下载任务：{}", taskSession);
 			this.tasks.remove(taskSession);
 		}
+		this.dirtyTasks.remove(taskSession);
+		this.dirtyVersions.remove(taskSession);
 		GuiContext.getInstance().refreshTaskList();
 	}
 	
@@ -118,6 +179,67 @@ public final class TaskContext implements IContext {
 			.anyMatch(ITaskSession::statusRunning);
 	}
 	
+	/**
+	 * 标记任务状态变化
+	 * 
+	 * @param taskSession 任务信息
+	 */
+	public void dirty(ITaskSession taskSession) {
+		this.dirtyTasks.add(taskSession);
+		this.dirtyVersions.put(taskSession, this.dirtyVersion.incrementAndGet());
+	}
+	
+	/**
+	 * @return 当前状态变化版本
+	 */
+	public long dirtyVersion() {
+		return this.dirtyVersion.get();
+	}
+	
+	/**
+	 * 获取版本之后状态变化任务（不会清除）
+	 * 正在下载任务（速度、进度变化）每次都会返回
+	 * 
+	 * @param version 状态变化版本
+	 * 
+	 * @return 状态变化任务
+	 */
+	public Set<ITaskSession> dirtyTasks(long version) {
+		final Set<ITaskSession> dirtyTasks = new HashSet<>();
+		synchronized (this.tasks) {
+			this.tasks.stream()
+				.filter(ITaskSession::statusDownload)
+				.forEach(dirtyTasks::add);
+		}
+		this.dirtyVersions.forEach((taskSession, value) -> {
+			if(value > version) {
+				dirtyTasks.add(taskSession);
+			}
+		});
+		return dirtyTasks;
+	}
+	
+	/**
+	 * 获取并且清除状态变化任务
+	 * 正在下载任务（速度、进度变化）每次都会返回
+	 * 
+	 * @return 状态变化任务
+	 */
+	public Set<ITaskSession> dirtyTasks() {
+		final Set<ITaskSession> dirtyTasks = new HashSet<>();
+		synchronized (this.tasks) {
+			this.tasks.stream()
+				.filter(ITaskSession::statusDownload)
+				.forEach(dirtyTasks::add);
+		}
+		final var iterator = this.dirtyTasks.iterator();
+		while(iterator.hasNext()) {
+			dirtyTasks.add(iterator.next());
+			iterator.remove();
+		}
+		return dirtyTasks;
+	}
+	
 	/**
 	 * 刷新下载任务
 	 */
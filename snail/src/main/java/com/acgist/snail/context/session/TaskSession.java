@@ -501,7 +501,8 @@ public final class TaskSession extends StatisticsGetter implements ITaskSession
 		try {
 			this.entity.setStatus(status);
 		} finally {
-			// 刷新状态
+			// 刷新状态：标记状态变化任务
+			TaskContext.getInstance().dirty(this);
 			GuiContext.getInstance().refreshTaskStatus();
 		}
 	}
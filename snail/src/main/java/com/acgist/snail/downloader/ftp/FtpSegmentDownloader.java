@@ -0,0 +1,400 @@
+package com.acgist.snail.downloader.ftp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.context.ITaskSession;
+import com.acgist.snail.context.SystemThreadContext;
+import com.acgist.snail.downloader.Downloader;
+import com.acgist.snail.logger.Logger;
+import com.acgist.snail.logger.LoggerFactory;
+import com.acgist.snail.net.DownloadException;
+import com.acgist.snail.net.NetException;
+import com.acgist.snail.net.ftp.FtpClient;
+import com.acgist.snail.utils.FileUtils;
+import com.acgist.snail.utils.IoUtils;
+
+/**
+ * FTP分段任务下载器
+ * 每个分段使用独立的命令通道和数据通道，通过REST命令设置分段开始位置，下载数据按照位置写入文件。
+ * 分段下载进度保存在任务负载：每个分段使用三个long（开始位置、结束位置、下载位置）。
+ * 
+ * @author acgist
+ */
+public final class FtpSegmentDownloader extends Downloader {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(FtpSegmentDownloader.class);
+
+	/**
+	 * 最小分段大小
+	 */
+	public static final long MIN_SEGMENT_LENGTH = 4L * SystemConfig.ONE_MB;
+	/**
+	 * 分段失败重试次数
+	 */
+	private static final int MAX_RETRY_TIMES = 3;
+	/**
+	 * 分段进度保存周期（毫秒）
+	 */
+	private static final long PERSISTENT_INTERVAL = SystemConfig.REFRESH_INTERVAL_MILLIS;
+	/**
+	 * 分段负载大小：开始位置、结束位置、下载位置
+	 */
+	private static final int SEGMENT_PAYLOAD_LENGTH = 3 * Long.BYTES;
+
+	/**
+	 * 下载文件
+	 */
+	private FileChannel output;
+	/**
+	 * 分段线程池
+	 */
+	private ExecutorService executor;
+	/**
+	 * 上次保存分段进度时间
+	 */
+	private volatile long persistentTime;
+	/**
+	 * 分段列表
+	 */
+	private final List<Segment> segments;
+	/**
+	 * 下载锁
+	 * 下载时阻塞下载任务线程
+	 */
+	private final Lock downloadLock;
+	/**
+	 * 下载条件
+	 */
+	private final Condition downloadCondition;
+
+	/**
+	 * @param taskSession 任务信息
+	 */
+	private FtpSegmentDownloader(ITaskSession taskSession) {
+		super(taskSession);
+		this.segments = new ArrayList<>();
+		this.downloadLock = new ReentrantLock();
+		this.downloadCondition = this.downloadLock.newCondition();
+	}
+
+	/**
+	 * @param taskSession 任务信息
+	 * 
+	 * @return {@link FtpSegmentDownloader}
+	 */
+	public static final FtpSegmentDownloader newInstance(ITaskSession taskSession) {
+		return new FtpSegmentDownloader(taskSession);
+	}
+
+	/**
+	 * 判断是否使用分段下载
+	 * 
+	 * @param size 文件大小
+	 * 
+	 * @return 是否使用分段下载
+	 */
+	public static final boolean segmentable(Long size) {
+		return
+			SystemConfig.getFtpSegmentSize() > 1 &&
+			size != null &&
+			size >= 2 * MIN_SEGMENT_LENGTH;
+	}
+
+	@Override
+	public void open() throws NetException, DownloadException {
+		this.loadSegments();
+		try {
+			this.output = FileChannel.open(
+				Paths.get(this.taskSession.getFile()),
+				StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE
+			);
+		} catch (IOException e) {
+			throw new DownloadException("下载文件打开失败", e);
+		}
+		this.taskSession.downloadSize(this.segments.stream().mapToLong(Segment::downloadSize).sum());
+		this.executor = SystemThreadContext.newExecutor(this.segments.size(), this.segments.size(), this.segments.size(), 60L, SystemThreadContext.SNAIL_THREAD_FTP);
+		this.segments.stream()
+			.filter(segment -> !segment.completed())
+			.forEach(segment -> this.executor.submit(() -> this.download(segment)));
+	}
+
+	@Override
+	public void download() throws DownloadException {
+		this.downloadLock.lock();
+		try {
+			while(this.downloadable()) {
+				this.completed = this.segments.stream().allMatch(Segment::completed);
+				if(this.completed) {
+					break;
+				}
+				try {
+					this.downloadCondition.await(PERSISTENT_INTERVAL, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					LOGGER.debug("线程等待异常", e);
+				}
+			}
+		} finally {
+			this.downloadLock.unlock();
+		}
+	}
+
+	@Override
+	public void unlockDownload() {
+		super.unlockDownload();
+		// 关闭连接：结束阻塞读取
+		this.segments.forEach(Segment::close);
+		this.signal();
+	}
+
+	@Override
+	public void release() {
+		this.segments.forEach(Segment::close);
+		SystemThreadContext.shutdownNow(this.executor);
+		this.persistent(true);
+		IoUtils.close(this.output);
+		super.release();
+	}
+
+	/**
+	 * 分段下载
+	 * 
+	 * @param segment 分段
+	 */
+	private void download(Segment segment) {
+		int retryTimes = 0;
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(SystemConfig.DEFAULT_EXCHANGE_LENGTH);
+		while(this.downloadable() && !segment.completed()) {
+			try {
+				final ReadableByteChannel input = segment.open(this.taskSession.getUrl());
+				int length = 0;
+				while(this.downloadable() && !segment.completed()) {
+					// 限制读取大小：不能超过分段结束位置
+					buffer.clear().limit((int) Math.min(buffer.capacity(), segment.remaining()));
+					length = input.read(buffer);
+					if(length < 0) {
+						break;
+					}
+					buffer.flip();
+					while(buffer.hasRemaining()) {
+						segment.position += this.output.write(buffer, segment.position);
+					}
+					this.statistics.download(length);
+					this.statistics.downloadLimit(length);
+					this.persistent(false);
+				}
+				if(!segment.completed() && length < 0) {
+					throw new NetException("FTP分段数据读取失败：" + segment);
+				}
+				retryTimes = 0;
+			} catch (IOException | NetException e) {
+				if(!this.downloadable()) {
+					break;
+				}
+				if(++retryTimes > MAX_RETRY_TIMES) {
+					LOGGER.error("FTP分段下载异常：{}", segment, e);
+					this.fail(e.getMessage());
+					break;
+				}
+				LOGGER.debug("FTP分段下载异常（重试）：{}-{}", segment, retryTimes, e);
+			} finally {
+				// 分段下载完成：直接关闭连接中断数据传输
+				segment.close();
+			}
+		}
+		this.signal();
+	}
+
+	/**
+	 * 唤醒下载任务线程
+	 */
+	private void signal() {
+		this.downloadLock.lock();
+		try {
+			this.downloadCondition.signalAll();
+		} finally {
+			this.downloadLock.unlock();
+		}
+	}
+
+	/**
+	 * 加载分段
+	 * 优先使用任务负载，没有任务负载时根据文件大小新建分段。
+	 * 
+	 * @throws DownloadException 下载异常
+	 */
+	private void loadSegments() throws DownloadException {
+		this.segments.clear();
+		final Long fileSize = this.taskSession.getSize();
+		final long size = fileSize == null ? 0L : fileSize;
+		if(size <= 0L) {
+			throw new DownloadException("FTP分段下载文件大小错误：" + fileSize);
+		}
+		final byte[] payload = this.taskSession.getPayload();
+		// 已经下载数据：单个连接下载的文件
+		long begin = Math.min(FileUtils.fileSize(this.taskSession.getFile()), size);
+		if(payload != null) {
+			if(payload.length > 0 && payload.length % SEGMENT_PAYLOAD_LENGTH == 0) {
+				final ByteBuffer buffer = ByteBuffer.wrap(payload);
+				while(buffer.hasRemaining()) {
+					this.segments.add(new Segment(buffer.getLong(), buffer.getLong(), buffer.getLong()));
+				}
+				final long end = this.segments.get(this.segments.size() - 1).end;
+				if(end == size && this.taskSession.downloadFile().exists()) {
+					LOGGER.debug("FTP分段下载加载进度：{}", this.segments);
+					return;
+				}
+				this.segments.clear();
+			}
+			// 进度无效：文件可能存在空洞需要重新下载
+			LOGGER.debug("FTP分段下载进度无效：{}", this.taskSession.getFile());
+			begin = 0L;
+		}
+		final long remaining = size - begin;
+		final int segmentSize = (int) Math.max(1L, Math.min(SystemConfig.getFtpSegmentSize(), remaining / MIN_SEGMENT_LENGTH));
+		final long segmentLength = remaining / segmentSize;
+		for (int index = 0; index < segmentSize; index++) {
+			final long segmentBegin = begin + index * segmentLength;
+			final long segmentEnd = index == segmentSize - 1 ? size : segmentBegin + segmentLength;
+			this.segments.add(new Segment(segmentBegin, segmentEnd, segmentBegin));
+		}
+		LOGGER.debug("FTP分段下载新建分段：{}", this.segments);
+		this.persistent(true);
+	}
+
+	/**
+	 * 保存分段进度
+	 * 
+	 * @param force 是否强制保存
+	 */
+	private void persistent(boolean force) {
+		final long time = System.currentTimeMillis();
+		if(!force && time - this.persistentTime < PERSISTENT_INTERVAL) {
+			return;
+		}
+		synchronized (this.segments) {
+			this.persistentTime = time;
+			final ByteBuffer buffer = ByteBuffer.allocate(this.segments.size() * SEGMENT_PAYLOAD_LENGTH);
+			this.segments.forEach(segment -> buffer
+				.putLong(segment.begin)
+				.putLong(segment.end)
+				.putLong(segment.position)
+			);
+			this.taskSession.setPayload(buffer.array());
+			this.taskSession.update();
+		}
+	}
+
+	/**
+	 * 分段
+	 * 
+	 * @author acgist
+	 */
+	private static final class Segment {
+
+		/**
+		 * 开始位置
+		 */
+		private final long begin;
+		/**
+		 * 结束位置（不包含）
+		 */
+		private final long end;
+		/**
+		 * 下载位置
+		 */
+		private volatile long position;
+		/**
+		 * FTP客户端
+		 */
+		private volatile FtpClient client;
+
+		/**
+		 * @param begin 开始位置
+		 * @param end 结束位置
+		 * @param position 下载位置
+		 */
+		private Segment(long begin, long end, long position) {
+			this.begin = begin;
+			this.end = end;
+			this.position = position;
+		}
+
+		/**
+		 * 连接服务器打开数据通道
+		 * 
+		 * @param url 下载链接
+		 * 
+		 * @return 数据通道
+		 * 
+		 * @throws NetException 网络异常
+		 */
+		private ReadableByteChannel open(String url) throws NetException {
+			this.close();
+			final FtpClient client = FtpClient.newInstance(url);
+			this.client = client;
+			if(!client.connect()) {
+				throw new NetException("FTP服务器连接失败");
+			}
+			final InputStream input = client.download(this.position);
+			if(this.position > 0L && !client.range()) {
+				throw new NetException("FTP服务器不支持断点续传");
+			}
+			return Channels.newChannel(input);
+		}
+
+		/**
+		 * 关闭连接
+		 */
+		private void close() {
+			final FtpClient client = this.client;
+			if(client != null) {
+				this.client = null;
+				client.close();
+			}
+		}
+
+		/**
+		 * @return 剩余下载大小
+		 */
+		private long remaining() {
+			return this.end - this.position;
+		}
+
+		/**
+		 * @return 已经下载大小
+		 */
+		private long downloadSize() {
+			return this.position - this.begin;
+		}
+
+		/**
+		 * @return 是否下载完成
+		 */
+		private boolean completed() {
+			return this.position >= this.end;
+		}
+
+		@Override
+		public String toString() {
+			return this.begin + "-" + this.end + "-" + this.position;
+		}
+
+	}
+
+}
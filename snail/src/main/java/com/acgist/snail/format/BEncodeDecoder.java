@@ -3,6 +3,7 @@ package com.acgist.snail.format;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -87,6 +88,11 @@ public final class BEncodeDecoder {
 	 * Map
 	 */
 	private Map<String, Object> map;
+	/**
+	 * Map键编码
+	 * 默认使用系统编码，键为二进制数据（InfoHash）时使用{@code ISO_8859_1}保证无损。
+	 */
+	private Charset keyCharset = Charset.defaultCharset();
 	/**
 	 * 原始数据
 	 */
@@ -138,6 +144,18 @@ public final class BEncodeDecoder {
 		return new BEncodeDecoder(ByteUtils.remainingToBytes(buffer));
 	}
 	
+	/**
+	 * 设置Map键编码
+	 * 
+	 * @param keyCharset Map键编码
+	 * 
+	 * @return this
+	 */
+	public BEncodeDecoder keyCharset(Charset keyCharset) {
+		this.keyCharset = Objects.requireNonNull(keyCharset, "B编码键编码错误");
+		return this;
+	}
+	
 	/**
 	 * 判断是否没有数据
 	 * 
@@ -194,11 +212,11 @@ public final class BEncodeDecoder {
 		final char charType = (char) this.inputStream.read();
 		switch (charType) {
 		case TYPE_D:
-			this.map = readMap(this.inputStream);
+			this.map = readMap(this.inputStream, this.keyCharset);
 			this.type = Type.MAP;
 			break;
 		case TYPE_L:
-			this.list = readList(this.inputStream);
+			this.list = readList(this.inputStream, this.keyCharset);
 			this.type = Type.LIST;
 			break;
 		default:
@@ -291,6 +309,7 @@ public final class BEncodeDecoder {
 	 * 读取List
 	 * 
 	 * @param inputStream 数据
+	 * @param keyCharset Map键编码
 	 * 
 	 * @return List
 	 * 
@@ -298,7 +317,7 @@ public final class BEncodeDecoder {
 	 * 
 	 * @see #TYPE_L
 	 */
-	private static final List<Object> readList(ByteArrayInputStream inputStream) throws PacketSizeException {
+	private static final List<Object> readList(ByteArrayInputStream inputStream, Charset keyCharset) throws PacketSizeException {
 		int index;
 		char indexChar;
 		final List<Object> list = new ArrayList<>();
@@ -310,8 +329,8 @@ public final class BEncodeDecoder {
 					return list;
 				}
 				case TYPE_I -> list.add(readLong(inputStream));
-				case TYPE_L -> list.add(readList(inputStream));
-				case TYPE_D -> list.add(readMap(inputStream));
+				case TYPE_L -> list.add(readList(inputStream, keyCharset));
+				case TYPE_D -> list.add(readMap(inputStream, keyCharset));
 				case '0', '1', '2', '3', '4', '5', '6', '7', '8', '9' -> lengthBuilder.append(indexChar);
 				case SEPARATOR -> {
 					if(lengthBuilder.length() > 0) {
@@ -330,6 +349,7 @@ public final class BEncodeDecoder {
 	 * 读取Map
 	 * 
 	 * @param inputStream 数据
+	 * @param keyCharset Map键编码
 	 * 
 	 * @return Map
 	 * 
@@ -337,7 +357,7 @@ public final class BEncodeDecoder {
 	 * 
 	 * @see #TYPE_D
 	 */
-	private static final Map<String, Object> readMap(ByteArrayInputStream inputStream) throws PacketSizeException {
+	private static final Map<String, Object> readMap(ByteArrayInputStream inputStream, Charset keyCharset) throws PacketSizeException {
 		int index;
 		char indexChar;
 		String key = null;
@@ -360,7 +380,7 @@ public final class BEncodeDecoder {
 				}
 				case TYPE_L -> {
 					if(key != null) {
-						map.put(key, readList(inputStream));
+						map.put(key, readList(inputStream, keyCharset));
 						key = null;
 					} else {
 						LOGGER.warn("B编码key为空跳过（L）");
@@ -368,7 +388,7 @@ public final class BEncodeDecoder {
 				}
 				case TYPE_D -> {
 					if(key != null) {
-						map.put(key, readMap(inputStream));
+						map.put(key, readMap(inputStream, keyCharset));
 						key = null;
 					} else {
 						LOGGER.warn("B编码key为空跳过（D）");
@@ -379,7 +399,7 @@ public final class BEncodeDecoder {
 					if(lengthBuilder.length() > 0) {
 						final byte[] bytes = readBytes(lengthBuilder, inputStream);
 						if (key == null) {
-							key = new String(bytes);
+							key = new String(bytes, keyCharset);
 						} else {
 							map.put(key, bytes);
 							key = null;
@@ -39,6 +39,15 @@ public abstract class Client<T extends IMessageSender> implements IMessageSender
 			return this.handler.available();
 		}
 	}
+	
+	@Override
+	public boolean writable() {
+		if(this.handler == null) {
+			return false;
+		} else {
+			return this.handler.writable();
+		}
+	}
 
 	@Override
 	public void send(String message) throws NetException {
@@ -3,6 +3,8 @@ package com.acgist.snail.net;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 
+import com.acgist.snail.net.codec.ByteBufferPool;
+
 /**
  * <p>消息接收代理接口</p>
  * 
@@ -21,6 +23,7 @@ public interface IMessageReceiver {
 	
 	/**
 	 * <p>消息接收</p>
+	 * <p>消息缓冲区可能来自{@link ByteBufferPool}：方法返回之后不能继续持有</p>
 	 * 
 	 * @param buffer 消息
 	 * 
@@ -31,6 +34,7 @@ public interface IMessageReceiver {
 	
 	/**
 	 * <p>收到消息</p>
+	 * <p>消息缓冲区可能来自{@link ByteBufferPool}：方法返回之后不能继续持有</p>
 	 * 
 	 * @param buffer 消息
 	 * @param socketAddress 地址
@@ -20,6 +20,16 @@ public interface IMessageSender {
 	 */
 	boolean available();
 	
+	/**
+	 * <p>判断是否可以继续发送大量数据</p>
+	 * <p>发送队列拥塞时返回false：上传调度需要暂停发送数据</p>
+	 * 
+	 * @return 是否可以继续发送
+	 */
+	default boolean writable() {
+		return this.available();
+	}
+	
 	/**
 	 * <p>消息发送</p>
 	 * 
@@ -4,10 +4,14 @@ import java.io.IOException;
 import java.net.StandardSocketOptions;
 import java.nio.channels.AsynchronousChannelGroup;
 import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 import com.acgist.snail.context.SystemThreadContext;
 import com.acgist.snail.logger.Logger;
@@ -80,10 +84,7 @@ public abstract class TcpClient<T extends TcpMessageHandler> extends Client<T> {
 		boolean success = true;
 		AsynchronousSocketChannel channel = null;
 		try {
-			channel = AsynchronousSocketChannel.open(GROUP);
-//			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
-			channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
-			channel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+			channel = this.open();
 			final Future<Void> future = channel.connect(NetUtils.buildSocketAddress(host, port));
 			future.get(this.timeout, TimeUnit.SECONDS);
 			this.handler.handle(channel);
@@ -103,6 +104,83 @@ public abstract class TcpClient<T extends TcpMessageHandler> extends Client<T> {
 		return success;
 	}
 	
+	/**
+	 * <p>异步连接服务端</p>
+	 * <p>连接不会阻塞线程：连接完成、失败或者超时以后执行回调（只会执行一次）</p>
+	 * <p>回调在通道线程池或者定时线程池执行：不能执行长时间阻塞任务</p>
+	 * 
+	 * @param host 服务端地址
+	 * @param port 服务端端口
+	 * @param callback 连接回调：是否连接成功
+	 */
+	protected void connect(final String host, final int port, final Consumer<Boolean> callback) {
+		final AsynchronousSocketChannel channel;
+		try {
+			channel = this.open();
+		} catch (IOException e) {
+			LOGGER.error("TCP客户端连接异常：{}-{}", host, port, e);
+			this.close();
+			callback.accept(false);
+			return;
+		}
+		final AtomicBoolean done = new AtomicBoolean(false);
+		// 连接超时：关闭通道导致连接失败
+		final ScheduledFuture<?> timeout = SystemThreadContext.scheduled(this.timeout, TimeUnit.SECONDS, () -> {
+			if(!done.get()) {
+				LOGGER.debug("TCP客户端连接超时：{}-{}", host, port);
+				IoUtils.close(channel);
+			}
+		});
+		try {
+			channel.connect(NetUtils.buildSocketAddress(host, port), channel, new CompletionHandler<Void, AsynchronousSocketChannel>() {
+				
+				@Override
+				public void completed(Void result, AsynchronousSocketChannel channel) {
+					if(done.compareAndSet(false, true)) {
+						SystemThreadContext.shutdown(timeout);
+						TcpClient.this.handler.handle(channel);
+						callback.accept(true);
+					}
+				}
+				
+				@Override
+				public void failed(Throwable throwable, AsynchronousSocketChannel channel) {
+					if(done.compareAndSet(false, true)) {
+						LOGGER.debug("TCP客户端连接失败：{}-{}", host, port, throwable);
+						SystemThreadContext.shutdown(timeout);
+						IoUtils.close(channel);
+						TcpClient.this.close();
+						callback.accept(false);
+					}
+				}
+				
+			});
+		} catch (Exception e) {
+			LOGGER.error("TCP客户端连接异常：{}-{}", host, port, e);
+			if(done.compareAndSet(false, true)) {
+				SystemThreadContext.shutdown(timeout);
+				IoUtils.close(channel);
+				this.close();
+				callback.accept(false);
+			}
+		}
+	}
+	
+	/**
+	 * <p>打开通道</p>
+	 * 
+	 * @return 通道
+	 * 
+	 * @throws IOException IO异常
+	 */
+	private AsynchronousSocketChannel open() throws IOException {
+		final AsynchronousSocketChannel channel = AsynchronousSocketChannel.open(GROUP);
+//		channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+		channel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+		return channel;
+	}
+	
 	@Override
 	public void close() {
 		LOGGER.debug("关闭TCP Client：{}", this.name);
@@ -5,24 +5,79 @@ import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousSocketChannel;
 import java.nio.channels.CompletionHandler;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
 
 import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.context.MetricsContext;
+import com.acgist.snail.context.MetricsContext.Counter;
 import com.acgist.snail.logger.Logger;
 import com.acgist.snail.logger.LoggerFactory;
+import com.acgist.snail.net.codec.ByteBufferPool;
 import com.acgist.snail.utils.IoUtils;
 
 /**
  * <p>TCP消息代理</p>
+ * <p>发送消息放入发送队列立即返回：发送队列使用聚合写出（{@code write(ByteBuffer[])}）异步发送，上次写出完成以后继续写出剩余消息。</p>
+ * <p>发送队列数据超过{@link #WRITABLE_LENGTH}时通道拥塞（{@link #writable()}），超过{@link #MAX_WRITE_LENGTH}时拒绝发送。</p>
  * 
  * @author acgist
  */
 public abstract class TcpMessageHandler extends MessageHandler<AsynchronousSocketChannel> implements CompletionHandler<Integer, ByteBuffer> {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(TcpMessageHandler.class);
+	
+	/**
+	 * <p>通道拥塞发送队列数据大小：{@value}</p>
+	 */
+	public static final long WRITABLE_LENGTH = SystemConfig.ONE_MB;
+	/**
+	 * <p>发送队列最大数据大小：{@value}</p>
+	 */
+	public static final long MAX_WRITE_LENGTH = SystemConfig.MAX_NET_BUFFER_LENGTH;
+	/**
+	 * <p>单次聚合写出最大消息数量：{@value}</p>
+	 */
+	private static final int MAX_GATHER_SIZE = 64;
+	/**
+	 * <p>写出超时时间（秒）：{@value}</p>
+	 * <p>超时没有写出任何数据关闭通道</p>
+	 */
+	private static final int WRITE_TIMEOUT = SystemConfig.DOWNLOAD_TIMEOUT;
+	/**
+	 * <p>聚合写出指标</p>
+	 */
+	private static final Counter WRITE_GATHER = MetricsContext.getInstance().counter("snail_tcp_write_gather", "TCP聚合写出次数");
+	/**
+	 * <p>写出消息指标</p>
+	 */
+	private static final Counter WRITE_MESSAGE = MetricsContext.getInstance().counter("snail_tcp_write_message", "TCP写出消息数量");
+	/**
+	 * <p>发送队列已满指标</p>
+	 */
+	private static final Counter WRITE_REJECT = MetricsContext.getInstance().counter("snail_tcp_write_reject", "TCP发送队列已满拒绝发送次数");
+	
+	/**
+	 * <p>发送队列</p>
+	 * <p>队列锁：发送队列所有状态都使用队列加锁</p>
+	 */
+	private final Deque<ByteBuffer> writeQueue = new ArrayDeque<>();
+	/**
+	 * <p>发送队列数据大小</p>
+	 */
+	private long writeLength = 0L;
+	/**
+	 * <p>是否正在写出</p>
+	 * <p>同时只能存在一个写出操作：防止WritePendingException</p>
+	 */
+	private boolean writing = false;
+	/**
+	 * <p>写出完成处理器</p>
+	 */
+	private final WriteHandler writeHandler = new WriteHandler();
 
 	@Override
 	public void handle(AsynchronousSocketChannel channel) {
@@ -33,29 +88,105 @@ public abstract class TcpMessageHandler extends MessageHandler<AsynchronousSocke
 	@Override
 	public void send(ByteBuffer buffer, int timeout) throws NetException {
 		this.check(buffer);
-		// 阻塞线程（等待发送完成）：防止多线程同时写导致WritePendingException
-		synchronized (this.channel) {
-			try {
-				int size;
-				final Future<Integer> future = this.channel.write(buffer);
-				// 超时时间：超时异常导致数据没有发送完成但释放了锁从而引起一连串的WritePendingException
-				if(timeout <= SystemConfig.NONE_TIMEOUT) {
-					// 没有超时：除了连接消息（首条消息）以外所有消息都不使用超时时间
-					size = future.get();
-				} else {
-					// 超时时间：连接消息（首条消息）使用超时时间
-					size = future.get(timeout, TimeUnit.SECONDS);
+		if(!buffer.hasRemaining()) {
+			return;
+		}
+		final boolean write;
+		synchronized (this.writeQueue) {
+			if(this.writeLength + buffer.remaining() > MAX_WRITE_LENGTH) {
+				WRITE_REJECT.increment();
+				throw new NetException("消息发送失败：发送队列已满");
+			}
+			this.writeQueue.offer(buffer);
+			this.writeLength += buffer.remaining();
+			write = !this.writing;
+			this.writing = true;
+		}
+		if(write) {
+			this.write();
+		}
+		// 超时时间：连接消息（首条消息）等待发送完成
+		if(timeout > SystemConfig.NONE_TIMEOUT && !this.await(() -> !this.writing, timeout * SystemConfig.ONE_SECOND_MILLIS)) {
+			throw new NetException("消息发送超时");
+		}
+	}
+	
+	@Override
+	public boolean writable() {
+		synchronized (this.writeQueue) {
+			return this.available() && this.writeLength < WRITABLE_LENGTH;
+		}
+	}
+	
+	/**
+	 * <p>等待通道可写</p>
+	 * 
+	 * @param timeout 超时时间（毫秒）
+	 * 
+	 * @return 是否可写
+	 * 
+	 * @see #writable()
+	 */
+	protected boolean awaitWritable(long timeout) {
+		return this.await(() -> this.writeLength < WRITABLE_LENGTH, timeout) && this.available();
+	}
+	
+	/**
+	 * <p>等待发送队列状态</p>
+	 * 
+	 * @param condition 等待条件（持有队列锁执行）
+	 * @param timeout 超时时间（毫秒）
+	 * 
+	 * @return 是否满足条件
+	 */
+	private boolean await(BooleanSupplier condition, long timeout) {
+		final long deadline = System.currentTimeMillis() + timeout;
+		synchronized (this.writeQueue) {
+			long wait;
+			while(!condition.getAsBoolean()) {
+				wait = deadline - System.currentTimeMillis();
+				if(wait <= 0 || !this.channel.isOpen()) {
+					return false;
+				}
+				try {
+					this.writeQueue.wait(wait);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return false;
 				}
-				if(size <= 0) {
-					LOGGER.warn("TCP消息发送失败：{}-{}", this.channel, size);
+			}
+			return true;
+		}
+	}
+	
+	/**
+	 * <p>写出发送队列消息</p>
+	 * <p>只能由设置{@link #writing}的线程或者写出完成处理器调用</p>
+	 */
+	private void write() {
+		final ByteBuffer[] buffers;
+		synchronized (this.writeQueue) {
+			if(this.writeQueue.isEmpty() || !this.channel.isOpen()) {
+				this.writing = false;
+				this.writeQueue.notifyAll();
+				// 等待发送队列写出以后关闭通道
+				if(this.close) {
+					IoUtils.close(this.channel);
 				}
-			} catch (InterruptedException e) {
-				Thread.currentThread().interrupt();
-				throw new NetException(e);
-			} catch (TimeoutException | ExecutionException e) {
-				throw new NetException(e);
+				return;
+			}
+			final int size = Math.min(MAX_GATHER_SIZE, this.writeQueue.size());
+			buffers = new ByteBuffer[size];
+			final Iterator<ByteBuffer> iterator = this.writeQueue.iterator();
+			for (int index = 0; index < size; index++) {
+				buffers[index] = iterator.next();
 			}
 		}
+		try {
+			this.channel.write(buffers, 0, buffers.length, WRITE_TIMEOUT, TimeUnit.SECONDS, buffers, this.writeHandler);
+		} catch (Exception e) {
+			this.writeHandler.failed(e, buffers);
+		}
 	}
 
 	@Override
@@ -72,6 +203,12 @@ public abstract class TcpMessageHandler extends MessageHandler<AsynchronousSocke
 	public void close() {
 		LOGGER.debug("TCP连接关闭：{}", this.channel);
 		this.close = true;
+		synchronized (this.writeQueue) {
+			// 正在写出：写出完成以后关闭通道
+			if(this.writing) {
+				return;
+			}
+		}
 		IoUtils.close(this.channel);
 	}
 	
@@ -88,17 +225,21 @@ public abstract class TcpMessageHandler extends MessageHandler<AsynchronousSocke
 		} else {
 			this.receive(buffer);
 		}
+		// 消息处理完成：归还缓冲区
+		ByteBufferPool.getInstance().release(buffer);
 		this.loopMessage();
 	}
 	
 	@Override
 	public void failed(Throwable throwable, ByteBuffer buffer) {
 		LOGGER.error("TCP消息处理异常：{}", this.channel, throwable);
+		ByteBufferPool.getInstance().release(buffer);
 		this.close();
 	}
 	
 	/**
 	 * <p>接收消息</p>
+	 * <p>缓冲区来自缓冲区池：只在方法调用期间有效</p>
 	 * 
 	 * @param buffer 消息
 	 */
@@ -118,11 +259,54 @@ public abstract class TcpMessageHandler extends MessageHandler<AsynchronousSocke
 	 */
 	private void loopMessage() {
 		if(this.available()) {
-			final ByteBuffer buffer = ByteBuffer.allocateDirect(SystemConfig.TCP_BUFFER_LENGTH);
-			this.channel.read(buffer, buffer, this);
+			final ByteBuffer buffer = ByteBufferPool.getInstance().acquire(SystemConfig.TCP_BUFFER_LENGTH);
+			try {
+				this.channel.read(buffer, buffer, this);
+			} catch (Exception e) {
+				ByteBufferPool.getInstance().release(buffer);
+				LOGGER.error("TCP消息轮询异常：{}", this.channel, e);
+				this.close();
+			}
 		} else {
 			LOGGER.debug("TCP消息代理退出消息轮询");
 		}
 	}
+	
+	/**
+	 * <p>写出完成处理器</p>
+	 * 
+	 * @author acgist
+	 */
+	private final class WriteHandler implements CompletionHandler<Long, ByteBuffer[]> {
+		
+		@Override
+		public void completed(Long result, ByteBuffer[] buffers) {
+			WRITE_GATHER.increment();
+			synchronized (TcpMessageHandler.this.writeQueue) {
+				TcpMessageHandler.this.writeLength -= result;
+				// 移除已经写出完成的消息：部分写出的消息保留在队列头部
+				ByteBuffer buffer;
+				while((buffer = TcpMessageHandler.this.writeQueue.peek()) != null && !buffer.hasRemaining()) {
+					TcpMessageHandler.this.writeQueue.poll();
+					WRITE_MESSAGE.increment();
+				}
+				TcpMessageHandler.this.writeQueue.notifyAll();
+			}
+			TcpMessageHandler.this.write();
+		}
+		
+		@Override
+		public void failed(Throwable throwable, ByteBuffer[] buffers) {
+			LOGGER.error("TCP消息发送异常：{}", TcpMessageHandler.this.channel, throwable);
+			synchronized (TcpMessageHandler.this.writeQueue) {
+				TcpMessageHandler.this.writeQueue.clear();
+				TcpMessageHandler.this.writeLength = 0L;
+				TcpMessageHandler.this.writing = false;
+				TcpMessageHandler.this.writeQueue.notifyAll();
+			}
+			TcpMessageHandler.this.close();
+		}
+		
+	}
 
 }
@@ -16,6 +16,7 @@ import com.acgist.snail.config.SystemConfig;
 import com.acgist.snail.context.SystemThreadContext;
 import com.acgist.snail.logger.Logger;
 import com.acgist.snail.logger.LoggerFactory;
+import com.acgist.snail.net.codec.ByteBufferPool;
 import com.acgist.snail.utils.IoUtils;
 import com.acgist.snail.utils.NetUtils;
 
@@ -205,11 +206,16 @@ public abstract class UdpServer<T extends UdpAcceptHandler> extends Server<Datag
 				// 移除已经取出来的信息
 				iterator.remove();
 				if (selectionKey.isValid() && selectionKey.isReadable()) {
-					final ByteBuffer buffer = ByteBuffer.allocateDirect(SystemConfig.UDP_BUFFER_LENGTH);
-					// 服务端多例：selectionKey.channel()
-					// 服务端单例：客户端通道=服务端通道
-					final InetSocketAddress socketAddress = (InetSocketAddress) this.channel.receive(buffer);
-					this.handler.receive(buffer, socketAddress);
+					final ByteBuffer buffer = ByteBufferPool.getInstance().acquire(SystemConfig.UDP_BUFFER_LENGTH);
+					try {
+						// 服务端多例：selectionKey.channel()
+						// 服务端单例：客户端通道=服务端通道
+						final InetSocketAddress socketAddress = (InetSocketAddress) this.channel.receive(buffer);
+						this.handler.receive(buffer, socketAddress);
+					} finally {
+						// 消息处理完成：归还缓冲区
+						ByteBufferPool.getInstance().release(buffer);
+					}
 				}
 			}
 		}
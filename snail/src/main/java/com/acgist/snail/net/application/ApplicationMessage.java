@@ -81,6 +81,18 @@ public class ApplicationMessage {
 		 * <p>系统消息：删除任务</p>
 		 */
 		TASK_DELETE,
+		/**
+		 * <p>系统消息：系统指标</p>
+		 */
+		METRICS,
+		/**
+		 * <p>系统消息：订阅任务状态</p>
+		 */
+		TASK_SUBSCRIBE,
+		/**
+		 * <p>系统消息：取消订阅任务状态</p>
+		 */
+		TASK_UNSUBSCRIBE,
 		/**
 		 * <p>系统通知：显示窗口</p>
 		 */
@@ -109,6 +121,10 @@ public class ApplicationMessage {
 		 * <p>系统通知：刷新任务状态</p>
 		 */
 		REFRESH_TASK_STATUS,
+		/**
+		 * <p>系统通知：任务状态变化</p>
+		 */
+		TASK_STATUS,
 		/**
 		 * <p>系统通知：响应消息</p>
 		 */
@@ -1,5 +1,6 @@
 package com.acgist.snail.net.application;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -7,6 +8,7 @@ import java.util.stream.Collectors;
 
 import com.acgist.snail.config.SymbolConfig;
 import com.acgist.snail.context.ITaskSession;
+import com.acgist.snail.context.MetricsContext;
 import com.acgist.snail.context.SystemContext;
 import com.acgist.snail.context.TaskContext;
 import com.acgist.snail.format.BEncodeDecoder;
@@ -40,6 +42,10 @@ public final class ApplicationMessageHandler extends TcpMessageHandler implement
 	 * <p>消息编码器</p>
 	 */
 	private final IMessageEncoder<String> messageEncoder;
+	/**
+	 * <p>任务状态订阅</p>
+	 */
+	private volatile TaskSubscriber taskSubscriber;
 	
 	public ApplicationMessageHandler() {
 		final var lineMessageCodec = new LineMessageCodec(this, SymbolConfig.LINE_SEPARATOR_COMPAT);
@@ -61,11 +67,29 @@ public final class ApplicationMessageHandler extends TcpMessageHandler implement
 		}
 	}
 	
+	/**
+	 * <p>发送系统消息</p>
+	 * 
+	 * @param message 系统消息
+	 * @param timeout 超时时间（秒）
+	 * 
+	 * @throws NetException 网络异常
+	 */
+	public void send(ApplicationMessage message, int timeout) throws NetException {
+		this.send(ByteBuffer.wrap(StringUtils.toBytes(this.messageEncoder.encode(message.toString()), null)), timeout);
+	}
+	
 	@Override
 	public void send(String message, String charset) throws NetException {
 		super.send(this.messageEncoder.encode(message), charset);
 	}
 	
+	@Override
+	public void close() {
+		this.unsubscribe();
+		super.close();
+	}
+	
 	@Override
 	public void onMessage(String message) {
 		if(StringUtils.isEmpty(message)) {
@@ -104,6 +128,9 @@ public final class ApplicationMessageHandler extends TcpMessageHandler implement
 			case TASK_START -> this.onTaskStart(message);
 			case TASK_PAUSE -> this.onTaskPause(message);
 			case TASK_DELETE -> this.onTaskDelete(message);
+			case METRICS -> this.onMetrics(message);
+			case TASK_SUBSCRIBE -> this.onTaskSubscribe(message);
+			case TASK_UNSUBSCRIBE -> this.onTaskUnsubscribe();
 			case SHOW -> this.onShow();
 			case HIDE -> this.onHide();
 			case ALERT -> this.onAlert(message);
@@ -111,6 +138,7 @@ public final class ApplicationMessageHandler extends TcpMessageHandler implement
 			case MULTIFILE -> this.onMultifile(message);
 			case REFRESH_TASK_LIST -> this.onRefreshTaskList();
 			case REFRESH_TASK_STATUS -> this.onRefreshTaskStatus();
+			case TASK_STATUS -> this.onTaskStatus(message);
 			case RESPONSE -> this.onResponse(message);
 			default -> LOGGER.warn("系统消息错误（类型未适配）：{}", type);
 		}
@@ -261,6 +289,67 @@ public final class ApplicationMessageHandler extends TcpMessageHandler implement
 		}
 	}
 	
+	/**
+	 * <p>系统指标</p>
+	 * <p>body：指标名称前缀（为空返回所有指标）</p>
+	 * <p>返回系统指标（B编码）</p>
+	 * 
+	 * @param message 系统消息
+	 */
+	private void onMetrics(ApplicationMessage message) {
+		final String prefix = StringUtils.isEmpty(message.getBody()) ? null : message.getBody();
+		final String body = BEncodeEncoder.encodeMapString(MetricsContext.getInstance().metrics(prefix));
+		this.send(ApplicationMessage.Type.RESPONSE.build(body));
+	}
+	
+	/**
+	 * <p>订阅任务状态</p>
+	 * <p>按照推送周期推送任务状态变化（{@link ApplicationMessage.Type#TASK_STATUS}）：重复订阅替换原有订阅</p>
+	 * <dl>
+	 * 	<dt>body：Map（B编码）</dt>
+	 * 	<dd>interval：推送周期（毫秒）</dd>
+	 * 	<dd>status：任务状态列表（为空订阅所有状态）</dd>
+	 * 	<dd>page：页码（从零开始）</dd>
+	 * 	<dd>size：每页数量（为空订阅所有任务）</dd>
+	 * </dl>
+	 * 
+	 * @param message 系统消息
+	 * 
+	 * @see TaskSubscriber
+	 */
+	private void onTaskSubscribe(ApplicationMessage message) {
+		try {
+			final TaskSubscriber subscriber = TaskSubscriber.newInstance(this, message.getBody());
+			synchronized (this) {
+				this.unsubscribe();
+				this.taskSubscriber = subscriber;
+			}
+			this.send(ApplicationMessage.Type.RESPONSE.build(ApplicationMessage.SUCCESS));
+			subscriber.subscribe();
+		} catch (PacketSizeException e) {
+			LOGGER.warn("订阅任务状态异常", e);
+			this.send(ApplicationMessage.Type.RESPONSE.build(ApplicationMessage.FAIL));
+		}
+	}
+	
+	/**
+	 * <p>取消订阅任务状态</p>
+	 */
+	private void onTaskUnsubscribe() {
+		this.unsubscribe();
+		this.send(ApplicationMessage.Type.RESPONSE.build(ApplicationMessage.SUCCESS));
+	}
+	
+	/**
+	 * <p>取消任务状态订阅</p>
+	 */
+	private synchronized void unsubscribe() {
+		if(this.taskSubscriber != null) {
+			this.taskSubscriber.unsubscribe();
+			this.taskSubscriber = null;
+		}
+	}
+	
 	/**
 	 * <p>显示窗口</p>
 	 */
@@ -334,6 +423,15 @@ public final class ApplicationMessageHandler extends TcpMessageHandler implement
 		GuiContext.getInstance().refreshTaskStatus();
 	}
 	
+	/**
+	 * <p>任务状态变化</p>
+	 * 
+	 * @param message 系统消息
+	 */
+	private void onTaskStatus(ApplicationMessage message) {
+		LOGGER.debug("任务状态变化：{}", message.getBody());
+	}
+	
 	/**
 	 * <p>响应消息</p>
 	 * 
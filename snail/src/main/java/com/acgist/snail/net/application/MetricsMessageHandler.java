@@ -0,0 +1,59 @@
+package com.acgist.snail.net.application;
+
+import java.nio.charset.StandardCharsets;
+
+import com.acgist.snail.config.SymbolConfig;
+import com.acgist.snail.context.MetricsContext;
+import com.acgist.snail.logger.Logger;
+import com.acgist.snail.logger.LoggerFactory;
+import com.acgist.snail.net.NetException;
+import com.acgist.snail.net.TcpMessageHandler;
+import com.acgist.snail.net.codec.IMessageDecoder;
+import com.acgist.snail.net.codec.LineMessageCodec;
+import com.acgist.snail.net.codec.StringMessageCodec;
+import com.acgist.snail.utils.StringUtils;
+
+/**
+ * <p>系统指标消息代理</p>
+ * <p>忽略请求内容：读取到请求结束（空行）时返回文本格式指标然后关闭连接</p>
+ * 
+ * @author acgist
+ */
+public final class MetricsMessageHandler extends TcpMessageHandler implements IMessageDecoder<String> {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(MetricsMessageHandler.class);
+	
+	/**
+	 * <p>响应头</p>
+	 */
+	private static final String HEADER = "HTTP/1.1 200 OK\r\n" +
+		"Content-Type: text/plain; version=0.0.4; charset=utf-8\r\n" +
+		"Content-Length: %d\r\n" +
+		"Connection: close\r\n\r\n";
+	
+	public MetricsMessageHandler() {
+		final var lineMessageCodec = new LineMessageCodec(this, SymbolConfig.Symbol.LINE_SEPARATOR.toString());
+		this.messageDecoder = new StringMessageCodec(lineMessageCodec);
+	}
+	
+	@Override
+	public void onMessage(String message) {
+		if(StringUtils.isNotEmpty(message) && StringUtils.isNotEmpty(message.strip())) {
+			// 忽略请求行和请求头
+			return;
+		}
+		final byte[] body = MetricsContext.getInstance().exposition().getBytes(StandardCharsets.UTF_8);
+		final byte[] header = String.format(HEADER, body.length).getBytes(StandardCharsets.UTF_8);
+		final byte[] response = new byte[header.length + body.length];
+		System.arraycopy(header, 0, response, 0, header.length);
+		System.arraycopy(body, 0, response, header.length, body.length);
+		try {
+			this.send(response);
+		} catch (NetException e) {
+			LOGGER.error("发送系统指标异常", e);
+		} finally {
+			this.close();
+		}
+	}
+	
+}
@@ -0,0 +1,37 @@
+package com.acgist.snail.net.application;
+
+import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.net.TcpServer;
+import com.acgist.snail.utils.NetUtils;
+
+/**
+ * <p>系统指标服务端</p>
+ * <p>只监听本地回环地址，使用HTTP返回文本格式指标：{@code curl http://127.0.0.1:port/metrics}</p>
+ * 
+ * @author acgist
+ */
+public final class MetricsServer extends TcpServer<MetricsMessageHandler> {
+	
+	private static final MetricsServer INSTANCE = new MetricsServer();
+	
+	public static final MetricsServer getInstance() {
+		return INSTANCE;
+	}
+	
+	private MetricsServer() {
+		super("Metrics Server", MetricsMessageHandler.class);
+	}
+	
+	/**
+	 * <p>端口小于等于零时不启动监听</p>
+	 */
+	@Override
+	public boolean listen() {
+		final int port = SystemConfig.getMetricsPort();
+		if(port <= 0) {
+			return false;
+		}
+		return this.listen(NetUtils.LOOPBACK_HOST_ADDRESS, port, ADDR_UNREUSE);
+	}
+	
+}
@@ -0,0 +1,326 @@
+package com.acgist.snail.net.application;
+
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+
+import com.acgist.snail.config.SymbolConfig;
+import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.context.SystemThreadContext;
+import com.acgist.snail.context.wrapper.HeaderWrapper;
+import com.acgist.snail.context.wrapper.HttpHeaderWrapper;
+import com.acgist.snail.logger.Logger;
+import com.acgist.snail.logger.LoggerFactory;
+import com.acgist.snail.net.NetException;
+import com.acgist.snail.net.TcpMessageHandler;
+import com.acgist.snail.net.codec.IMessageDecoder;
+import com.acgist.snail.net.codec.LineMessageCodec;
+import com.acgist.snail.net.codec.StringMessageCodec;
+import com.acgist.snail.net.torrent.TorrentContext;
+import com.acgist.snail.net.torrent.TorrentSession;
+import com.acgist.snail.net.torrent.TorrentStream;
+import com.acgist.snail.utils.StringUtils;
+
+/**
+ * <p>边下边播消息代理</p>
+ * <p>读取到请求结束（空行）时使用边下边播线程池返回文件数据然后关闭连接</p>
+ * <p>读取数据时设置读取位置：读取位置和预读窗口内的Piece优先下载，没有下载的Piece阻塞等待下载完成。</p>
+ * 
+ * @author acgist
+ */
+public final class StreamMessageHandler extends TcpMessageHandler implements IMessageDecoder<String> {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(StreamMessageHandler.class);
+	
+	/**
+	 * <p>单次读取数据最大长度：{@value}</p>
+	 */
+	private static final int MAX_READ_LENGTH = SystemConfig.ONE_MB;
+	/**
+	 * <p>单次等待Piece下载完成超时时间（毫秒）：{@value}</p>
+	 */
+	private static final long AWAIT_TIMEOUT = 5L * SystemConfig.ONE_SECOND_MILLIS;
+	/**
+	 * <p>响应协议：{@value}</p>
+	 */
+	private static final String PROTOCOL = "HTTP/1.1 ";
+	/**
+	 * <p>默认MIME类型：{@value}</p>
+	 */
+	private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+	/**
+	 * <p>边下边播线程池</p>
+	 * <p>读取数据需要等待Piece下载完成：不能使用系统线程池</p>
+	 */
+	private static final ExecutorService EXECUTOR;
+	
+	static {
+		EXECUTOR = SystemThreadContext.newCacheExecutor(0, 60L, SystemThreadContext.SNAIL_THREAD_STREAM);
+		SystemThreadContext.metrics(SystemThreadContext.SNAIL_THREAD_STREAM, EXECUTOR);
+	}
+	
+	/**
+	 * <p>请求内容：请求行和请求头</p>
+	 */
+	private final StringBuilder request;
+	
+	public StreamMessageHandler() {
+		final var lineMessageCodec = new LineMessageCodec(this, SymbolConfig.Symbol.LINE_SEPARATOR.toString());
+		this.messageDecoder = new StringMessageCodec(lineMessageCodec);
+		this.request = new StringBuilder();
+	}
+	
+	@Override
+	public void onMessage(String message) {
+		if(StringUtils.isNotEmpty(message) && StringUtils.isNotEmpty(message.strip())) {
+			this.request.append(message.strip()).append(SymbolConfig.Symbol.LINE_SEPARATOR.toChar());
+			return;
+		}
+		if(this.request.length() == 0) {
+			// 忽略请求之前空行
+			return;
+		}
+		final HeaderWrapper headers = HeaderWrapper.newInstance(this.request.toString());
+		this.request.setLength(0);
+		EXECUTOR.submit(() -> {
+			try {
+				this.response(headers);
+			} catch (NetException e) {
+				LOGGER.debug("边下边播发送数据异常", e);
+			} catch (Exception e) {
+				LOGGER.error("边下边播发送数据异常", e);
+			} finally {
+				this.close();
+			}
+		});
+	}
+	
+	/**
+	 * <p>响应请求</p>
+	 * 
+	 * @param headers 请求头部信息
+	 * 
+	 * @throws NetException 网络异常
+	 */
+	private void response(HeaderWrapper headers) throws NetException {
+		final String[] requestLine = StringUtils.isEmpty(headers.protocol()) ? new String[0] : headers.protocol().split(SymbolConfig.Symbol.SPACE.toString());
+		if(requestLine.length < 2) {
+			this.status("400 Bad Request");
+			return;
+		}
+		final String method = requestLine[0];
+		final boolean head = "HEAD".equalsIgnoreCase(method);
+		if(!head && !"GET".equalsIgnoreCase(method)) {
+			this.status("405 Method Not Allowed");
+			return;
+		}
+		final TorrentSession torrentSession = this.torrentSession(requestLine[1]);
+		final TorrentStream torrentStream = torrentSession == null ? null : torrentSession.torrentStream(this.fileIndex(requestLine[1]));
+		if(torrentStream == null) {
+			this.status("404 Not Found");
+			return;
+		}
+		final long fileSize = torrentStream.fileEndPos() - torrentStream.fileBeginPos();
+		final String rangeHeader = headers.header(HttpHeaderWrapper.HEADER_RANGE);
+		final long[] range = range(rangeHeader, fileSize);
+		final HeaderWrapper response;
+		if(range == null) {
+			response = HeaderWrapper.newBuilder(PROTOCOL + "416 Range Not Satisfiable")
+				.header(HttpHeaderWrapper.HEADER_CONTENT_RANGE, HttpHeaderWrapper.HEADER_VALUE_BYTES + " */" + fileSize);
+			this.send(response, 0L);
+			return;
+		}
+		final long length = range[1] - range[0] + 1;
+		if(rangeHeader == null) {
+			response = HeaderWrapper.newBuilder(PROTOCOL + "200 OK");
+		} else {
+			response = HeaderWrapper.newBuilder(PROTOCOL + "206 Partial Content")
+				.header(HttpHeaderWrapper.HEADER_CONTENT_RANGE, HttpHeaderWrapper.HEADER_VALUE_BYTES + " " + range[0] + "-" + range[1] + "/" + fileSize);
+		}
+		final String contentType = URLConnection.guessContentTypeFromName(torrentStream.filePath());
+		response
+			.header(HttpHeaderWrapper.HEADER_CONTENT_TYPE, contentType == null ? DEFAULT_CONTENT_TYPE : contentType)
+			.header(HttpHeaderWrapper.HEADER_ACCEPT_RANGES, HttpHeaderWrapper.HEADER_VALUE_BYTES);
+		this.send(response, length);
+		if(!head) {
+			this.transfer(torrentSession, torrentStream, range[0], range[1]);
+		}
+	}
+	
+	/**
+	 * <p>发送文件数据</p>
+	 * 
+	 * @param torrentSession BT任务信息
+	 * @param torrentStream 文件流
+	 * @param begin 文件开始偏移（包含）
+	 * @param end 文件结束偏移（包含）
+	 * 
+	 * @throws NetException 网络异常
+	 */
+	private void transfer(TorrentSession torrentSession, TorrentStream torrentStream, long begin, long end) throws NetException {
+		final long pieceLength = torrentSession.torrent().getInfo().getPieceLength();
+		final long fileBeginPos = torrentStream.fileBeginPos();
+		final int lastIndex = (int) ((torrentStream.fileEndPos() - 1) / pieceLength);
+		long position = begin;
+		while(position <= end && this.available()) {
+			final long pos = fileBeginPos + position;
+			final int index = (int) (pos / pieceLength);
+			final int offset = (int) (pos % pieceLength);
+			final int length = (int) Math.min(Math.min(MAX_READ_LENGTH, pieceLength - offset), end - position + 1);
+			torrentSession.deadline(index, lastIndex);
+			while(!torrentSession.await(index, AWAIT_TIMEOUT)) {
+				if(!this.available() || !torrentSession.downloadable()) {
+					LOGGER.debug("边下边播等待Piece失败：{}", index);
+					return;
+				}
+			}
+			final byte[] bytes = torrentSession.read(index, offset, length);
+			if(bytes == null || bytes.length == 0) {
+				LOGGER.debug("边下边播读取Piece失败：{}-{}-{}", index, offset, length);
+				return;
+			}
+			// 发送队列拥塞：等待播放器读取数据
+			while(!this.awaitWritable(AWAIT_TIMEOUT)) {
+				if(!this.available()) {
+					LOGGER.debug("边下边播发送数据失败：{}", index);
+					return;
+				}
+			}
+			this.send(bytes);
+			position += bytes.length;
+		}
+	}
+	
+	/**
+	 * <p>获取BT任务信息</p>
+	 * 
+	 * @param path 请求路径：/infoHashHex/fileIndex
+	 * 
+	 * @return BT任务信息
+	 */
+	private TorrentSession torrentSession(String path) {
+		final String[] paths = paths(path);
+		if(paths.length == 0) {
+			return null;
+		}
+		final TorrentSession torrentSession = TorrentContext.getInstance().torrentSession(paths[0].toLowerCase());
+		if(torrentSession == null || torrentSession.torrent() == null || torrentSession.torrentStreamGroup() == null) {
+			return null;
+		}
+		return torrentSession;
+	}
+	
+	/**
+	 * <p>获取文件索引</p>
+	 * 
+	 * @param path 请求路径：/infoHashHex/fileIndex
+	 * 
+	 * @return 文件索引（没有指定文件索引返回-1：最大文件）
+	 */
+	private int fileIndex(String path) {
+		final String[] paths = paths(path);
+		if(paths.length < 2) {
+			return -1;
+		}
+		try {
+			return Math.max(0, Integer.parseInt(paths[1]));
+		} catch (NumberFormatException e) {
+			// 文件索引格式错误：返回超过文件数量索引
+			return Integer.MAX_VALUE;
+		}
+	}
+	
+	/**
+	 * <p>发送响应头部信息</p>
+	 * 
+	 * @param response 响应头部信息
+	 * @param length 数据长度
+	 * 
+	 * @throws NetException 网络异常
+	 */
+	private void send(HeaderWrapper response, long length) throws NetException {
+		response
+			.header(HttpHeaderWrapper.HEADER_CONTENT_LENGTH, String.valueOf(length))
+			.header("Connection", "close");
+		this.send((response.build() + SymbolConfig.LINE_SEPARATOR_COMPAT).getBytes(StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * <p>发送状态</p>
+	 * 
+	 * @param status 状态
+	 * 
+	 * @throws NetException 网络异常
+	 */
+	private void status(String status) throws NetException {
+		this.send(HeaderWrapper.newBuilder(PROTOCOL + status), 0L);
+	}
+	
+	/**
+	 * <p>拆分请求路径</p>
+	 * 
+	 * @param path 请求路径
+	 * 
+	 * @return 路径
+	 */
+	private static final String[] paths(String path) {
+		final int index = path.indexOf(SymbolConfig.Symbol.QUESTION.toChar());
+		final String value = index < 0 ? path : path.substring(0, index);
+		return Arrays.stream(value.split(SymbolConfig.Symbol.SLASH.toString()))
+			.filter(StringUtils::isNotEmpty)
+			.toArray(String[]::new);
+	}
+	
+	/**
+	 * <p>解析请求范围</p>
+	 * <p>多个范围只使用第一个范围</p>
+	 * 
+	 * @param range 请求范围（null：全部数据）
+	 * @param size 文件大小
+	 * 
+	 * @return 开始偏移（包含）和结束偏移（包含）：范围无效返回null
+	 * 
+	 * @see HttpHeaderWrapper#HEADER_RANGE
+	 */
+	static final long[] range(String range, long size) {
+		if(size <= 0) {
+			return null;
+		}
+		if(range == null) {
+			return new long[] { 0L, size - 1 };
+		}
+		final String prefix = HttpHeaderWrapper.HEADER_VALUE_BYTES + SymbolConfig.Symbol.EQUALS.toString();
+		if(!StringUtils.startsWithIgnoreCase(range.strip(), prefix)) {
+			return null;
+		}
+		String value = range.strip().substring(prefix.length());
+		final int commaIndex = value.indexOf(SymbolConfig.Symbol.COMMA.toChar());
+		if(commaIndex >= 0) {
+			value = value.substring(0, commaIndex);
+		}
+		final int minusIndex = value.indexOf(SymbolConfig.Symbol.MINUS.toChar());
+		if(minusIndex < 0) {
+			return null;
+		}
+		final String beginValue = value.substring(0, minusIndex).strip();
+		final String endValue = value.substring(minusIndex + 1).strip();
+		try {
+			if(beginValue.isEmpty()) {
+				// 最后字节
+				final long suffix = Long.parseLong(endValue);
+				return suffix <= 0 ? null : new long[] { Math.max(0L, size - suffix), size - 1 };
+			}
+			final long begin = Long.parseLong(beginValue);
+			final long end = endValue.isEmpty() ? size - 1 : Math.min(Long.parseLong(endValue), size - 1);
+			if(begin < 0 || begin >= size || begin > end) {
+				return null;
+			}
+			return new long[] { begin, end };
+		} catch (NumberFormatException e) {
+			LOGGER.debug("请求范围格式错误：{}", range, e);
+			return null;
+		}
+	}
+	
+}
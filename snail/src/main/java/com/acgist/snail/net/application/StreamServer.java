@@ -0,0 +1,38 @@
+package com.acgist.snail.net.application;
+
+import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.net.TcpServer;
+import com.acgist.snail.utils.NetUtils;
+
+/**
+ * <p>边下边播服务端</p>
+ * <p>只监听本地回环地址，使用HTTP Range读取BT任务文件：{@code http://127.0.0.1:port/infoHashHex/fileIndex}</p>
+ * <p>没有指定文件索引时读取最大文件</p>
+ * 
+ * @author acgist
+ */
+public final class StreamServer extends TcpServer<StreamMessageHandler> {
+	
+	private static final StreamServer INSTANCE = new StreamServer();
+	
+	public static final StreamServer getInstance() {
+		return INSTANCE;
+	}
+	
+	private StreamServer() {
+		super("Stream Server", StreamMessageHandler.class);
+	}
+	
+	/**
+	 * <p>端口小于等于零时不启动监听</p>
+	 */
+	@Override
+	public boolean listen() {
+		final int port = SystemConfig.getStreamPort();
+		if(port <= 0) {
+			return false;
+		}
+		return this.listen(NetUtils.LOOPBACK_HOST_ADDRESS, port, ADDR_UNREUSE);
+	}
+	
+}
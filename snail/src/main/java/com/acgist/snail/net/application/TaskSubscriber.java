@@ -0,0 +1,391 @@
+package com.acgist.snail.net.application;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.context.ITaskSession;
+import com.acgist.snail.context.ITaskSessionStatus.Status;
+import com.acgist.snail.context.SystemThreadContext;
+import com.acgist.snail.context.TaskContext;
+import com.acgist.snail.format.BEncodeDecoder;
+import com.acgist.snail.format.BEncodeEncoder;
+import com.acgist.snail.logger.Logger;
+import com.acgist.snail.logger.LoggerFactory;
+import com.acgist.snail.net.NetException;
+import com.acgist.snail.net.PacketSizeException;
+import com.acgist.snail.utils.ListUtils;
+import com.acgist.snail.utils.StringUtils;
+
+/**
+ * <p>任务状态订阅</p>
+ * <p>按照订阅周期推送任务状态变化：只推送变化的任务属性，没有变化不推送。</p>
+ * <p>只重新计算状态变化任务（{@link TaskContext#dirtyTasks(long)}）的任务属性，每隔{@link #FULL_INTERVAL}重新计算所有任务属性。</p>
+ * <p>背压：上次推送没有完成时跳过本次推送，变化合并到下次推送；推送超时关闭连接。</p>
+ * 
+ * @author acgist
+ */
+public final class TaskSubscriber {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(TaskSubscriber.class);
+	
+	/**
+	 * <p>最小推送周期（毫秒）：{@value}</p>
+	 */
+	public static final long MIN_INTERVAL = 200L;
+	/**
+	 * <p>最大推送周期（毫秒）：{@value}</p>
+	 */
+	public static final long MAX_INTERVAL = 60L * SystemConfig.ONE_SECOND_MILLIS;
+	/**
+	 * <p>默认推送周期（毫秒）：{@value}</p>
+	 */
+	public static final long DEFAULT_INTERVAL = SystemConfig.ONE_SECOND_MILLIS;
+	/**
+	 * <p>全量计算周期（毫秒）：{@value}</p>
+	 * <p>没有标记状态变化的属性修改（例如：重命名）在全量计算时推送</p>
+	 */
+	public static final long FULL_INTERVAL = 30L * SystemConfig.ONE_SECOND_MILLIS;
+	/**
+	 * <p>推送超时时间（秒）：{@value}</p>
+	 */
+	private static final int SEND_TIMEOUT = SystemConfig.RECEIVE_TIMEOUT;
+	/**
+	 * <p>任务ID：{@value}</p>
+	 */
+	public static final String ID = "id";
+	/**
+	 * <p>推送周期（毫秒）：{@value}</p>
+	 */
+	public static final String INTERVAL = "interval";
+	/**
+	 * <p>任务状态列表：{@value}</p>
+	 */
+	public static final String STATUS = "status";
+	/**
+	 * <p>页码（从零开始）：{@value}</p>
+	 */
+	public static final String PAGE = "page";
+	/**
+	 * <p>每页数量（小于等于零返回所有任务）：{@value}</p>
+	 */
+	public static final String SIZE = "size";
+	/**
+	 * <p>任务总数：{@value}</p>
+	 */
+	public static final String TOTAL = "total";
+	/**
+	 * <p>变化任务列表：{@value}</p>
+	 */
+	public static final String TASKS = "tasks";
+	/**
+	 * <p>移除任务ID列表：{@value}</p>
+	 */
+	public static final String REMOVES = "removes";
+	
+	/**
+	 * <p>系统消息代理</p>
+	 */
+	private final ApplicationMessageHandler handler;
+	/**
+	 * <p>推送周期（毫秒）</p>
+	 */
+	private final long interval;
+	/**
+	 * <p>任务状态过滤（为空订阅所有状态）</p>
+	 */
+	private final Set<Status> statuses;
+	/**
+	 * <p>页码</p>
+	 */
+	private final int page;
+	/**
+	 * <p>每页数量</p>
+	 */
+	private final int size;
+	/**
+	 * <p>已经推送任务属性</p>
+	 * <p>任务ID=任务属性</p>
+	 */
+	private Map<String, Map<String, Object>> snapshots;
+	/**
+	 * <p>正在推送任务属性</p>
+	 */
+	private Map<String, Map<String, Object>> pendings;
+	/**
+	 * <p>已经推送任务总数</p>
+	 */
+	private int total;
+	/**
+	 * <p>正在推送任务总数</p>
+	 */
+	private int pendingTotal;
+	/**
+	 * <p>已经推送状态变化版本</p>
+	 */
+	private long version;
+	/**
+	 * <p>正在推送状态变化版本</p>
+	 */
+	private long pendingVersion;
+	/**
+	 * <p>上次全量计算时间</p>
+	 */
+	private long fullTime;
+	/**
+	 * <p>正在推送是否全量计算</p>
+	 */
+	private boolean pendingFull;
+	/**
+	 * <p>是否正在推送</p>
+	 */
+	private final AtomicBoolean sending;
+	/**
+	 * <p>定时任务</p>
+	 */
+	private volatile ScheduledFuture<?> scheduledFuture;
+	
+	/**
+	 * @param handler 系统消息代理
+	 * @param interval 推送周期（毫秒）
+	 * @param statuses 任务状态过滤
+	 * @param page 页码
+	 * @param size 每页数量
+	 */
+	TaskSubscriber(ApplicationMessageHandler handler, long interval, Set<Status> statuses, int page, int size) {
+		this.handler = handler;
+		this.interval = Math.min(MAX_INTERVAL, Math.max(MIN_INTERVAL, interval));
+		this.statuses = statuses;
+		this.page = Math.max(0, page);
+		this.size = size;
+		this.snapshots = new HashMap<>();
+		this.total = -1;
+		this.sending = new AtomicBoolean(false);
+	}
+	
+	/**
+	 * <p>新建任务状态订阅</p>
+	 * <dl>
+	 * 	<dt>body：Map（B编码）</dt>
+	 * 	<dd>interval：推送周期（毫秒）</dd>
+	 * 	<dd>status：任务状态列表</dd>
+	 * 	<dd>page：页码</dd>
+	 * 	<dd>size：每页数量</dd>
+	 * </dl>
+	 * 
+	 * @param handler 系统消息代理
+	 * @param body 订阅参数
+	 * 
+	 * @return {@link TaskSubscriber}
+	 * 
+	 * @throws PacketSizeException 网络包大小异常
+	 */
+	public static final TaskSubscriber newInstance(ApplicationMessageHandler handler, String body) throws PacketSizeException {
+		final Set<Status> statuses = EnumSet.noneOf(Status.class);
+		if(StringUtils.isEmpty(body)) {
+			return new TaskSubscriber(handler, DEFAULT_INTERVAL, statuses, 0, 0);
+		}
+		final var decoder = BEncodeDecoder.newInstance(body).next();
+		final Long interval = decoder.getLong(INTERVAL);
+		final Long page = decoder.getLong(PAGE);
+		final Long size = decoder.getLong(SIZE);
+		final List<Object> list = decoder.getList(STATUS);
+		for (int index = 0; index < list.size(); index++) {
+			final String name = ListUtils.getString(list, index);
+			for (Status status : Status.values()) {
+				if(status.name().equalsIgnoreCase(name)) {
+					statuses.add(status);
+				}
+			}
+		}
+		return new TaskSubscriber(
+			handler,
+			interval == null ? DEFAULT_INTERVAL : interval,
+			statuses,
+			page == null ? 0 : page.intValue(),
+			size == null ? 0 : size.intValue()
+		);
+	}
+	
+	/**
+	 * <p>开始推送</p>
+	 */
+	public void subscribe() {
+		this.scheduledFuture = SystemThreadContext.scheduledAtFixedDelay(0L, this.interval, TimeUnit.MILLISECONDS, this::push);
+	}
+	
+	/**
+	 * <p>取消推送</p>
+	 */
+	public void unsubscribe() {
+		SystemThreadContext.shutdown(this.scheduledFuture);
+	}
+	
+	/**
+	 * <p>推送任务状态</p>
+	 * <p>推送线程池执行：防止客户端阻塞定时线程</p>
+	 */
+	private void push() {
+		if(!this.handler.available()) {
+			this.unsubscribe();
+			return;
+		}
+		if(!this.sending.compareAndSet(false, true)) {
+			LOGGER.debug("任务状态推送没有完成（跳过推送）：{}", this.handler);
+			return;
+		}
+		SystemThreadContext.submit(() -> {
+			try {
+				final Map<String, Object> delta = this.delta(TaskContext.getInstance());
+				if(delta != null) {
+					final String body = BEncodeEncoder.encodeMapString(delta);
+					this.handler.send(ApplicationMessage.Type.TASK_STATUS.build(body), SEND_TIMEOUT);
+				}
+				this.commit();
+			} catch (NetException e) {
+				LOGGER.error("推送任务状态异常", e);
+				// 推送超时：没有发送完成数据不能继续写入
+				this.unsubscribe();
+				this.handler.close();
+			} catch (Exception e) {
+				LOGGER.error("推送任务状态异常", e);
+				this.reset();
+			} finally {
+				this.sending.set(false);
+			}
+		});
+	}
+	
+	/**
+	 * <p>计算任务状态变化</p>
+	 * <p>超过全量计算周期时重新计算所有任务属性，否则只计算状态变化任务属性。</p>
+	 * 
+	 * @param context 任务上下文
+	 * 
+	 * @return 任务状态变化（没有变化返回null）
+	 */
+	private synchronized Map<String, Object> delta(TaskContext context) {
+		final long nowTime = System.currentTimeMillis();
+		// 先取版本：计算期间的状态变化下次推送
+		this.pendingVersion = context.dirtyVersion();
+		this.pendingFull = nowTime - this.fullTime >= FULL_INTERVAL;
+		final Set<ITaskSession> dirtyTasks = this.pendingFull ? null : context.dirtyTasks(this.version);
+		return this.delta(context.allTask(), dirtyTasks);
+	}
+	
+	/**
+	 * <p>计算任务状态变化（全量计算）</p>
+	 * 
+	 * @param list 任务列表
+	 * 
+	 * @return 任务状态变化（没有变化返回null）
+	 */
+	synchronized Map<String, Object> delta(List<ITaskSession> list) {
+		return this.delta(list, null);
+	}
+	
+	/**
+	 * <p>计算任务状态变化</p>
+	 * <p>变化任务只包含任务ID和变化属性（删除属性设置为空字符串），离开订阅范围的任务放入移除列表。</p>
+	 * <p>没有状态变化并且已经推送的任务直接使用已经推送任务属性</p>
+	 * 
+	 * @param list 任务列表
+	 * @param dirtyTasks 状态变化任务（全量计算：null）
+	 * 
+	 * @return 任务状态变化（没有变化返回null）
+	 */
+	synchronized Map<String, Object> delta(List<ITaskSession> list, Set<ITaskSession> dirtyTasks) {
+		final List<ITaskSession> matches = new ArrayList<>();
+		for (ITaskSession session : list) {
+			if(this.statuses.isEmpty() || this.statuses.contains(session.getStatus())) {
+				matches.add(session);
+			}
+		}
+		final int total = matches.size();
+		final int from = this.size <= 0 ? 0 : (int) Math.min(total, (long) this.page * this.size);
+		final int to = this.size <= 0 ? total : Math.min(total, from + this.size);
+		final Map<String, Map<String, Object>> currents = new HashMap<>();
+		final List<Map<String, Object>> tasks = new ArrayList<>();
+		for (ITaskSession session : matches.subList(from, to)) {
+			final String id = session.getId();
+			final Map<String, Object> snapshot = this.snapshots.get(id);
+			if(snapshot != null && dirtyTasks != null && !dirtyTasks.contains(session)) {
+				currents.put(id, snapshot);
+				continue;
+			}
+			final Map<String, Object> current = session.taskMessage();
+			currents.put(id, current);
+			final Map<String, Object> changes = new LinkedHashMap<>();
+			current.forEach((key, value) -> {
+				if(snapshot == null || !Objects.equals(value, snapshot.get(key))) {
+					changes.put(key, value);
+				}
+			});
+			if(snapshot != null) {
+				snapshot.keySet().stream()
+					.filter(key -> !current.containsKey(key))
+					.forEach(key -> changes.put(key, ""));
+			}
+			if(!changes.isEmpty()) {
+				changes.put(ID, id);
+				tasks.add(changes);
+			}
+		}
+		final List<String> removes = this.snapshots.keySet().stream()
+			.filter(id -> !currents.containsKey(id))
+			.toList();
+		this.pendings = currents;
+		this.pendingTotal = total;
+		if(tasks.isEmpty() && removes.isEmpty() && total == this.total) {
+			return null;
+		}
+		final Map<String, Object> delta = new LinkedHashMap<>();
+		delta.put(TOTAL, total);
+		delta.put(TASKS, tasks);
+		delta.put(REMOVES, removes);
+		return delta;
+	}
+	
+	/**
+	 * <p>推送成功（没有变化）：保存已经推送任务属性</p>
+	 */
+	synchronized void commit() {
+		if(this.pendings != null) {
+			this.snapshots = this.pendings;
+			this.total = this.pendingTotal;
+			this.version = this.pendingVersion;
+			if(this.pendingFull) {
+				this.fullTime = System.currentTimeMillis();
+			}
+			this.pendings = null;
+		}
+	}
+	
+	/**
+	 * <p>推送失败：下次推送全量任务属性</p>
+	 */
+	synchronized void reset() {
+		this.snapshots = new HashMap<>();
+		this.total = -1;
+		this.version = 0L;
+		this.fullTime = 0L;
+		this.pendings = null;
+	}
+	
+	/**
+	 * @return 推送周期（毫秒）
+	 */
+	public long interval() {
+		return this.interval;
+	}
+	
+}
@@ -0,0 +1,197 @@
+package com.acgist.snail.net.codec;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.context.MetricsContext;
+import com.acgist.snail.logger.Logger;
+import com.acgist.snail.logger.LoggerFactory;
+
+/**
+ * <p>直接缓冲区池</p>
+ * <p>按照大小分级（二的幂次方）缓存直接缓冲区，减少直接内存分配以及由此引起的{@code System.gc()}。</p>
+ * <p>使用{@link #acquire(int)}获取缓冲区，消息处理器处理完成之后必须使用{@link #release(ByteBuffer)}归还缓冲区。</p>
+ * <p>注意：消息解码器不能持有接收缓冲区，如果需要保留数据必须复制。</p>
+ * 
+ * @author acgist
+ */
+public final class ByteBufferPool {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ByteBufferPool.class);
+
+	private static final ByteBufferPool INSTANCE = new ByteBufferPool();
+
+	public static final ByteBufferPool getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * <p>最小缓冲区大小：{@value}</p>
+	 */
+	private static final int MIN_LENGTH = SystemConfig.ONE_KB;
+	/**
+	 * <p>最大缓冲区大小：{@value}</p>
+	 * <p>超过最大缓冲区大小直接分配不会缓存</p>
+	 */
+	private static final int MAX_LENGTH = 64 * SystemConfig.ONE_KB;
+	/**
+	 * <p>每个等级最大缓存大小：{@value}</p>
+	 */
+	private static final int MAX_IDLE_LENGTH = 4 * SystemConfig.ONE_MB;
+
+	/**
+	 * <p>缓冲区等级</p>
+	 */
+	private final List<BlockingQueue<ByteBuffer>> pools;
+	/**
+	 * <p>获取次数</p>
+	 */
+	private final AtomicLong acquireCount = new AtomicLong();
+	/**
+	 * <p>归还次数</p>
+	 */
+	private final AtomicLong releaseCount = new AtomicLong();
+	/**
+	 * <p>分配次数</p>
+	 */
+	private final AtomicLong allocateCount = new AtomicLong();
+
+	private ByteBufferPool() {
+		final int size = this.index(MAX_LENGTH) + 1;
+		this.pools = new ArrayList<>(size);
+		for (int index = 0; index < size; index++) {
+			this.pools.add(new ArrayBlockingQueue<>(MAX_IDLE_LENGTH / (MIN_LENGTH << index)));
+		}
+		final MetricsContext metricsContext = MetricsContext.getInstance();
+		metricsContext.gauge("snail_byte_buffer_using", "使用中直接缓冲区数量", this::using);
+		metricsContext.gauge("snail_byte_buffer_idle", "空闲直接缓冲区数量", this::idle);
+		metricsContext.gauge("snail_byte_buffer_idle_length", "空闲直接缓冲区大小（B）", this::idleLength);
+		metricsContext.gauge("snail_byte_buffer_acquire", "直接缓冲区获取次数", this.acquireCount::get);
+		metricsContext.gauge("snail_byte_buffer_allocate", "直接缓冲区分配次数", this.allocateCount::get);
+	}
+
+	/**
+	 * <p>获取缓冲区</p>
+	 * <p>返回缓冲区容量可能大于需要大小：limit等于需要大小</p>
+	 * 
+	 * @param length 缓冲区大小
+	 * 
+	 * @return 缓冲区
+	 */
+	public ByteBuffer acquire(int length) {
+		this.acquireCount.incrementAndGet();
+		if(length > MAX_LENGTH) {
+			this.allocateCount.incrementAndGet();
+			return ByteBuffer.allocateDirect(length);
+		}
+		final int index = this.index(length);
+		ByteBuffer buffer = this.pools.get(index).poll();
+		if(buffer == null) {
+			this.allocateCount.incrementAndGet();
+			buffer = ByteBuffer.allocateDirect(MIN_LENGTH << index);
+		}
+		buffer.clear().limit(length);
+		return buffer;
+	}
+
+	/**
+	 * <p>归还缓冲区</p>
+	 * 
+	 * @param buffer 缓冲区
+	 */
+	public void release(ByteBuffer buffer) {
+		if(buffer == null) {
+			return;
+		}
+		this.releaseCount.incrementAndGet();
+		final int capacity = buffer.capacity();
+		if(!buffer.isDirect() || capacity > MAX_LENGTH || Integer.bitCount(capacity) != 1 || capacity < MIN_LENGTH) {
+			LOGGER.debug("缓冲区不能缓存：{}", buffer);
+			return;
+		}
+		// 缓存已满直接丢弃：等待回收
+		this.pools.get(this.index(capacity)).offer(buffer);
+	}
+
+	/**
+	 * <p>计算缓冲区等级</p>
+	 * 
+	 * @param length 缓冲区大小
+	 * 
+	 * @return 缓冲区等级
+	 */
+	private int index(int length) {
+		if(length <= MIN_LENGTH) {
+			return 0;
+		}
+		// 向上取整到二的幂次方
+		return Integer.SIZE - Integer.numberOfLeadingZeros(length - 1) - Integer.numberOfTrailingZeros(MIN_LENGTH);
+	}
+
+	/**
+	 * <p>获取使用中的缓冲区数量</p>
+	 * <p>所有缓冲区归还之后应该为零：否则表示缓冲区泄漏</p>
+	 * 
+	 * @return 使用中的缓冲区数量
+	 */
+	public long using() {
+		return this.acquireCount.get() - this.releaseCount.get();
+	}
+
+	/**
+	 * <p>获取缓存中的缓冲区数量</p>
+	 * 
+	 * @return 缓存中的缓冲区数量
+	 */
+	public int idle() {
+		int idle = 0;
+		for (BlockingQueue<ByteBuffer> pool : this.pools) {
+			idle += pool.size();
+		}
+		return idle;
+	}
+
+	/**
+	 * <p>获取缓存中的缓冲区大小</p>
+	 * 
+	 * @return 缓存中的缓冲区大小
+	 */
+	public long idleLength() {
+		long length = 0;
+		for (int index = 0; index < this.pools.size(); index++) {
+			length += (long) this.pools.get(index).size() * (MIN_LENGTH << index);
+		}
+		return length;
+	}
+
+	/**
+	 * <p>获取获取次数</p>
+	 * 
+	 * @return 获取次数
+	 */
+	public long acquireCount() {
+		return this.acquireCount.get();
+	}
+
+	/**
+	 * <p>获取分配次数</p>
+	 * <p>获取次数减去分配次数等于缓存命中次数</p>
+	 * 
+	 * @return 分配次数
+	 */
+	public long allocateCount() {
+		return this.allocateCount.get();
+	}
+
+	@Override
+	public String toString() {
+		return "ByteBufferPool[using=" + this.using() + ", idle=" + this.idle() + ", idleLength=" + this.idleLength() +
+			", acquire=" + this.acquireCount.get() + ", allocate=" + this.allocateCount.get() + "]";
+	}
+
+}
@@ -9,7 +9,6 @@ import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
-import java.util.Arrays;
 import java.util.Map;
 
 import javax.net.ssl.HostnameVerifier;
@@ -388,14 +387,8 @@ public final class HttpClient {
 	public byte[] responseToBytes() throws NetException {
 		final var input = this.response();
 		try {
-			final int size = input.available();
-			final var bytes = new byte[size];
-			final int length = input.read(bytes);
-			if(length == size) {
-				return bytes;
-			} else {
-				return Arrays.copyOf(bytes, length);
-			}
+			// 读取全部数据：available只是不阻塞可以读取的长度
+			return input.readAllBytes();
 		} catch (IOException e) {
 			throw new NetException(e);
 		} finally {
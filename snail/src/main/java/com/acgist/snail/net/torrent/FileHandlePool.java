@@ -0,0 +1,255 @@
+package com.acgist.snail.net.torrent;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.acgist.snail.config.DownloadConfig;
+import com.acgist.snail.context.MetricsContext;
+import com.acgist.snail.context.MetricsContext.Counter;
+import com.acgist.snail.logger.Logger;
+import com.acgist.snail.logger.LoggerFactory;
+import com.acgist.snail.utils.FileUtils;
+import com.acgist.snail.utils.IoUtils;
+
+/**
+ * <p>文件句柄池</p>
+ * <p>所有文件流共用文件句柄：第一次读写时打开文件，超过最大数量时关闭最久没有使用的文件句柄。</p>
+ * <p>每个文件句柄使用独立的锁：关闭文件句柄时等待正在进行的读写完成，不用获取文件流的锁（防止死锁）。</p>
+ * 
+ * @author acgist
+ */
+public final class FileHandlePool {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(FileHandlePool.class);
+	
+	/**
+	 * <p>文件句柄模式：{@value}</p>
+	 */
+	private static final String HANDLE_MODE = "rw";
+	/**
+	 * <p>文件句柄命中指标</p>
+	 */
+	private static final Counter HANDLE_HIT = MetricsContext.getInstance().counter("snail_file_handle_hit", "文件句柄命中次数");
+	/**
+	 * <p>文件句柄没有命中指标</p>
+	 */
+	private static final Counter HANDLE_MISS = MetricsContext.getInstance().counter("snail_file_handle_miss", "文件句柄没有命中次数");
+	/**
+	 * <p>文件句柄淘汰指标</p>
+	 */
+	private static final Counter HANDLE_EVICT = MetricsContext.getInstance().counter("snail_file_handle_evict", "文件句柄淘汰次数");
+	
+	/**
+	 * <p>单例依赖静态变量：必须最后初始化</p>
+	 */
+	private static final FileHandlePool INSTANCE = new FileHandlePool();
+	
+	public static final FileHandlePool getInstance() {
+		return INSTANCE;
+	}
+	
+	/**
+	 * <p>文件句柄</p>
+	 * <p>文件路径=文件句柄（访问顺序）</p>
+	 */
+	private final Map<String, Handle> handles;
+	
+	private FileHandlePool() {
+		this.handles = new LinkedHashMap<>(16, 0.75F, true);
+		MetricsContext.getInstance().gauge("snail_file_handle_size", "文件句柄数量", this::size);
+	}
+	
+	/**
+	 * <p>读取文件数据</p>
+	 * 
+	 * @param path 文件路径
+	 * @param seek 文件偏移
+	 * @param bytes 数据
+	 * 
+	 * @return 读取数据长度
+	 * 
+	 * @throws IOException IO异常
+	 */
+	public int read(String path, long seek, byte[] bytes) throws IOException {
+		return this.read(path, seek, bytes, 0, bytes.length);
+	}
+	
+	/**
+	 * <p>读取文件数据</p>
+	 * 
+	 * @param path 文件路径
+	 * @param seek 文件偏移
+	 * @param bytes 数据
+	 * @param offset 数据偏移
+	 * @param length 数据长度
+	 * 
+	 * @return 读取数据长度（文件结束返回：-1）
+	 * 
+	 * @throws IOException IO异常
+	 */
+	public int read(String path, long seek, byte[] bytes, int offset, int length) throws IOException {
+		while(true) {
+			final Handle handle = this.handle(path);
+			synchronized (handle) {
+				// 文件句柄已经淘汰：重新获取
+				if(handle.open()) {
+					handle.file.seek(seek);
+					return handle.file.read(bytes, offset, length);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * <p>写入文件数据</p>
+	 * 
+	 * @param path 文件路径
+	 * @param seek 文件偏移
+	 * @param bytes 数据
+	 * @param offset 数据偏移
+	 * @param length 数据长度
+	 * 
+	 * @throws IOException IO异常
+	 */
+	public void write(String path, long seek, byte[] bytes, int offset, int length) throws IOException {
+		while(true) {
+			final Handle handle = this.handle(path);
+			synchronized (handle) {
+				// 文件句柄已经淘汰：重新获取
+				if(handle.open()) {
+					handle.file.seek(seek);
+					handle.file.write(bytes, offset, length);
+					return;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * <p>关闭文件句柄</p>
+	 * 
+	 * @param path 文件路径
+	 */
+	public void close(String path) {
+		final Handle handle;
+		synchronized (this.handles) {
+			handle = this.handles.remove(path);
+		}
+		if(handle != null) {
+			handle.close();
+		}
+	}
+	
+	/**
+	 * <p>获取文件句柄数量</p>
+	 * 
+	 * @return 文件句柄数量
+	 */
+	public int size() {
+		synchronized (this.handles) {
+			return this.handles.size();
+		}
+	}
+	
+	/**
+	 * <p>获取文件句柄</p>
+	 * <p>超过最大数量时淘汰最久没有使用的文件句柄：淘汰文件句柄在池锁外关闭</p>
+	 * 
+	 * @param path 文件路径
+	 * 
+	 * @return 文件句柄
+	 */
+	private Handle handle(String path) {
+		final Handle handle;
+		final List<Handle> evicts = new ArrayList<>();
+		synchronized (this.handles) {
+			final Handle old = this.handles.get(path);
+			if(old != null) {
+				HANDLE_HIT.increment();
+				return old;
+			}
+			HANDLE_MISS.increment();
+			handle = new Handle(path);
+			this.handles.put(path, handle);
+			final int maxSize = Math.max(1, DownloadConfig.getFileHandles());
+			final Iterator<Handle> iterator = this.handles.values().iterator();
+			while(this.handles.size() > maxSize && iterator.hasNext()) {
+				final Handle evict = iterator.next();
+				if(evict != handle) {
+					iterator.remove();
+					evicts.add(evict);
+				}
+			}
+		}
+		evicts.forEach(evict -> {
+			HANDLE_EVICT.increment();
+			LOGGER.debug("淘汰文件句柄：{}", evict.path);
+			evict.close();
+		});
+		return handle;
+	}
+	
+	/**
+	 * <p>文件句柄</p>
+	 * 
+	 * @author acgist
+	 */
+	private static final class Handle {
+		
+		/**
+		 * <p>文件路径</p>
+		 */
+		private final String path;
+		/**
+		 * <p>文件</p>
+		 */
+		private RandomAccessFile file;
+		/**
+		 * <p>是否关闭</p>
+		 */
+		private boolean closed;
+		
+		/**
+		 * @param path 文件路径
+		 */
+		private Handle(String path) {
+			this.path = path;
+		}
+		
+		/**
+		 * <p>打开文件</p>
+		 * <p>调用前需要获取文件句柄锁</p>
+		 * 
+		 * @return 是否打开成功（文件句柄已经淘汰返回false）
+		 * 
+		 * @throws IOException IO异常
+		 */
+		private boolean open() throws IOException {
+			if(this.closed) {
+				return false;
+			}
+			if(this.file == null) {
+				FileUtils.buildParentFolder(this.path);
+				this.file = new RandomAccessFile(this.path, HANDLE_MODE);
+			}
+			return true;
+		}
+		
+		/**
+		 * <p>关闭文件</p>
+		 * <p>RandomAccessFile没有用户空间缓存：写入数据已经交给系统，直接关闭不会丢失数据。</p>
+		 */
+		private synchronized void close() {
+			this.closed = true;
+			IoUtils.close(this.file);
+			this.file = null;
+		}
+		
+	}
+	
+}
@@ -1,7 +1,9 @@
 package com.acgist.snail.net.torrent;
 
 import java.io.Serializable;
+import java.util.Arrays;
 
+import com.acgist.snail.config.SystemConfig;
 import com.acgist.snail.net.DownloadException;
 import com.acgist.snail.protocol.Protocol;
 import com.acgist.snail.utils.Base32Utils;
@@ -45,6 +47,22 @@ public final class InfoHash implements Serializable {
 	 * @see #infoHash
 	 */
 	private final String infoHashUrl;
+	/**
+	 * <p>种子info数据Hash（v2：SHA-256）</p>
+	 * <p>v1种子为空</p>
+	 */
+	private byte[] infoHashV2;
+	/**
+	 * <p>种子info数据截断Hash（v2：SHA-256前20字节）</p>
+	 * <p>v2种子使用截断Hash加入DHT、Tracker和Peer握手</p>
+	 */
+	private byte[] truncatedInfoHash;
+	/**
+	 * <p>种子info数据截断Hash（HEX小写）</p>
+	 * 
+	 * @see #truncatedInfoHash
+	 */
+	private String truncatedInfoHashHex;
 	
 	/**
 	 * @param infoHash infoHash
@@ -63,9 +81,35 @@ public final class InfoHash implements Serializable {
 	 * @return {@link InfoHash}
 	 */
 	public static final InfoHash newInstance(byte[] data) {
-		final InfoHash infoHash = new InfoHash(DigestUtils.sha1(data));
+		return newInstance(data, true, false);
+	}
+	
+	/**
+	 * <p>生成InfoHash</p>
+	 * <p>混合种子：v1 Hash作为任务Hash，v2截断Hash作为别名。</p>
+	 * <p>v2种子：v2截断Hash作为任务Hash。</p>
+	 * 
+	 * @param data 种子Info
+	 * @param v1 是否支持v1
+	 * @param v2 是否支持v2
+	 * 
+	 * @return {@link InfoHash}
+	 */
+	public static final InfoHash newInstance(byte[] data, boolean v1, boolean v2) {
+		byte[] infoHashV2 = null;
+		byte[] truncatedInfoHash = null;
+		if(v2) {
+			infoHashV2 = DigestUtils.sha256(data);
+			truncatedInfoHash = Arrays.copyOf(infoHashV2, SystemConfig.SHA1_HASH_LENGTH);
+		}
+		final InfoHash infoHash = new InfoHash(v1 || !v2 ? DigestUtils.sha1(data) : truncatedInfoHash);
 		infoHash.info = data;
 		infoHash.size = data.length;
+		if(v2) {
+			infoHash.infoHashV2 = infoHashV2;
+			infoHash.truncatedInfoHash = truncatedInfoHash;
+			infoHash.truncatedInfoHashHex = StringUtils.hex(truncatedInfoHash);
+		}
 		return infoHash;
 	}
 	
@@ -155,6 +199,43 @@ public final class InfoHash implements Serializable {
 		return this.infoHashUrl;
 	}
 	
+	/**
+	 * <p>获取种子info数据Hash（v2：SHA-256）</p>
+	 * 
+	 * @return 种子info数据Hash（v2：SHA-256）
+	 */
+	public byte[] infoHashV2() {
+		return this.infoHashV2;
+	}
+	
+	/**
+	 * <p>获取种子info数据截断Hash（v2）</p>
+	 * 
+	 * @return 种子info数据截断Hash（v2）
+	 */
+	public byte[] truncatedInfoHash() {
+		return this.truncatedInfoHash;
+	}
+	
+	/**
+	 * <p>获取种子info数据截断Hash（HEX小写）</p>
+	 * 
+	 * @return 种子info数据截断Hash（HEX小写）
+	 */
+	public String truncatedInfoHashHex() {
+		return this.truncatedInfoHashHex;
+	}
+	
+	/**
+	 * <p>判断是否是混合种子</p>
+	 * <p>混合种子需要同时加入v1和v2网络</p>
+	 * 
+	 * @return 是否是混合种子
+	 */
+	public boolean hybrid() {
+		return this.truncatedInfoHash != null && !Arrays.equals(this.infoHash, this.truncatedInfoHash);
+	}
+	
 	@Override
 	public String toString() {
 		return BeanUtils.toString(this, this.infoHashHex);
@@ -0,0 +1,157 @@
+package com.acgist.snail.net.torrent;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.acgist.snail.config.DownloadConfig;
+import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.context.MetricsContext;
+import com.acgist.snail.context.MetricsContext.Counter;
+
+/**
+ * <p>Piece数据块池</p>
+ * <p>Piece数据使用固定大小数据块保存：收到数据时申请数据块，Piece写出或者下载失败时归还数据块。</p>
+ * <p>所有任务共用Piece内存：超过Piece内存时暂停挑选Piece（已经挑选的Piece继续下载）</p>
+ * <p>Piece内存只统计下载中的Piece：部分下载Piece和写入文件流缓存的Piece分别使用各自的限制</p>
+ * 
+ * @author acgist
+ */
+public final class PieceBufferPool {
+	
+	/**
+	 * <p>数据块大小：{@value}</p>
+	 */
+	public static final int BLOCK_LENGTH = TorrentPiece.SLICE_LENGTH;
+	/**
+	 * <p>空闲数据块最大数据大小：{@value}</p>
+	 */
+	private static final long MAX_IDLE_LENGTH = 64L * SystemConfig.ONE_MB;
+	/**
+	 * <p>数据块复用指标</p>
+	 */
+	private static final Counter BLOCK_HIT = MetricsContext.getInstance().counter("snail_piece_buffer_hit", "Piece数据块复用次数");
+	/**
+	 * <p>数据块新建指标</p>
+	 */
+	private static final Counter BLOCK_MISS = MetricsContext.getInstance().counter("snail_piece_buffer_miss", "Piece数据块新建次数");
+	/**
+	 * <p>Piece内存不足指标</p>
+	 */
+	private static final Counter BUDGET_REJECT = MetricsContext.getInstance().counter("snail_piece_buffer_reject", "Piece内存不足暂停挑选次数");
+	
+	/**
+	 * <p>单例依赖静态变量：必须最后初始化</p>
+	 */
+	private static final PieceBufferPool INSTANCE = new PieceBufferPool();
+	
+	public static final PieceBufferPool getInstance() {
+		return INSTANCE;
+	}
+	
+	/**
+	 * <p>空闲数据块</p>
+	 */
+	private final Queue<byte[]> blocks;
+	/**
+	 * <p>空闲数据块数量</p>
+	 */
+	private final AtomicInteger idleSize;
+	/**
+	 * <p>使用中Piece数据大小</p>
+	 */
+	private final AtomicLong usedLength;
+	
+	private PieceBufferPool() {
+		this.blocks = new ConcurrentLinkedQueue<>();
+		this.idleSize = new AtomicInteger(0);
+		this.usedLength = new AtomicLong(0L);
+		MetricsContext.getInstance().gauge("snail_piece_buffer_used", "使用中Piece数据大小（B）", this.usedLength::get);
+		MetricsContext.getInstance().gauge("snail_piece_buffer_idle", "空闲Piece数据块数量", this.idleSize::get);
+	}
+	
+	/**
+	 * <p>判断是否可以挑选Piece</p>
+	 * <p>使用中Piece数据大小超过Piece内存时暂停挑选</p>
+	 * 
+	 * @return 是否可以挑选Piece
+	 */
+	public boolean available() {
+		if(this.usedLength.get() < DownloadConfig.getPieceMemoryByte()) {
+			return true;
+		}
+		BUDGET_REJECT.increment();
+		return false;
+	}
+	
+	/**
+	 * <p>占用Piece内存</p>
+	 * 
+	 * @param length Piece数据长度
+	 */
+	public void reserve(int length) {
+		this.usedLength.addAndGet(length);
+	}
+	
+	/**
+	 * <p>释放Piece内存</p>
+	 * 
+	 * @param length Piece数据长度
+	 */
+	public void release(int length) {
+		this.usedLength.addAndGet(-length);
+	}
+	
+	/**
+	 * <p>申请数据块</p>
+	 * 
+	 * @return 数据块
+	 */
+	public byte[] allocate() {
+		final byte[] block = this.blocks.poll();
+		if(block == null) {
+			BLOCK_MISS.increment();
+			return new byte[BLOCK_LENGTH];
+		}
+		BLOCK_HIT.increment();
+		this.idleSize.decrementAndGet();
+		return block;
+	}
+	
+	/**
+	 * <p>归还数据块</p>
+	 * <p>空闲数据块超过最大数据大小时直接丢弃</p>
+	 * 
+	 * @param block 数据块
+	 */
+	public void recycle(byte[] block) {
+		if(block == null || block.length != BLOCK_LENGTH) {
+			return;
+		}
+		if((long) this.idleSize.get() * BLOCK_LENGTH >= MAX_IDLE_LENGTH) {
+			return;
+		}
+		this.idleSize.incrementAndGet();
+		this.blocks.offer(block);
+	}
+	
+	/**
+	 * <p>获取使用中Piece数据大小</p>
+	 * 
+	 * @return 使用中Piece数据大小
+	 */
+	public long usedLength() {
+		return this.usedLength.get();
+	}
+	
+	/**
+	 * <p>获取空闲数据块数量</p>
+	 * 
+	 * @return 空闲数据块数量
+	 */
+	public int idleSize() {
+		return this.idleSize.get();
+	}
+	
+}
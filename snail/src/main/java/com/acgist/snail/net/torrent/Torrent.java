@@ -2,13 +2,19 @@ package com.acgist.snail.net.torrent;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
+import com.acgist.snail.config.SystemConfig;
 import com.acgist.snail.format.BEncodeDecoder;
+import com.acgist.snail.logger.Logger;
+import com.acgist.snail.logger.LoggerFactory;
+import com.acgist.snail.utils.MerkleUtils;
 import com.acgist.snail.utils.NetUtils;
 import com.acgist.snail.utils.StringUtils;
 
@@ -21,6 +27,8 @@ public final class Torrent implements Serializable {
 	
 	private static final long serialVersionUID = 1L;
 	
+	private static final Logger LOGGER = LoggerFactory.getLogger(Torrent.class);
+	
 	/**
 	 * <p>注释：{@value}</p>
 	 */
@@ -57,6 +65,11 @@ public final class Torrent implements Serializable {
 	 * <p>DHT节点：{@value}</p>
 	 */
 	public static final String ATTR_NODES = "nodes";
+	/**
+	 * <p>Piece层级Hash（v2）：{@value}</p>
+	 * <p>文件Hash树根=Piece层级Hash</p>
+	 */
+	public static final String ATTR_PIECE_LAYERS = "piece layers";
 	/**
 	 * <p>DHT节点列表长度：{@value}</p>
 	 */
@@ -98,6 +111,15 @@ public final class Torrent implements Serializable {
 	 * <p>DHT节点列表</p>
 	 */
 	private Map<String, Integer> nodes;
+	/**
+	 * <p>Piece层级Hash（v2）</p>
+	 * <p>文件Hash树根（HEX）=Piece层级Hash</p>
+	 */
+	private Map<String, byte[]> pieceLayers;
+	/**
+	 * <p>文件树文件开始Piece索引（v2）</p>
+	 */
+	private transient int[] fileTreePieces;
 	/**
 	 * <p>InfoHash</p>
 	 * <p>种子文件加载完成保存InfoHash：防止重复计算导致错误</p>
@@ -127,9 +149,193 @@ public final class Torrent implements Serializable {
 		torrent.setAnnounceList(readAnnounceList(decoder.getList(ATTR_ANNOUNCE_LIST)));
 		torrent.setInfo(TorrentInfo.valueOf(decoder.getMap(ATTR_INFO), encoding));
 		torrent.setNodes(readNodes(decoder.getList(ATTR_NODES)));
+		torrent.setPieceLayers(readPieceLayers(decoder.getMap(ATTR_PIECE_LAYERS), torrent.getInfo()));
 		return torrent;
 	}
 	
+	/**
+	 * <p>获取Piece校验数据（Hash）</p>
+	 * <p>优先使用v1校验数据（SHA-1），v2种子使用Piece层级Hash（SHA-256 Hash树）。</p>
+	 * 
+	 * @param index Piece索引
+	 * 
+	 * @return 校验数据（Hash）
+	 */
+	public byte[] pieceHash(int index) {
+		final byte[] pieces = this.info.getPieces();
+		if(pieces == null) {
+			return this.pieceHashV2(index);
+		}
+		final byte[] pieceHash = new byte[SystemConfig.SHA1_HASH_LENGTH];
+		System.arraycopy(pieces, index * SystemConfig.SHA1_HASH_LENGTH, pieceHash, 0, SystemConfig.SHA1_HASH_LENGTH);
+		return pieceHash;
+	}
+	
+	/**
+	 * <p>获取Piece层级Hash（v2）</p>
+	 * <p>文件小于等于Piece大小时Piece层级Hash就是文件Hash树根</p>
+	 * 
+	 * @param index Piece索引
+	 * 
+	 * @return Piece层级Hash（没有返回null）
+	 */
+	public byte[] pieceHashV2(int index) {
+		final int position = this.fileTreePosition(index);
+		if(position < 0) {
+			return null;
+		}
+		final TorrentFile file = this.info.getFileTree().get(position);
+		final byte[] piecesRoot = file.getPiecesRoot();
+		if(piecesRoot == null) {
+			return null;
+		}
+		if(file.getLength() <= this.info.getPieceLength()) {
+			return piecesRoot;
+		}
+		final byte[] layer = this.pieceLayer(piecesRoot);
+		if(layer == null) {
+			return null;
+		}
+		final int pos = (index - this.fileTreePieces[position]) * SystemConfig.SHA256_HASH_LENGTH;
+		return Arrays.copyOfRange(layer, pos, pos + SystemConfig.SHA256_HASH_LENGTH);
+	}
+	
+	/**
+	 * <p>获取Piece文件数据长度（v2）</p>
+	 * <p>文件最后一块Piece不足Piece大小时不含后面填充数据</p>
+	 * 
+	 * @param index Piece索引
+	 * 
+	 * @return 文件数据长度（没有返回-1）
+	 */
+	public int pieceLengthV2(int index) {
+		final TorrentFile file = this.fileTreeFile(index);
+		if(file == null) {
+			return -1;
+		}
+		final long pieceLength = this.info.getPieceLength();
+		return (int) Math.min(pieceLength, file.getLength() - this.fileTreePieceIndex(index) * pieceLength);
+	}
+	
+	/**
+	 * <p>获取Piece层级Hash叶子节点数量（v2）</p>
+	 * 
+	 * @param index Piece索引
+	 * 
+	 * @return 叶子节点数量
+	 * 
+	 * @see MerkleUtils#pieceLeafs(long, long)
+	 */
+	public int pieceLeafsV2(int index) {
+		final TorrentFile file = this.fileTreeFile(index);
+		return file == null ? 0 : MerkleUtils.pieceLeafs(this.info.getPieceLength(), file.getLength());
+	}
+	
+	/**
+	 * <p>获取Piece所在文件（v2）</p>
+	 * 
+	 * @param index Piece索引
+	 * 
+	 * @return 文件（没有返回null）
+	 */
+	public TorrentFile fileTreeFile(int index) {
+		final int position = this.fileTreePosition(index);
+		return position < 0 ? null : this.info.getFileTree().get(position);
+	}
+	
+	/**
+	 * <p>获取Piece在文件内的Piece索引（v2）</p>
+	 * 
+	 * @param index Piece索引
+	 * 
+	 * @return 文件内Piece索引（没有返回-1）
+	 */
+	public int fileTreePieceIndex(int index) {
+		final int position = this.fileTreePosition(index);
+		return position < 0 ? -1 : index - this.fileTreePieces[position];
+	}
+	
+	/**
+	 * <p>获取Piece索引（v2）</p>
+	 * 
+	 * @param piecesRoot 文件Hash树根
+	 * @param index 文件内Piece索引
+	 * 
+	 * @return Piece索引（没有返回-1）
+	 */
+	public int pieceIndex(byte[] piecesRoot, int index) {
+		final List<TorrentFile> fileTree = this.info.getFileTree();
+		if(!this.info.v2() || index < 0) {
+			return -1;
+		}
+		this.buildFileTreePieces();
+		for (int position = 0; position < fileTree.size(); position++) {
+			if(Arrays.equals(piecesRoot, fileTree.get(position).getPiecesRoot())) {
+				final int begin = this.fileTreePieces[position];
+				final int end = position + 1 < this.fileTreePieces.length ? this.fileTreePieces[position + 1] : this.info.pieceSize();
+				return begin + index < end ? begin + index : -1;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * <p>获取文件Piece层级Hash（v2）</p>
+	 * 
+	 * @param piecesRoot 文件Hash树根
+	 * 
+	 * @return Piece层级Hash（没有返回null）
+	 */
+	public byte[] pieceLayer(byte[] piecesRoot) {
+		if(this.pieceLayers == null || piecesRoot == null) {
+			return null;
+		}
+		return this.pieceLayers.get(StringUtils.hex(piecesRoot));
+	}
+	
+	/**
+	 * <p>获取Piece所在文件树文件位置</p>
+	 * 
+	 * @param index Piece索引
+	 * 
+	 * @return 文件树文件位置（没有返回-1）
+	 */
+	private int fileTreePosition(int index) {
+		if(!this.info.v2() || index < 0 || index >= this.info.pieceSize()) {
+			return -1;
+		}
+		this.buildFileTreePieces();
+		int position = Arrays.binarySearch(this.fileTreePieces, index);
+		if(position < 0) {
+			position = -position - 2;
+		} else {
+			// 空文件没有Piece：开始索引相同选择最后一个文件
+			while(position + 1 < this.fileTreePieces.length && this.fileTreePieces[position + 1] == index) {
+				position++;
+			}
+		}
+		return position < 0 ? -1 : position;
+	}
+	
+	/**
+	 * <p>计算文件树文件开始Piece索引</p>
+	 * <p>v2文件按照Piece对齐：每个文件占用Piece数量等于文件大小除以Piece大小向上取整</p>
+	 */
+	private void buildFileTreePieces() {
+		if(this.fileTreePieces != null) {
+			return;
+		}
+		final long pieceLength = this.info.getPieceLength();
+		final List<TorrentFile> fileTree = this.info.getFileTree();
+		final int[] fileTreePieces = new int[fileTree.size()];
+		int index = 0;
+		for (int position = 0; position < fileTreePieces.length; position++) {
+			fileTreePieces[position] = index;
+			index += (int) ((fileTree.get(position).getLength() + pieceLength - 1) / pieceLength);
+		}
+		this.fileTreePieces = fileTreePieces;
+	}
+	
 	/**
 	 * <p>获取任务名称</p>
 	 * 
@@ -178,6 +384,44 @@ public final class Torrent implements Serializable {
 			.collect(Collectors.toList());
 	}
 	
+	/**
+	 * <p>读取Piece层级Hash（v2）</p>
+	 * <p>B编码解码键值使用字符串（二进制键值不能还原）：使用Piece层级Hash计算文件Hash树根匹配文件</p>
+	 * 
+	 * @param pieceLayers Piece层级Hash数据
+	 * @param info 文件信息
+	 * 
+	 * @return Piece层级Hash
+	 */
+	private static final Map<String, byte[]> readPieceLayers(Map<String, Object> pieceLayers, TorrentInfo info) {
+		final Map<String, byte[]> map = new HashMap<>();
+		if(pieceLayers == null || pieceLayers.isEmpty() || !info.v2()) {
+			return map;
+		}
+		final long pieceLength = info.getPieceLength();
+		final byte[] padding = MerkleUtils.padding(Long.numberOfTrailingZeros(pieceLength / MerkleUtils.LEAF_LENGTH));
+		final Map<String, Long> roots = info.getFileTree().stream()
+			.filter(file -> file.getPiecesRoot() != null && file.getLength() > pieceLength)
+			.collect(Collectors.toMap(file -> StringUtils.hex(file.getPiecesRoot()), TorrentFile::getLength, (a, b) -> a));
+		for (Object value : pieceLayers.values()) {
+			if(!(value instanceof byte[] layer) || layer.length % SystemConfig.SHA256_HASH_LENGTH != 0) {
+				continue;
+			}
+			final byte[][] hashs = new byte[layer.length / SystemConfig.SHA256_HASH_LENGTH][];
+			for (int index = 0; index < hashs.length; index++) {
+				hashs[index] = Arrays.copyOfRange(layer, index * SystemConfig.SHA256_HASH_LENGTH, (index + 1) * SystemConfig.SHA256_HASH_LENGTH);
+			}
+			final String root = StringUtils.hex(MerkleUtils.root(hashs, 0, padding));
+			final Long length = roots.get(root);
+			if(length != null && (length + pieceLength - 1) / pieceLength == hashs.length) {
+				map.put(root, layer);
+			} else {
+				LOGGER.warn("Piece层级Hash校验失败：{}", root);
+			}
+		}
+		return map;
+	}
+	
 	/**
 	 * <p>读取DHT节点列表</p>
 	 * 
@@ -379,6 +623,24 @@ public final class Torrent implements Serializable {
 		this.nodes = nodes;
 	}
 	
+	/**
+	 * <p>获取Piece层级Hash（v2）</p>
+	 * 
+	 * @return Piece层级Hash（v2）
+	 */
+	public Map<String, byte[]> getPieceLayers() {
+		return this.pieceLayers;
+	}
+	
+	/**
+	 * <p>设置Piece层级Hash（v2）</p>
+	 * 
+	 * @param pieceLayers Piece层级Hash（v2）
+	 */
+	public void setPieceLayers(Map<String, byte[]> pieceLayers) {
+		this.pieceLayers = pieceLayers;
+	}
+	
 	@Override
 	public String toString() {
 		// TODO：实现
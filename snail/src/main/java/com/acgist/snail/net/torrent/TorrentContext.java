@@ -38,9 +38,15 @@ public final class TorrentContext implements IContext {
 	 * <p>InfoHashHex=BT任务信息</p>
 	 */
 	private final Map<String, TorrentSession> torrentSessions;
+	/**
+	 * <p>混合种子别名</p>
+	 * <p>截断InfoHashHex（v2）=InfoHashHex</p>
+	 */
+	private final Map<String, String> aliases;
 	
 	private TorrentContext() {
 		this.torrentSessions = new ConcurrentHashMap<>();
+		this.aliases = new ConcurrentHashMap<>();
 	}
 	
 	/**
@@ -72,7 +78,25 @@ public final class TorrentContext implements IContext {
 	 * @return BT任务信息
 	 */
 	public TorrentSession torrentSession(String infoHashHex) {
-		return this.torrentSessions.get(infoHashHex);
+		final TorrentSession torrentSession = this.torrentSessions.get(infoHashHex);
+		if(torrentSession != null || infoHashHex == null) {
+			return torrentSession;
+		}
+		final String alias = this.aliases.get(infoHashHex);
+		return alias == null ? null : this.torrentSessions.get(alias);
+	}
+	
+	/**
+	 * <p>注册混合种子别名</p>
+	 * <p>使用截断InfoHash（v2）握手、查找和声明的Peer关联到同一个BT任务</p>
+	 * 
+	 * @param infoHash InfoHash
+	 */
+	public void alias(InfoHash infoHash) {
+		if(infoHash != null && infoHash.hybrid()) {
+			LOGGER.debug("注册混合种子别名：{}-{}", infoHash.infoHashHex(), infoHash.truncatedInfoHashHex());
+			this.aliases.put(infoHash.truncatedInfoHashHex(), infoHash.infoHashHex());
+		}
 	}
 	
 	/**
@@ -84,6 +108,7 @@ public final class TorrentContext implements IContext {
 	 */
 	public TorrentSession remove(String infoHashHex) {
 		LOGGER.debug("删除BT任务信息：{}", infoHashHex);
+		this.aliases.values().removeIf(value -> value.equals(infoHashHex));
 		return this.torrentSessions.remove(infoHashHex);
 	}
 	
@@ -95,7 +120,7 @@ public final class TorrentContext implements IContext {
 	 * @return 是否存在
 	 */
 	public boolean exist(String infoHashHex) {
-		return this.torrentSessions.containsKey(infoHashHex);
+		return this.torrentSession(infoHashHex) != null;
 	}
 
 	/**
@@ -154,6 +179,7 @@ public final class TorrentContext implements IContext {
 		if(torrentSession == null) {
 			torrentSession = TorrentSession.newInstance(infoHash, torrent);
 			this.torrentSessions.put(infoHashHex, torrentSession);
+			this.alias(infoHash);
 		}
 		return torrentSession;
 	}
@@ -181,7 +207,7 @@ public final class TorrentContext implements IContext {
 			final var torrent = Torrent.valueOf(decoder);
 			// 直接转储原始信息：防止顺序不对导致种子Hash计算错误
 			final var info = decoder.getMap(Torrent.ATTR_INFO);
-			final var infoHash = InfoHash.newInstance(BEncodeEncoder.encodeMap(info));
+			final var infoHash = InfoHash.newInstance(BEncodeEncoder.encodeMap(info), torrent.getInfo().v1(), torrent.getInfo().v2());
 			torrent.infoHash(infoHash);
 			return torrent;
 		} catch (NetException | IOException e) {
@@ -0,0 +1,220 @@
+package com.acgist.snail.net.torrent;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.logger.Logger;
+import com.acgist.snail.logger.LoggerFactory;
+
+/**
+ * <p>时间敏感Piece队列</p>
+ * <p>边下边播：播放器读取位置和预读窗口内的Piece设置截止时间，选择Piece时按照截止时间优先选择。</p>
+ * <p>超过截止时间没有下载完成的Piece允许较快的Peer重复下载</p>
+ * <p>多个播放器同时读取同一个任务时以最后读取位置为准</p>
+ * 
+ * @author acgist
+ */
+public final class TorrentDeadline {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(TorrentDeadline.class);
+	
+	/**
+	 * <p>预读窗口大小（B）：{@value}</p>
+	 */
+	private static final int READ_AHEAD_LENGTH = 16 * SystemConfig.ONE_MB;
+	/**
+	 * <p>预读窗口最小Piece数量：{@value}</p>
+	 */
+	private static final int MIN_READ_AHEAD_SIZE = 2;
+	/**
+	 * <p>相邻Piece截止时间间隔（毫秒）：{@value}</p>
+	 */
+	private static final long DEADLINE_INTERVAL = SystemConfig.ONE_SECOND_MILLIS;
+	/**
+	 * <p>超时Piece最大重复下载次数：{@value}</p>
+	 */
+	private static final int MAX_REPEAT_SIZE = 2;
+	
+	/**
+	 * <p>文件流组</p>
+	 */
+	private final TorrentStreamGroup torrentStreamGroup;
+	/**
+	 * <p>预读窗口Piece数量</p>
+	 */
+	private final int readAheadSize;
+	/**
+	 * <p>截止时间</p>
+	 * <p>Piece索引=截止时间</p>
+	 */
+	private final Map<Integer, Long> deadlines;
+	/**
+	 * <p>超时Piece重复下载次数</p>
+	 * <p>Piece索引=重复下载次数</p>
+	 */
+	private final Map<Integer, Integer> repeats;
+	
+	/**
+	 * @param pieceLength Piece大小
+	 * @param torrentStreamGroup 文件流组
+	 */
+	private TorrentDeadline(long pieceLength, TorrentStreamGroup torrentStreamGroup) {
+		this.torrentStreamGroup = torrentStreamGroup;
+		this.readAheadSize = (int) Math.max(MIN_READ_AHEAD_SIZE, READ_AHEAD_LENGTH / pieceLength);
+		this.deadlines = new TreeMap<>();
+		this.repeats = new HashMap<>();
+	}
+	
+	/**
+	 * <p>新建时间敏感Piece队列</p>
+	 * 
+	 * @param pieceLength Piece大小
+	 * @param torrentStreamGroup 文件流组
+	 * 
+	 * @return {@link TorrentDeadline}
+	 */
+	public static final TorrentDeadline newInstance(long pieceLength, TorrentStreamGroup torrentStreamGroup) {
+		return new TorrentDeadline(pieceLength, torrentStreamGroup);
+	}
+	
+	/**
+	 * <p>设置读取位置</p>
+	 * <p>移除预读窗口以外的Piece，预读窗口内没有截止时间的Piece按照距离设置截止时间。</p>
+	 * 
+	 * @param index 读取位置Piece索引
+	 * @param lastIndex 文件最后Piece索引
+	 */
+	public void position(int index, int lastIndex) {
+		final int endIndex = Math.min(lastIndex, index + this.readAheadSize - 1);
+		final long now = System.currentTimeMillis();
+		synchronized (this.deadlines) {
+			this.deadlines.keySet().removeIf(key -> key < index || key > endIndex);
+			this.repeats.keySet().removeIf(key -> !this.deadlines.containsKey(key));
+			for (int pos = index; pos <= endIndex; pos++) {
+				if(!this.torrentStreamGroup.hasPiece(pos)) {
+					this.deadlines.putIfAbsent(pos, now + (pos - index + 1) * DEADLINE_INTERVAL);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * <p>挑选时间敏感Piece</p>
+	 * <p>按照截止时间挑选没有下载的Piece，较快的Peer可以重复下载超时Piece。</p>
+	 * 
+	 * @param peerPieces Peer已经下载Piece位图
+	 * @param fastPeer 是否是较快的Peer
+	 * 
+	 * @return 下载Piece（没有匹配返回null）
+	 */
+	public TorrentPiece pick(BitSet peerPieces, boolean fastPeer) {
+		final List<Map.Entry<Integer, Long>> list;
+		synchronized (this.deadlines) {
+			if(this.deadlines.isEmpty()) {
+				return null;
+			}
+			list = new ArrayList<>(this.deadlines.entrySet());
+		}
+		list.sort(Map.Entry.comparingByValue());
+		final long now = System.currentTimeMillis();
+		for (Map.Entry<Integer, Long> entry : list) {
+			final int index = entry.getKey();
+			if(!peerPieces.get(index)) {
+				continue;
+			}
+			TorrentPiece piece = this.torrentStreamGroup.pick(index, false);
+			if(piece == null && fastPeer && entry.getValue() < now && this.repeat(index)) {
+				LOGGER.debug("重复下载超时Piece：{}", index);
+				piece = this.torrentStreamGroup.pick(index, true);
+			}
+			if(piece != null) {
+				return piece;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * <p>判断超时Piece是否可以重复下载</p>
+	 * 
+	 * @param index Piece索引
+	 * 
+	 * @return 是否可以重复下载
+	 */
+	private boolean repeat(int index) {
+		synchronized (this.deadlines) {
+			final int size = this.repeats.getOrDefault(index, 0);
+			if(size >= MAX_REPEAT_SIZE) {
+				return false;
+			}
+			this.repeats.put(index, size + 1);
+			return true;
+		}
+	}
+	
+	/**
+	 * <p>Piece下载完成：移除截止时间并唤醒等待读取线程</p>
+	 * 
+	 * @param index Piece索引
+	 */
+	public void done(int index) {
+		synchronized (this.deadlines) {
+			this.deadlines.remove(index);
+			this.repeats.remove(index);
+			this.deadlines.notifyAll();
+		}
+	}
+	
+	/**
+	 * <p>等待Piece下载完成</p>
+	 * 
+	 * @param index Piece索引
+	 * @param timeout 超时时间（毫秒）
+	 * 
+	 * @return 是否下载完成
+	 */
+	public boolean await(int index, long timeout) {
+		final long endTime = System.currentTimeMillis() + timeout;
+		synchronized (this.deadlines) {
+			long wait;
+			while(!this.torrentStreamGroup.hasPiece(index) && (wait = endTime - System.currentTimeMillis()) > 0) {
+				try {
+					this.deadlines.wait(wait);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					LOGGER.debug("线程等待异常", e);
+					break;
+				}
+			}
+		}
+		return this.torrentStreamGroup.hasPiece(index);
+	}
+	
+	/**
+	 * <p>获取时间敏感Piece数量</p>
+	 * 
+	 * @return 时间敏感Piece数量
+	 */
+	public int size() {
+		synchronized (this.deadlines) {
+			return this.deadlines.size();
+		}
+	}
+	
+	/**
+	 * <p>释放资源：唤醒等待读取线程</p>
+	 */
+	public void release() {
+		synchronized (this.deadlines) {
+			this.deadlines.clear();
+			this.repeats.clear();
+			this.deadlines.notifyAll();
+		}
+	}
+	
+}
@@ -31,6 +31,15 @@ public final class TorrentFile extends TorrentFileMatedata implements Serializab
 	 * <p>注意：不用显示（不能直接排除防止计算文件偏移错误）</p>
 	 */
 	public static final String PADDING_FILE_PREFIX = "_____padding_file";
+	/**
+	 * <p>填充文件目录：{@value}</p>
+	 * <p>协议链接：http://www.bittorrent.org/beps/bep_0047.html</p>
+	 */
+	public static final String PADDING_FILE_PATH = ".pad";
+	/**
+	 * <p>填充文件属性：{@value}</p>
+	 */
+	public static final String ATTR_PADDING = "p";
 	/**
 	 * <p>文件路径：{@value}</p>
 	 */
@@ -39,6 +48,14 @@ public final class TorrentFile extends TorrentFileMatedata implements Serializab
 	 * <p>文件路径（UTF8）：{@value}</p>
 	 */
 	public static final String ATTR_PATH_UTF8 = "path.utf-8";
+	/**
+	 * <p>文件属性：{@value}</p>
+	 */
+	public static final String ATTR_ATTR = "attr";
+	/**
+	 * <p>文件Hash树根（v2）：{@value}</p>
+	 */
+	public static final String ATTR_PIECES_ROOT = "pieces root";
 	
 	/**
 	 * <p>路径</p>
@@ -48,6 +65,15 @@ public final class TorrentFile extends TorrentFileMatedata implements Serializab
 	 * <p>路径（UTF8）</p>
 	 */
 	private List<String> pathUtf8;
+	/**
+	 * <p>文件属性</p>
+	 */
+	private String attr;
+	/**
+	 * <p>文件Hash树根（v2）</p>
+	 * <p>空文件没有Hash树根</p>
+	 */
+	private byte[] piecesRoot;
 	/**
 	 * <p>是否选择下载</p>
 	 */
@@ -80,7 +106,46 @@ public final class TorrentFile extends TorrentFileMatedata implements Serializab
 		final List<Object> pathUtf8 = MapUtils.getList(map, ATTR_PATH_UTF8);
 		final List<String> pathUtf8List = readPath(pathUtf8, SystemConfig.CHARSET_UTF8);
 		file.setPathUtf8(pathUtf8List);
-		file.paddingFile = readPaddingFile(pathList, pathUtf8List);
+		file.setAttr(MapUtils.getString(map, ATTR_ATTR));
+		file.paddingFile = readPaddingFile(pathList, pathUtf8List, file.attr);
+		return file;
+	}
+	
+	/**
+	 * <p>读取文件信息（v2）</p>
+	 * 
+	 * @param path 文件路径（文件树路径）
+	 * @param map 文件信息
+	 * 
+	 * @return 文件信息
+	 */
+	public static final TorrentFile valueOf(List<String> path, Map<?, ?> map) {
+		Objects.requireNonNull(map, "文件信息为空");
+		final TorrentFile file = new TorrentFile();
+		file.setLength(MapUtils.getLong(map, ATTR_LENGTH));
+		file.setPath(path);
+		file.setPathUtf8(path);
+		file.setAttr(MapUtils.getString(map, ATTR_ATTR));
+		file.setPiecesRoot(MapUtils.getBytes(map, ATTR_PIECES_ROOT));
+		file.paddingFile = readPaddingFile(path, path, file.attr);
+		return file;
+	}
+	
+	/**
+	 * <p>新建填充文件</p>
+	 * 
+	 * @param length 文件大小
+	 * 
+	 * @return 填充文件
+	 */
+	public static final TorrentFile padding(long length) {
+		final TorrentFile file = new TorrentFile();
+		final List<String> path = List.of(PADDING_FILE_PATH, String.valueOf(length));
+		file.setLength(length);
+		file.setPath(path);
+		file.setPathUtf8(path);
+		file.setAttr(ATTR_PADDING);
+		file.paddingFile = true;
 		return file;
 	}
 
@@ -154,10 +219,14 @@ public final class TorrentFile extends TorrentFileMatedata implements Serializab
 	 * 
 	 * @param pathList 路径
 	 * @param pathUtf8List 路径（UTF-8）
+	 * @param attr 文件属性
 	 * 
 	 * @return 是否是填充文件
 	 */
-	private static final boolean readPaddingFile(List<String> pathList, List<String> pathUtf8List) {
+	private static final boolean readPaddingFile(List<String> pathList, List<String> pathUtf8List, String attr) {
+		if(attr != null && attr.contains(ATTR_PADDING)) {
+			return true;
+		}
 		String fileName = null;
 		if(CollectionUtils.isNotEmpty(pathUtf8List)) {
 			fileName = pathUtf8List.get(pathUtf8List.size() - 1);
@@ -203,6 +272,42 @@ public final class TorrentFile extends TorrentFileMatedata implements Serializab
 		this.pathUtf8 = pathUtf8;
 	}
 
+	/**
+	 * <p>获取文件属性</p>
+	 * 
+	 * @return 文件属性
+	 */
+	public String getAttr() {
+		return this.attr;
+	}
+	
+	/**
+	 * <p>设置文件属性</p>
+	 * 
+	 * @param attr 文件属性
+	 */
+	public void setAttr(String attr) {
+		this.attr = attr;
+	}
+	
+	/**
+	 * <p>获取文件Hash树根（v2）</p>
+	 * 
+	 * @return 文件Hash树根（v2）
+	 */
+	public byte[] getPiecesRoot() {
+		return this.piecesRoot;
+	}
+	
+	/**
+	 * <p>设置文件Hash树根（v2）</p>
+	 * 
+	 * @param piecesRoot 文件Hash树根（v2）
+	 */
+	public void setPiecesRoot(byte[] piecesRoot) {
+		this.piecesRoot = piecesRoot;
+	}
+	
 	@Override
 	public String toString() {
 		// TODO：实现
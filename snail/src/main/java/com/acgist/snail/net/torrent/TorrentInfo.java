@@ -8,6 +8,7 @@ import java.util.Objects;
 import java.util.stream.Collectors;
 
 import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.utils.CollectionUtils;
 import com.acgist.snail.utils.MapUtils;
 
 /**
@@ -23,6 +24,11 @@ public final class TorrentInfo extends TorrentFileMatedata implements Serializab
 	 * <p>私有种子：{@value}</p>
 	 */
 	public static final byte PRIVATE_TORRENT = 1;
+	/**
+	 * <p>种子版本（v2）：{@value}</p>
+	 * <p>协议链接：http://www.bittorrent.org/beps/bep_0052.html</p>
+	 */
+	public static final byte META_VERSION_V2 = 2;
 	/**
 	 * <p>文件名称：{@value}</p>
 	 */
@@ -63,6 +69,18 @@ public final class TorrentInfo extends TorrentFileMatedata implements Serializab
 	 * <p>文件列表：{@value}</p>
 	 */
 	public static final String ATTR_FILES = "files";
+	/**
+	 * <p>种子版本：{@value}</p>
+	 */
+	public static final String ATTR_META_VERSION = "meta version";
+	/**
+	 * <p>文件树（v2）：{@value}</p>
+	 */
+	public static final String ATTR_FILE_TREE = "file tree";
+	/**
+	 * <p>文件树文件信息键值：{@value}</p>
+	 */
+	private static final String FILE_TREE_FILE = "";
 	
 	/**
 	 * <p>名称</p>
@@ -110,6 +128,17 @@ public final class TorrentInfo extends TorrentFileMatedata implements Serializab
 	 * <p>多文件种子使用（单文件种子为空）</p>
 	 */
 	private List<TorrentFile> files;
+	/**
+	 * <p>种子版本</p>
+	 * 
+	 * @see #META_VERSION_V2
+	 */
+	private Long metaVersion;
+	/**
+	 * <p>文件树文件列表（v2）</p>
+	 * <p>文件树顺序（不含填充文件）</p>
+	 */
+	private List<TorrentFile> fileTree;
 
 	protected TorrentInfo() {
 	}
@@ -138,6 +167,17 @@ public final class TorrentInfo extends TorrentFileMatedata implements Serializab
 		info.setPublisherUrlUtf8(MapUtils.getString(map, ATTR_PUBLISHER_URL_UTF8));
 		info.setPrivateTorrent(MapUtils.getLong(map, ATTR_PRIVATE));
 		info.setFiles(readFiles(MapUtils.getList(map, ATTR_FILES), encoding));
+		info.setMetaVersion(MapUtils.getLong(map, ATTR_META_VERSION));
+		info.setFileTree(readFileTree(MapUtils.getMap(map, ATTR_FILE_TREE), new ArrayList<>(), new ArrayList<>()));
+		if(info.v2() && !info.v1()) {
+			if(info.singleFileTree()) {
+				// v2单文件种子：文件树只有一个根文件（不用创建任务名称目录）
+				info.setLength(info.fileTree.get(0).getLength());
+			} else {
+				// v2种子：文件按照Piece对齐（添加填充文件）兼容v1文件偏移（混合种子v1文件已经对齐）
+				info.setFiles(info.alignFiles());
+			}
+		}
 		return info;
 	}
 	
@@ -147,7 +187,41 @@ public final class TorrentInfo extends TorrentFileMatedata implements Serializab
 	 * @return Piece数量
 	 */
 	public int pieceSize() {
-		return this.pieces.length / SystemConfig.SHA1_HASH_LENGTH;
+		if(this.pieces != null) {
+			return this.pieces.length / SystemConfig.SHA1_HASH_LENGTH;
+		}
+		final long totalLength = this.files().stream().mapToLong(TorrentFile::getLength).sum();
+		return (int) ((totalLength + this.pieceLength - 1) / this.pieceLength);
+	}
+	
+	/**
+	 * <p>判断是否支持v1</p>
+	 * 
+	 * @return 是否支持v1
+	 */
+	public boolean v1() {
+		return this.pieces != null;
+	}
+	
+	/**
+	 * <p>判断是否支持v2</p>
+	 * 
+	 * @return 是否支持v2
+	 */
+	public boolean v2() {
+		return
+			this.metaVersion != null &&
+			this.metaVersion.byteValue() == META_VERSION_V2 &&
+			CollectionUtils.isNotEmpty(this.fileTree);
+	}
+	
+	/**
+	 * <p>判断是否是混合种子（同时支持v1和v2）</p>
+	 * 
+	 * @return 是否是混合种子
+	 */
+	public boolean hybrid() {
+		return this.v1() && this.v2();
 	}
 	
 	/**
@@ -189,6 +263,64 @@ public final class TorrentInfo extends TorrentFileMatedata implements Serializab
 		}
 	}
 	
+	/**
+	 * <p>判断文件树是否是单文件（v2）</p>
+	 * <p>文件树只有一个根文件：文件路径只有文件名称</p>
+	 * 
+	 * @return 是否是单文件
+	 */
+	private boolean singleFileTree() {
+		return this.fileTree.size() == 1 && this.fileTree.get(0).getPath().size() == 1;
+	}
+	
+	/**
+	 * <p>文件按照Piece对齐</p>
+	 * <p>v2文件开始偏移总是Piece开始偏移：除了最后一个文件每个文件后面填充到Piece大小</p>
+	 * 
+	 * @return 文件列表
+	 */
+	private List<TorrentFile> alignFiles() {
+		final List<TorrentFile> list = new ArrayList<>();
+		final int size = this.fileTree.size();
+		for (int index = 0; index < size; index++) {
+			final TorrentFile file = this.fileTree.get(index);
+			list.add(file);
+			final long remaining = file.getLength() % this.pieceLength;
+			if(remaining != 0 && index < size - 1) {
+				list.add(TorrentFile.padding(this.pieceLength - remaining));
+			}
+		}
+		return list;
+	}
+	
+	/**
+	 * <p>读取文件树文件列表</p>
+	 * 
+	 * @param tree 文件树
+	 * @param path 当前路径
+	 * @param list 文件列表
+	 * 
+	 * @return 文件列表
+	 */
+	private static final List<TorrentFile> readFileTree(Map<String, Object> tree, List<String> path, List<TorrentFile> list) {
+		if(tree == null) {
+			return list;
+		}
+		tree.forEach((key, value) -> {
+			if(!(value instanceof Map<?, ?> map)) {
+				return;
+			}
+			if(FILE_TREE_FILE.equals(key)) {
+				list.add(TorrentFile.valueOf(List.copyOf(path), map));
+			} else {
+				path.add(key);
+				readFileTree(MapUtils.getMap(tree, key), path, list);
+				path.remove(path.size() - 1);
+			}
+		});
+		return list;
+	}
+	
 	/**
 	 * <p>读取多文件种子文件列表</p>
 	 * 
@@ -387,6 +519,42 @@ public final class TorrentInfo extends TorrentFileMatedata implements Serializab
 		this.files = files;
 	}
 	
+	/**
+	 * <p>获取种子版本</p>
+	 * 
+	 * @return 种子版本
+	 */
+	public Long getMetaVersion() {
+		return this.metaVersion;
+	}
+	
+	/**
+	 * <p>设置种子版本</p>
+	 * 
+	 * @param metaVersion 种子版本
+	 */
+	public void setMetaVersion(Long metaVersion) {
+		this.metaVersion = metaVersion;
+	}
+	
+	/**
+	 * <p>获取文件树文件列表（v2）</p>
+	 * 
+	 * @return 文件树文件列表（v2）
+	 */
+	public List<TorrentFile> getFileTree() {
+		return this.fileTree;
+	}
+	
+	/**
+	 * <p>设置文件树文件列表（v2）</p>
+	 * 
+	 * @param fileTree 文件树文件列表（v2）
+	 */
+	public void setFileTree(List<TorrentFile> fileTree) {
+		this.fileTree = fileTree;
+	}
+	
 	@Override
 	public String toString() {
 		// TODO：实现
@@ -1,5 +1,6 @@
 package com.acgist.snail.net.torrent;
 
+import com.acgist.snail.config.PeerBanConfig;
 import com.acgist.snail.config.PeerConfig;
 import com.acgist.snail.context.Initializer;
 import com.acgist.snail.net.torrent.peer.PeerServer;
@@ -24,6 +25,7 @@ public final class TorrentInitializer extends Initializer {
 	protected void init() {
 		UtpContext.getInstance();
 		PeerConfig.getInstance();
+		PeerBanConfig.getInstance();
 		PeerServer.getInstance();
 		TorrentServer.getInstance();
 	}
@@ -33,6 +35,7 @@ public final class TorrentInitializer extends Initializer {
 		UtpContext.getInstance().close();
 		PeerServer.getInstance().close();
 		TorrentServer.getInstance().close();
+		PeerBanConfig.getInstance().persistent();
 	}
 
 }
@@ -1,15 +1,22 @@
 package com.acgist.snail.net.torrent;
 
+import java.io.IOException;
+import java.security.MessageDigest;
 import java.util.Arrays;
+import java.util.BitSet;
 
 import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.net.torrent.peer.PeerSession;
 import com.acgist.snail.utils.BeanUtils;
 import com.acgist.snail.utils.DigestUtils;
+import com.acgist.snail.utils.MerkleUtils;
+import com.acgist.snail.utils.NumberUtils;
 
 /**
  * Piece下载信息
  * Piece一般大小设置为512KB、256KB、1MB，目前已知最大16MB。
  * BT任务基于文件下载，当某个Piece处于两个文件交接处时会被分为两次下载。
+ * Piece数据使用数据块池的数据块保存：收到数据时申请数据块，引用全部释放时归还数据块。
  * 
  * @author acgist
  */
@@ -41,19 +48,41 @@ public final class TorrentPiece {
 	 */
 	private final int length;
 	/**
-	 * <p>数据</p>
+	 * <p>数据块</p>
+	 * <p>数据块大小：{@link #SLICE_LENGTH}</p>
 	 * 
-	 * TODO：使用直接内存文件读写使用NIO优化（没太大必要毕竟下载最重要的问题是网络IO）
+	 * @see PieceBufferPool
 	 */
-	private final byte[] data;
+	private final byte[][] buffers;
+	/**
+	 * <p>数据块来源</p>
+	 * <p>断点续传恢复的数据块没有来源：智能禁用不会记录</p>
+	 */
+	private final PeerSession[] sources;
 	/**
 	 * <p>校验数据</p>
 	 */
 	private final byte[] hash;
+	/**
+	 * <p>Piece层级Hash叶子节点数量（v2）</p>
+	 * 
+	 * @see MerkleUtils#pieceLeafs(long, long)
+	 */
+	private final int leafs;
 	/**
 	 * <p>是否校验</p>
 	 */
 	private final boolean verify;
+	/**
+	 * <p>数据块Hash（v2）</p>
+	 * <p>已知数据块Hash时收到数据块立即校验</p>
+	 */
+	private volatile byte[][] blockHashs;
+	/**
+	 * <p>已经下载数据块位图</p>
+	 * <p>数据块大小：{@link #SLICE_LENGTH}</p>
+	 */
+	private final BitSet blocks;
 	/**
 	 * <p>已经下载数据大小</p>
 	 */
@@ -62,6 +91,18 @@ public final class TorrentPiece {
 	 * <p>Piece数据内偏移</p>
 	 */
 	private int position;
+	/**
+	 * <p>引用数量</p>
+	 * <p>下载Peer持有一个引用，文件流缓存持有一个引用，引用全部释放时归还数据块。</p>
+	 */
+	private int references;
+	/**
+	 * <p>是否占用Piece内存</p>
+	 * <p>只有下载中的Piece占用Piece内存：保存部分下载Piece或者写入文件流缓存时释放</p>
+	 * 
+	 * @see PieceBufferPool#available()
+	 */
+	private boolean reserved;
 	
 	/**
 	 * @param pieceLength Piece大小
@@ -69,19 +110,26 @@ public final class TorrentPiece {
 	 * @param begin Piece开始偏移
 	 * @param end Piece结束偏移
 	 * @param hash 校验数据
+	 * @param leafs Piece层级Hash叶子节点数量（v2）
 	 * @param verify 是否校验
 	 */
-	private TorrentPiece(long pieceLength, int index, int begin, int end, byte[] hash, boolean verify) {
+	private TorrentPiece(long pieceLength, int index, int begin, int end, byte[] hash, int leafs, boolean verify) {
 		this.pieceLength = pieceLength;
 		this.index = index;
 		this.begin = begin;
 		this.end = end;
 		this.hash = hash;
+		this.leafs = leafs;
 		this.verify = verify;
 		this.length = end - begin;
-		this.data = new byte[this.length];
+		this.buffers = new byte[NumberUtils.ceilDiv(this.length, SLICE_LENGTH)][];
+		this.sources = new PeerSession[this.buffers.length];
+		this.blocks = new BitSet();
 		this.size = 0;
 		this.position = 0;
+		this.references = 1;
+		this.reserved = true;
+		PieceBufferPool.getInstance().reserve(this.length);
 	}
 
 	/**
@@ -97,7 +145,24 @@ public final class TorrentPiece {
 	 * @return Piece下载信息
 	 */
 	public static final TorrentPiece newInstance(long pieceLength, int index, int begin, int end, byte[] hash, boolean verify) {
-		return new TorrentPiece(pieceLength, index, begin, end, hash, verify);
+		return new TorrentPiece(pieceLength, index, begin, end, hash, 0, verify);
+	}
+	
+	/**
+	 * <p>新建Piece下载信息</p>
+	 * 
+	 * @param pieceLength Piece大小
+	 * @param index Piece索引
+	 * @param begin Piece开始偏移
+	 * @param end Piece结束偏移
+	 * @param hash 校验数据
+	 * @param leafs Piece层级Hash叶子节点数量（v2）
+	 * @param verify 是否校验
+	 * 
+	 * @return Piece下载信息
+	 */
+	public static final TorrentPiece newInstance(long pieceLength, int index, int begin, int end, byte[] hash, int leafs, boolean verify) {
+		return new TorrentPiece(pieceLength, index, begin, end, hash, leafs, verify);
 	}
 	
 	/**
@@ -145,6 +210,7 @@ public final class TorrentPiece {
 	 * @return 是否还有更多的数据请求
 	 */
 	public boolean hasMoreSlice() {
+		this.skip();
 		return this.position < this.length;
 	}
 	
@@ -163,6 +229,7 @@ public final class TorrentPiece {
 	 * @return 整个Piece内偏移
 	 */
 	public int position() {
+		this.skip();
 		return this.begin + this.position;
 	}
 	
@@ -173,6 +240,7 @@ public final class TorrentPiece {
 	 * @return 本次请求数据大小
 	 */
 	public int length() {
+		this.skip();
 		if(this.position >= this.length) {
 			return 0;
 		}
@@ -186,8 +254,50 @@ public final class TorrentPiece {
 		}
 	}
 	
+	/**
+	 * <p>跳过已经下载数据块</p>
+	 */
+	private void skip() {
+		synchronized (this) {
+			while(this.position < this.length && this.blocks.get(this.position / SLICE_LENGTH)) {
+				this.position = Math.min(this.length, this.position + SLICE_LENGTH);
+			}
+		}
+	}
+	
+	/**
+	 * <p>设置数据块Hash（v2）</p>
+	 * 
+	 * @param blockHashs 数据块Hash
+	 */
+	public void blockHashs(byte[][] blockHashs) {
+		this.blockHashs = blockHashs;
+	}
+	
+	/**
+	 * <p>校验Slice数据（v2）</p>
+	 * <p>没有数据块Hash或者Slice没有对齐数据块时不能校验（返回成功）</p>
+	 * 
+	 * @param begin Piece内开始偏移
+	 * @param bytes Slice数据
+	 * 
+	 * @return 是否校验成功
+	 */
+	public boolean verify(final int begin, final byte[] bytes) {
+		final byte[][] blockHashs = this.blockHashs;
+		if(blockHashs == null || begin % SLICE_LENGTH != 0) {
+			return true;
+		}
+		final int index = begin / SLICE_LENGTH;
+		if(index >= blockHashs.length || bytes.length != Math.min(SLICE_LENGTH, this.end - begin)) {
+			return true;
+		}
+		return Arrays.equals(DigestUtils.sha256(bytes), blockHashs[index]);
+	}
+	
 	/**
 	 * <p>写入Slice数据</p>
+	 * <p>Slice必须对齐数据块：没有对齐数据块或者长度错误的数据忽略</p>
 	 * 
 	 * @param begin Piece内开始偏移
 	 * @param bytes Slice数据
@@ -195,20 +305,128 @@ public final class TorrentPiece {
 	 * @return 是否下载完成
 	 */
 	public boolean write(final int begin, final byte[] bytes) {
+		return this.write(begin, bytes, null);
+	}
+	
+	/**
+	 * <p>写入Slice数据</p>
+	 * <p>Slice必须对齐数据块：没有对齐数据块或者长度错误的数据忽略</p>
+	 * 
+	 * @param begin Piece内开始偏移
+	 * @param bytes Slice数据
+	 * @param source 数据来源
+	 * 
+	 * @return 是否下载完成
+	 */
+	public boolean write(final int begin, final byte[] bytes, final PeerSession source) {
 		synchronized (this) {
-			System.arraycopy(bytes, 0, this.data, begin - this.begin, bytes.length);
-			this.size += bytes.length;
+			final int offset = begin - this.begin;
+			final int endOffset = offset + bytes.length;
+			// 只能写入完整数据块：最后数据块可能不足数据块大小
+			if(
+				this.references <= 0 ||
+				offset < 0 ||
+				offset % SLICE_LENGTH != 0 ||
+				bytes.length == 0 ||
+				endOffset > this.length ||
+				(endOffset != this.length && bytes.length % SLICE_LENGTH != 0)
+			) {
+				return this.completed();
+			}
+			for (int pos = 0; pos < bytes.length; pos += SLICE_LENGTH) {
+				this.write((offset + pos) / SLICE_LENGTH, bytes, pos, Math.min(SLICE_LENGTH, bytes.length - pos), source);
+			}
 			return this.completed();
 		}
 	}
 	
+	/**
+	 * <p>写入数据块</p>
+	 * <p>调用前需要获取Piece锁</p>
+	 * 
+	 * @param block 数据块索引
+	 * @param bytes 数据
+	 * @param offset 数据偏移
+	 * @param length 数据长度
+	 * @param source 数据来源
+	 */
+	private void write(final int block, final byte[] bytes, final int offset, final int length, final PeerSession source) {
+		if(this.buffers[block] == null) {
+			this.buffers[block] = PieceBufferPool.getInstance().allocate();
+		}
+		System.arraycopy(bytes, offset, this.buffers[block], 0, length);
+		this.sources[block] = source;
+		// 重复数据块不能重复计算下载大小
+		if(!this.blocks.get(block)) {
+			this.blocks.set(block);
+			this.size += length;
+		}
+	}
+	
+	/**
+	 * <p>恢复部分下载数据</p>
+	 * <p>复制已经下载数据块：重新下载时只请求没有下载的数据块</p>
+	 * <p>恢复的数据块没有来源：数据可能来自其他Peer或者断点续传文件</p>
+	 * 
+	 * @param piece 部分下载Piece
+	 */
+	public void resume(TorrentPiece piece) {
+		if(piece.begin != this.begin || piece.end != this.end) {
+			return;
+		}
+		synchronized (piece) {
+			if(piece.references <= 0) {
+				return;
+			}
+			synchronized (this) {
+				final BitSet blocks = piece.blocks;
+				for (int block = blocks.nextSetBit(0); block >= 0; block = blocks.nextSetBit(block + 1)) {
+					this.write(block, piece.buffers[block], 0, Math.min(SLICE_LENGTH, this.length - block * SLICE_LENGTH), null);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * <p>获取已经下载数据块位图</p>
+	 * 
+	 * @return 已经下载数据块位图
+	 */
+	public BitSet blocks() {
+		synchronized (this) {
+			return (BitSet) this.blocks.clone();
+		}
+	}
+	
+	/**
+	 * <p>获取数据块来源</p>
+	 * 
+	 * @return 数据块来源（没有来源的数据块为null）
+	 */
+	public PeerSession[] sources() {
+		synchronized (this) {
+			return this.sources.clone();
+		}
+	}
+	
+	/**
+	 * <p>获取已经下载数据大小</p>
+	 * 
+	 * @return 已经下载数据大小
+	 */
+	public int downloadSize() {
+		synchronized (this) {
+			return this.size;
+		}
+	}
+	
 	/**
 	 * <p>读取Slice数据</p>
 	 * 
 	 * @param begin Piece内开始偏移
 	 * @param size 长度
 	 * 
-	 * @return Slice数据
+	 * @return Slice数据（数据块已经归还返回null）
 	 */
 	public byte[] read(final int begin, final int size) {
 		if(begin >= this.end) {
@@ -225,28 +443,170 @@ public final class TorrentPiece {
 		}
 		// 当前数据结束偏移
 		int endPos = end - this.begin;
-		if (endPos > this.data.length) {
-			endPos = this.data.length;
+		if (endPos > this.length) {
+			endPos = this.length;
 		}
 		// 读取数据真实长度
 		final int length = endPos - beginPos;
 		final byte[] bytes = new byte[length];
-		System.arraycopy(this.data, beginPos, bytes, 0, length);
+		synchronized (this) {
+			if(this.references <= 0) {
+				return null;
+			}
+			int pos = beginPos;
+			while(pos < endPos) {
+				final int block = pos / SLICE_LENGTH;
+				final int blockOffset = pos % SLICE_LENGTH;
+				final int blockLength = Math.min(SLICE_LENGTH - blockOffset, endPos - pos);
+				// 没有下载的数据块使用零填充
+				if(this.buffers[block] != null) {
+					System.arraycopy(this.buffers[block], blockOffset, bytes, pos - beginPos, blockLength);
+				}
+				pos += blockLength;
+			}
+		}
 		return bytes;
 	}
 	
+	/**
+	 * <p>读取数据块数据</p>
+	 * <p>按照数据块顺序读取：不用复制数据，没有下载的数据块忽略。</p>
+	 * 
+	 * @param offset Piece数据内偏移
+	 * @param length 数据长度
+	 * @param reader 数据块读取器
+	 * 
+	 * @throws IOException IO异常（数据块已经归还）
+	 */
+	public void read(final int offset, final int length, final BlockReader reader) throws IOException {
+		synchronized (this) {
+			if(this.references <= 0) {
+				throw new IOException("Piece数据块已经归还：" + this.index);
+			}
+			final int endPos = Math.min(this.length, offset + length);
+			int pos = Math.max(0, offset);
+			while(pos < endPos) {
+				final int block = pos / SLICE_LENGTH;
+				final int blockOffset = pos % SLICE_LENGTH;
+				final int blockLength = Math.min(SLICE_LENGTH - blockOffset, endPos - pos);
+				if(this.buffers[block] != null) {
+					reader.read(pos, this.buffers[block], blockOffset, blockLength);
+				}
+				pos += blockLength;
+			}
+		}
+	}
+	
 	/**
 	 * <p>校验数据</p>
+	 * <p>v1使用SHA-1校验，v2使用SHA-256 Hash树校验。</p>
 	 * 
 	 * @return 是否校验成功
 	 */
 	public boolean verify() {
 		if(this.verify) {
-			return Arrays.equals(DigestUtils.sha1(this.data), this.hash);
+			if(this.hash.length == SystemConfig.SHA256_HASH_LENGTH) {
+				// 数据块大小等于叶子节点数据长度
+				final MessageDigest digest = DigestUtils.sha256();
+				final byte[][] leafs = new byte[this.buffers.length][];
+				if(!this.digest(digest, (index, bytes) -> leafs[index] = bytes)) {
+					return false;
+				}
+				return Arrays.equals(MerkleUtils.root(leafs, this.leafs, MerkleUtils.padding(0)), this.hash);
+			}
+			final MessageDigest digest = DigestUtils.sha1();
+			synchronized (this) {
+				if(!this.completed() || this.references <= 0) {
+					return false;
+				}
+				for (int block = 0; block < this.buffers.length; block++) {
+					digest.update(this.buffers[block], 0, Math.min(SLICE_LENGTH, this.length - block * SLICE_LENGTH));
+				}
+			}
+			return Arrays.equals(digest.digest(), this.hash);
 		}
 		return true;
 	}
 	
+	/**
+	 * <p>计算数据块Hash</p>
+	 * 
+	 * @param digest 摘要算法
+	 * @param consumer 数据块索引和数据块Hash
+	 * 
+	 * @return 是否计算成功（没有下载完成或者数据块已经归还返回false）
+	 */
+	public boolean digest(MessageDigest digest, BlockDigestConsumer consumer) {
+		synchronized (this) {
+			if(!this.completed() || this.references <= 0) {
+				return false;
+			}
+			for (int block = 0; block < this.buffers.length; block++) {
+				digest.update(this.buffers[block], 0, Math.min(SLICE_LENGTH, this.length - block * SLICE_LENGTH));
+				consumer.accept(block, digest.digest());
+			}
+			return true;
+		}
+	}
+	
+	/**
+	 * <p>增加引用</p>
+	 * 
+	 * @return 是否成功（数据块已经归还返回false）
+	 */
+	public boolean retain() {
+		synchronized (this) {
+			if(this.references <= 0) {
+				return false;
+			}
+			this.references++;
+			return true;
+		}
+	}
+	
+	/**
+	 * <p>释放Piece内存</p>
+	 * <p>不再下载的Piece释放Piece内存（数据块继续使用）：重复释放忽略</p>
+	 */
+	public void unreserve() {
+		synchronized (this) {
+			if(this.reserved) {
+				this.reserved = false;
+				PieceBufferPool.getInstance().release(this.length);
+			}
+		}
+	}
+	
+	/**
+	 * <p>释放引用</p>
+	 * <p>引用全部释放时归还数据块和Piece内存</p>
+	 */
+	public void release() {
+		synchronized (this) {
+			if(this.references <= 0 || --this.references > 0) {
+				return;
+			}
+			final PieceBufferPool pool = PieceBufferPool.getInstance();
+			for (int block = 0; block < this.buffers.length; block++) {
+				pool.recycle(this.buffers[block]);
+				this.buffers[block] = null;
+				this.sources[block] = null;
+			}
+			this.unreserve();
+		}
+	}
+	
+	/**
+	 * <p>判断是否已经归还数据块</p>
+	 * 
+	 * @return 是否已经归还数据块
+	 */
+	public boolean released() {
+		synchronized (this) {
+			return this.references <= 0;
+		}
+	}
+	
 	/**
 	 * <p>判断是否下载完成并且校验成功</p>
 	 * 
@@ -297,11 +657,12 @@ public final class TorrentPiece {
 
 	/**
 	 * <p>获取数据</p>
+	 * <p>复制所有数据块数据：写出数据使用{@link #read(int, int, BlockReader)}</p>
 	 * 
 	 * @return 数据
 	 */
 	public byte[] getData() {
-		return this.data;
+		return this.read(this.begin, this.length);
 	}
 	
 	@Override
@@ -309,4 +670,44 @@ public final class TorrentPiece {
 		return BeanUtils.toString(this, this.index, this.begin, this.end);
 	}
 	
+	/**
+	 * <p>数据块读取器</p>
+	 * 
+	 * @author acgist
+	 */
+	@FunctionalInterface
+	public interface BlockReader {
+		
+		/**
+		 * <p>读取数据块数据</p>
+		 * 
+		 * @param pos Piece数据内偏移
+		 * @param bytes 数据块
+		 * @param offset 数据块内偏移
+		 * @param length 数据长度
+		 * 
+		 * @throws IOException IO异常
+		 */
+		void read(int pos, byte[] bytes, int offset, int length) throws IOException;
+		
+	}
+	
+	/**
+	 * <p>数据块Hash消费者</p>
+	 * 
+	 * @author acgist
+	 */
+	@FunctionalInterface
+	public interface BlockDigestConsumer {
+		
+		/**
+		 * <p>消费数据块Hash</p>
+		 * 
+		 * @param block 数据块索引
+		 * @param hash 数据块Hash
+		 */
+		void accept(int block, byte[] hash);
+		
+	}
+	
 }
@@ -0,0 +1,127 @@
+package com.acgist.snail.net.torrent;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+import com.acgist.snail.context.MetricsContext;
+import com.acgist.snail.context.MetricsContext.Counter;
+import com.acgist.snail.context.MetricsContext.Histogram;
+import com.acgist.snail.context.SystemThreadContext;
+import com.acgist.snail.logger.Logger;
+import com.acgist.snail.logger.LoggerFactory;
+
+/**
+ * <p>Piece校验器</p>
+ * <p>下载完成的Piece交给校验线程池计算Hash，Peer不用等待校验结果可以立即请求下一个Piece。</p>
+ * <p>正在校验Piece数量超过限制时使用调用线程校验：限制等待校验Piece占用内存</p>
+ * 
+ * @author acgist
+ */
+public final class TorrentPieceHasher {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(TorrentPieceHasher.class);
+	
+	/**
+	 * <p>校验线程数量</p>
+	 */
+	private static final int THREAD_SIZE = SystemThreadContext.threadSize(2, 16);
+	/**
+	 * <p>正在校验Piece最大数量</p>
+	 */
+	private static final int MAX_PENDING_SIZE = 4 * THREAD_SIZE;
+	/**
+	 * <p>校验数据大小指标</p>
+	 */
+	private static final Counter HASH_BYTES = MetricsContext.getInstance().counter("snail_piece_hash_bytes", "Piece校验大小（B）");
+	/**
+	 * <p>校验失败指标</p>
+	 */
+	private static final Counter HASH_FAIL = MetricsContext.getInstance().counter("snail_piece_hash_fail", "Piece校验失败次数");
+	/**
+	 * <p>调用线程校验指标</p>
+	 */
+	private static final Counter HASH_CALLER = MetricsContext.getInstance().counter("snail_piece_hash_caller", "Piece调用线程校验次数");
+	/**
+	 * <p>校验耗时指标（微秒）</p>
+	 */
+	private static final Histogram HASH_TIME = MetricsContext.getInstance().histogram(
+		"snail_piece_hash_micros", "Piece校验耗时（微秒）",
+		100L, 500L, 1000L, 5000L, 10000L, 50000L, 100000L, 500000L
+	);
+	
+	/**
+	 * <p>单例依赖静态变量：必须最后初始化</p>
+	 */
+	private static final TorrentPieceHasher INSTANCE = new TorrentPieceHasher();
+	
+	public static final TorrentPieceHasher getInstance() {
+		return INSTANCE;
+	}
+	
+	/**
+	 * <p>校验线程池</p>
+	 */
+	private final ExecutorService executor;
+	/**
+	 * <p>正在校验Piece信号量</p>
+	 */
+	private final Semaphore pendingSemaphore;
+	
+	private TorrentPieceHasher() {
+		this.executor = SystemThreadContext.newExecutor(THREAD_SIZE, THREAD_SIZE, MAX_PENDING_SIZE, 60L, SystemThreadContext.SNAIL_THREAD_HASH);
+		this.pendingSemaphore = new Semaphore(MAX_PENDING_SIZE);
+		SystemThreadContext.metrics(SystemThreadContext.SNAIL_THREAD_HASH, this.executor);
+		MetricsContext.getInstance().gauge("snail_piece_hash_pending", "Piece等待校验数量", () -> MAX_PENDING_SIZE - this.pendingSemaphore.availablePermits());
+	}
+	
+	/**
+	 * <p>异步校验Piece</p>
+	 * <p>校验结果在校验线程回调（正在校验Piece数量超过限制时在调用线程回调）</p>
+	 * 
+	 * @param piece Piece
+	 * @param consumer 校验结果回调
+	 */
+	public void submit(TorrentPiece piece, Consumer<Boolean> consumer) {
+		if(this.pendingSemaphore.tryAcquire()) {
+			try {
+				this.executor.execute(() -> {
+					try {
+						this.verify(piece, consumer);
+					} finally {
+						this.pendingSemaphore.release();
+					}
+				});
+			} catch (Exception e) {
+				LOGGER.error("Piece异步校验异常：{}", piece, e);
+				this.pendingSemaphore.release();
+				this.verify(piece, consumer);
+			}
+		} else {
+			HASH_CALLER.increment();
+			this.verify(piece, consumer);
+		}
+	}
+	
+	/**
+	 * <p>校验Piece</p>
+	 * 
+	 * @param piece Piece
+	 * @param consumer 校验结果回调
+	 */
+	private void verify(TorrentPiece piece, Consumer<Boolean> consumer) {
+		final long begin = System.nanoTime();
+		final boolean success = piece.verify();
+		HASH_TIME.record((System.nanoTime() - begin) / 1000);
+		HASH_BYTES.add(piece.getLength());
+		if(!success) {
+			HASH_FAIL.increment();
+		}
+		try {
+			consumer.accept(success);
+		} catch (Exception e) {
+			LOGGER.error("Piece校验回调异常：{}", piece, e);
+		}
+	}
+	
+}
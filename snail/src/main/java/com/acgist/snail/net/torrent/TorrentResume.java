@@ -0,0 +1,363 @@
+package com.acgist.snail.net.torrent;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.format.BEncodeDecoder;
+import com.acgist.snail.format.BEncodeEncoder;
+import com.acgist.snail.logger.Logger;
+import com.acgist.snail.logger.LoggerFactory;
+import com.acgist.snail.net.PacketSizeException;
+import com.acgist.snail.utils.FileUtils;
+import com.acgist.snail.utils.ListUtils;
+import com.acgist.snail.utils.MapUtils;
+
+/**
+ * <p>部分下载Piece</p>
+ * <p>Piece下载失败时保存已经下载数据块，重新选择Piece时恢复数据块，只下载没有下载的数据块。</p>
+ * <p>任务暂停时保存到断点续传文件并且归还数据块，任务开始下载时加载断点续传文件。</p>
+ * <p>断点续传文件使用B编码：B编码字符串长度有限，数据按照数据块保存。</p>
+ * <p>保存成功的Piece引用交给部分下载Piece管理：删除时归还数据块</p>
+ * 
+ * @author acgist
+ */
+public final class TorrentResume {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(TorrentResume.class);
+	
+	/**
+	 * <p>断点续传文件后缀：{@value}</p>
+	 */
+	public static final String RESUME_SUFFIX = ".resume";
+	/**
+	 * <p>部分下载Piece最大数据大小（内存）：{@value}</p>
+	 */
+	private static final long MAX_LENGTH = 64L * SystemConfig.ONE_MB;
+	/**
+	 * <p>Piece列表：{@value}</p>
+	 */
+	private static final String ATTR_PIECES = "pieces";
+	/**
+	 * <p>Piece索引：{@value}</p>
+	 */
+	private static final String ATTR_INDEX = "index";
+	/**
+	 * <p>Piece开始偏移：{@value}</p>
+	 */
+	private static final String ATTR_BEGIN = "begin";
+	/**
+	 * <p>Piece结束偏移：{@value}</p>
+	 */
+	private static final String ATTR_END = "end";
+	/**
+	 * <p>已经下载数据块位图：{@value}</p>
+	 */
+	private static final String ATTR_BLOCKS = "blocks";
+	/**
+	 * <p>已经下载数据块数据：{@value}</p>
+	 */
+	private static final String ATTR_DATA = "data";
+	
+	/**
+	 * <p>部分下载Piece</p>
+	 * <p>Piece索引和开始偏移=部分下载Piece</p>
+	 */
+	private final Map<Long, TorrentPiece> pieces;
+	/**
+	 * <p>部分下载Piece数据大小</p>
+	 */
+	private long length;
+	/**
+	 * <p>断点续传文件是否含有没有加载的部分下载Piece</p>
+	 */
+	private boolean persisted;
+	
+	private TorrentResume() {
+		this.pieces = new LinkedHashMap<>();
+		this.length = 0L;
+		this.persisted = true;
+	}
+	
+	/**
+	 * <p>新建部分下载Piece</p>
+	 * 
+	 * @return {@link TorrentResume}
+	 */
+	public static final TorrentResume newInstance() {
+		return new TorrentResume();
+	}
+	
+	/**
+	 * <p>保存部分下载Piece</p>
+	 * <p>没有下载数据或者下载完成（可能校验失败）的Piece忽略，超过最大数据大小时删除最早保存的Piece。</p>
+	 * 
+	 * @param piece Piece
+	 * 
+	 * @return 是否保存成功
+	 */
+	public boolean put(TorrentPiece piece) {
+		final int downloadSize = piece.downloadSize();
+		if(downloadSize <= 0 || piece.completed()) {
+			return false;
+		}
+		synchronized (this.pieces) {
+			final TorrentPiece old = this.pieces.get(key(piece));
+			if(old != null && old.downloadSize() >= downloadSize) {
+				// 最后阶段重复下载：保留下载数据较多的Piece
+				return false;
+			}
+			this.delete(old);
+			if(old != null) {
+				old.release();
+			}
+			this.pieces.put(key(piece), piece);
+			this.length += piece.getLength();
+			// 部分下载Piece使用最大数据大小限制：不占用Piece内存
+			piece.unreserve();
+			final Iterator<TorrentPiece> iterator = this.pieces.values().iterator();
+			while(this.length > MAX_LENGTH && iterator.hasNext()) {
+				final TorrentPiece evict = iterator.next();
+				if(evict != piece) {
+					iterator.remove();
+					this.length -= evict.getLength();
+					evict.release();
+				}
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * <p>取出部分下载Piece</p>
+	 * <p>取出的Piece引用交给调用者：使用完成需要释放</p>
+	 * 
+	 * @param piece 选择下载Piece
+	 * 
+	 * @return 部分下载Piece（没有匹配返回null）
+	 */
+	public TorrentPiece remove(TorrentPiece piece) {
+		synchronized (this.pieces) {
+			final TorrentPiece old = this.pieces.get(key(piece));
+			if(old == null || old.getEnd() != piece.getEnd()) {
+				return null;
+			}
+			this.delete(old);
+			return old;
+		}
+	}
+	
+	/**
+	 * <p>删除部分下载Piece</p>
+	 * 
+	 * @param piece 部分下载Piece
+	 */
+	private void delete(TorrentPiece piece) {
+		if(piece != null && this.pieces.remove(key(piece)) != null) {
+			this.length -= piece.getLength();
+		}
+	}
+	
+	/**
+	 * <p>获取部分下载Piece位图</p>
+	 * 
+	 * @return 部分下载Piece位图
+	 */
+	public BitSet pieces() {
+		final BitSet bitSet = new BitSet();
+		synchronized (this.pieces) {
+			this.pieces.values().forEach(piece -> bitSet.set(piece.getIndex()));
+		}
+		return bitSet;
+	}
+	
+	/**
+	 * <p>获取部分下载Piece数量</p>
+	 * 
+	 * @return 部分下载Piece数量
+	 */
+	public int size() {
+		synchronized (this.pieces) {
+			return this.pieces.size();
+		}
+	}
+	
+	/**
+	 * <p>加载断点续传文件</p>
+	 * <p>断点续传文件已经加载时忽略</p>
+	 * 
+	 * @param path 断点续传文件路径
+	 * @param pieceLength Piece大小
+	 */
+	public void load(String path, long pieceLength) {
+		synchronized (this.pieces) {
+			if(!this.persisted) {
+				return;
+			}
+			this.persisted = false;
+			try {
+				for (Object object : this.read(path)) {
+					if(!(object instanceof Map<?, ?> map)) {
+						continue;
+					}
+					final Long index = MapUtils.getLong(map, ATTR_INDEX);
+					final Long begin = MapUtils.getLong(map, ATTR_BEGIN);
+					final Long end = MapUtils.getLong(map, ATTR_END);
+					final byte[] blocks = MapUtils.getBytes(map, ATTR_BLOCKS);
+					final List<Object> datas = MapUtils.getList(map, ATTR_DATA);
+					if(index == null || begin == null || end == null || blocks == null || begin < 0 || end <= begin || end > pieceLength) {
+						continue;
+					}
+					final TorrentPiece piece = TorrentPiece.newInstance(pieceLength, index.intValue(), begin.intValue(), end.intValue(), null, false);
+					final BitSet bitSet = BitSet.valueOf(blocks);
+					int dataIndex = 0;
+					for (int block = bitSet.nextSetBit(0); block >= 0 && dataIndex < datas.size(); block = bitSet.nextSetBit(block + 1)) {
+						final int offset = block * TorrentPiece.SLICE_LENGTH;
+						final byte[] bytes = ListUtils.getBytes(datas, dataIndex++);
+						// 数据块长度错误：忽略
+						if(bytes == null || bytes.length != Math.min(TorrentPiece.SLICE_LENGTH, piece.getLength() - offset)) {
+							continue;
+						}
+						piece.write(piece.getBegin() + offset, bytes);
+					}
+					// 内存中的部分下载Piece较新
+					if(this.pieces.containsKey(key(piece)) || !this.put(piece)) {
+						piece.release();
+					}
+				}
+			} catch (RuntimeException e) {
+				LOGGER.error("加载断点续传文件异常：{}", path, e);
+			}
+			LOGGER.debug("加载部分下载Piece：{}-{}", path, this.pieces.size());
+		}
+	}
+	
+	/**
+	 * <p>保存断点续传文件</p>
+	 * <p>保存以后归还所有部分下载Piece：任务暂停时不再占用内存，开始下载时重新加载。</p>
+	 * <p>已经下载完成的Piece忽略，没有部分下载Piece时删除断点续传文件。</p>
+	 * 
+	 * @param path 断点续传文件路径
+	 * @param completedPieces 已经下载Piece位图
+	 * 
+	 * @see #load(String, long)
+	 */
+	public void persistent(String path, BitSet completedPieces) {
+		final List<Object> list = new ArrayList<>();
+		synchronized (this.pieces) {
+			if(this.persisted) {
+				// 保留没有加载的部分下载Piece
+				for (Object object : this.read(path)) {
+					if(!(object instanceof Map<?, ?> map)) {
+						continue;
+					}
+					final Long index = MapUtils.getLong(map, ATTR_INDEX);
+					final Long begin = MapUtils.getLong(map, ATTR_BEGIN);
+					if(
+						index == null ||
+						begin == null ||
+						completedPieces.get(index.intValue()) ||
+						this.pieces.containsKey(key(index.intValue(), begin.intValue()))
+					) {
+						continue;
+					}
+					list.add(map);
+				}
+			}
+			for (TorrentPiece piece : this.pieces.values()) {
+				if(!completedPieces.get(piece.getIndex())) {
+					final BitSet blocks = piece.blocks();
+					final List<Object> datas = new ArrayList<>();
+					for (int block = blocks.nextSetBit(0); block >= 0; block = blocks.nextSetBit(block + 1)) {
+						datas.add(piece.read(piece.getBegin() + block * TorrentPiece.SLICE_LENGTH, TorrentPiece.SLICE_LENGTH));
+					}
+					final Map<String, Object> map = new LinkedHashMap<>();
+					map.put(ATTR_INDEX, piece.getIndex());
+					map.put(ATTR_BEGIN, piece.getBegin());
+					map.put(ATTR_END, piece.getEnd());
+					map.put(ATTR_BLOCKS, blocks.toByteArray());
+					map.put(ATTR_DATA, datas);
+					list.add(map);
+				}
+				piece.release();
+			}
+			this.pieces.clear();
+			this.length = 0L;
+			this.persisted = true;
+			// 加锁保存：防止并发保存丢失没有加载的部分下载Piece
+			if(list.isEmpty()) {
+				this.delete(path);
+			} else {
+				FileUtils.write(path, BEncodeEncoder.encodeMap(Map.of(ATTR_PIECES, list)));
+			}
+		}
+		LOGGER.debug("保存部分下载Piece：{}-{}", path, list.size());
+	}
+	
+	/**
+	 * <p>读取断点续传文件</p>
+	 * 
+	 * @param path 断点续传文件路径
+	 * 
+	 * @return 部分下载Piece列表
+	 */
+	private List<Object> read(String path) {
+		final File file = new File(path);
+		if(!file.exists()) {
+			return List.of();
+		}
+		try {
+			return BEncodeDecoder.newInstance(Files.readAllBytes(file.toPath())).next().getList(ATTR_PIECES);
+		} catch (IOException | PacketSizeException | RuntimeException e) {
+			LOGGER.error("读取断点续传文件异常：{}", path, e);
+		}
+		return List.of();
+	}
+	
+	/**
+	 * <p>删除部分下载Piece和断点续传文件</p>
+	 * 
+	 * @param path 断点续传文件路径
+	 */
+	public void delete(String path) {
+		synchronized (this.pieces) {
+			this.pieces.values().forEach(TorrentPiece::release);
+			this.pieces.clear();
+			this.length = 0L;
+		}
+		if(new File(path).exists()) {
+			FileUtils.delete(path);
+		}
+	}
+	
+	/**
+	 * <p>获取部分下载Piece索引</p>
+	 * 
+	 * @param piece Piece
+	 * 
+	 * @return 部分下载Piece索引
+	 */
+	private static final long key(TorrentPiece piece) {
+		return key(piece.getIndex(), piece.getBegin());
+	}
+	
+	/**
+	 * <p>获取部分下载Piece索引</p>
+	 * 
+	 * @param index Piece索引
+	 * @param begin Piece开始偏移
+	 * 
+	 * @return 部分下载Piece索引
+	 */
+	private static final long key(int index, int begin) {
+		return ((long) index << Integer.SIZE) | begin;
+	}
+	
+}
@@ -2,7 +2,9 @@ package com.acgist.snail.net.torrent;
 
 import java.io.IOException;
 import java.util.BitSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -21,12 +23,16 @@ import com.acgist.snail.net.IMultifileCompletedChecker;
 import com.acgist.snail.net.NetException;
 import com.acgist.snail.net.PacketSizeException;
 import com.acgist.snail.net.torrent.dht.DhtLauncher;
+import com.acgist.snail.net.torrent.peer.PeerChoker;
+import com.acgist.snail.net.torrent.peer.PeerConnect;
 import com.acgist.snail.net.torrent.peer.PeerContext;
 import com.acgist.snail.net.torrent.peer.PeerDownloaderGroup;
 import com.acgist.snail.net.torrent.peer.PeerSession;
+import com.acgist.snail.net.torrent.peer.PeerSmartBan;
 import com.acgist.snail.net.torrent.peer.PeerSubMessageHandler;
 import com.acgist.snail.net.torrent.peer.PeerUploader;
 import com.acgist.snail.net.torrent.peer.PeerUploaderGroup;
+import com.acgist.snail.net.torrent.peer.extension.MetadataAssembler;
 import com.acgist.snail.net.torrent.tracker.TrackerLauncherGroup;
 import com.acgist.snail.protocol.magnet.MagnetBuilder;
 import com.acgist.snail.protocol.magnet.TorrentBuilder;
@@ -46,6 +52,15 @@ public final class TorrentSession implements IMultifileCompletedChecker {
 	
 	private static final Logger LOGGER = LoggerFactory.getLogger(TorrentSession.class);
 	
+	/**
+	 * <p>缓存数据块Hash最大Piece数量：{@value}</p>
+	 */
+	private static final int MAX_BLOCK_HASH_SIZE = 256;
+	/**
+	 * <p>断点续传文件延迟保存时间（秒）：{@value}</p>
+	 */
+	private static final int RESUME_PERSISTENT_DELAY = 2;
+	
 	/**
 	 * <p>任务动作</p>
 	 */
@@ -82,6 +97,23 @@ public final class TorrentSession implements IMultifileCompletedChecker {
 	 * <p>DHT定时任务</p>
 	 */
 	private DhtLauncher dhtLauncher;
+	/**
+	 * <p>种子文件信息组装</p>
+	 */
+	private MetadataAssembler metadataAssembler;
+	/**
+	 * <p>Peer智能禁用</p>
+	 */
+	private final PeerSmartBan peerSmartBan;
+	/**
+	 * <p>Piece数据块Hash（v2）</p>
+	 * <p>Piece索引=数据块Hash（Hash树叶子节点）</p>
+	 */
+	private final Map<Integer, byte[][]> blockHashs;
+	/**
+	 * <p>部分下载Piece</p>
+	 */
+	private final TorrentResume torrentResume;
 	/**
 	 * <p>PeerUploader组</p>
 	 */
@@ -94,6 +126,10 @@ public final class TorrentSession implements IMultifileCompletedChecker {
 	 * <p>文件流组</p>
 	 */
 	private TorrentStreamGroup torrentStreamGroup;
+	/**
+	 * <p>时间敏感Piece队列</p>
+	 */
+	private TorrentDeadline torrentDeadline;
 	/**
 	 * <p>Tracker执行器组</p>
 	 */
@@ -107,6 +143,10 @@ public final class TorrentSession implements IMultifileCompletedChecker {
 	 * <p>定时线程池</p>
 	 */
 	private ScheduledExecutorService executorScheduled;
+	/**
+	 * <p>种子文件信息组装定时器</p>
+	 */
+	private ScheduledFuture<?> metadataAssemblerScheduled;
 	/**
 	 * <p>PEX定时器</p>
 	 */
@@ -123,6 +163,10 @@ public final class TorrentSession implements IMultifileCompletedChecker {
 	 * <p>PeerUploaderGroup定时器</p>
 	 */
 	private ScheduledFuture<?> peerUploaderGroupScheduled;
+	/**
+	 * <p>Peer阻塞管理定时器</p>
+	 */
+	private ScheduledFuture<?> peerChokerScheduled;
 	/**
 	 * <p>PeerDownloaderGroup定时器</p>
 	 */
@@ -131,6 +175,11 @@ public final class TorrentSession implements IMultifileCompletedChecker {
 	 * <p>TrackerLauncherGroup定时器</p>
 	 */
 	private ScheduledFuture<?> trackerLauncherGroupScheduled;
+	/**
+	 * <p>断点续传文件保存定时器</p>
+	 * <p>任务暂停以后Peer释放下载晚于保存断点续传文件：合并多次保存</p>
+	 */
+	private ScheduledFuture<?> torrentResumeScheduled;
 	
 	/**
 	 * @param infoHash InfoHash
@@ -144,6 +193,18 @@ public final class TorrentSession implements IMultifileCompletedChecker {
 		}
 		this.torrent = torrent;
 		this.infoHash = infoHash;
+		this.peerSmartBan = PeerSmartBan.newInstance();
+		this.torrentResume = TorrentResume.newInstance();
+		this.blockHashs = new LinkedHashMap<>() {
+			
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, byte[][]> eldest) {
+				return this.size() > MAX_BLOCK_HASH_SIZE;
+			}
+			
+		};
 	}
 	
 	/**
@@ -181,8 +242,10 @@ public final class TorrentSession implements IMultifileCompletedChecker {
 			return true;
 		}
 		this.loadMagnet();
+		this.loadMetadataAssembler();
 		this.loadExecutor();
 		this.loadExecutorScheduled();
+		this.loadMetadataAssemblerScheduled();
 		this.loadTrackerLauncherGroup();
 		this.loadTrackerLauncherGroupScheduled();
 		this.loadDhtLauncher();
@@ -260,6 +323,7 @@ public final class TorrentSession implements IMultifileCompletedChecker {
 			return true;
 		}
 		this.loadExecutor();
+		this.loadTorrentResume();
 		final boolean privateTorrent = this.privateTorrent();
 		if(findPeer) {
 			this.loadTrackerLauncherGroup();
@@ -293,11 +357,30 @@ public final class TorrentSession implements IMultifileCompletedChecker {
 		this.magnet = MagnetBuilder.newInstance(this.taskSession.getUrl()).build();
 	}
 	
+	/**
+	 * <p>加载种子文件信息组装</p>
+	 */
+	private void loadMetadataAssembler() {
+		this.metadataAssembler = MetadataAssembler.newInstance(this);
+	}
+	
+	/**
+	 * <p>加载种子文件信息组装定时任务</p>
+	 */
+	private void loadMetadataAssemblerScheduled() {
+		this.metadataAssemblerScheduled = this.scheduledAtFixedDelay(
+			MetadataAssembler.TIMEOUT_INTERVAL,
+			MetadataAssembler.TIMEOUT_INTERVAL,
+			TimeUnit.SECONDS,
+			this.metadataAssembler::timeout
+		);
+	}
+	
 	/**
 	 * <p>加载线程池</p>
 	 */
 	private void loadExecutor() {
-		this.executor = SystemThreadContext.newCacheExecutor(0, 60L, SystemThreadContext.SNAIL_THREAD_BT);
+		this.executor = SystemThreadContext.newTaskExecutor(SystemThreadContext.SNAIL_THREAD_BT);
 	}
 
 	/**
@@ -317,6 +400,24 @@ public final class TorrentSession implements IMultifileCompletedChecker {
 			this.buildSelectedFiles(),
 			this
 		);
+		this.torrentDeadline = TorrentDeadline.newInstance(this.torrent.getInfo().getPieceLength(), this.torrentStreamGroup);
+	}
+	
+	/**
+	 * <p>加载断点续传文件</p>
+	 * <p>开始下载时加载：任务暂停时部分下载Piece不占用内存</p>
+	 */
+	private void loadTorrentResume() {
+		this.torrentResume.load(this.resumeFile(), this.torrent.getInfo().getPieceLength());
+	}
+	
+	/**
+	 * <p>获取断点续传文件路径</p>
+	 * 
+	 * @return 断点续传文件路径
+	 */
+	private String resumeFile() {
+		return FileUtils.file(this.taskSession.downloadFolder().getAbsolutePath(), this.infoHashHex() + TorrentResume.RESUME_SUFFIX);
 	}
 
 	/**
@@ -358,6 +459,12 @@ public final class TorrentSession implements IMultifileCompletedChecker {
 			TimeUnit.SECONDS,
 			this.peerUploaderGroup::optimize
 		);
+		this.peerChokerScheduled = this.scheduledAtFixedDelay(
+			PeerChoker.CHOKE_INTERVAL,
+			PeerChoker.CHOKE_INTERVAL,
+			TimeUnit.SECONDS,
+			this.peerUploaderGroup::choke
+		);
 	}
 	
 	/**
@@ -513,6 +620,10 @@ public final class TorrentSession implements IMultifileCompletedChecker {
 	 */
 	public void releaseMagnet() {
 		LOGGER.debug("Torrent释放资源（磁力链接）");
+		SystemThreadContext.shutdownNow(this.metadataAssemblerScheduled);
+		if(this.metadataAssembler != null) {
+			this.metadataAssembler.release();
+		}
 		this.releaseDownload();
 		this.releaseUpload();
 	}
@@ -540,6 +651,7 @@ public final class TorrentSession implements IMultifileCompletedChecker {
 		SystemThreadContext.shutdownNow(this.executor);
 		if(this.torrentStreamGroup != null) {
 			this.torrentStreamGroup.flush();
+			this.torrentResume.persistent(this.resumeFile(), this.pieces());
 		}
 	}
 	
@@ -550,10 +662,18 @@ public final class TorrentSession implements IMultifileCompletedChecker {
 		this.useable = false;
 		this.uploadable = false;
 		LOGGER.debug("Torrent释放资源（上传）");
+		SystemThreadContext.shutdownNow(this.peerChokerScheduled);
 		SystemThreadContext.shutdownNow(this.peerUploaderGroupScheduled);
 		if(this.peerUploaderGroup != null) {
 			this.peerUploaderGroup.release();
 		}
+		if(this.torrentDeadline != null) {
+			this.torrentDeadline.release();
+		}
+		if(this.cancelTorrentResumeScheduled() && this.torrentStreamGroup != null) {
+			// 文件流组释放以前保存等待保存的断点续传文件
+			this.torrentResume.persistent(this.resumeFile(), this.pieces());
+		}
 		if(this.torrentStreamGroup != null) {
 			this.torrentStreamGroup.release();
 		}
@@ -565,6 +685,14 @@ public final class TorrentSession implements IMultifileCompletedChecker {
 	 */
 	public void delete() {
 		final String infoHashHex = this.infoHashHex();
+		this.peerSmartBan.release();
+		this.cancelTorrentResumeScheduled();
+		synchronized (this.blockHashs) {
+			this.blockHashs.clear();
+		}
+		if(this.taskSession != null) {
+			this.torrentResume.delete(this.resumeFile());
+		}
 		PeerContext.getInstance().remove(infoHashHex);
 		TorrentContext.getInstance().remove(infoHashHex);
 	}
@@ -580,6 +708,7 @@ public final class TorrentSession implements IMultifileCompletedChecker {
 			torrentFilePath = builder.buildFile(this.taskSession.downloadFolder().getAbsolutePath());
 			this.torrent = TorrentContext.loadTorrent(torrentFilePath);
 			this.infoHash = this.torrent.infoHash();
+			TorrentContext.getInstance().alias(this.infoHash);
 		} catch (DownloadException | PacketSizeException e) {
 			LOGGER.error("加载种子异常：{}", torrentFilePath, e);
 		}
@@ -596,12 +725,17 @@ public final class TorrentSession implements IMultifileCompletedChecker {
 	
 	/**
 	 * <p>发送have消息</p>
+	 * <p>唤醒等待Piece读取线程</p>
 	 * 
 	 * @param index Piece索引
 	 * 
 	 * @see PeerContext#have(String, int)
+	 * @see TorrentDeadline#done(int)
 	 */
 	public void have(int index) {
+		if(this.torrentDeadline != null) {
+			this.torrentDeadline.done(index);
+		}
 		PeerContext.getInstance().have(this.infoHashHex(), index);
 	}
 	
@@ -679,6 +813,50 @@ public final class TorrentSession implements IMultifileCompletedChecker {
 		return this.magnet;
 	}
 	
+	/**
+	 * <p>获取种子文件信息组装</p>
+	 * 
+	 * @return 种子文件信息组装（没有磁力链接任务：null）
+	 */
+	public MetadataAssembler metadataAssembler() {
+		return this.metadataAssembler;
+	}
+	
+	/**
+	 * <p>获取Peer智能禁用</p>
+	 * 
+	 * @return Peer智能禁用
+	 */
+	public PeerSmartBan peerSmartBan() {
+		return this.peerSmartBan;
+	}
+	
+	/**
+	 * <p>获取Piece数据块Hash（v2）</p>
+	 * 
+	 * @param index Piece索引
+	 * 
+	 * @return 数据块Hash（没有返回null）
+	 */
+	public byte[][] blockHashs(int index) {
+		synchronized (this.blockHashs) {
+			return this.blockHashs.get(index);
+		}
+	}
+	
+	/**
+	 * <p>保存Piece数据块Hash（v2）</p>
+	 * <p>数据块Hash已经通过Piece层级Hash校验：重新下载Piece时收到数据块立即校验</p>
+	 * 
+	 * @param index Piece索引
+	 * @param hashs 数据块Hash
+	 */
+	public void blockHashs(int index, byte[][] hashs) {
+		synchronized (this.blockHashs) {
+			this.blockHashs.put(index, hashs);
+		}
+	}
+	
 	/**
 	 * <p>获取种子信息</p>
 	 * 
@@ -738,6 +916,35 @@ public final class TorrentSession implements IMultifileCompletedChecker {
 		return this.torrentStreamGroup;
 	}
 	
+	/**
+	 * <p>获取选择下载文件流</p>
+	 * 
+	 * @param fileIndex 文件索引（小于零：最大文件）
+	 * 
+	 * @return 文件流（没有选择下载或者填充文件返回null）
+	 */
+	public TorrentStream torrentStream(int fileIndex) {
+		final TorrentStreamGroup streamGroup = this.torrentStreamGroup;
+		if(this.torrent == null || streamGroup == null) {
+			return null;
+		}
+		final List<TorrentFile> files = this.torrent.getInfo().files();
+		TorrentFile file = null;
+		if(fileIndex < 0) {
+			file = files.stream()
+				.filter(TorrentFile::notPaddingFile)
+				.filter(value -> streamGroup.stream(FileUtils.file(this.taskSession.downloadFolder().getAbsolutePath(), value.path())) != null)
+				.max((source, target) -> Long.compare(source.getLength(), target.getLength()))
+				.orElse(null);
+		} else if(fileIndex < files.size()) {
+			file = files.get(fileIndex);
+		}
+		if(file == null || file.paddingFile()) {
+			return null;
+		}
+		return streamGroup.stream(FileUtils.file(this.taskSession.downloadFolder().getAbsolutePath(), file.path()));
+	}
+	
 	/**
 	 * <p>判断是否可用</p>
 	 * 
@@ -823,18 +1030,82 @@ public final class TorrentSession implements IMultifileCompletedChecker {
 		this.torrentStreamGroup.piecePos(index);
 	}
 	
+	/**
+	 * <p>设置读取位置</p>
+	 * <p>读取位置和预读窗口内的Piece优先下载</p>
+	 * 
+	 * @param index 读取位置Piece索引
+	 * @param lastIndex 文件最后Piece索引
+	 * 
+	 * @see TorrentDeadline#position(int, int)
+	 */
+	public void deadline(int index, int lastIndex) {
+		this.torrentDeadline.position(index, lastIndex);
+		this.piecePos(index);
+	}
+	
+	/**
+	 * <p>等待Piece下载完成</p>
+	 * 
+	 * @param index Piece索引
+	 * @param timeout 超时时间（毫秒）
+	 * 
+	 * @return 是否下载完成
+	 * 
+	 * @see TorrentDeadline#await(int, long)
+	 */
+	public boolean await(int index, long timeout) {
+		return this.torrentDeadline.await(index, timeout);
+	}
+	
 	/**
 	 * <p>挑选下载Piece</p>
+	 * <p>优先顺序：时间敏感Piece、部分下载Piece、Peer推荐Piece</p>
 	 * 
+	 * @param peerSession Peer信息
 	 * @param peerPieces Peer已经下载Piece位图
 	 * @param suggestPieces Peer推荐Piece位图
 	 * 
 	 * @return 下载Piece
 	 * 
+	 * @see TorrentDeadline#pick(BitSet, boolean)
 	 * @see TorrentStreamGroup#pick(BitSet, BitSet)
 	 */
-	public TorrentPiece pick(BitSet peerPieces, BitSet suggestPieces) {
-		return torrentStreamGroup.pick(peerPieces, suggestPieces);
+	public TorrentPiece pick(PeerSession peerSession, BitSet peerPieces, BitSet suggestPieces) {
+		TorrentPiece piece = this.torrentDeadline.pick(peerPieces, this.fastPeer(peerSession));
+		// 优先选择部分下载Piece
+		final BitSet resumePieces = this.torrentResume.pieces();
+		resumePieces.and(peerPieces);
+		if(piece == null && !resumePieces.isEmpty()) {
+			piece = this.torrentStreamGroup.pick(peerPieces, resumePieces);
+		}
+		if(piece == null) {
+			piece = this.torrentStreamGroup.pick(peerPieces, suggestPieces);
+		}
+		if(piece != null) {
+			piece.blockHashs(this.blockHashs(piece.getIndex()));
+			final TorrentPiece resumePiece = this.torrentResume.remove(piece);
+			if(resumePiece != null) {
+				LOGGER.debug("恢复部分下载Piece：{}-{}", piece, resumePiece.downloadSize());
+				piece.resume(resumePiece);
+				resumePiece.release();
+			}
+		}
+		return piece;
+	}
+	
+	/**
+	 * <p>判断是否是较快的Peer</p>
+	 * <p>Peer下载速度不低于任务平均每个Peer下载速度</p>
+	 * 
+	 * @param peerSession Peer信息
+	 * 
+	 * @return 是否是较快的Peer
+	 */
+	private boolean fastPeer(PeerSession peerSession) {
+		final PeerDownloaderGroup downloaderGroup = this.peerDownloaderGroup;
+		final int size = downloaderGroup == null ? 1 : Math.max(1, downloaderGroup.size());
+		return peerSession.statistics().downloadSpeed() * size >= this.statistics().downloadSpeed();
 	}
 	
 	/**
@@ -882,13 +1153,59 @@ public final class TorrentSession implements IMultifileCompletedChecker {
 
 	/**
 	 * <p>设置下载失败Piece</p>
+	 * <p>保存部分下载Piece：重新选择Piece时只下载没有下载的数据块</p>
+	 * <p>没有保存的Piece归还数据块</p>
 	 * 
 	 * @param piece Piece
 	 * 
 	 * @see TorrentStreamGroup#undone(TorrentPiece)
+	 * @see TorrentResume#put(TorrentPiece)
 	 */
 	public void undone(TorrentPiece piece) {
 		this.torrentStreamGroup.undone(piece);
+		if(!this.torrentResume.put(piece)) {
+			piece.release();
+		} else if(!this.downloadable) {
+			// 任务已经暂停：Peer释放下载晚于保存断点续传文件
+			this.loadTorrentResumeScheduled();
+		}
+	}
+	
+	/**
+	 * <p>加载断点续传文件保存定时器</p>
+	 * <p>延迟保存：释放PeerDownloaderGroup时所有Peer释放下载只保存一次</p>
+	 */
+	private void loadTorrentResumeScheduled() {
+		synchronized (this.torrentResume) {
+			if(this.torrentResumeScheduled != null) {
+				return;
+			}
+			this.torrentResumeScheduled = SystemThreadContext.scheduled(RESUME_PERSISTENT_DELAY, TimeUnit.SECONDS, () -> {
+				synchronized (this.torrentResume) {
+					this.torrentResumeScheduled = null;
+				}
+				// 任务重新开始下载：释放下载时保存
+				if(!this.downloadable) {
+					this.torrentResume.persistent(this.resumeFile(), this.pieces());
+				}
+			});
+		}
+	}
+	
+	/**
+	 * <p>取消断点续传文件保存定时器</p>
+	 * 
+	 * @return 是否含有等待保存的断点续传文件
+	 */
+	private boolean cancelTorrentResumeScheduled() {
+		synchronized (this.torrentResume) {
+			if(this.torrentResumeScheduled == null) {
+				return false;
+			}
+			SystemThreadContext.shutdownNow(this.torrentResumeScheduled);
+			this.torrentResumeScheduled = null;
+			return true;
+		}
 	}
 	
 	/**
@@ -999,6 +1316,19 @@ public final class TorrentSession implements IMultifileCompletedChecker {
 		return this.peerUploaderGroup.newPeerUploader(peerSession, peerSubMessageHandler);
 	}
 	
+	/**
+	 * <p>申请上传位置</p>
+	 * 
+	 * @param peerConnect Peer连接
+	 * 
+	 * @return 是否申请成功
+	 * 
+	 * @see PeerUploaderGroup#unchokeable(PeerConnect)
+	 */
+	public boolean unchokeable(PeerConnect peerConnect) {
+		return this.peerUploaderGroup != null && this.peerUploaderGroup.unchokeable(peerConnect);
+	}
+	
 	@Override
 	public String toString() {
 		return BeanUtils.toString(this, this.name());
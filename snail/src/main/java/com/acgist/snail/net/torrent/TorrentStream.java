@@ -1,8 +1,6 @@
 package com.acgist.snail.net.torrent;
 
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -12,13 +10,15 @@ import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicLong;
 
 import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.context.MetricsContext;
+import com.acgist.snail.context.MetricsContext.Counter;
+import com.acgist.snail.context.MetricsContext.Histogram;
 import com.acgist.snail.logger.Logger;
 import com.acgist.snail.logger.LoggerFactory;
 import com.acgist.snail.net.DownloadException;
 import com.acgist.snail.utils.BeanUtils;
 import com.acgist.snail.utils.DigestUtils;
-import com.acgist.snail.utils.FileUtils;
-import com.acgist.snail.utils.IoUtils;
+import com.acgist.snail.utils.MerkleUtils;
 import com.acgist.snail.utils.StringUtils;
 
 /**
@@ -31,9 +31,20 @@ public final class TorrentStream {
 	private static final Logger LOGGER = LoggerFactory.getLogger(TorrentStream.class);
 	
 	/**
-	 * <p>文件流模式：{@value}</p>
+	 * <p>读取Piece缓存命中指标</p>
 	 */
-	private static final String STREAM_MODE = "rw";
+	private static final Counter CACHE_HIT = MetricsContext.getInstance().counter("snail_piece_cache_hit", "读取Piece缓存命中次数");
+	/**
+	 * <p>读取Piece缓存没有命中指标</p>
+	 */
+	private static final Counter CACHE_MISS = MetricsContext.getInstance().counter("snail_piece_cache_miss", "读取Piece缓存没有命中次数");
+	/**
+	 * <p>写出Piece耗时指标（微秒）</p>
+	 */
+	private static final Histogram FLUSH_TIME = MetricsContext.getInstance().histogram(
+		"snail_piece_flush_micros", "写出Piece耗时（微秒）",
+		100L, 500L, 1000L, 5000L, 10000L, 50000L, 100000L, 500000L
+	);
 
 	/**
 	 * <p>文件是否选择下载</p>
@@ -95,11 +106,12 @@ public final class TorrentStream {
 	 */
 	private final BlockingQueue<TorrentPiece> cachePieces;
 	/**
-	 * <p>文件流</p>
+	 * <p>文件句柄池</p>
+	 * <p>第一次读写时打开文件：防止文件数量太多超过系统文件句柄限制</p>
 	 * 
 	 * TODO：使用NIO（FileChannel或者MappedByteBuffer）结合TorrentPiece优化读写性能（没太大必要毕竟下载最重要的问题是网络IO）
 	 */
-	private final RandomAccessFile fileStream;
+	private final FileHandlePool fileHandlePool;
 	/**
 	 * <p>文件流组</p>
 	 */
@@ -137,7 +149,7 @@ public final class TorrentStream {
 		this.pausePieces = new BitSet();
 		this.downloadPieces = new BitSet();
 		this.cachePieces = new LinkedBlockingQueue<>();
-		this.fileStream = this.buildFileStream();
+		this.fileHandlePool = FileHandlePool.getInstance();
 		this.torrentStreamGroup = torrentStreamGroup;
 		this.buildPieces(completed);
 		this.buildFileDownloadSize();
@@ -186,22 +198,6 @@ public final class TorrentStream {
 		return new TorrentStream(pieceLength, path, size, pos, completed, torrentStreamGroup);
 	}
 	
-	/**
-	 * <p>新建文件流</p>
-	 * 
-	 * @return 文件流
-	 * 
-	 * @throws DownloadException 下载异常
-	 */
-	private RandomAccessFile buildFileStream() throws DownloadException {
-		FileUtils.buildParentFolder(this.filePath);
-		try {
-			return new RandomAccessFile(this.filePath, STREAM_MODE);
-		} catch (FileNotFoundException e) {
-			throw new DownloadException("新建文件流失败：" + this.filePath, e);
-		}
-	}
-	
 	/**
 	 * <p>加载文件流</p>
 	 */
@@ -225,6 +221,33 @@ public final class TorrentStream {
 		return this.selected;
 	}
 	
+	/**
+	 * <p>获取文件路径</p>
+	 * 
+	 * @return 文件路径
+	 */
+	public String filePath() {
+		return this.filePath;
+	}
+	
+	/**
+	 * <p>获取文件开始偏移</p>
+	 * 
+	 * @return 文件开始偏移（包含）
+	 */
+	public long fileBeginPos() {
+		return this.fileBeginPos;
+	}
+	
+	/**
+	 * <p>获取文件结束偏移</p>
+	 * 
+	 * @return 文件结束偏移（不含）
+	 */
+	public long fileEndPos() {
+		return this.fileEndPos;
+	}
+	
 	/**
 	 * <p>判断当前下载文件路径是否匹配文件路径</p>
 	 * 
@@ -279,24 +302,70 @@ public final class TorrentStream {
 			}
 			LOGGER.debug("选择Piece（选中）：{}-{}", index, this.downloadPieces);
 			this.downloadPieces.set(index);
-			// 是否验证：第一块和最后一块不用校验
-			boolean verify = true;
-			// Piece开始内偏移
-			int begin = 0;
-			if(index == this.fileBeginPieceIndex) {
-				verify = false;
-				begin = this.firstPiecePos();
-			}
-			// Piece结束内偏移
-			int end = (int) this.pieceLength;
-			if(index == this.fileEndPieceIndex) {
-				verify = false;
-				end = this.lastPiecePos();
+			return this.buildPiece(index);
+		}
+	}
+	
+	/**
+	 * <p>挑选指定下载Piece</p>
+	 * <p>时间敏感Piece使用：不用判断Peer推荐Piece和暂停中的Piece</p>
+	 * 
+	 * @param index Piece索引
+	 * @param repeat 是否重复挑选下载中的Piece
+	 * 
+	 * @return 下载Piece（已经下载或者下载中返回null）
+	 */
+	public TorrentPiece pick(int index, boolean repeat) {
+		if(index < this.fileBeginPieceIndex || index > this.fileEndPieceIndex) {
+			// 超过文件范围
+			return null;
+		}
+		synchronized (this) {
+			if(this.hasPiece(index) || (!repeat && this.downloadPieces.get(index))) {
+				return null;
 			}
-			// 快速循环挑选Piece：新建Piece数据消耗性能
-			final byte[] hash = this.torrentStreamGroup.pieceHash(index);
-			return TorrentPiece.newInstance(this.pieceLength, index, begin, end, hash, verify);
+			LOGGER.debug("选择时间敏感Piece：{}-{}", index, repeat);
+			this.downloadPieces.set(index);
+			return this.buildPiece(index);
+		}
+	}
+	
+	/**
+	 * <p>新建下载Piece</p>
+	 * 
+	 * @param index Piece索引
+	 * 
+	 * @return 下载Piece
+	 */
+	private TorrentPiece buildPiece(int index) {
+		// 是否验证：第一块和最后一块不用校验
+		boolean verify = true;
+		// Piece开始内偏移
+		int begin = 0;
+		if(index == this.fileBeginPieceIndex) {
+			verify = false;
+			begin = this.firstPiecePos();
+		}
+		// Piece结束内偏移
+		int end = (int) this.pieceLength;
+		if(index == this.fileEndPieceIndex) {
+			verify = false;
+			end = this.lastPiecePos();
 		}
+		// 快速循环挑选Piece：新建Piece数据消耗性能
+		final byte[] hash = this.torrentStreamGroup.pieceHash(index);
+		return TorrentPiece.newInstance(this.pieceLength, index, begin, end, hash, this.pieceLeafs(), verify && hash != null);
+	}
+	
+	/**
+	 * <p>获取Piece层级Hash叶子节点数量（v2）</p>
+	 * 
+	 * @return 叶子节点数量
+	 * 
+	 * @see MerkleUtils#pieceLeafs(long, long)
+	 */
+	private int pieceLeafs() {
+		return MerkleUtils.pieceLeafs(this.pieceLength, this.fileEndPos - this.fileBeginPos);
 	}
 
 	/**
@@ -372,8 +441,8 @@ public final class TorrentStream {
 				// 此处不能返回成功：防止计算文件已经下载大小错误
 				return false;
 			}
-			// 加入缓存队列
-			if(this.cachePieces.offer(piece)) {
+			// 加入缓存队列：缓存持有Piece引用直到写出
+			if(piece.retain() && this.cachePieces.offer(piece)) {
 				LOGGER.debug("保存Piece成功：{}", index);
 				this.done(index);
 				this.buildFileDownloadSize();
@@ -385,6 +454,7 @@ public final class TorrentStream {
 				return true;
 			} else {
 				LOGGER.warn("保存Piece失败：{}", index);
+				piece.release();
 				return false;
 			}
 		}
@@ -457,8 +527,14 @@ public final class TorrentStream {
 		// 读取缓存数据
 		final TorrentPiece cachePiece = this.cachePiece(index);
 		if(cachePiece != null) {
-			return cachePiece.read(pos, length);
+			// 缓存已经写出：读取文件数据
+			final byte[] bytes = cachePiece.read(pos, length);
+			if(bytes != null) {
+				CACHE_HIT.increment();
+				return bytes;
+			}
 		}
+		CACHE_MISS.increment();
 		// 读取文件数据
 		// 文件偏移
 		long seek = 0L;
@@ -485,9 +561,7 @@ public final class TorrentStream {
 		}
 		try {
 			final byte[] bytes = new byte[length];
-			// 注意线程安全
-			this.fileStream.seek(seek);
-			this.fileStream.read(bytes);
+			this.fileHandlePool.read(this.filePath, seek, bytes);
 			return bytes;
 		} catch (IOException e) {
 			LOGGER.error("读取Piece异常：{}-{}-{}-{}", index, seek, length, pos, e);
@@ -547,7 +621,7 @@ public final class TorrentStream {
 	 */
 	public void release() {
 		this.flush();
-		IoUtils.close(this.fileStream);
+		this.fileHandlePool.close(this.filePath);
 	}
 
 	/**
@@ -581,9 +655,15 @@ public final class TorrentStream {
 			return false;
 		} else if(verify) {
 			// 校验Hash
-			final byte[] hash = digest.digest(bytes);
 			final byte[] verifyHash = this.torrentStreamGroup.pieceHash(index);
-			return Arrays.equals(hash, verifyHash);
+			if(verifyHash == null) {
+				// 没有校验数据（v2缺少Piece层级Hash）：验证是否有数据
+				return this.hasData(bytes);
+			} else if(verifyHash.length == SystemConfig.SHA256_HASH_LENGTH) {
+				final byte[][] leafs = MerkleUtils.leafs(bytes, 0, bytes.length);
+				return Arrays.equals(MerkleUtils.root(leafs, this.pieceLeafs(), MerkleUtils.padding(0)), verifyHash);
+			}
+			return Arrays.equals(digest.digest(bytes), verifyHash);
 		} else {
 			// 验证是否有数据：第一块和最后一块
 			return this.hasData(bytes);
@@ -591,26 +671,39 @@ public final class TorrentStream {
 	}
 	
 	/**
-	 * <p>校验文件</p>
-	 * <p>使用种子数据校验文件</p>
+	 * <p>设置需要校验Piece位图</p>
+	 * <p>文件含有数据的所有Piece：包含第一块和最后一块</p>
+	 * 
+	 * @param verifyPieces 需要校验Piece位图
+	 * 
+	 * @see TorrentVerifier
+	 */
+	public void verifyPieces(BitSet verifyPieces) {
+		if(this.fileSize <= 0L) {
+			return;
+		}
+		verifyPieces.set(this.fileBeginPieceIndex, this.fileLastPieceIndex() + 1);
+	}
+	
+	/**
+	 * <p>设置校验结果</p>
 	 * <p>重新设置文件下载信息</p>
 	 * 
-	 * @return 是否成功
+	 * @param successPieces 校验成功Piece位图
+	 * 
+	 * @return 是否校验成功
 	 * 
-	 * @throws IOException IO异常
+	 * @see TorrentVerifier
 	 */
-	public boolean verify() throws IOException {
+	public boolean verify(BitSet successPieces) {
+		if(this.fileSize <= 0L) {
+			return true;
+		}
 		int verifyFailCount = 0;
-		final boolean empty = this.fileStream.length() == 0;
 		synchronized (this) {
-			final MessageDigest digest = DigestUtils.sha1();
-			for (int index = this.fileBeginPieceIndex; index <= this.fileEndPieceIndex; index++) {
-				if(empty) {
-					verifyFailCount++;
-					this.verifyFail(index);
-					continue;
-				}
-				if(this.verify(index, digest)) {
+			final int lastPieceIndex = this.fileLastPieceIndex();
+			for (int index = this.fileBeginPieceIndex; index <= lastPieceIndex; index++) {
+				if(successPieces.get(index)) {
 					this.done(index);
 				} else {
 					verifyFailCount++;
@@ -674,13 +767,16 @@ public final class TorrentStream {
 			// Piece包含文件结束
 			length = (int) (length - (endPos - this.fileEndPos));
 		}
+		final long begin = System.nanoTime();
+		// 数据块写出：不用合并数据块
+		final long fileSeek = seek - offset;
 		try {
-			final byte[] bytes = piece.getData();
-			// 注意线程安全
-			this.fileStream.seek(seek);
-			this.fileStream.write(bytes, offset, length);
+			piece.read(offset, length, (pos, bytes, blockOffset, blockLength) -> this.fileHandlePool.write(this.filePath, fileSeek + pos, bytes, blockOffset, blockLength));
+			FLUSH_TIME.record((System.nanoTime() - begin) / 1000);
 		} catch (IOException e) {
 			LOGGER.error("写出Piece异常：{}-{}-{}-{}", index, seek, offset, length, e);
+		} finally {
+			piece.release();
 		}
 	}
 	
@@ -754,6 +850,16 @@ public final class TorrentStream {
 		this.fileDownloadSize.set(size + downloadPieceSize * this.pieceLength);
 	}
 	
+	/**
+	 * <p>获取文件最后一块含有数据的Piece索引</p>
+	 * <p>文件结束偏移刚好是Piece开始偏移时结束索引的Piece没有数据</p>
+	 * 
+	 * @return Piece索引
+	 */
+	private int fileLastPieceIndex() {
+		return (int) ((this.fileEndPos - 1) / this.pieceLength);
+	}
+	
 	/**
 	 * <p>判断文件是否处于单个Piece</p>
 	 * 
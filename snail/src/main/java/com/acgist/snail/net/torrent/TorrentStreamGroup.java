@@ -12,7 +12,6 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import com.acgist.snail.config.DownloadConfig;
 import com.acgist.snail.config.PeerConfig;
-import com.acgist.snail.config.SystemConfig;
 import com.acgist.snail.logger.Logger;
 import com.acgist.snail.logger.LoggerFactory;
 import com.acgist.snail.net.NetException;
@@ -96,6 +95,11 @@ public final class TorrentStreamGroup {
 	 * @see #readWriteLock
 	 */
 	private final Lock writeLock;
+	/**
+	 * <p>文件校验器</p>
+	 * <p>正在校验文件时不为空：校验进度、取消校验</p>
+	 */
+	private volatile TorrentVerifier verifier;
 
 	/**
 	 * @param torrentSession BT任务信息
@@ -311,6 +315,55 @@ public final class TorrentStreamGroup {
 		return pickPiece;
 	}
 	
+	/**
+	 * <p>获取选择下载文件流</p>
+	 * 
+	 * @param path 文件路径
+	 * 
+	 * @return 文件流（没有选择下载返回null）
+	 */
+	public TorrentStream stream(String path) {
+		this.readLock.lock();
+		try {
+			for (TorrentStream torrentStream : this.streams) {
+				if(torrentStream.selected() && torrentStream.equalsPath(path)) {
+					return torrentStream;
+				}
+			}
+		} finally {
+			this.readLock.unlock();
+		}
+		return null;
+	}
+	
+	/**
+	 * <p>挑选指定下载Piece</p>
+	 * <p>Piece跨越多个文件时使用第一个选择下载文件挑选</p>
+	 * 
+	 * @param index Piece索引
+	 * @param repeat 是否重复挑选下载中的Piece
+	 * 
+	 * @return {@link TorrentPiece}
+	 * 
+	 * @see TorrentStream#pick(int, boolean)
+	 */
+	public TorrentPiece pick(int index, boolean repeat) {
+		this.readLock.lock();
+		try {
+			for (TorrentStream torrentStream : this.streams) {
+				if(torrentStream.selected()) {
+					final TorrentPiece pickPiece = torrentStream.pick(index, repeat);
+					if(pickPiece != null) {
+						return pickPiece;
+					}
+				}
+			}
+		} finally {
+			this.readLock.unlock();
+		}
+		return null;
+	}
+	
 	/**
 	 * <p>读取Piece数据</p>
 	 * 
@@ -538,15 +591,42 @@ public final class TorrentStreamGroup {
 
 	/**
 	 * <p>校验文件</p>
+	 * <p>所有选择下载文件使用校验器并行校验，校验取消时不会修改下载信息。</p>
+	 * 
+	 * @return 是否校验成功
 	 * 
 	 * @throws IOException IO异常
+	 * 
+	 * @see TorrentVerifier
 	 */
 	public boolean verify() throws IOException {
 		int verifyFailCount = 0;
+		final TorrentVerifier torrentVerifier;
+		this.readLock.lock();
+		try {
+			// 刷出缓存：校验器直接读取文件
+			for (TorrentStream torrentStream : this.streams) {
+				torrentStream.flush();
+			}
+			torrentVerifier = TorrentVerifier.newInstance(this.torrent, this.streams, this.readLock);
+		} finally {
+			this.readLock.unlock();
+		}
+		this.verifier = torrentVerifier;
+		final BitSet successPieces;
+		try {
+			// 校验器读取每个Piece时获取读锁
+			successPieces = torrentVerifier.verify();
+		} finally {
+			this.verifier = null;
+		}
+		if(successPieces == null) {
+			return false;
+		}
 		this.readLock.lock();
 		try {
 			for (TorrentStream torrentStream : this.streams) {
-				if(torrentStream.selected() && !torrentStream.verify()) {
+				if(torrentStream.selected() && !torrentStream.verify(successPieces)) {
 					verifyFailCount++;
 				}
 			}
@@ -557,18 +637,26 @@ public final class TorrentStreamGroup {
 		return verifyFailCount == 0;
 	}
 	
+	/**
+	 * <p>获取正在执行的文件校验器</p>
+	 * 
+	 * @return 文件校验器（没有校验返回：null）
+	 */
+	public TorrentVerifier verifier() {
+		return this.verifier;
+	}
+	
 	/**
 	 * <p>获取Piece校验数据（Hash）</p>
 	 * 
 	 * @param index Piece索引
 	 * 
 	 * @return 校验数据（Hash）
+	 * 
+	 * @see Torrent#pieceHash(int)
 	 */
 	public byte[] pieceHash(int index) {
-		final byte[] pieceHashs = this.torrent.getInfo().getPieces();
-		final byte[] pieceHash = new byte[SystemConfig.SHA1_HASH_LENGTH];
-		System.arraycopy(pieceHashs, index * SystemConfig.SHA1_HASH_LENGTH, pieceHash, 0, SystemConfig.SHA1_HASH_LENGTH);
-		return pieceHash;
+		return this.torrent.pieceHash(index);
 	}
 
 	/**
@@ -638,6 +726,10 @@ public final class TorrentStreamGroup {
 	 */
 	public void release() {
 		LOGGER.debug("释放TorrentStreamGroup：{}", this.torrentSession);
+		final TorrentVerifier torrentVerifier = this.verifier;
+		if(torrentVerifier != null) {
+			torrentVerifier.cancel();
+		}
 		this.readLock.lock();
 		try {
 			for (TorrentStream torrentStream : this.streams) {
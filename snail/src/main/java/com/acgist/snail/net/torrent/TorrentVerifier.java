@@ -0,0 +1,494 @@
+package com.acgist.snail.net.torrent;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.context.MetricsContext;
+import com.acgist.snail.context.MetricsContext.Counter;
+import com.acgist.snail.context.SystemThreadContext;
+import com.acgist.snail.logger.Logger;
+import com.acgist.snail.logger.LoggerFactory;
+import com.acgist.snail.utils.DigestUtils;
+import com.acgist.snail.utils.FileUtils;
+import com.acgist.snail.utils.MerkleUtils;
+
+/**
+ * <p>文件校验器</p>
+ * <p>按照Piece顺序批量读取（跨越文件边界），校验线程池并行计算Hash。</p>
+ * <p>校验线程数量根据CPU核心数量计算，同时读取磁盘数量使用{@link #QUEUE_DEPTH}限制。</p>
+ * <p>跨越文件的Piece（文件第一块和最后一块）：所有数据都存在时校验Hash，任意文件不存在或者大小不足时标记没有下载。</p>
+ * <p>通过{@link FileHandlePool}读取文件，每个Piece读取时单独获取文件流组读锁，不会长时间阻塞文件流修改。</p>
+ * 
+ * @author acgist
+ */
+public final class TorrentVerifier {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(TorrentVerifier.class);
+	
+	/**
+	 * <p>校验线程数量</p>
+	 */
+	private static final int THREAD_SIZE = SystemThreadContext.threadSize(2, 8);
+	/**
+	 * <p>磁盘队列深度：同时读取数量</p>
+	 */
+	private static final int QUEUE_DEPTH = 4;
+	/**
+	 * <p>批量读取大小：8M</p>
+	 * <p>Piece大于批量读取大小时每次读取一个Piece</p>
+	 */
+	private static final int BATCH_LENGTH = 8 * SystemConfig.ONE_MB;
+	/**
+	 * <p>校验线程池</p>
+	 */
+	private static final ExecutorService EXECUTOR;
+	/**
+	 * <p>磁盘读取信号量</p>
+	 */
+	private static final Semaphore DISK_SEMAPHORE = new Semaphore(QUEUE_DEPTH);
+	/**
+	 * <p>校验数据大小指标</p>
+	 */
+	private static final Counter VERIFY_BYTES = MetricsContext.getInstance().counter("snail_verify_bytes", "文件校验读取大小（B）");
+	
+	static {
+		EXECUTOR = SystemThreadContext.newExecutor(THREAD_SIZE, THREAD_SIZE, Short.MAX_VALUE, 60L, SystemThreadContext.SNAIL_THREAD_VERIFY);
+		SystemThreadContext.metrics(SystemThreadContext.SNAIL_THREAD_VERIFY, EXECUTOR);
+	}
+	
+	/**
+	 * <p>是否取消</p>
+	 */
+	private volatile boolean cancel;
+	/**
+	 * <p>Piece大小</p>
+	 */
+	private final long pieceLength;
+	/**
+	 * <p>任务大小</p>
+	 */
+	private final long totalLength;
+	/**
+	 * <p>种子信息</p>
+	 */
+	private final Torrent torrent;
+	/**
+	 * <p>Piece校验数据（Hash）</p>
+	 * <p>v2种子为空：使用Piece层级Hash校验</p>
+	 */
+	private final byte[] pieceHashs;
+	/**
+	 * <p>文件区域（按照文件开始偏移排序）</p>
+	 */
+	private final List<Region> regions;
+	/**
+	 * <p>需要校验Piece位图</p>
+	 */
+	private final BitSet verifyPieces;
+	/**
+	 * <p>校验成功Piece位图</p>
+	 */
+	private final BitSet successPieces;
+	/**
+	 * <p>批量读取区间：开始Piece索引（包含）、结束Piece索引（不含）</p>
+	 */
+	private final List<int[]> batches;
+	/**
+	 * <p>下次读取区间索引</p>
+	 */
+	private final AtomicInteger batchIndex;
+	/**
+	 * <p>已经校验Piece数量</p>
+	 */
+	private final AtomicInteger verifyCount;
+	/**
+	 * <p>已经读取数据大小</p>
+	 */
+	private final AtomicLong readSize;
+	/**
+	 * <p>文件读取锁</p>
+	 * <p>每个Piece读取时获取</p>
+	 */
+	private final Lock lock;
+	/**
+	 * <p>开始时间</p>
+	 */
+	private long beginTime;
+	/**
+	 * <p>读取异常</p>
+	 */
+	private volatile IOException exception;
+	
+	/**
+	 * @param torrent 种子信息
+	 * @param streams 文件流列表
+	 * @param lock 文件读取锁
+	 */
+	private TorrentVerifier(Torrent torrent, List<TorrentStream> streams, Lock lock) {
+		final TorrentInfo info = torrent.getInfo();
+		this.torrent = torrent;
+		this.pieceLength = info.getPieceLength();
+		this.totalLength = info.files().stream().mapToLong(TorrentFile::getLength).sum();
+		this.pieceHashs = info.getPieces();
+		this.regions = new ArrayList<>();
+		this.verifyPieces = new BitSet(info.pieceSize());
+		this.successPieces = new BitSet(info.pieceSize());
+		for (TorrentStream stream : streams) {
+			this.regions.add(new Region(stream.filePath(), stream.fileBeginPos(), stream.fileEndPos()));
+			if(stream.selected()) {
+				stream.verifyPieces(this.verifyPieces);
+			}
+		}
+		this.regions.sort(Comparator.comparingLong(Region::begin));
+		this.batches = this.buildBatches();
+		this.batchIndex = new AtomicInteger(0);
+		this.verifyCount = new AtomicInteger(0);
+		this.readSize = new AtomicLong(0);
+		this.lock = lock;
+	}
+	
+	/**
+	 * <p>新建文件校验器</p>
+	 * 
+	 * @param torrent 种子信息
+	 * @param streams 文件流列表（没有选择下载的文件流只会读取数据不会校验）
+	 * 
+	 * @return {@link TorrentVerifier}
+	 */
+	public static final TorrentVerifier newInstance(Torrent torrent, List<TorrentStream> streams) {
+		return new TorrentVerifier(torrent, streams, new ReentrantLock());
+	}
+	
+	/**
+	 * <p>新建文件校验器</p>
+	 * 
+	 * @param torrent 种子信息
+	 * @param streams 文件流列表（没有选择下载的文件流只会读取数据不会校验）
+	 * @param lock 文件读取锁（文件流组读锁）
+	 * 
+	 * @return {@link TorrentVerifier}
+	 */
+	public static final TorrentVerifier newInstance(Torrent torrent, List<TorrentStream> streams, Lock lock) {
+		return new TorrentVerifier(torrent, streams, lock);
+	}
+	
+	/**
+	 * <p>新建批量读取区间</p>
+	 * <p>连续需要校验的Piece合并读取</p>
+	 * 
+	 * @return 批量读取区间
+	 */
+	private List<int[]> buildBatches() {
+		final int batchPieceSize = (int) Math.max(1, BATCH_LENGTH / this.pieceLength);
+		final List<int[]> list = new ArrayList<>();
+		int beginIndex = this.verifyPieces.nextSetBit(0);
+		while(beginIndex >= 0) {
+			final int endIndex = this.verifyPieces.nextClearBit(beginIndex);
+			for (int index = beginIndex; index < endIndex; index += batchPieceSize) {
+				list.add(new int[] { index, Math.min(endIndex, index + batchPieceSize) });
+			}
+			beginIndex = this.verifyPieces.nextSetBit(endIndex);
+		}
+		return list;
+	}
+	
+	/**
+	 * <p>校验文件</p>
+	 * <p>阻塞直到校验完成或者取消</p>
+	 * 
+	 * @return 校验成功Piece位图（取消返回：null）
+	 * 
+	 * @throws IOException IO异常
+	 */
+	public BitSet verify() throws IOException {
+		this.beginTime = System.currentTimeMillis();
+		final int workerSize = Math.min(THREAD_SIZE, this.batches.size());
+		final CountDownLatch latch = new CountDownLatch(workerSize);
+		try {
+			for (int index = 0; index < workerSize; index++) {
+				EXECUTOR.submit(() -> {
+					try {
+						this.work();
+					} finally {
+						latch.countDown();
+					}
+				});
+			}
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			this.cancel();
+		}
+		if(this.exception != null) {
+			throw this.exception;
+		}
+		final long costTime = Math.max(1L, System.currentTimeMillis() - this.beginTime);
+		if(this.cancel) {
+			LOGGER.debug("文件校验取消：{}-{}", this.verifyCount.get(), this.verifyPieces.cardinality());
+			return null;
+		}
+		LOGGER.debug(
+			"文件校验完成：{}-{}-{}ms-{}/s",
+			this.successPieces.cardinality(), this.verifyPieces.cardinality(),
+			costTime, FileUtils.formatSize(this.readSize.get() * 1000 / costTime)
+		);
+		synchronized (this.successPieces) {
+			return (BitSet) this.successPieces.clone();
+		}
+	}
+	
+	/**
+	 * <p>校验线程：循环获取批量读取区间直到没有区间或者取消</p>
+	 */
+	private void work() {
+		final int bufferLength = (int) (Math.max(1, BATCH_LENGTH / this.pieceLength) * this.pieceLength);
+		final byte[] buffer = new byte[bufferLength];
+		final MessageDigest digest = DigestUtils.sha1();
+		int[] batch;
+		int[] covers;
+		while(!this.cancel) {
+			final int index = this.batchIndex.getAndIncrement();
+			if(index >= this.batches.size()) {
+				break;
+			}
+			batch = this.batches.get(index);
+			covers = new int[batch[1] - batch[0]];
+			try {
+				DISK_SEMAPHORE.acquire();
+				try {
+					this.read(batch[0], batch[1], buffer, covers);
+				} finally {
+					DISK_SEMAPHORE.release();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				this.cancel();
+				break;
+			} catch (IOException e) {
+				LOGGER.error("文件校验读取异常", e);
+				this.exception = e;
+				this.cancel();
+				break;
+			}
+			this.verify(batch[0], batch[1], buffer, covers, digest);
+		}
+	}
+	
+	/**
+	 * <p>读取区间数据</p>
+	 * <p>每个Piece单独获取文件读取锁</p>
+	 * 
+	 * @param beginIndex 开始Piece索引（包含）
+	 * @param endIndex 结束Piece索引（不含）
+	 * @param buffer 数据缓存
+	 * @param covers 每个Piece读取数据大小
+	 * 
+	 * @throws IOException IO异常
+	 */
+	private void read(int beginIndex, int endIndex, byte[] buffer, int[] covers) throws IOException {
+		for (int index = beginIndex; index < endIndex && !this.cancel; index++) {
+			final long beginPos = index * this.pieceLength;
+			final long endPos = Math.min(this.totalLength, beginPos + this.pieceLength);
+			final int offset = (int) ((index - beginIndex) * this.pieceLength);
+			// 清除上次数据：没有数据区域必须为零
+			Arrays.fill(buffer, offset, offset + (int) (endPos - beginPos), (byte) 0);
+			this.lock.lock();
+			try {
+				covers[index - beginIndex] = this.read(beginPos, endPos, buffer, offset);
+			} finally {
+				this.lock.unlock();
+			}
+		}
+	}
+	
+	/**
+	 * <p>读取Piece数据</p>
+	 * 
+	 * @param beginPos Piece开始偏移（包含）
+	 * @param endPos Piece结束偏移（不含）
+	 * @param buffer 数据缓存
+	 * @param offset Piece数据缓存偏移
+	 * 
+	 * @return 读取数据大小
+	 * 
+	 * @throws IOException IO异常
+	 */
+	private int read(long beginPos, long endPos, byte[] buffer, int offset) throws IOException {
+		int cover = 0;
+		final FileHandlePool pool = FileHandlePool.getInstance();
+		for (Region region : this.regions) {
+			if(region.begin() >= endPos) {
+				break;
+			}
+			final long overlapBegin = Math.max(beginPos, region.begin());
+			final long overlapEnd = Math.min(endPos, region.end());
+			if(overlapBegin >= overlapEnd) {
+				continue;
+			}
+			if(!Files.exists(Paths.get(region.path()))) {
+				// 文件不存在：关闭已经删除文件的文件句柄（文件句柄池读取时会创建文件）
+				pool.close(region.path());
+				continue;
+			}
+			final int length = (int) (overlapEnd - overlapBegin);
+			final int bufferPos = offset + (int) (overlapBegin - beginPos);
+			final long position = overlapBegin - region.begin();
+			int size = 0;
+			while(size < length) {
+				final int readSize = pool.read(region.path(), position + size, buffer, bufferPos + size, length - size);
+				if(readSize < 0) {
+					// 文件大小不足
+					break;
+				}
+				size += readSize;
+			}
+			this.readSize.addAndGet(size);
+			VERIFY_BYTES.add(size);
+			cover += size;
+		}
+		return cover;
+	}
+	
+	/**
+	 * <p>校验区间数据</p>
+	 * 
+	 * @param beginIndex 开始Piece索引（包含）
+	 * @param endIndex 结束Piece索引（不含）
+	 * @param bytes 区间数据
+	 * @param covers 每个Piece读取数据大小
+	 * @param digest SHA-1算法工具
+	 */
+	private void verify(int beginIndex, int endIndex, byte[] bytes, int[] covers, MessageDigest digest) {
+		for (int index = beginIndex; index < endIndex; index++) {
+			final int offset = (int) ((index - beginIndex) * this.pieceLength);
+			final int length = (int) Math.min(this.pieceLength, this.totalLength - index * this.pieceLength);
+			final int cover = covers[index - beginIndex];
+			// 数据完整校验Hash，数据不完整（文件不存在或者大小不足）没有下载。
+			final boolean success = cover == length && this.verify(index, bytes, offset, length, digest);
+			if(success) {
+				synchronized (this.successPieces) {
+					this.successPieces.set(index);
+				}
+			}
+			this.verifyCount.incrementAndGet();
+		}
+	}
+	
+	/**
+	 * <p>校验Piece数据</p>
+	 * 
+	 * @param index Piece索引
+	 * @param bytes 区间数据
+	 * @param offset Piece数据偏移
+	 * @param length Piece数据长度
+	 * @param digest SHA-1算法工具
+	 * 
+	 * @return 是否校验成功
+	 */
+	private boolean verify(int index, byte[] bytes, int offset, int length, MessageDigest digest) {
+		if(this.pieceHashs != null) {
+			digest.update(bytes, offset, length);
+			final byte[] hash = digest.digest();
+			final int hashPos = index * SystemConfig.SHA1_HASH_LENGTH;
+			return Arrays.equals(hash, 0, hash.length, this.pieceHashs, hashPos, hashPos + SystemConfig.SHA1_HASH_LENGTH);
+		}
+		final byte[] hash = this.torrent.pieceHashV2(index);
+		if(hash == null) {
+			// 没有Piece层级Hash：验证是否有数据
+			return this.hasData(bytes, offset, length);
+		}
+		// 只计算文件数据：填充文件数据不是叶子节点
+		final int fileLength = Math.min(length, this.torrent.pieceLengthV2(index));
+		final byte[][] leafs = MerkleUtils.leafs(bytes, offset, fileLength);
+		return Arrays.equals(MerkleUtils.root(leafs, this.torrent.pieceLeafsV2(index), MerkleUtils.padding(0)), hash);
+	}
+	
+	/**
+	 * <p>判断是否含有数据</p>
+	 * 
+	 * @param bytes 数据
+	 * @param offset 数据偏移
+	 * @param length 数据长度
+	 * 
+	 * @return 是否含有
+	 */
+	private boolean hasData(byte[] bytes, int offset, int length) {
+		final int end = offset + length;
+		for (int index = offset; index < end; index++) {
+			if(bytes[index] != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * <p>取消校验</p>
+	 */
+	public void cancel() {
+		this.cancel = true;
+	}
+	
+	/**
+	 * <p>判断是否取消</p>
+	 * 
+	 * @return 是否取消
+	 */
+	public boolean cancelled() {
+		return this.cancel;
+	}
+	
+	/**
+	 * <p>获取校验进度</p>
+	 * 
+	 * @return 校验进度（百分比）
+	 */
+	public int progress() {
+		final int total = this.verifyPieces.cardinality();
+		if(total == 0) {
+			return 100;
+		}
+		return (int) (this.verifyCount.get() * 100L / total);
+	}
+	
+	/**
+	 * <p>获取校验速度</p>
+	 * 
+	 * @return 校验速度（B/s）
+	 */
+	public long speed() {
+		final long costTime = System.currentTimeMillis() - this.beginTime;
+		if(this.beginTime <= 0L || costTime <= 0L) {
+			return 0L;
+		}
+		return this.readSize.get() * 1000 / costTime;
+	}
+	
+	/**
+	 * <p>文件区域</p>
+	 * 
+	 * @param path 文件路径
+	 * @param begin 文件开始偏移（包含）
+	 * @param end 文件结束偏移（不含）
+	 * 
+	 * @author acgist
+	 */
+	private static final record Region(String path, long begin, long end) {
+	}
+	
+}
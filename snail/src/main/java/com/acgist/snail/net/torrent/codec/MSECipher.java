@@ -1,20 +1,9 @@
 package com.acgist.snail.net.torrent.codec;
 
 import java.nio.ByteBuffer;
-import java.security.InvalidKeyException;
-import java.security.Key;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 
-import javax.crypto.BadPaddingException;
-import javax.crypto.Cipher;
-import javax.crypto.IllegalBlockSizeException;
-import javax.crypto.NoSuchPaddingException;
-import javax.crypto.spec.SecretKeySpec;
-
-import com.acgist.snail.net.NetException;
 import com.acgist.snail.net.torrent.InfoHash;
-import com.acgist.snail.utils.ByteUtils;
 import com.acgist.snail.utils.DigestUtils;
 
 /**
@@ -26,17 +15,9 @@ import com.acgist.snail.utils.DigestUtils;
 public final class MSECipher {
 	
 	/**
-	 * <p>加密算法名称：{@value}</p>
-	 */
-	private static final String ARC4_ALGO = "ARCFOUR";
-	/**
-	 * <p>加密算法：{@value}</p>
-	 * <p>NoPadding：没有填充</p>
-	 * <p>ZeroPadding：填充零</p>
-	 * <p>PKCS5Padding：填充对齐（块大小固定为8的PKCS7Padding）</p>
-	 * <p>PKCS7Padding：填充对齐（块大小不固定）</p>
+	 * <p>丢弃密钥流长度：{@value}</p>
 	 */
-	private static final String ARC4_ALGO_TRANSFORMATION = ARC4_ALGO + "/ECB/NoPadding";
+	private static final int DISCARD_LENGTH = 1024;
 	/**
 	 * <p>请求客户端Key：{@value}</p>
 	 */
@@ -49,23 +30,19 @@ public final class MSECipher {
 	/**
 	 * <p>加密套件</p>
 	 */
-	private final Cipher encryptCipher;
+	private final ARC4 encryptCipher;
 	/**
 	 * <p>解密套件</p>
 	 */
-	private final Cipher decryptCipher;
+	private final ARC4 decryptCipher;
 	
 	/**
 	 * @param encryptKey 加密Key
 	 * @param decryptKey 解密Key
-	 * 
-	 * @throws InvalidKeyException 密钥异常
-	 * @throws NoSuchPaddingException 填充异常
-	 * @throws NoSuchAlgorithmException 算法异常
 	 */
-	private MSECipher(Key encryptKey, Key decryptKey) throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException {
-		this.encryptCipher = this.buildCipher(Cipher.ENCRYPT_MODE, ARC4_ALGO_TRANSFORMATION, encryptKey);
-		this.decryptCipher = this.buildCipher(Cipher.DECRYPT_MODE, ARC4_ALGO_TRANSFORMATION, decryptKey);
+	private MSECipher(byte[] encryptKey, byte[] decryptKey) {
+		this.encryptCipher = new ARC4(encryptKey);
+		this.decryptCipher = new ARC4(decryptKey);
 	}
 	
 	/**
@@ -75,17 +52,11 @@ public final class MSECipher {
 	 * @param infoHash InfoHash
 	 * 
 	 * @return MSE加解密套件
-	 * 
-	 * @throws NetException 网络异常
 	 */
-	public static final MSECipher newSender(byte[] secret, InfoHash infoHash) throws NetException {
-		final Key sendKey = buildSendKey(secret, infoHash.infoHash());
-		final Key recvKey = buildRecvKey(secret, infoHash.infoHash());
-		try {
-			return new MSECipher(sendKey, recvKey);
-		} catch (InvalidKeyException | NoSuchAlgorithmException | NoSuchPaddingException e) {
-			throw new NetException("新建加密套件失败", e);
-		}
+	public static final MSECipher newSender(byte[] secret, InfoHash infoHash) {
+		final byte[] sendKey = buildSendKey(secret, infoHash.infoHash());
+		final byte[] recvKey = buildRecvKey(secret, infoHash.infoHash());
+		return new MSECipher(sendKey, recvKey);
 	}
 	
 	/**
@@ -95,39 +66,21 @@ public final class MSECipher {
 	 * @param infoHash InfoHash
 	 * 
 	 * @return MSE加解密套件
-	 * 
-	 * @throws NetException 网络异常
 	 */
-	public static final MSECipher newRecver(byte[] secret, InfoHash infoHash) throws NetException {
-		final Key sendKey = buildSendKey(secret, infoHash.infoHash());
-		final Key recvKey = buildRecvKey(secret, infoHash.infoHash());
-		try {
-			return new MSECipher(recvKey, sendKey);
-		} catch (InvalidKeyException | NoSuchAlgorithmException | NoSuchPaddingException e) {
-			throw new NetException("新建加密套件失败", e);
-		}
+	public static final MSECipher newRecver(byte[] secret, InfoHash infoHash) {
+		final byte[] sendKey = buildSendKey(secret, infoHash.infoHash());
+		final byte[] recvKey = buildRecvKey(secret, infoHash.infoHash());
+		return new MSECipher(recvKey, sendKey);
 	}
 
 	/**
 	 * <p>数据加密</p>
+	 * <p>原地加密：不会分配内存</p>
 	 * 
 	 * @param buffer 数据
 	 */
 	public void encrypt(ByteBuffer buffer) {
-		boolean flip = true;
-		if(buffer.position() != 0) {
-			flip = false;
-			buffer.flip();
-		}
-		final byte[] value = ByteUtils.remainingToBytes(buffer);
-		byte[] encryptValue;
-		synchronized (this.encryptCipher) {
-			encryptValue = this.encryptCipher.update(value);
-		}
-		buffer.clear().put(encryptValue);
-		if(flip) {
-			buffer.flip();
-		}
+		this.crypt(this.encryptCipher, buffer);
 	}
 	
 	/**
@@ -136,39 +89,23 @@ public final class MSECipher {
 	 * @param bytes 原始数据
 	 * 
 	 * @return 加密数据
-	 * 
-	 * @throws NetException 网络异常
 	 */
-	public byte[] encrypt(byte[] bytes) throws NetException {
-		try {
-			synchronized (this.encryptCipher) {
-				return this.encryptCipher.doFinal(bytes);
-			}
-		} catch (IllegalBlockSizeException | BadPaddingException e) {
-			throw new NetException("数据加密异常", e);
+	public byte[] encrypt(byte[] bytes) {
+		final byte[] value = bytes.clone();
+		synchronized (this.encryptCipher) {
+			this.encryptCipher.crypt(value, 0, value.length);
 		}
+		return value;
 	}
 	
 	/**
 	 * <p>数据解密</p>
+	 * <p>原地解密：不会分配内存</p>
 	 * 
 	 * @param buffer 数据
 	 */
 	public void decrypt(ByteBuffer buffer) {
-		boolean flip = true;
-		if(buffer.position() != 0) {
-			flip = false;
-			buffer.flip();
-		}
-		final byte[] value = ByteUtils.remainingToBytes(buffer);
-		byte[] decryptValue;
-		synchronized (this.decryptCipher) {
-			decryptValue = this.decryptCipher.update(value);
-		}
-		buffer.clear().put(decryptValue);
-		if(flip) {
-			buffer.flip();
-		}
+		this.crypt(this.decryptCipher, buffer);
 	}
 	
 	/**
@@ -177,16 +114,37 @@ public final class MSECipher {
 	 * @param bytes 加密数据
 	 * 
 	 * @return 原始数据
+	 */
+	public byte[] decrypt(byte[] bytes) {
+		final byte[] value = bytes.clone();
+		synchronized (this.decryptCipher) {
+			this.decryptCipher.crypt(value, 0, value.length);
+		}
+		return value;
+	}
+	
+	/**
+	 * <p>数据加解密</p>
+	 * <p>写模式（position != 0）：处理[0, position)数据</p>
+	 * <p>读模式（position == 0）：处理[0, limit)数据</p>
+	 * <p>处理完成后缓冲区保持原有模式</p>
 	 * 
-	 * @throws NetException 网络异常
+	 * @param cipher 加解密套件
+	 * @param buffer 数据
 	 */
-	public byte[] decrypt(byte[] bytes) throws NetException {
-		try {
-			synchronized (this.decryptCipher) {
-				return this.decryptCipher.doFinal(bytes);
+	private void crypt(ARC4 cipher, ByteBuffer buffer) {
+		final int position = buffer.position();
+		final int limit = position == 0 ? buffer.limit() : position;
+		synchronized (cipher) {
+			if(buffer.hasArray()) {
+				cipher.crypt(buffer.array(), buffer.arrayOffset(), limit);
+			} else {
+				cipher.crypt(buffer, limit);
 			}
-		} catch (IllegalBlockSizeException | BadPaddingException e) {
-			throw new NetException("数据解密异常", e);
+		}
+		if(position != 0) {
+			// 兼容原有逻辑：写模式处理完成后重置limit
+			buffer.limit(buffer.capacity());
 		}
 	}
 	
@@ -198,7 +156,7 @@ public final class MSECipher {
 	 * 
 	 * @return Key
 	 */
-	private static final Key buildSendKey(byte[] secret, byte[] skey) {
+	private static final byte[] buildSendKey(byte[] secret, byte[] skey) {
 		return buildKey(KEY_SEND, secret, skey);
 	}
 
@@ -210,7 +168,7 @@ public final class MSECipher {
 	 * 
 	 * @return Key
 	 */
-	private static final Key buildRecvKey(byte[] secret, byte[] skey) {
+	private static final byte[] buildRecvKey(byte[] secret, byte[] skey) {
 		return buildKey(KEY_RECV, secret, skey);
 	}
 
@@ -223,33 +181,101 @@ public final class MSECipher {
 	 * 
 	 * @return Key
 	 */
-	private static final Key buildKey(String key, byte[] secret, byte[] skey) {
+	private static final byte[] buildKey(String key, byte[] secret, byte[] skey) {
 		final MessageDigest digest = DigestUtils.sha1();
 		digest.update(key.getBytes());
 		digest.update(secret);
 		digest.update(skey);
-		return new SecretKeySpec(digest.digest(), ARC4_ALGO);
+		return digest.digest();
 	}
 
 	/**
-	 * <p>新建Cipher</p>
-	 * 
-	 * @param mode 模式
-	 * @param transformation 算法
-	 * @param key Key
-	 * 
-	 * @return 加解密套件
+	 * <p>ARC4密钥流</p>
+	 * <p>直接在原始数据上异或密钥流，避免JCE加解密时复制数据。</p>
+	 * <p>非线程安全：调用方需要加锁</p>
 	 * 
-	 * @throws InvalidKeyException 密钥异常
-	 * @throws NoSuchPaddingException 填充异常
-	 * @throws NoSuchAlgorithmException 算法异常
+	 * @author acgist
 	 */
-	private Cipher buildCipher(int mode, String transformation, Key key) throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException {
-		final Cipher cipher = Cipher.getInstance(transformation);
-		cipher.init(mode, key);
-		// 丢弃1024字节
-		cipher.update(new byte[1024]);
-		return cipher;
+	private static final class ARC4 {
+		
+		/**
+		 * <p>状态向量</p>
+		 */
+		private final byte[] state = new byte[256];
+		/**
+		 * <p>索引I</p>
+		 */
+		private int i;
+		/**
+		 * <p>索引J</p>
+		 */
+		private int j;
+		
+		/**
+		 * <p>初始化状态向量（KSA）并丢弃密钥流前{@value MSECipher#DISCARD_LENGTH}字节</p>
+		 * 
+		 * @param key Key
+		 */
+		private ARC4(byte[] key) {
+			final byte[] state = this.state;
+			for (int index = 0; index < 256; index++) {
+				state[index] = (byte) index;
+			}
+			int j = 0;
+			byte swap;
+			final int keyLength = key.length;
+			for (int index = 0; index < 256; index++) {
+				j = (j + state[index] + key[index % keyLength]) & 0xFF;
+				swap = state[index];
+				state[index] = state[j];
+				state[j] = swap;
+			}
+			for (int index = 0; index < DISCARD_LENGTH; index++) {
+				this.next();
+			}
+		}
+		
+		/**
+		 * <p>生成下一个密钥字节（PRGA）</p>
+		 * 
+		 * @return 密钥字节
+		 */
+		private byte next() {
+			final byte[] state = this.state;
+			this.i = (this.i + 1) & 0xFF;
+			this.j = (this.j + state[this.i]) & 0xFF;
+			final byte swap = state[this.i];
+			state[this.i] = state[this.j];
+			state[this.j] = swap;
+			return state[(state[this.i] + state[this.j]) & 0xFF];
+		}
+		
+		/**
+		 * <p>数组加解密</p>
+		 * 
+		 * @param bytes 数据
+		 * @param offset 开始偏移
+		 * @param length 数据长度
+		 */
+		private void crypt(byte[] bytes, int offset, int length) {
+			final int end = offset + length;
+			for (int index = offset; index < end; index++) {
+				bytes[index] ^= this.next();
+			}
+		}
+		
+		/**
+		 * <p>缓冲区加解密（直接缓冲区）</p>
+		 * 
+		 * @param buffer 数据
+		 * @param length 数据长度
+		 */
+		private void crypt(ByteBuffer buffer, int length) {
+			for (int index = 0; index < length; index++) {
+				buffer.put(index, (byte) (buffer.get(index) ^ this.next()));
+			}
+		}
+		
 	}
 
 }
@@ -137,9 +137,10 @@ public final class MSECryptHandshakeHandler {
 	 */
 	private MSECipher cipher;
 	/**
-	 * <p>VC加密套件</p>
+	 * <p>VC加密数据</p>
+	 * <p>相同数据发送方加密和接收方解密结果是一样的：只需计算一次</p>
 	 */
-	private MSECipher cipherVC;
+	private byte[] vcMatch;
 	/**
 	 * <p>密钥对</p>
 	 */
@@ -176,7 +177,7 @@ public final class MSECryptHandshakeHandler {
 	private MSECryptHandshakeHandler(PeerUnpackMessageCodec peerUnpackMessageCodec, PeerSubMessageHandler peerSubMessageHandler) {
 		final MSEKeyPairBuilder mseKeyPairBuilder = MSEKeyPairBuilder.newInstance();
 		this.buffer = ByteBuffer.allocate(BUFFER_LENGTH);
-		this.keyPair = mseKeyPairBuilder.buildKeyPair();
+		this.keyPair = mseKeyPairBuilder.pollKeyPair();
 		this.peerSubMessageHandler = peerSubMessageHandler;
 		this.peerUnpackMessageCodec = peerUnpackMessageCodec;
 	}
@@ -423,7 +424,7 @@ public final class MSECryptHandshakeHandler {
 		final byte[] dhSecretBytes = NumberUtils.encodeBigInteger(this.dhSecret, CryptConfig.PUBLIC_KEY_LENGTH);
 		final InfoHash infoHash = torrentSession.infoHash();
 		this.cipher = MSECipher.newSender(dhSecretBytes, infoHash);
-		this.cipherVC = MSECipher.newSender(dhSecretBytes, infoHash);
+		this.vcMatch = MSECipher.newSender(dhSecretBytes, infoHash).decrypt(CryptConfig.VC);
 		ByteBuffer message = ByteBuffer.allocate(40);
 		final MessageDigest digest = DigestUtils.sha1();
 //		HASH('req1', S)
@@ -582,9 +583,7 @@ public final class MSECryptHandshakeHandler {
 	 */
 	private void receiveConfirm() throws NetException {
 		LOGGER.debug("加密握手（接收确认加密协议）步骤：{}", this.step);
-		// 相同数据发送方加密和接收方解密结果是一样的
-		final byte[] vcMatch = this.cipherVC.decrypt(CryptConfig.VC);
-		if(!this.match(vcMatch)) {
+		if(!this.match(this.vcMatch)) {
 			return;
 		}
 		if(this.buffer.position() < CONFIRM_MIN_LENGTH) {
@@ -768,7 +767,7 @@ public final class MSECryptHandshakeHandler {
 		this.keyPair = null;
 		this.strategy = null;
 		this.dhSecret = null;
-		this.cipherVC = null;
+		this.vcMatch = null;
 		this.msePaddingSync = null;
 		this.unlockHandshake();
 	}
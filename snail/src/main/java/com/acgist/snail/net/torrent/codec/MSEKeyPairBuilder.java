@@ -5,8 +5,14 @@ import java.nio.ByteBuffer;
 import java.security.KeyPair;
 import java.security.PrivateKey;
 import java.security.PublicKey;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.acgist.snail.config.CryptConfig;
+import com.acgist.snail.context.SystemThreadContext;
+import com.acgist.snail.logger.Logger;
+import com.acgist.snail.logger.LoggerFactory;
 import com.acgist.snail.utils.ArrayUtils;
 import com.acgist.snail.utils.NumberUtils;
 
@@ -14,11 +20,32 @@ import com.acgist.snail.utils.NumberUtils;
  * <p>MSE密钥对Builder</p>
  * <p>一的补码（one's complement）：反码（正数=原码、负数=反码）</p>
  * <p>二的补码（two's complement）：补码（正数=原码、负数=反码+1）</p>
+ * <p>新建密钥对需要大数模幂运算：加密握手使用后台预先生成的密钥对池</p>
  * 
  * @author acgist
  */
 public final class MSEKeyPairBuilder {
 	
+	private static final Logger LOGGER = LoggerFactory.getLogger(MSEKeyPairBuilder.class);
+	
+	/**
+	 * <p>密钥对池大小：{@value}</p>
+	 */
+	private static final int POOL_SIZE = 32;
+	/**
+	 * <p>密钥对池补充阈值：{@value}</p>
+	 */
+	private static final int POOL_REFILL_SIZE = POOL_SIZE / 2;
+	/**
+	 * <p>密钥对池</p>
+	 * <p>密钥对只能使用一次：取出之后不再放回</p>
+	 */
+	private static final BlockingQueue<KeyPair> POOL = new ArrayBlockingQueue<>(POOL_SIZE);
+	/**
+	 * <p>是否正在补充密钥对池</p>
+	 */
+	private static final AtomicBoolean REFILLING = new AtomicBoolean(false);
+	
 	/**
 	 * <p>算法：{@value}</p>
 	 */
@@ -50,6 +77,45 @@ public final class MSEKeyPairBuilder {
 		final MSEPublicKey publicKey = privateKey.getPublicKey();
 		return new KeyPair(publicKey, privateKey);
 	}
+	
+	/**
+	 * <p>获取密钥对</p>
+	 * <p>优先使用密钥对池，密钥对池为空时直接新建密钥对。</p>
+	 * 
+	 * @return 密钥对
+	 */
+	public KeyPair pollKeyPair() {
+		final KeyPair keyPair = POOL.poll();
+		if(POOL.size() < POOL_REFILL_SIZE) {
+			this.refill();
+		}
+		if(keyPair == null) {
+			LOGGER.debug("密钥对池为空：新建密钥对");
+			return this.buildKeyPair();
+		}
+		return keyPair;
+	}
+	
+	/**
+	 * <p>后台补充密钥对池</p>
+	 */
+	private void refill() {
+		if(REFILLING.compareAndSet(false, true)) {
+			SystemThreadContext.submit(() -> {
+				try {
+					while(POOL.remainingCapacity() > 0) {
+						if(!POOL.offer(this.buildKeyPair())) {
+							break;
+						}
+					}
+				} catch (Exception e) {
+					LOGGER.error("补充密钥对池异常", e);
+				} finally {
+					REFILLING.set(false);
+				}
+			});
+		}
+	}
 
 	/**
 	 * <p>MSE公钥</p>
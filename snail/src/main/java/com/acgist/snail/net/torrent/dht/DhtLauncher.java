@@ -119,8 +119,14 @@ public final class DhtLauncher implements Runnable {
 			return;
 		}
 		final byte[] infoHashValue = this.infoHash.infoHash();
+		// 混合种子同时加入v2网络
+		final byte[] truncatedInfoHash = this.infoHash.hybrid() ? this.infoHash.truncatedInfoHash() : null;
 		for (InetSocketAddress socketAddress : list) {
-			DhtClient.newInstance(socketAddress).getPeers(infoHashValue);
+			final DhtClient client = DhtClient.newInstance(socketAddress);
+			client.getPeers(infoHashValue);
+			if(truncatedInfoHash != null) {
+				client.getPeers(truncatedInfoHash);
+			}
 		}
 	}
 	
@@ -77,17 +77,16 @@ public final class AnnouncePeerRequest extends DhtRequest {
 				// 自动配置端口
 				peerPort = socketAddress.getPort();
 			}
-			final var peerSession = PeerContext.getInstance().newPeerSession(
-				infoHashHex,
+			// 自动配置端口：支持UTP
+			PeerContext.getInstance().newPeer(
+				torrentSession.infoHashHex(),
 				torrentSession.statistics(),
 				peerHost,
 				peerPort,
-				PeerConfig.Source.DHT
+				PeerConfig.Source.DHT,
+				impliedPortAuto ? PeerConfig.PEX_UTP : 0,
+				null
 			);
-			if(impliedPortAuto) {
-				// 支持UTP
-				peerSession.flags(PeerConfig.PEX_UTP);
-			}
 		} else {
 			LOGGER.debug("声明Peer种子信息不存在：{}", infoHashHex);
 		}
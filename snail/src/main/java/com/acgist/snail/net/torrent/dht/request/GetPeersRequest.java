@@ -61,7 +61,7 @@ public final class GetPeersRequest extends DhtRequest {
 		if(torrentSession != null) {
 			// TODO：IPv6
 			final ByteBuffer buffer = ByteBuffer.allocate(SystemConfig.IPV4_PORT_LENGTH);
-			final var list = PeerContext.getInstance().listPeerSession(infoHashHex);
+			final var list = PeerContext.getInstance().listPeerSession(torrentSession.infoHashHex());
 			if(CollectionUtils.isNotEmpty(list)) {
 				// 返回Peer
 				needNodes = false;
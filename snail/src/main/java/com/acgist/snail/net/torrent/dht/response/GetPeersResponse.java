@@ -1,5 +1,6 @@
 package com.acgist.snail.net.torrent.dht.response;
 
+import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
@@ -14,7 +15,6 @@ import com.acgist.snail.net.torrent.dht.DhtRequest;
 import com.acgist.snail.net.torrent.dht.DhtResponse;
 import com.acgist.snail.net.torrent.dht.NodeSession;
 import com.acgist.snail.net.torrent.peer.PeerContext;
-import com.acgist.snail.net.torrent.peer.PeerSession;
 import com.acgist.snail.utils.NetUtils;
 
 /**
@@ -89,7 +89,7 @@ public final class GetPeersResponse extends DhtResponse {
 	 * 
 	 * @see #getValues(String)
 	 */
-	public List<PeerSession> getPeers(String infoHashHex) {
+	public List<InetSocketAddress> getPeers(String infoHashHex) {
 		return this.getValues(infoHashHex);
 	}
 	
@@ -100,7 +100,7 @@ public final class GetPeersResponse extends DhtResponse {
 	 * 
 	 * @return Peer列表
 	 */
-	public List<PeerSession> getValues(String infoHashHex) {
+	public List<InetSocketAddress> getValues(String infoHashHex) {
 		final TorrentSession torrentSession = TorrentContext.getInstance().torrentSession(infoHashHex);
 		if(torrentSession == null) {
 			return List.of();
@@ -109,22 +109,25 @@ public final class GetPeersResponse extends DhtResponse {
 		if(values == null) {
 			return List.of();
 		}
-		PeerSession session;
+		String host;
+		int port;
 		// TODO：IPv6
 		final ByteBuffer buffer = ByteBuffer.allocate(SystemConfig.IPV4_PORT_LENGTH);
-		final List<PeerSession> list = new ArrayList<>();
+		final List<InetSocketAddress> list = new ArrayList<>();
 		for (Object object : values) {
 			buffer.put((byte[]) object);
 			buffer.flip();
-			session = PeerContext.getInstance().newPeerSession(
-				infoHashHex,
+			host = NetUtils.intToIP(buffer.getInt());
+			port = NetUtils.portToInt(buffer.getShort());
+			PeerContext.getInstance().newPeer(
+				torrentSession.infoHashHex(),
 				torrentSession.statistics(),
-				NetUtils.intToIP(buffer.getInt()),
-				NetUtils.portToInt(buffer.getShort()),
+				host,
+				port,
 				PeerConfig.Source.DHT
 			);
 			buffer.flip();
-			list.add(session);
+			list.add(NetUtils.buildSocketAddress(host, port));
 		}
 		return list;
 	}
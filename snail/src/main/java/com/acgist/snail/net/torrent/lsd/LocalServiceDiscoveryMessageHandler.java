@@ -95,8 +95,8 @@ public final class LocalServiceDiscoveryMessageHandler extends UdpMessageHandler
 			LOGGER.debug("本地发现消息处理失败（种子信息不存在）：{}", infoHashHex);
 		} else {
 			LOGGER.debug("本地发现消息：{}-{}-{}", infoHashHex, host, port);
-			PeerContext.getInstance().newPeerSession(
-				infoHashHex,
+			PeerContext.getInstance().newPeer(
+				torrentSession.infoHashHex(),
 				torrentSession.statistics(),
 				host,
 				Integer.valueOf(port),
@@ -470,6 +470,17 @@ public final class ExtensionMessageHandler implements IExtensionMessageHandler {
 		this.dontHaveExtensionMessageHandler.onMessage(buffer);
 	}
 	
+	/**
+	 * <p>判断是否可用</p>
+	 * 
+	 * @return 是否可用
+	 * 
+	 * @see PeerSubMessageHandler#available()
+	 */
+	public boolean available() {
+		return this.peerSubMessageHandler.available();
+	}
+	
 	/**
 	 * <p>发送扩展消息</p>
 	 * 
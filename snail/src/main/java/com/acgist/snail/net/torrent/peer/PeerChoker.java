@@ -0,0 +1,251 @@
+package com.acgist.snail.net.torrent.peer;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.acgist.snail.config.DownloadConfig;
+import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.logger.Logger;
+import com.acgist.snail.logger.LoggerFactory;
+import com.acgist.snail.net.torrent.TorrentSession;
+
+/**
+ * <p>Peer阻塞管理</p>
+ * <p>定时选择感兴趣的Peer解除阻塞（上传位置），其他Peer全部阻塞。</p>
+ * <p>下载任务：优先解除阻塞提供下载速度最快的Peer（一报还一报）</p>
+ * <p>做种任务：优先解除阻塞上传速度最快的Peer</p>
+ * <p>乐观解除阻塞：定时轮换一个阻塞的Peer解除阻塞，用来发现速度更快的Peer。</p>
+ * <p>上传位置数量：{@link DownloadConfig#getUploadSlots()}</p>
+ * <p>协议链接：http://bittorrent.org/beps/bep_0003.html</p>
+ * 
+ * @author acgist
+ */
+public final class PeerChoker {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(PeerChoker.class);
+	
+	/**
+	 * <p>阻塞管理周期（秒）：{@value}</p>
+	 */
+	public static final int CHOKE_INTERVAL = 10;
+	/**
+	 * <p>乐观解除阻塞轮换周期（秒）：{@value}</p>
+	 */
+	private static final int OPTIMISTIC_INTERVAL = 30;
+	/**
+	 * <p>乐观解除阻塞轮换次数</p>
+	 */
+	private static final int OPTIMISTIC_ROUND = OPTIMISTIC_INTERVAL / CHOKE_INTERVAL;
+	
+	/**
+	 * <p>BT任务信息</p>
+	 */
+	private final TorrentSession torrentSession;
+	/**
+	 * <p>解除阻塞Peer连接（不含乐观解除阻塞Peer连接）</p>
+	 */
+	private final Set<PeerConnect> unchokePeerConnects;
+	/**
+	 * <p>Peer连接统计</p>
+	 * <p>Peer连接=上传总大小、下载总大小</p>
+	 */
+	private Map<PeerConnect, long[]> statistics;
+	/**
+	 * <p>乐观解除阻塞Peer连接</p>
+	 */
+	private PeerConnect optimisticPeerConnect;
+	/**
+	 * <p>阻塞管理次数</p>
+	 */
+	private int round;
+	/**
+	 * <p>最后一次阻塞管理时间</p>
+	 */
+	private long lastChokeTime;
+	
+	/**
+	 * @param torrentSession BT任务信息
+	 */
+	private PeerChoker(TorrentSession torrentSession) {
+		this.torrentSession = torrentSession;
+		this.unchokePeerConnects = new HashSet<>();
+		this.statistics = new HashMap<>();
+		this.lastChokeTime = System.currentTimeMillis();
+	}
+	
+	/**
+	 * <p>新建Peer阻塞管理</p>
+	 * 
+	 * @param torrentSession BT任务信息
+	 * 
+	 * @return {@link PeerChoker}
+	 */
+	public static final PeerChoker newInstance(TorrentSession torrentSession) {
+		return new PeerChoker(torrentSession);
+	}
+	
+	/**
+	 * <p>申请上传位置</p>
+	 * <p>新的Peer连接感兴趣时如果上传位置空闲可以直接解除阻塞，不用等待下次阻塞管理。</p>
+	 * 
+	 * @param peerConnect Peer连接
+	 * 
+	 * @return 是否申请成功
+	 */
+	public synchronized boolean unchokeable(PeerConnect peerConnect) {
+		if(peerConnect == null) {
+			return false;
+		}
+		this.unchokePeerConnects.removeIf(value -> !value.available() || value.peerConnectSession().isAmChoked());
+		if(this.unchokePeerConnects.size() < DownloadConfig.getUploadSlots()) {
+			this.unchokePeerConnects.add(peerConnect);
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * <p>阻塞管理</p>
+	 * <p>根据速度重新选择解除阻塞Peer连接，定时轮换乐观解除阻塞Peer连接。</p>
+	 */
+	public synchronized void choke() {
+		final long nowTime = System.currentTimeMillis();
+		final long interval = Math.max(1L, nowTime - this.lastChokeTime);
+		this.lastChokeTime = nowTime;
+		// 做种任务：上传速度排序
+		final boolean seeding = this.torrentSession.completed();
+		final Map<PeerConnect, long[]> statistics = new HashMap<>();
+		final Map<PeerConnect, Long> rates = new HashMap<>();
+		final List<PeerConnect> peerConnects = new ArrayList<>();
+		final List<PeerSession> peerSessions = PeerContext.getInstance().listPeerSession(this.torrentSession.infoHashHex());
+		for (PeerSession peerSession : peerSessions) {
+			if(peerSession.connected()) {
+				this.buildPeerConnect(peerSession.peerUploader(), seeding, interval, statistics, rates, peerConnects);
+				this.buildPeerConnect(peerSession.peerDownloader(), seeding, interval, statistics, rates, peerConnects);
+			}
+		}
+		this.statistics = statistics;
+		// 速度相同时优先选择已经解除阻塞的Peer连接：防止频繁切换
+		peerConnects.sort(
+			Comparator.comparingLong((PeerConnect peerConnect) -> rates.get(peerConnect))
+				.thenComparing(peerConnect -> peerConnect.peerConnectSession().isAmUnchoked())
+				.reversed()
+		);
+		final int uploadSlots = DownloadConfig.getUploadSlots();
+		this.unchokePeerConnects.clear();
+		for (PeerConnect peerConnect : peerConnects) {
+			if(this.unchokePeerConnects.size() >= uploadSlots) {
+				break;
+			}
+			this.unchokePeerConnects.add(peerConnect);
+		}
+		this.optimistic(peerConnects);
+		for (PeerConnect peerConnect : peerConnects) {
+			final PeerConnectSession peerConnectSession = peerConnect.peerConnectSession();
+			if(this.unchokePeerConnects.contains(peerConnect) || peerConnect == this.optimisticPeerConnect) {
+				if(peerConnectSession.isAmChoked()) {
+					peerConnect.unchoke();
+				}
+			} else {
+				if(peerConnectSession.isAmUnchoked()) {
+					peerConnect.choke();
+				}
+			}
+		}
+		this.round++;
+		LOGGER.debug(
+			"阻塞管理：{}-{}-{}-{}",
+			this.torrentSession,
+			peerConnects.size(),
+			this.unchokePeerConnects.size(),
+			this.optimisticPeerConnect
+		);
+	}
+	
+	/**
+	 * <p>统计Peer连接</p>
+	 * <p>没有感兴趣的Peer连接直接阻塞，感兴趣的Peer连接加入候选列表。</p>
+	 * 
+	 * @param peerConnect Peer连接
+	 * @param seeding 是否做种
+	 * @param interval 统计时间（毫秒）
+	 * @param statistics Peer连接统计
+	 * @param rates Peer连接速度
+	 * @param peerConnects 候选Peer连接
+	 */
+	private void buildPeerConnect(
+		PeerConnect peerConnect, boolean seeding, long interval,
+		Map<PeerConnect, long[]> statistics, Map<PeerConnect, Long> rates, List<PeerConnect> peerConnects
+	) {
+		if(peerConnect == null || !peerConnect.available()) {
+			return;
+		}
+		final PeerConnectSession peerConnectSession = peerConnect.peerConnectSession();
+		if(
+			peerConnectSession.isPeerNotInterested() ||
+			peerConnect.peerSession().uploadOnly()
+		) {
+			if(peerConnectSession.isAmUnchoked()) {
+				peerConnect.choke();
+			}
+			return;
+		}
+		final long[] totals = new long[] {
+			peerConnectSession.uploadTotal(),
+			peerConnectSession.downloadTotal()
+		};
+		final long[] oldTotals = this.statistics.getOrDefault(peerConnect, totals);
+		final int index = seeding ? 0 : 1;
+		// 速度（B/S）
+		final long rate = (totals[index] - oldTotals[index]) * SystemConfig.ONE_SECOND_MILLIS / interval;
+		statistics.put(peerConnect, totals);
+		rates.put(peerConnect, rate);
+		peerConnects.add(peerConnect);
+	}
+	
+	/**
+	 * <p>乐观解除阻塞</p>
+	 * <p>轮换周期到达或者当前乐观解除阻塞Peer连接失效时重新随机选择</p>
+	 * 
+	 * @param peerConnects 候选Peer连接
+	 */
+	private void optimistic(List<PeerConnect> peerConnects) {
+		final PeerConnect oldPeerConnect = this.optimisticPeerConnect;
+		if(
+			oldPeerConnect != null &&
+			this.round % OPTIMISTIC_ROUND != 0 &&
+			peerConnects.contains(oldPeerConnect) &&
+			!this.unchokePeerConnects.contains(oldPeerConnect)
+		) {
+			return;
+		}
+		final List<PeerConnect> chokePeerConnects = new ArrayList<>();
+		for (PeerConnect peerConnect : peerConnects) {
+			if(peerConnect != oldPeerConnect && !this.unchokePeerConnects.contains(peerConnect)) {
+				chokePeerConnects.add(peerConnect);
+			}
+		}
+		if(chokePeerConnects.isEmpty()) {
+			// 没有其他选择：继续使用当前乐观解除阻塞Peer连接
+			this.optimisticPeerConnect = peerConnects.contains(oldPeerConnect) && !this.unchokePeerConnects.contains(oldPeerConnect) ? oldPeerConnect : null;
+		} else {
+			this.optimisticPeerConnect = chokePeerConnects.get(ThreadLocalRandom.current().nextInt(chokePeerConnects.size()));
+		}
+	}
+	
+	/**
+	 * <p>释放资源</p>
+	 */
+	public synchronized void release() {
+		this.unchokePeerConnects.clear();
+		this.statistics.clear();
+		this.optimisticPeerConnect = null;
+	}
+	
+}
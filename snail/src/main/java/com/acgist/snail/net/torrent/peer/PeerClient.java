@@ -1,5 +1,7 @@
 package com.acgist.snail.net.torrent.peer;
 
+import java.util.function.Consumer;
+
 import com.acgist.snail.config.SystemConfig;
 import com.acgist.snail.net.TcpClient;
 
@@ -45,6 +47,15 @@ public final class PeerClient extends TcpClient<PeerMessageHandler> {
 	public boolean connect() {
 		return this.connect(this.peerSession.host(), this.peerSession.port());
 	}
+	
+	/**
+	 * <p>异步连接</p>
+	 * 
+	 * @param callback 连接回调：是否连接成功
+	 */
+	public void connect(Consumer<Boolean> callback) {
+		this.connect(this.peerSession.host(), this.peerSession.port(), callback);
+	}
 
 	/**
 	 * <p>获取Peer信息</p>
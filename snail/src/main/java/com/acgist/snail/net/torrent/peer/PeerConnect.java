@@ -8,9 +8,12 @@ import com.acgist.snail.context.IStatisticsSession;
 import com.acgist.snail.logger.Logger;
 import com.acgist.snail.logger.LoggerFactory;
 import com.acgist.snail.net.torrent.IPeerConnect;
+import com.acgist.snail.net.torrent.PieceBufferPool;
 import com.acgist.snail.net.torrent.TorrentPiece;
+import com.acgist.snail.net.torrent.TorrentPieceHasher;
 import com.acgist.snail.net.torrent.TorrentSession;
 import com.acgist.snail.utils.BeanUtils;
+import com.acgist.snail.utils.ThreadUtils;
 
 /**
  * <p>Peer连接</p>
@@ -44,6 +47,14 @@ public abstract class PeerConnect implements IPeerConnect {
 	 * <p>释放等待时间（毫秒）：{@value}</p>
 	 */
 	private static final long RELEASE_TIMEOUT = 4L * SystemConfig.ONE_SECOND_MILLIS;
+	/**
+	 * <p>Piece内存不足等待时间（毫秒）：{@value}</p>
+	 */
+	private static final long PIECE_MEMORY_TIMEOUT = SystemConfig.ONE_SECOND_MILLIS;
+	/**
+	 * <p>Piece内存不足最大等待次数：{@value}</p>
+	 */
+	private static final int PIECE_MEMORY_WAIT_TIMES = 10;
 	
 	/**
 	 * <p>连接状态</p>
@@ -56,7 +67,7 @@ public abstract class PeerConnect implements IPeerConnect {
 	/**
 	 * <p>当前下载Piece信息</p>
 	 */
-	private TorrentPiece downloadPiece;
+	private volatile TorrentPiece downloadPiece;
 	/**
 	 * <p>SLICE锁</p>
 	 * 
@@ -200,6 +211,24 @@ public abstract class PeerConnect implements IPeerConnect {
 		this.peerSubMessageHandler.uploadOnly();
 	}
 	
+	/**
+	 * <p>发送阻塞消息</p>
+	 * 
+	 * @see PeerSubMessageHandler#choke()
+	 */
+	public final void choke() {
+		this.peerSubMessageHandler.choke();
+	}
+	
+	/**
+	 * <p>发送解除阻塞消息</p>
+	 * 
+	 * @see PeerSubMessageHandler#unchoke()
+	 */
+	public final void unchoke() {
+		this.peerSubMessageHandler.unchoke();
+	}
+	
 	/**
 	 * <p>判断是否可用</p>
 	 * 
@@ -270,17 +299,26 @@ public abstract class PeerConnect implements IPeerConnect {
 	 * @param bytes Piece数据
 	 */
 	public final void piece(int index, int begin, byte[] bytes) {
-		if(bytes == null || this.downloadPiece == null) {
+		// 请求线程可能修改下载Piece
+		final TorrentPiece piece = this.downloadPiece;
+		if(bytes == null || piece == null) {
 			return;
 		}
-		final int downloadIndex = this.downloadPiece.getIndex();
+		final int downloadIndex = piece.getIndex();
 		if(index != downloadIndex) {
 			LOGGER.debug("下载Piece索引和当前Piece索引不符：{}-{}", index, downloadIndex);
 			return;
 		}
 		// 释放slice锁
 		this.unlockSlice();
-		final boolean completed = this.downloadPiece.write(begin, bytes);
+		// 数据块校验失败：记录错误数据（Piece校验成功以后禁用Peer）
+		if(!piece.verify(begin, bytes)) {
+			LOGGER.warn("Slice校验失败：{}-{}-{}", this.peerSession, index, begin);
+			this.peerSession.badPieces(index);
+			this.torrentSession.peerSmartBan().fail(piece, this.peerSession, begin, bytes);
+			return;
+		}
+		final boolean completed = piece.write(begin, bytes, this.peerSession);
 		// 下载完成：释放完成锁
 		if(completed) {
 			this.unlockCompleted();
@@ -317,11 +355,16 @@ public abstract class PeerConnect implements IPeerConnect {
 		this.releaseDownload();
 		this.torrentSession.checkCompletedAndUnlock();
 		// 验证最后选择Piece是否下载完成
-		if(this.downloadPiece != null && !this.downloadPiece.completedAndVerify()) {
+		if(this.downloadPiece == null) {
+			// 没有Piece
+		} else if(this.downloadPiece.completed()) {
+			this.verify(this.downloadPiece);
+		} else {
 			LOGGER.debug("Piece最后失败：{}", this.downloadPiece);
 			this.torrentSession.undone(this.downloadPiece);
 			this.peerSubMessageHandler.cancel(this.downloadPiece.getIndex(), this.downloadPiece.getBegin(), this.downloadPiece.getLength());
 		}
+		this.downloadPiece = null;
 		LOGGER.debug("结束请求下载：{}", this.peerSession);
 	}
 	
@@ -345,7 +388,8 @@ public abstract class PeerConnect implements IPeerConnect {
 			return false;
 		}
 		final int index = this.downloadPiece.getIndex();
-		while(this.available()) {
+		// 部分下载Piece：只请求没有下载的数据块
+		while(this.available() && this.downloadPiece.hasMoreSlice()) {
 			// 超过slice请求数量进入等待
 			if (this.sliceLock.get() >= SLICE_REQUEST_SIZE) {
 				this.lockSlice();
@@ -360,10 +404,6 @@ public abstract class PeerConnect implements IPeerConnect {
 			final int begin = this.downloadPiece.position();
 			final int length = this.downloadPiece.length();
 			this.peerSubMessageHandler.request(index, begin, length);
-			// 是否还有更多SLICE
-			if(!this.downloadPiece.hasMoreSlice()) {
-				break;
-			}
 		}
 		// 添加完成锁：请求发送完成必须进入完成等待（数据可能没有全部返回）
 		this.lockCompleted();
@@ -379,35 +419,69 @@ public abstract class PeerConnect implements IPeerConnect {
 		if(this.downloadPiece == null) {
 			// 没有Piece
 		} else if(this.downloadPiece.completed()) {
-			if(this.downloadPiece.verify()) {
-				final boolean success = this.torrentSession.write(this.downloadPiece);
-				if(success) {
-					// 统计下载有效数据
-					this.statisticsSession.download(this.downloadPiece.getLength());
-				} else {
-					LOGGER.debug("Piece保存失败：{}", this.downloadPiece);
-					this.torrentSession.undone(this.downloadPiece);
-				}
-			} else {
-				// 设置下载错误Piece位图
-				this.peerSession.badPieces(this.downloadPiece.getIndex());
-				LOGGER.warn("Piece校验失败：{}", this.downloadPiece);
-				this.torrentSession.undone(this.downloadPiece);
-			}
+			this.verify(this.downloadPiece);
 		} else {
 			LOGGER.debug("Piece下载失败：{}", this.downloadPiece);
 			this.torrentSession.undone(this.downloadPiece);
 		}
+		this.downloadPiece = null;
+		// Piece内存不足：等待其他Piece写出或者下载失败归还数据块（超过最大等待次数继续挑选：防止一直等待）
+		int wait = 0;
+		while(
+			wait++ < PIECE_MEMORY_WAIT_TIMES &&
+			this.available() &&
+			this.torrentSession.downloadable() &&
+			!PieceBufferPool.getInstance().available()
+		) {
+			LOGGER.debug("选择下载Piece：Piece内存不足");
+			ThreadUtils.sleep(PIECE_MEMORY_TIMEOUT);
+		}
 		if(this.peerConnectSession.isPeerUnchoked()) {
 			LOGGER.debug("选择下载Piece：解除阻塞");
-			this.downloadPiece = this.torrentSession.pick(this.peerSession.availablePieces(), this.peerSession.suggestPieces());
+			this.downloadPiece = this.torrentSession.pick(this.peerSession, this.peerSession.availablePieces(), this.peerSession.suggestPieces());
 		} else {
 			LOGGER.debug("选择下载Piece：快速允许");
-			this.downloadPiece = this.torrentSession.pick(this.peerSession.allowedPieces(), this.peerSession.allowedPieces());
+			this.downloadPiece = this.torrentSession.pick(this.peerSession, this.peerSession.allowedPieces(), this.peerSession.allowedPieces());
 		}
 		LOGGER.debug("选择下载Piece：{}", this.downloadPiece);
 		this.sliceLock.set(0);
-		this.completedLock.set(false);
+		// 恢复部分下载Piece可能已经下载完成
+		this.completedLock.set(this.downloadPiece != null && this.downloadPiece.completed());
+	}
+	
+	/**
+	 * <p>校验Piece</p>
+	 * <p>校验线程池异步校验：不用等待校验结果直接选择下一个Piece</p>
+	 * 
+	 * @param piece Piece
+	 */
+	private void verify(TorrentPiece piece) {
+		TorrentPieceHasher.getInstance().submit(piece, success -> {
+			if(!success) {
+				// 设置下载错误Piece位图
+				this.peerSession.badPieces(piece.getIndex());
+				LOGGER.warn("Piece校验失败：{}", piece);
+				this.torrentSession.peerSmartBan().fail(piece);
+				this.torrentSession.undone(piece);
+				// 请求数据块Hash：重新下载时收到数据块立即校验
+				if(this.torrentSession.blockHashs(piece.getIndex()) == null) {
+					this.peerSubMessageHandler.hashRequest(piece.getIndex());
+				}
+			} else if(this.torrentSession.write(piece)) {
+				// 重新下载成功：禁用发送错误数据的Peer
+				this.torrentSession.peerSmartBan().success(piece);
+				// 统计下载有效数据
+				this.statisticsSession.download(piece.getLength());
+				// 文件流缓存持有引用：释放下载引用和Piece内存
+				piece.unreserve();
+				piece.release();
+				// 异步校验：最后Piece校验完成时Peer可能已经结束下载
+				this.torrentSession.checkCompletedAndUnlock();
+			} else {
+				LOGGER.debug("Piece保存失败：{}", piece);
+				this.torrentSession.undone(piece);
+			}
+		});
 	}
 	
 	/**
@@ -0,0 +1,258 @@
+package com.acgist.snail.net.torrent.peer;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.context.IContext;
+import com.acgist.snail.context.MetricsContext;
+import com.acgist.snail.logger.Logger;
+import com.acgist.snail.logger.LoggerFactory;
+import com.acgist.snail.net.torrent.TorrentSession;
+
+/**
+ * <p>Peer连接上下文</p>
+ * <p>限制所有任务Peer连接数量（{@link SystemConfig#getPeerConnectSize()}）和半开连接数量（{@link SystemConfig#getPeerHalfOpenSize()}）</p>
+ * <p>连接数量按照任务需求和优先级分配：下载任务优先级高于做种任务，需求小于分配数量的任务剩余数量分配给其他任务。</p>
+ * <p>半开连接已满时不会排队等待：直接跳过本次连接（不会阻塞连接线程）</p>
+ * 
+ * @author acgist
+ */
+public final class PeerConnectContext implements IContext {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(PeerConnectContext.class);
+	
+	private static final PeerConnectContext INSTANCE = new PeerConnectContext();
+	
+	public static final PeerConnectContext getInstance() {
+		return INSTANCE;
+	}
+	
+	/**
+	 * <p>下载任务权重：{@value}</p>
+	 */
+	private static final int WEIGHT_DOWNLOAD = 2;
+	/**
+	 * <p>做种任务权重：{@value}</p>
+	 */
+	private static final int WEIGHT_UPLOAD = 1;
+	/**
+	 * <p>分配数量刷新周期（毫秒）：{@value}</p>
+	 */
+	private static final long QUOTA_INTERVAL = SystemConfig.ONE_SECOND_MILLIS;
+	
+	/**
+	 * <p>连接数量</p>
+	 */
+	private final AtomicInteger connectSize;
+	/**
+	 * <p>半开连接信号量</p>
+	 */
+	private final Semaphore halfOpenSemaphore;
+	/**
+	 * <p>任务连接</p>
+	 * <p>InfoHashHex=任务连接</p>
+	 */
+	private final Map<String, Budget> budgets;
+	/**
+	 * <p>最后一次计算分配数量时间</p>
+	 */
+	private volatile long lastQuotaTime;
+	
+	private PeerConnectContext() {
+		this.connectSize = new AtomicInteger(0);
+		this.halfOpenSemaphore = new Semaphore(SystemConfig.getPeerHalfOpenSize());
+		this.budgets = new ConcurrentHashMap<>();
+		final MetricsContext metricsContext = MetricsContext.getInstance();
+		metricsContext.gauge("snail_peer_connect_size", "Peer连接数量", this.connectSize::get);
+		metricsContext.gauge("snail_peer_half_open_size", "Peer半开连接数量", () -> SystemConfig.getPeerHalfOpenSize() - this.halfOpenSemaphore.availablePermits());
+	}
+	
+	/**
+	 * <p>判断任务是否可以新建连接</p>
+	 * 
+	 * @param torrentSession BT任务信息
+	 * 
+	 * @return 是否可以新建连接
+	 */
+	public boolean connectable(TorrentSession torrentSession) {
+		if(this.connectSize.get() >= SystemConfig.getPeerConnectSize()) {
+			LOGGER.debug("不能新建Peer连接（超过全局连接数量）：{}", this.connectSize);
+			return false;
+		}
+		final Budget budget = this.budget(torrentSession);
+		this.refreshQuota();
+		return budget.connects.size() < budget.quota;
+	}
+	
+	/**
+	 * <p>尝试获取半开连接</p>
+	 * <p>半开连接已满时直接返回失败：不会阻塞线程</p>
+	 * 
+	 * @return 是否获取成功
+	 * 
+	 * @see #releaseHalfOpen()
+	 */
+	public boolean tryAcquireHalfOpen() {
+		return this.halfOpenSemaphore.tryAcquire();
+	}
+	
+	/**
+	 * <p>释放半开连接</p>
+	 * 
+	 * @see #tryAcquireHalfOpen()
+	 */
+	public void releaseHalfOpen() {
+		this.halfOpenSemaphore.release();
+	}
+	
+	/**
+	 * <p>添加连接</p>
+	 * 
+	 * @param peerConnect Peer连接
+	 */
+	public void connect(PeerConnect peerConnect) {
+		final Budget budget = this.budget(peerConnect.torrentSession());
+		if(budget.connects.add(peerConnect)) {
+			this.connectSize.incrementAndGet();
+		}
+	}
+	
+	/**
+	 * <p>删除连接</p>
+	 * 
+	 * @param peerConnect Peer连接
+	 */
+	public void release(PeerConnect peerConnect) {
+		final Budget budget = this.budgets.get(peerConnect.torrentSession().infoHashHex());
+		if(budget != null && budget.connects.remove(peerConnect)) {
+			this.connectSize.decrementAndGet();
+		}
+	}
+	
+	/**
+	 * @return 连接数量
+	 */
+	public int connectSize() {
+		return this.connectSize.get();
+	}
+	
+	/**
+	 * @param torrentSession BT任务信息
+	 * 
+	 * @return 任务分配数量
+	 */
+	public int quota(TorrentSession torrentSession) {
+		final Budget budget = this.budget(torrentSession);
+		this.refreshQuota();
+		return budget.quota;
+	}
+	
+	/**
+	 * <p>获取任务连接（没有时新建）</p>
+	 * 
+	 * @param torrentSession BT任务信息
+	 * 
+	 * @return 任务连接
+	 */
+	private Budget budget(TorrentSession torrentSession) {
+		final Budget budget = this.budgets.computeIfAbsent(torrentSession.infoHashHex(), key -> {
+			// 新的任务：立即重新分配
+			this.lastQuotaTime = 0L;
+			return new Budget(torrentSession);
+		});
+		// 任务重新加载：使用新的任务信息
+		budget.torrentSession = torrentSession;
+		return budget;
+	}
+	
+	/**
+	 * <p>计算任务分配数量</p>
+	 * <p>按照需求除以权重从小到大依次分配：需求满足后剩余数量按照权重分配给其他任务</p>
+	 * <p>任务需求：可用Peer数量加上当前连接数量（下载任务最大下载连接和接入连接，做种任务最大接入连接）</p>
+	 */
+	private void refreshQuota() {
+		final long nowTime = System.currentTimeMillis();
+		if(nowTime - this.lastQuotaTime < QUOTA_INTERVAL) {
+			return;
+		}
+		synchronized (this.budgets) {
+			if(nowTime - this.lastQuotaTime < QUOTA_INTERVAL) {
+				return;
+			}
+			this.lastQuotaTime = nowTime;
+			final int peerSize = SystemConfig.getPeerSize();
+			final PeerContext peerContext = PeerContext.getInstance();
+			final List<Budget> list = new ArrayList<>();
+			this.budgets.values().removeIf(budget -> !budget.torrentSession.useable() && budget.connects.isEmpty());
+			int weights = 0;
+			for (Budget budget : this.budgets.values()) {
+				if(budget.torrentSession.useable()) {
+					final boolean download = budget.torrentSession.downloadable();
+					budget.weight = download ? WEIGHT_DOWNLOAD : WEIGHT_UPLOAD;
+					final int maxDemand = download ? 2 * peerSize : peerSize;
+					final int candidates = peerContext.availableSize(budget.torrentSession.infoHashHex());
+					budget.demand = Math.min(maxDemand, candidates + budget.connects.size());
+					weights += budget.weight;
+					list.add(budget);
+				} else {
+					budget.quota = 0;
+				}
+			}
+			list.sort(Comparator.comparingDouble(budget -> (double) budget.demand / budget.weight));
+			int remaining = SystemConfig.getPeerConnectSize();
+			for (Budget budget : list) {
+				final int share = weights <= 0 ? 0 : remaining * budget.weight / weights;
+				budget.quota = Math.max(1, Math.min(budget.demand, share));
+				remaining = Math.max(0, remaining - budget.quota);
+				weights -= budget.weight;
+			}
+		}
+	}
+	
+	/**
+	 * <p>任务连接</p>
+	 * 
+	 * @author acgist
+	 */
+	private static final class Budget {
+		
+		/**
+		 * <p>BT任务信息</p>
+		 */
+		private volatile TorrentSession torrentSession;
+		/**
+		 * <p>连接</p>
+		 */
+		private final Set<PeerConnect> connects;
+		/**
+		 * <p>权重</p>
+		 */
+		private int weight;
+		/**
+		 * <p>需求</p>
+		 */
+		private int demand;
+		/**
+		 * <p>分配数量</p>
+		 */
+		private volatile int quota;
+		
+		/**
+		 * @param torrentSession BT任务信息
+		 */
+		private Budget(TorrentSession torrentSession) {
+			this.torrentSession = torrentSession;
+			this.connects = ConcurrentHashMap.newKeySet();
+			this.quota = SystemConfig.getPeerSize();
+		}
+		
+	}
+	
+}
@@ -66,6 +66,16 @@ public final class PeerConnectSession {
 	 * <p>累计下载大小</p>
 	 */
 	private final AtomicLong downloadSize = new AtomicLong(0);
+	/**
+	 * <p>连接上传总大小</p>
+	 * <p>评分刷新时不会重置：阻塞管理计算上传速度</p>
+	 */
+	private final AtomicLong uploadTotal = new AtomicLong(0);
+	/**
+	 * <p>连接下载总大小</p>
+	 * <p>评分刷新时不会重置：阻塞管理计算下载速度</p>
+	 */
+	private final AtomicLong downloadTotal = new AtomicLong(0);
 	/**
 	 * <p>最后一次刷新时间</p>
 	 */
@@ -239,6 +249,16 @@ public final class PeerConnectSession {
 	 */
 	public final void upload(int buffer) {
 		this.uploadSize.addAndGet(buffer);
+		this.uploadTotal.addAndGet(buffer);
+	}
+	
+	/**
+	 * <p>获取连接上传总大小</p>
+	 * 
+	 * @return 连接上传总大小
+	 */
+	public final long uploadTotal() {
+		return this.uploadTotal.get();
 	}
 	
 	/**
@@ -258,6 +278,16 @@ public final class PeerConnectSession {
 	 */
 	public final void download(int buffer) {
 		this.downloadSize.addAndGet(buffer);
+		this.downloadTotal.addAndGet(buffer);
+	}
+	
+	/**
+	 * <p>获取连接下载总大小</p>
+	 * 
+	 * @return 连接下载总大小
+	 */
+	public final long downloadTotal() {
+		return this.downloadTotal.get();
 	}
 	
 	/**
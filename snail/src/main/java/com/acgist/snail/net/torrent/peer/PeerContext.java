@@ -1,21 +1,22 @@
 package com.acgist.snail.net.torrent.peer;
 
 import java.util.ArrayList;
-import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingDeque;
 import java.util.stream.Collectors;
 
+import com.acgist.snail.config.PeerBanConfig;
 import com.acgist.snail.config.PeerConfig;
+import com.acgist.snail.config.SystemConfig;
 import com.acgist.snail.context.IContext;
 import com.acgist.snail.context.IStatisticsSession;
+import com.acgist.snail.context.MetricsContext;
+import com.acgist.snail.context.SystemThreadContext;
 import com.acgist.snail.logger.Logger;
 import com.acgist.snail.logger.LoggerFactory;
 import com.acgist.snail.net.torrent.peer.extension.PeerExchangeMessageHandler;
 import com.acgist.snail.utils.ArrayUtils;
-import com.acgist.snail.utils.CollectionUtils;
 
 /**
  * Peer上下文
@@ -25,38 +26,47 @@ import com.acgist.snail.utils.CollectionUtils;
 public final class PeerContext implements IContext {
 	
 	private static final Logger LOGGER = LoggerFactory.getLogger(PeerContext.class);
-
+	
 	private static final PeerContext INSTANCE = new PeerContext();
 	
 	public static final PeerContext getInstance() {
 		return INSTANCE;
 	}
 	
+	/**
+	 * 禁用Peer最大数量：{@value}
+	 */
+	private static final int MAX_BAN_SIZE = 1024;
+	
 	/**
 	 * have消息队列
 	 * have消息不是每个Piece下载完成立即发出，使用定时任务减小交互次数。
 	 */
 	private final Map<String, List<Integer>> haves;
 	/**
-	 * Peer下载队列
-	 * Peer使用时从下载队列中取出，使用结束后重新放回下载队列。
-	 * InfoHashHex=Peer双端队列（尾部优先使用）
+	 * Peer存档
+	 * 没有连接的Peer紧凑存档，连接时新建Peer信息。
+	 * InfoHashHex=Peer存档
 	 */
-	private final Map<String, Deque<PeerSession>> activePeers;
+	private final Map<String, PeerStore> stores;
 	/**
-	 * Peer存档列表
-	 * InfoHashHex=Peer存档列表
+	 * 禁用Peer
+	 * 发送错误数据的Peer：所有任务不再连接
+	 * host=禁用时间
 	 */
-	private final Map<String, List<PeerSession>> archivePeers;
+	private final Map<String, Long> bans;
 	
 	private PeerContext() {
 		this.haves = new ConcurrentHashMap<>();
-		this.activePeers = new ConcurrentHashMap<>();
-		this.archivePeers = new ConcurrentHashMap<>();
+		this.stores = new ConcurrentHashMap<>();
+		this.bans = new ConcurrentHashMap<>(PeerBanConfig.getInstance().bans());
+		MetricsContext.getInstance().gauge("snail_peer_store_size", "Peer存档数量", this::storeSize);
+		MetricsContext.getInstance().gauge("snail_peer_ban_size", "禁用Peer数量", this.bans::size);
 	}
 	
 	/**
 	 * 查找Peer信息
+	 * 没有连接的Peer没有Peer信息
 	 * 
 	 * @param infoHashHex InfoHashHex
 	 * @param host Peer地址
@@ -65,21 +75,62 @@ public final class PeerContext implements IContext {
 	 * @return Peer信息
 	 */
 	public PeerSession findPeerSession(String infoHashHex, String host, Integer port) {
-		final var list = this.list(infoHashHex);
-		synchronized (list) {
-			return this.findPeerSession(list, host, port);
+		final var store = this.store(infoHashHex);
+		synchronized (store) {
+			return store.find(host, port);
 		}
 	}
 	
 	/**
+	 * 获取Peer信息列表
+	 * 只有连接过的Peer（连接中、等待释放）含有Peer信息
+	 * 
 	 * @param infoHashHex InfoHashHex
 	 * 
-	 * @return Peer存档队列
+	 * @return Peer信息列表
 	 */
 	public List<PeerSession> listPeerSession(String infoHashHex) {
-		final var list = this.list(infoHashHex);
-		synchronized (list) {
-			return new ArrayList<>(list);
+		final var store = this.store(infoHashHex);
+		synchronized (store) {
+			return store.sessions();
+		}
+	}
+	
+	/**
+	 * 统计Peer来源
+	 * 
+	 * @param infoHashHex InfoHashHex
+	 * 
+	 * @return 来源=数量
+	 */
+	public Map<PeerConfig.Source, Integer> sources(String infoHashHex) {
+		final var store = this.store(infoHashHex);
+		synchronized (store) {
+			return store.sources();
+		}
+	}
+	
+	/**
+	 * @param infoHashHex InfoHashHex
+	 * 
+	 * @return Peer数量
+	 */
+	public int size(String infoHashHex) {
+		final var store = this.store(infoHashHex);
+		synchronized (store) {
+			return store.size();
+		}
+	}
+	
+	/**
+	 * @param infoHashHex InfoHashHex
+	 * 
+	 * @return 可用Peer数量
+	 */
+	public int availableSize(String infoHashHex) {
+		final var store = this.store(infoHashHex);
+		synchronized (store) {
+			return store.availableSize();
 		}
 	}
 	
@@ -91,9 +142,9 @@ public final class PeerContext implements IContext {
 	 * @return 是否找到Peer
 	 */
 	public boolean isNotEmpty(String infoHashHex) {
-		final var list = this.list(infoHashHex);
-		synchronized (list) {
-			return !list.isEmpty();
+		final var store = this.store(infoHashHex);
+		synchronized (store) {
+			return !store.isEmpty();
 		}
 	}
 	
@@ -105,13 +156,62 @@ public final class PeerContext implements IContext {
 	public void remove(String infoHashHex) {
 		LOGGER.debug("删除Peer队列：{}", infoHashHex);
 		this.haves.remove(infoHashHex);
-		this.activePeers.remove(infoHashHex);
-		this.archivePeers.remove(infoHashHex);
+		this.stores.remove(infoHashHex);
 	}
 	
 	/**
-	 * 添加Peer
-	 * 高优先级Peer插入尾部优先使用
+	 * 添加Peer（不会新建Peer信息）
+	 * 
+	 * @param infoHashHex InfoHashHex
+	 * @param parent 任务下载统计
+	 * @param host 地址
+	 * @param port 端口
+	 * @param source Peer来源
+	 * 
+	 * @return 是否是新的Peer
+	 * 
+	 * @see #newPeer(String, IStatisticsSession, String, Integer, PeerConfig.Source, byte, PeerSession)
+	 */
+	public boolean newPeer(String infoHashHex, IStatisticsSession parent, String host, Integer port, PeerConfig.Source source) {
+		return this.newPeer(infoHashHex, parent, host, port, source, (byte) 0, null);
+	}
+	
+	/**
+	 * 添加Peer（不会新建Peer信息）
+	 * 高优先级Peer优先使用，超过存档数量时剔除低优先级Peer。
+	 * 
+	 * @param infoHashHex InfoHashHex
+	 * @param parent 任务下载统计
+	 * @param host 地址
+	 * @param port 端口
+	 * @param source Peer来源
+	 * @param flags pex flags
+	 * @param pexSource PEX来源
+	 * 
+	 * @return 是否是新的Peer
+	 */
+	public boolean newPeer(
+		String infoHashHex, IStatisticsSession parent, String host, Integer port,
+		PeerConfig.Source source, byte flags, PeerSession pexSource
+	) {
+		if(this.banned(host)) {
+			LOGGER.debug("添加Peer失败（禁用Peer）：{}", host);
+			return false;
+		}
+		final var store = this.store(infoHashHex);
+		synchronized (store) {
+			store.parent(parent);
+			final boolean success = store.offer(host, port, source, flags, pexSource);
+			if(success) {
+				LOGGER.debug("添加Peer：{}-{}-{}", host, port, source);
+			}
+			return success;
+		}
+	}
+	
+	/**
+	 * 获取Peer信息（没有时新建）
+	 * 用于Peer接入和主动连接
 	 * 
 	 * @param infoHashHex InfoHashHex
 	 * @param parent 任务下载统计
@@ -122,54 +222,53 @@ public final class PeerContext implements IContext {
 	 * @return PeerSession
 	 */
 	public PeerSession newPeerSession(String infoHashHex, IStatisticsSession parent, String host, Integer port, PeerConfig.Source source) {
-		synchronized (this) {
-			final var list = this.list(infoHashHex);
-			synchronized (list) {
-				PeerSession peerSession = this.findPeerSession(list, host, port);
-				if(peerSession == null) {
-					LOGGER.debug("添加PeerSession：{}-{}-{}", host, port, source);
-					peerSession = PeerSession.newInstance(parent, host, port);
-					final var deque = this.deque(infoHashHex);
-					synchronized (deque) {
-						if(source.preference()) {
-							// 插入尾部：优先级高
-							deque.offerLast(peerSession);
-						} else {
-							// 插入头部：优先级低
-							deque.offerFirst(peerSession);
-						}
-					}
-					list.add(peerSession);
-				}
-				peerSession.source(source);
-				return peerSession;
-			}
+		final var store = this.store(infoHashHex);
+		synchronized (store) {
+			store.parent(parent);
+			return store.session(host, port, source);
 		}
 	}
 	
 	/**
-	 * 添加劣质Peer：插入头部
+	 * 添加劣质Peer：最后使用
 	 * 
 	 * @param infoHashHex InfoHashHex
 	 * @param peerSession Peer信息
 	 */
 	public void inferior(String infoHashHex, PeerSession peerSession) {
-		final var deque = this.deque(infoHashHex);
-		synchronized (deque) {
-			deque.offerFirst(peerSession);
+		final var store = this.store(infoHashHex);
+		synchronized (store) {
+			store.offer(peerSession, PeerStore.LEVEL_INFERIOR);
 		}
 	}
 	
 	/**
-	 * 添加优质Peer：插入尾部
+	 * 添加优质Peer：优先使用
 	 * 
 	 * @param infoHashHex InfoHashHex
 	 * @param peerSession Peer信息
 	 */
 	public void preference(String infoHashHex, PeerSession peerSession) {
-		final var deque = this.deque(infoHashHex);
-		synchronized (deque) {
-			deque.offerLast(peerSession);
+		final var store = this.store(infoHashHex);
+		synchronized (store) {
+			store.offer(peerSession, PeerStore.LEVEL_PREFERENCE);
+		}
+	}
+	
+	/**
+	 * 释放Peer信息
+	 * 连接关闭后Peer数据保存到存档
+	 * 
+	 * @param infoHashHex InfoHashHex
+	 * @param peerSession Peer信息
+	 */
+	public void release(String infoHashHex, PeerSession peerSession) {
+		final var store = this.stores.get(infoHashHex);
+		if(store == null) {
+			return;
+		}
+		synchronized (store) {
+			store.release(peerSession);
 		}
 	}
 	
@@ -181,27 +280,105 @@ public final class PeerContext implements IContext {
 	 * @return Peer信息
 	 */
 	public PeerSession pick(String infoHashHex) {
-		final var deque = this.deque(infoHashHex);
-		synchronized (deque) {
-			int index = 0;
-			final int size = deque.size();
-			PeerSession peerSession = null;
-			while(true) {
-				if(++index > size) {
-					break;
-				}
-				// 注意不要直接删除：防止重复进入下载队列添加不必要的验证
-				peerSession = deque.pollLast();
-				if(peerSession.available()) {
-					return peerSession;
-				} else {
-					deque.offerFirst(peerSession);
-				}
+		final var store = this.store(infoHashHex);
+		synchronized (store) {
+			PeerSession peerSession = store.pick();
+			while(peerSession != null && this.banned(peerSession.host())) {
+				// 禁用Peer：设置不可用以后放回存档
+				peerSession.failTimes((byte) PeerConfig.MAX_FAIL_TIMES);
+				store.offer(peerSession, PeerStore.LEVEL_INFERIOR);
+				peerSession = store.pick();
 			}
-			return null;
+			return peerSession;
 		}
 	}
 	
+	/**
+	 * 禁用Peer
+	 * 禁用以后所有任务不再连接，所有任务已经连接的Peer立即断开。
+	 * 禁用超过{@link PeerBanConfig#BAN_DURATION}自动解除。
+	 * 
+	 * @param peerSession Peer信息
+	 * 
+	 * @return 是否是新的禁用Peer
+	 */
+	public boolean ban(PeerSession peerSession) {
+		final String host = peerSession.host();
+		this.disconnect(peerSession);
+		if(host == null || this.banned(host)) {
+			return false;
+		}
+		this.bans.put(host, System.currentTimeMillis());
+		LOGGER.info("禁用Peer：{}", peerSession);
+		// 断开其他任务已经连接的Peer
+		this.stores.values().forEach(store -> {
+			final List<PeerSession> sessions;
+			synchronized (store) {
+				sessions = store.sessions();
+			}
+			sessions.stream()
+				.filter(session -> session != peerSession && host.equals(session.host()))
+				.forEach(this::disconnect);
+		});
+		if(this.bans.size() > MAX_BAN_SIZE) {
+			// 超过最大数量：删除最早禁用Peer
+			this.bans.entrySet().stream()
+				.min(Map.Entry.comparingByValue())
+				.ifPresent(entry -> this.bans.remove(entry.getKey()));
+		}
+		SystemThreadContext.submit(PeerBanConfig.getInstance()::persistent);
+		return true;
+	}
+	
+	/**
+	 * 判断Peer是否禁用
+	 * 
+	 * @param host Peer地址
+	 * 
+	 * @return 是否禁用
+	 */
+	public boolean banned(String host) {
+		if(host == null) {
+			return false;
+		}
+		final Long banTime = this.bans.get(host);
+		if(banTime == null) {
+			return false;
+		}
+		if(PeerBanConfig.expired(banTime)) {
+			LOGGER.debug("禁用Peer已经过期：{}", host);
+			this.bans.remove(host, banTime);
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * 断开Peer连接
+	 * 
+	 * @param peerSession Peer信息
+	 */
+	private void disconnect(PeerSession peerSession) {
+		peerSession.failTimes((byte) PeerConfig.MAX_FAIL_TIMES);
+		final PeerDownloader peerDownloader = peerSession.peerDownloader();
+		if(peerDownloader != null) {
+			SystemThreadContext.submit(peerDownloader::release);
+		}
+		final PeerUploader peerUploader = peerSession.peerUploader();
+		if(peerUploader != null) {
+			SystemThreadContext.submit(peerUploader::release);
+		}
+	}
+	
+	/**
+	 * @return 没有过期禁用Peer（host=禁用时间）
+	 */
+	public Map<String, Long> bans() {
+		return this.bans.entrySet().stream()
+			.filter(entry -> !PeerBanConfig.expired(entry.getValue()))
+			.collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+	}
+	
 	/**
 	 * 添加have消息
 	 * 
@@ -214,7 +391,7 @@ public final class PeerContext implements IContext {
 			list.add(index);
 		}
 	}
-
+	
 	/**
 	 * 发送have消息
 	 * 
@@ -302,57 +479,35 @@ public final class PeerContext implements IContext {
 	/**
 	 * @param infoHashHex InfoHashHex
 	 * 
-	 * @return Peer下载队列
+	 * @return Peer存档
 	 */
-	private Deque<PeerSession> deque(String infoHashHex) {
-		synchronized (this.activePeers) {
-			return this.activePeers.computeIfAbsent(infoHashHex, key -> new LinkedBlockingDeque<>());
-		}
+	private PeerStore store(String infoHashHex) {
+		return this.stores.computeIfAbsent(infoHashHex, key -> new PeerStore(SystemConfig.getPeerStoreSize()));
 	}
-
+	
 	/**
-	 * @param infoHashHex InfoHashHex
-	 * 
-	 * @return Peer存档队列
+	 * @return 所有任务Peer存档数量
 	 */
-	private List<PeerSession> list(String infoHashHex) {
-		synchronized (this.archivePeers) {
-			return this.archivePeers.computeIfAbsent(infoHashHex, key -> new ArrayList<>());
+	private long storeSize() {
+		long size = 0;
+		for (PeerStore store : this.stores.values()) {
+			synchronized (store) {
+				size += store.size();
+			}
 		}
+		return size;
 	}
 	
 	/**
 	 * @param infoHashHex InfoHashHex
 	 * 
-	 * @return 存档队列连接中的Peer队列
+	 * @return 连接中的Peer队列
 	 */
 	private List<PeerSession> listConnectPeerSession(String infoHashHex) {
-		final var list = this.list(infoHashHex);
-		if(CollectionUtils.isEmpty(list)) {
-			return List.of();
-		}
-		synchronized (list) {
-			return list.stream()
-				.filter(PeerSession::available)
-				.filter(PeerSession::connected)
-				.collect(Collectors.toList());
-		}
+		return this.listPeerSession(infoHashHex).stream()
+			.filter(PeerSession::available)
+			.filter(PeerSession::connected)
+			.collect(Collectors.toList());
 	}
 	
-	/**
-	 * 查找Peer信息
-	 * 
-	 * @param list 队列
-	 * @param host 地址
-	 * @param port 端口
-	 * 
-	 * @return Peer信息
-	 */
-	private PeerSession findPeerSession(List<PeerSession> list, String host, Integer port) {
-		return list.stream()
-			.filter(peer -> peer.equals(host, port))
-			.findFirst()
-			.orElse(null);
-	}
-
 }
@@ -1,6 +1,11 @@
 package com.acgist.snail.net.torrent.peer;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
 import com.acgist.snail.config.PeerConfig;
+import com.acgist.snail.context.SystemThreadContext;
 import com.acgist.snail.logger.Logger;
 import com.acgist.snail.logger.LoggerFactory;
 import com.acgist.snail.net.torrent.TorrentSession;
@@ -37,58 +42,120 @@ public final class PeerDownloader extends PeerConnect {
 	
 	/**
 	 * <p>握手</p>
+	 * <p>同步握手：等待异步握手完成</p>
 	 * 
 	 * @return 是否握手成功
+	 * 
+	 * @see #handshake(Consumer)
 	 */
 	public boolean handshake() {
-		// 建立连接
-		final boolean success = this.connect();
-		if(success) {
-			// 发送握手
-			this.peerSubMessageHandler.initClient(this).handshake();
-		} else {
-			this.peerSession.incrementFailTimes();
+		final CompletableFuture<Boolean> future = new CompletableFuture<>();
+		this.handshake(future::complete);
+		return future.join();
+	}
+	
+	/**
+	 * <p>握手</p>
+	 * <p>异步连接：连接完成以后发送握手并执行回调（只会执行一次）</p>
+	 * 
+	 * @param callback 握手回调：是否握手成功
+	 */
+	public void handshake(Consumer<Boolean> callback) {
+		final AtomicBoolean done = new AtomicBoolean(false);
+		final Consumer<Boolean> connectCallback = success -> {
+			if(!done.compareAndSet(false, true)) {
+				return;
+			}
+			try {
+				SystemThreadContext.submit(() -> {
+					try {
+						if(success) {
+							// 发送握手
+							this.peerSubMessageHandler.initClient(this).handshake();
+						} else {
+							this.peerSession.incrementFailTimes();
+						}
+					} finally {
+						this.available = success;
+						callback.accept(success);
+					}
+				});
+			} catch (Exception e) {
+				LOGGER.error("Peer握手异常：{}", this.peerSession, e);
+				this.available = false;
+				callback.accept(false);
+			}
+		};
+		try {
+			// 建立连接
+			this.connect(connectCallback);
+		} catch (Exception e) {
+			LOGGER.error("Peer连接异常：{}", this.peerSession, e);
+			connectCallback.accept(false);
 		}
-		this.available = success;
-		return success;
 	}
 	
 	/**
 	 * <p>建立连接</p>
 	 * <p>优先使用TCP/UTP进行连接，如果连接失败使用holepunch协议重连。</p>
 	 * 
-	 * @return 是否连接成功
+	 * @param callback 连接回调：是否连接成功
 	 */
-	private boolean connect() {
+	private void connect(Consumer<Boolean> callback) {
 		if(this.peerSession.utp()) {
 			LOGGER.debug("Peer连接（UTP）：{}", this.peerSession);
 			final UtpClient utpClient = UtpClient.newInstance(this.peerSession, this.peerSubMessageHandler);
-			final boolean utpOk = utpClient.connect();
-			if(utpOk) {
-				return utpOk;
-			} else {
-				return this.holepunchConnect(false);
-			}
+			utpClient.connect(utpOk -> {
+				if(utpOk) {
+					callback.accept(utpOk);
+				} else {
+					this.holepunchConnectAsync(false, callback);
+				}
+			});
 		} else {
 			LOGGER.debug("Peer连接（TCP）：{}", this.peerSession);
 			final PeerClient peerClient = PeerClient.newInstance(this.peerSession, this.peerSubMessageHandler);
-			final boolean tcpOk = peerClient.connect();
-			if(tcpOk) {
-				return tcpOk;
-			} else {
-				return this.holepunchConnect(true);
-			}
+			peerClient.connect(tcpOk -> {
+				if(tcpOk) {
+					callback.accept(tcpOk);
+				} else {
+					this.holepunchConnectAsync(true, callback);
+				}
+			});
 		}
 	}
 
 	/**
-	 * <p>使用holepunch协议连接</p>
+	 * <p>异步使用holepunch协议连接</p>
+	 * <p>连接回调在消息接收线程或者定时线程执行：holepunch需要阻塞等待</p>
+	 * <p>连接异常或者任务提交失败时执行失败回调</p>
 	 * 
 	 * @param utpRetry 是否可以使用UTP重试
+	 * @param callback 连接回调：是否连接成功
+	 */
+	private void holepunchConnectAsync(boolean utpRetry, Consumer<Boolean> callback) {
+		try {
+			SystemThreadContext.submit(() -> {
+				try {
+					this.holepunchConnect(utpRetry, callback);
+				} catch (Exception e) {
+					LOGGER.error("Peer连接异常（holepunch）：{}", this.peerSession, e);
+					callback.accept(false);
+				}
+			});
+		} catch (Exception e) {
+			LOGGER.error("Peer连接异常（holepunch）：{}", this.peerSession, e);
+			callback.accept(false);
+		}
+	}
+	
+	/**
+	 * <p>使用holepunch协议连接</p>
 	 * 
-	 * @return 是否连接成功
+	 * @param utpRetry 是否可以使用UTP重试
+	 * @param callback 连接回调：是否连接成功
 	 */
-	private boolean holepunchConnect(boolean utpRetry) {
+	private void holepunchConnect(boolean utpRetry, Consumer<Boolean> callback) {
 		// Peer不可以直接连接：使用holepunch协议连接
 		if(!this.peerSession.outgo()) {
 			// 中继：PEX来源
@@ -112,7 +179,8 @@ public final class PeerDownloader extends PeerConnect {
 					if(this.peerSession.holeunchConnect()) {
 						LOGGER.debug("Peer连接（holepunch）：{}", this.peerSession);
 						final UtpClient utpClient = UtpClient.newInstance(this.peerSession, this.peerSubMessageHandler);
-						return utpClient.connect();
+						utpClient.connect(callback);
+						return;
 					} else {
 						LOGGER.debug("Peer连接失败（holepunch）：{}", this.peerSession);
 					}
@@ -123,16 +191,18 @@ public final class PeerDownloader extends PeerConnect {
 		if(utpRetry) {
 			LOGGER.debug("Peer连接重试（UTP）：{}", this.peerSession);
 			final UtpClient utpClient = UtpClient.newInstance(this.peerSession, this.peerSubMessageHandler);
-			final boolean utpOk = utpClient.connect();
-			if(utpOk) {
-				// 支持UTP
-				this.peerSession.flags(PeerConfig.PEX_UTP);
-				// 直接连接
-				this.peerSession.flags(PeerConfig.PEX_OUTGO);
-				return utpOk;
-			}
+			utpClient.connect(utpOk -> {
+				if(utpOk) {
+					// 支持UTP
+					this.peerSession.flags(PeerConfig.PEX_UTP);
+					// 直接连接
+					this.peerSession.flags(PeerConfig.PEX_OUTGO);
+				}
+				callback.accept(utpOk);
+			});
+			return;
 		}
-		return false;
+		callback.accept(false);
 	}
 	
 	@Override
@@ -145,8 +215,10 @@ public final class PeerDownloader extends PeerConnect {
 		} catch (Exception e) {
 			LOGGER.error("关闭PeerDownloader异常", e);
 		} finally {
+			PeerConnectContext.getInstance().release(this);
 			this.peerSession.statusOff(PeerConfig.STATUS_DOWNLOAD);
 			this.peerSession.peerDownloader(null);
+			PeerContext.getInstance().release(this.torrentSession.infoHashHex(), this.peerSession);
 		}
 	}
 
@@ -4,6 +4,7 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.acgist.snail.config.PeerConfig;
 import com.acgist.snail.config.SystemConfig;
@@ -26,9 +27,11 @@ public final class PeerDownloaderGroup {
 	
 	/**
 	 * <p>同时新建PeerDownloader数量：{@value}</p>
-	 * <p>如果TorrentSession是固定线程池：不要超过线程池的大小</p>
+	 * <p>异步连接不会占用线程：全局连接数量使用半开连接限制</p>
+	 * 
+	 * @see PeerConnectContext#tryAcquireHalfOpen()
 	 */
-	private static final int BUILD_SIZE = 3;
+	private static final int BUILD_SIZE = 32;
 	/**
 	 * <p>单次新建PeerDownloader最大数量：{@value}</p>
 	 */
@@ -42,6 +45,10 @@ public final class PeerDownloaderGroup {
 	 * <p>新建信号量</p>
 	 */
 	private final Semaphore buildSemaphore;
+	/**
+	 * <p>正在连接PeerDownloader数量</p>
+	 */
+	private final AtomicInteger connectSize;
 	/**
 	 * <p>任务信息</p>
 	 */
@@ -61,6 +68,7 @@ public final class PeerDownloaderGroup {
 	private PeerDownloaderGroup(TorrentSession torrentSession) {
 		this.build = new AtomicBoolean(false);
 		this.buildSemaphore = new Semaphore(BUILD_SIZE);
+		this.connectSize = new AtomicInteger(0);
 		this.taskSession = torrentSession.taskSession();
 		this.torrentSession = torrentSession;
 		this.peerDownloaders = new LinkedBlockingQueue<>();
@@ -93,6 +101,15 @@ public final class PeerDownloaderGroup {
 		}
 	}
 	
+	/**
+	 * <p>获取PeerDownloader数量</p>
+	 * 
+	 * @return PeerDownloader数量
+	 */
+	public int size() {
+		return this.peerDownloaders.size();
+	}
+	
 	/**
 	 * <p>资源释放</p>
 	 */
@@ -143,13 +160,11 @@ public final class PeerDownloaderGroup {
 				break;
 			}
 			this.torrentSession.submit(() -> {
-				boolean success = true;
 				try {
-					success = this.buildPeerDownloader();
+					this.buildPeerDownloader();
 				} catch (Exception e) {
 					LOGGER.error("新建PeerDownloader异常", e);
-				} finally {
-					this.release(success);
+					this.release(true);
 				}
 			});
 			if(++size >= MAX_BUILD_SIZE) {
@@ -161,34 +176,78 @@ public final class PeerDownloaderGroup {
 	
 	/**
 	 * <p>新建PeerDownloader</p>
-	 * 
-	 * @return 是否继续新建
+	 * <p>异步连接：连接完成以后释放信号量</p>
 	 */
-	private boolean buildPeerDownloader() {
+	private void buildPeerDownloader() {
 		if(!this.taskSession.statusDownload()) {
 			// 任务没有下载
-			return false;
+			this.release(false);
+			return;
 		}
-		if(this.peerDownloaders.size() >= SystemConfig.getPeerSize()) {
-			// 下载队列数量超过最大下载数量
-			return false;
+		if(!this.reserveConnect()) {
+			// 下载队列数量（包含正在连接数量）超过最大下载数量
+			this.release(false);
+			return;
+		}
+		final PeerConnectContext peerConnectContext = PeerConnectContext.getInstance();
+		if(!peerConnectContext.connectable(this.torrentSession)) {
+			// 超过全局连接数量或者任务分配数量
+			this.connectSize.decrementAndGet();
+			this.release(false);
+			return;
 		}
 		final PeerSession peerSession = PeerContext.getInstance().pick(this.torrentSession.infoHashHex());
-		if(peerSession != null) {
-			final PeerDownloader peerDownloader = PeerDownloader.newInstance(peerSession, this.torrentSession);
-			final boolean success = peerDownloader.handshake();
-			if(success) {
-				peerSession.status(PeerConfig.STATUS_DOWNLOAD);
-				this.offer(peerDownloader);
-			} else {
-				// 握手失败：放回队列
-				PeerContext.getInstance().inferior(this.torrentSession.infoHashHex(), peerSession);
-			}
-			return true;
-		} else {
+		if(peerSession == null) {
 			// 不能查找更多Peer
-			return false;
+			this.connectSize.decrementAndGet();
+			this.release(false);
+			return;
+		}
+		if(!peerConnectContext.tryAcquireHalfOpen()) {
+			// 半开连接已满：没有尝试连接放回队列（不用阻塞等待）
+			PeerContext.getInstance().preference(this.torrentSession.infoHashHex(), peerSession);
+			this.connectSize.decrementAndGet();
+			this.release(false);
+			return;
 		}
+		final PeerDownloader peerDownloader = PeerDownloader.newInstance(peerSession, this.torrentSession);
+		peerDownloader.handshake(success -> {
+			try {
+				peerConnectContext.releaseHalfOpen();
+				if(!success) {
+					// 握手失败：放回队列
+					PeerContext.getInstance().inferior(this.torrentSession.infoHashHex(), peerSession);
+				} else if(this.taskSession.statusDownload()) {
+					peerSession.status(PeerConfig.STATUS_DOWNLOAD);
+					peerConnectContext.connect(peerDownloader);
+					this.offer(peerDownloader);
+				} else {
+					// 连接期间任务暂停
+					peerDownloader.release();
+				}
+			} finally {
+				// 加入下载队列以后减少连接数量：防止超过最大下载数量
+				this.connectSize.decrementAndGet();
+				this.release(true);
+			}
+		});
+	}
+	
+	/**
+	 * <p>预留连接数量</p>
+	 * <p>下载队列数量（包含正在连接数量）没有超过最大下载数量时增加正在连接数量</p>
+	 * 
+	 * @return 是否预留成功
+	 */
+	private boolean reserveConnect() {
+		int size;
+		do {
+			size = this.connectSize.get();
+			if(this.peerDownloaders.size() + size >= SystemConfig.getPeerSize()) {
+				return false;
+			}
+		} while(!this.connectSize.compareAndSet(size, size + 1));
+		return true;
 	}
 	
 	/**
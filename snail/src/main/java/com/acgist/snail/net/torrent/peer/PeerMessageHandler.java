@@ -54,8 +54,11 @@ public final class PeerMessageHandler extends TcpMessageHandler implements IEncr
 	
 	@Override
 	public void sendEncrypt(ByteBuffer buffer, int timeout) throws NetException {
-		this.messageEncoder.encode(buffer);
-		this.send(buffer, timeout);
+		// 加密和放入发送队列必须保持顺序：流加密
+		synchronized (this.messageEncoder) {
+			this.messageEncoder.encode(buffer);
+			this.send(buffer, timeout);
+		}
 	}
 	
 	@Override
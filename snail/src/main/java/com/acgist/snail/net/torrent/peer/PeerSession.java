@@ -399,6 +399,26 @@ public final class PeerSession extends StatisticsGetter implements IPeerConnect
 		this.failTimes++;
 	}
 	
+	/**
+	 * <p>获取失败次数</p>
+	 * 
+	 * @return 失败次数
+	 */
+	byte failTimes() {
+		return this.failTimes;
+	}
+	
+	/**
+	 * <p>设置失败次数</p>
+	 * 
+	 * @param failTimes 失败次数
+	 * 
+	 * @see PeerStore
+	 */
+	void failTimes(byte failTimes) {
+		this.failTimes = failTimes;
+	}
+	
 	/**
 	 * <p>判断是否可用</p>
 	 * 
@@ -462,6 +482,15 @@ public final class PeerSession extends StatisticsGetter implements IPeerConnect
 		return this.supportExtension(7, PeerConfig.RESERVED_FAST_PROTOCOL);
 	}
 	
+	/**
+	 * <p>判断是否支持BitTorrent v2</p>
+	 * 
+	 * @return 是否支持BitTorrent v2
+	 */
+	public boolean supportV2Protocol() {
+		return this.supportExtension(7, PeerConfig.RESERVED_V2_PROTOCOL);
+	}
+	
 	/**
 	 * <p>添加Peer支持的扩展协议</p>
 	 * 
@@ -504,6 +533,28 @@ public final class PeerSession extends StatisticsGetter implements IPeerConnect
 			this.source |= source.value();
 		}
 	}
+	
+	/**
+	 * <p>设置Peer来源</p>
+	 * 
+	 * @param source Peer来源（多个来源）
+	 * 
+	 * @see PeerStore
+	 */
+	void source(byte source) {
+		synchronized (this) {
+			this.source |= source;
+		}
+	}
+	
+	/**
+	 * <p>获取Peer来源</p>
+	 * 
+	 * @return Peer来源（多个来源）
+	 */
+	byte source() {
+		return this.source;
+	}
 
 	/**
 	 * <p>获取所有来源</p>
@@ -0,0 +1,217 @@
+package com.acgist.snail.net.torrent.peer;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.acgist.snail.logger.Logger;
+import com.acgist.snail.logger.LoggerFactory;
+import com.acgist.snail.net.torrent.TorrentPiece;
+import com.acgist.snail.utils.DigestUtils;
+import com.acgist.snail.utils.NumberUtils;
+
+/**
+ * <p>Peer智能禁用</p>
+ * <p>Piece校验失败时记录每个Slice的数据来源和数据Hash，Piece重新下载校验成功以后比较Slice数据Hash，发送错误Slice的Peer禁用。</p>
+ * <p>只有数据错误的Peer才会禁用：校验失败Piece中数据正确的Peer不会禁用</p>
+ * 
+ * @author acgist
+ */
+public final class PeerSmartBan {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(PeerSmartBan.class);
+	
+	/**
+	 * <p>记录Piece最大数量：{@value}</p>
+	 */
+	private static final int MAX_PIECE_SIZE = 64;
+	/**
+	 * <p>单个Piece记录最大数量：{@value}</p>
+	 */
+	private static final int MAX_RECORD_SIZE = 8;
+	
+	/**
+	 * <p>校验失败记录</p>
+	 * <p>Piece索引=校验失败记录</p>
+	 */
+	private final Map<Integer, List<Record>> records;
+	
+	private PeerSmartBan() {
+		this.records = new LinkedHashMap<>() {
+			
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, List<Record>> eldest) {
+				return this.size() > MAX_PIECE_SIZE;
+			}
+			
+		};
+	}
+	
+	/**
+	 * <p>新建Peer智能禁用</p>
+	 * 
+	 * @return {@link PeerSmartBan}
+	 */
+	public static final PeerSmartBan newInstance() {
+		return new PeerSmartBan();
+	}
+	
+	/**
+	 * <p>Piece校验失败：记录Slice数据来源和数据Hash</p>
+	 * <p>按照数据块来源记录：每个来源一条记录，没有来源的数据块（断点续传恢复）忽略。</p>
+	 * 
+	 * @param piece Piece
+	 * 
+	 * @see TorrentPiece#sources()
+	 */
+	public void fail(TorrentPiece piece) {
+		final byte[][] hashs = hashs(piece);
+		if(hashs == null) {
+			return;
+		}
+		final PeerSession[] sources = piece.sources();
+		final Map<PeerSession, byte[][]> sourceHashs = new LinkedHashMap<>();
+		for (int index = 0; index < hashs.length; index++) {
+			final PeerSession source = sources[index];
+			if(source == null) {
+				continue;
+			}
+			sourceHashs.computeIfAbsent(source, key -> new byte[hashs.length][])[index] = hashs[index];
+		}
+		sourceHashs.forEach((source, value) -> this.record(piece, new Record(source, piece.getBegin(), piece.getEnd(), value)));
+	}
+	
+	/**
+	 * <p>Slice校验失败（v2）：记录Slice数据来源和数据Hash</p>
+	 * <p>单个Slice校验失败不能立即禁用（数据块Hash可能错误）：Piece重新下载校验成功以后比较</p>
+	 * 
+	 * @param piece Piece
+	 * @param peerSession 数据来源
+	 * @param begin Piece内开始偏移
+	 * @param bytes Slice数据
+	 */
+	public void fail(TorrentPiece piece, PeerSession peerSession, int begin, byte[] bytes) {
+		final byte[][] hashs = new byte[][] { DigestUtils.sha1().digest(bytes) };
+		this.record(piece, new Record(peerSession, begin, begin + bytes.length, hashs));
+	}
+	
+	/**
+	 * <p>保存校验失败记录</p>
+	 * 
+	 * @param piece Piece
+	 * @param record 校验失败记录
+	 */
+	private void record(TorrentPiece piece, Record record) {
+		synchronized (this.records) {
+			final List<Record> list = this.records.computeIfAbsent(piece.getIndex(), key -> new ArrayList<>());
+			if(list.size() >= MAX_RECORD_SIZE) {
+				list.remove(0);
+			}
+			list.add(record);
+		}
+	}
+	
+	/**
+	 * <p>Piece校验成功：禁用发送错误Slice的Peer</p>
+	 * 
+	 * @param piece Piece
+	 * 
+	 * @return 禁用Peer
+	 */
+	public List<PeerSession> success(TorrentPiece piece) {
+		final List<Record> list;
+		synchronized (this.records) {
+			list = this.records.remove(piece.getIndex());
+		}
+		if(list == null) {
+			return List.of();
+		}
+		final List<PeerSession> bans = new ArrayList<>();
+		final MessageDigest digest = DigestUtils.sha1();
+		final int pieceBegin = piece.getBegin();
+		final int pieceEnd = piece.getEnd();
+		for (Record record : list) {
+			if(bans.contains(record.peerSession)) {
+				continue;
+			}
+			for (int index = 0; index < record.hashs.length; index++) {
+				// 其他来源数据块：没有记录
+				if(record.hashs[index] == null) {
+					continue;
+				}
+				final int begin = record.begin + index * TorrentPiece.SLICE_LENGTH;
+				final int end = Math.min(begin + TorrentPiece.SLICE_LENGTH, record.end);
+				// Slice不在校验成功Piece范围：不能比较
+				if(begin < pieceBegin || end > pieceEnd) {
+					continue;
+				}
+				final byte[] data = piece.read(begin, end - begin);
+				if(data == null) {
+					return List.of();
+				}
+				if(!Arrays.equals(digest.digest(data), record.hashs[index])) {
+					LOGGER.info("Peer发送错误数据：{}-{}-{}", record.peerSession, piece.getIndex(), begin);
+					bans.add(record.peerSession);
+					break;
+				}
+			}
+		}
+		final PeerContext peerContext = PeerContext.getInstance();
+		bans.forEach(peerContext::ban);
+		return bans;
+	}
+	
+	/**
+	 * <p>释放资源</p>
+	 */
+	public void release() {
+		synchronized (this.records) {
+			this.records.clear();
+		}
+	}
+	
+	/**
+	 * <p>获取记录Piece数量</p>
+	 * 
+	 * @return 记录Piece数量
+	 */
+	public int size() {
+		synchronized (this.records) {
+			return this.records.size();
+		}
+	}
+	
+	/**
+	 * <p>计算Slice数据Hash</p>
+	 * 
+	 * @param piece Piece
+	 * 
+	 * @return Slice数据Hash（Piece没有下载完成或者数据块已经归还返回null）
+	 */
+	private static final byte[][] hashs(TorrentPiece piece) {
+		final byte[][] hashs = new byte[NumberUtils.ceilDiv(piece.getLength(), TorrentPiece.SLICE_LENGTH)][];
+		if(!piece.digest(DigestUtils.sha1(), (index, hash) -> hashs[index] = hash)) {
+			return null;
+		}
+		return hashs;
+	}
+	
+	/**
+	 * <p>校验失败记录</p>
+	 * 
+	 * @param peerSession 数据来源
+	 * @param begin Piece开始偏移
+	 * @param end Piece结束偏移
+	 * @param hashs Slice数据Hash（其他来源Slice为null）
+	 * 
+	 * @author acgist
+	 */
+	private static final record Record(PeerSession peerSession, int begin, int end, byte[][] hashs) {
+	}
+	
+}
@@ -0,0 +1,892 @@
+package com.acgist.snail.net.torrent.peer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.acgist.snail.config.PeerConfig;
+import com.acgist.snail.context.IStatisticsSession;
+import com.acgist.snail.logger.Logger;
+import com.acgist.snail.logger.LoggerFactory;
+import com.acgist.snail.utils.NetUtils;
+
+/**
+ * <p>Peer存档</p>
+ * <p>没有连接的Peer使用基本类型数组紧凑保存（地址、端口、属性、来源、失败次数），只有连接时才会新建Peer信息。</p>
+ * <p>使用开放寻址散列表查找Peer：地址和端口查找时间复杂度O(1)</p>
+ * <p>Peer按照等级保存在双端队列（尾部优先使用），超过存档数量时优先剔除等级最低并且最早加入的Peer。</p>
+ * <p>非线程安全：使用时需要加锁</p>
+ * 
+ * @author acgist
+ */
+public final class PeerStore {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(PeerStore.class);
+	
+	/**
+	 * <p>等级：劣质Peer（连接失败、没有评分）</p>
+	 */
+	public static final int LEVEL_INFERIOR = 0;
+	/**
+	 * <p>等级：普通Peer</p>
+	 */
+	public static final int LEVEL_NORMAL = 1;
+	/**
+	 * <p>等级：优质Peer（优先来源、提供下载）</p>
+	 */
+	public static final int LEVEL_PREFERENCE = 2;
+	/**
+	 * <p>等级数量</p>
+	 */
+	private static final int LEVEL_SIZE = 3;
+	/**
+	 * <p>状态：空闲</p>
+	 */
+	private static final byte STATE_FREE = 0;
+	/**
+	 * <p>状态：使用（不在队列）</p>
+	 */
+	private static final byte STATE_USED = 1;
+	/**
+	 * <p>状态：排队（等待连接）</p>
+	 */
+	private static final byte STATE_QUEUED = 2;
+	/**
+	 * <p>IPv4映射地址前缀</p>
+	 */
+	private static final long IPV4_MAPPED = 0xFFFFL << 32;
+	/**
+	 * <p>默认容量</p>
+	 */
+	private static final int DEFAULT_CAPACITY = 64;
+	
+	/**
+	 * <p>存档数量（没有连接的Peer）</p>
+	 */
+	private final int maxSize;
+	/**
+	 * <p>上级统计信息</p>
+	 */
+	private IStatisticsSession parent;
+	/**
+	 * <p>地址高位</p>
+	 */
+	private long[] highs;
+	/**
+	 * <p>地址低位</p>
+	 */
+	private long[] lows;
+	/**
+	 * <p>端口（没有端口：0）</p>
+	 */
+	private char[] ports;
+	/**
+	 * <p>pex flags</p>
+	 */
+	private byte[] flags;
+	/**
+	 * <p>Peer来源</p>
+	 */
+	private byte[] sources;
+	/**
+	 * <p>连接失败次数</p>
+	 */
+	private byte[] failTimes;
+	/**
+	 * <p>状态</p>
+	 */
+	private byte[] states;
+	/**
+	 * <p>排队编号：重新排队时递增，用于判断队列中的记录是否有效。</p>
+	 */
+	private int[] tickets;
+	/**
+	 * <p>Peer信息（连接时新建）</p>
+	 */
+	private PeerSession[] sessions;
+	/**
+	 * <p>PEX来源</p>
+	 */
+	private PeerSession[] pexSources;
+	/**
+	 * <p>空闲位置</p>
+	 */
+	private int[] frees;
+	/**
+	 * <p>空闲位置数量</p>
+	 */
+	private int freeSize;
+	/**
+	 * <p>已经使用位置数量</p>
+	 */
+	private int limit;
+	/**
+	 * <p>散列表（位置 + 1，没有数据：0）</p>
+	 */
+	private int[] table;
+	/**
+	 * <p>Peer数量</p>
+	 */
+	private int size;
+	/**
+	 * <p>等级队列</p>
+	 */
+	private final LongDeque[] levels;
+	/**
+	 * <p>已经新建的Peer信息</p>
+	 * <p>Peer信息=位置</p>
+	 */
+	private final Map<PeerSession, Integer> materials;
+	
+	/**
+	 * @param maxSize 存档数量
+	 */
+	public PeerStore(int maxSize) {
+		this.maxSize = Math.max(1, maxSize);
+		this.resize(DEFAULT_CAPACITY);
+		this.table = new int[DEFAULT_CAPACITY * 2];
+		this.levels = new LongDeque[LEVEL_SIZE];
+		for (int index = 0; index < LEVEL_SIZE; index++) {
+			this.levels[index] = new LongDeque();
+		}
+		this.materials = new IdentityHashMap<>();
+	}
+	
+	/**
+	 * <p>设置上级统计信息</p>
+	 * 
+	 * @param parent 上级统计信息
+	 */
+	public void parent(IStatisticsSession parent) {
+		if(parent != null) {
+			this.parent = parent;
+		}
+	}
+	
+	/**
+	 * <p>添加Peer（不会新建Peer信息）</p>
+	 * <p>已经存在的Peer合并属性和来源，优先来源提升等级。</p>
+	 * 
+	 * @param host 地址
+	 * @param port 端口
+	 * @param source 来源
+	 * @param flags pex flags
+	 * @param pexSource PEX来源
+	 * 
+	 * @return 是否是新的Peer
+	 */
+	public boolean offer(String host, Integer port, PeerConfig.Source source, byte flags, PeerSession pexSource) {
+		final long[] address = address(host);
+		if(address == null || port == null || port <= 0) {
+			LOGGER.debug("添加Peer失败（地址无效）：{}-{}", host, port);
+			return false;
+		}
+		final int level = source.preference() ? LEVEL_PREFERENCE : LEVEL_NORMAL;
+		int slot = this.find(address[0], address[1], port);
+		if(slot >= 0) {
+			this.merge(slot, source.value(), flags, pexSource);
+			final PeerSession session = this.sessions[slot];
+			if(session != null) {
+				session.source(source);
+				session.flags(flags);
+				if(pexSource != null) {
+					session.pexSource(pexSource);
+				}
+			} else if(this.states[slot] == STATE_QUEUED && level == LEVEL_PREFERENCE) {
+				// 重新排队：旧的记录失效
+				this.queue(slot, level, true);
+			}
+			return false;
+		}
+		slot = this.insert(address[0], address[1], port);
+		this.merge(slot, source.value(), flags, pexSource);
+		this.queue(slot, level, true);
+		this.evict();
+		return true;
+	}
+	
+	/**
+	 * <p>获取Peer信息（没有时新建）</p>
+	 * <p>Peer已经存档时使用存档数据新建Peer信息</p>
+	 * 
+	 * @param host 地址
+	 * @param port 端口（接入Peer没有端口）
+	 * @param source 来源
+	 * 
+	 * @return Peer信息
+	 */
+	public PeerSession session(String host, Integer port, PeerConfig.Source source) {
+		final long[] address = address(host);
+		if(address == null) {
+			// 没有地址不能存档：直接新建
+			LOGGER.debug("Peer不能存档（地址无效）：{}-{}", host, port);
+			final PeerSession session = PeerSession.newInstance(this.parent, host, port);
+			session.source(source);
+			return session;
+		}
+		final int portValue = port == null ? 0 : port;
+		int slot = this.find(address[0], address[1], portValue);
+		if(slot < 0) {
+			final PeerSession session = this.findAccept(address[0], address[1], portValue);
+			if(session != null) {
+				session.source(source);
+				return session;
+			}
+			slot = this.insert(address[0], address[1], portValue);
+		}
+		this.merge(slot, source.value(), (byte) 0, null);
+		final PeerSession session = this.material(slot);
+		session.source(source);
+		return session;
+	}
+	
+	/**
+	 * <p>查找Peer信息（不会新建Peer信息）</p>
+	 * 
+	 * @param host 地址
+	 * @param port 端口
+	 * 
+	 * @return Peer信息
+	 */
+	public PeerSession find(String host, Integer port) {
+		final long[] address = address(host);
+		if(address == null) {
+			return null;
+		}
+		final int portValue = port == null ? 0 : port;
+		final int slot = this.find(address[0], address[1], portValue);
+		if(slot >= 0) {
+			return this.sessions[slot];
+		}
+		return this.findAccept(address[0], address[1], portValue);
+	}
+	
+	/**
+	 * <p>挑选Peer：优先选择等级最高并且最后加入的Peer</p>
+	 * <p>挑选的Peer移出队列，使用结束后需要重新放回。</p>
+	 * 
+	 * @return Peer信息
+	 * 
+	 * @see #offer(PeerSession, int)
+	 */
+	public PeerSession pick() {
+		for (int level = LEVEL_SIZE - 1; level >= LEVEL_INFERIOR; level--) {
+			final LongDeque deque = this.levels[level];
+			int index = 0;
+			final int dequeSize = deque.size();
+			while(index++ < dequeSize) {
+				final int slot = this.valid(deque.pollLast());
+				if(slot < 0) {
+					continue;
+				}
+				if(this.available(slot)) {
+					this.states[slot] = STATE_USED;
+					return this.material(slot);
+				}
+				// 注意不要直接删除：防止重复添加Peer
+				this.queue(slot, LEVEL_INFERIOR, false);
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * <p>Peer放回队列</p>
+	 * <p>Peer没有连接时释放Peer信息，数据保存到存档。</p>
+	 * 
+	 * @param session Peer信息
+	 * @param level 等级
+	 */
+	public void offer(PeerSession session, int level) {
+		final Integer slot = this.materials.get(session);
+		if(slot == null) {
+			return;
+		}
+		if(this.states[slot] != STATE_QUEUED) {
+			// 劣质Peer插入头部
+			this.queue(slot, level, level != LEVEL_INFERIOR);
+		}
+		this.release(session);
+	}
+	
+	/**
+	 * <p>释放Peer信息</p>
+	 * <p>Peer没有连接时释放Peer信息，数据保存到存档，没有端口（接入Peer）直接删除。</p>
+	 * 
+	 * @param session Peer信息
+	 */
+	public void release(PeerSession session) {
+		final Integer slotValue = this.materials.get(session);
+		if(
+			slotValue == null ||
+			session.connected() ||
+			session.peerUploader() != null ||
+			session.peerDownloader() != null
+		) {
+			return;
+		}
+		int slot = slotValue;
+		this.materials.remove(session);
+		this.sessions[slot] = null;
+		this.merge(slot, session.source(), session.flags(), session.pexSource());
+		this.failTimes[slot] = (byte) Math.max(this.failTimes[slot], session.failTimes());
+		final Integer port = session.port();
+		if(this.ports[slot] == 0) {
+			if(port == null || port <= 0) {
+				this.delete(slot);
+				return;
+			}
+			// 接入Peer获取端口：重新存档
+			final int oldSlot = slot;
+			slot = this.find(this.highs[oldSlot], this.lows[oldSlot], port);
+			if(slot < 0) {
+				slot = this.insert(this.highs[oldSlot], this.lows[oldSlot], port);
+			}
+			this.merge(slot, this.sources[oldSlot], this.flags[oldSlot], this.pexSources[oldSlot]);
+			this.failTimes[slot] = (byte) Math.max(this.failTimes[slot], this.failTimes[oldSlot]);
+			this.delete(oldSlot);
+		}
+		if(this.sessions[slot] == null && this.states[slot] != STATE_QUEUED) {
+			// 提供下载：优先使用
+			if(session.statistics().downloadSize() > 0L) {
+				this.queue(slot, LEVEL_PREFERENCE, true);
+			} else {
+				this.queue(slot, LEVEL_NORMAL, false);
+			}
+		}
+		this.evict();
+	}
+	
+	/**
+	 * <p>获取所有已经新建的Peer信息</p>
+	 * 
+	 * @return Peer信息列表
+	 */
+	public List<PeerSession> sessions() {
+		return new ArrayList<>(this.materials.keySet());
+	}
+	
+	/**
+	 * <p>统计Peer来源</p>
+	 * 
+	 * @return 来源=数量
+	 */
+	public Map<PeerConfig.Source, Integer> sources() {
+		final PeerConfig.Source[] values = PeerConfig.Source.values();
+		final Map<PeerConfig.Source, Integer> map = new EnumMap<>(PeerConfig.Source.class);
+		for (int slot = 0; slot < this.limit; slot++) {
+			if(this.states[slot] == STATE_FREE) {
+				continue;
+			}
+			final PeerSession session = this.sessions[slot];
+			final byte source = session == null ? this.sources[slot] : session.source();
+			for (PeerConfig.Source value : values) {
+				if((source & value.value()) == value.value()) {
+					map.merge(value, 1, Integer::sum);
+				}
+			}
+		}
+		return map;
+	}
+	
+	/**
+	 * <p>获取可用Peer数量</p>
+	 * 
+	 * @return 可用Peer数量
+	 */
+	public int availableSize() {
+		int availableSize = 0;
+		for (int slot = 0; slot < this.limit; slot++) {
+			if(this.states[slot] != STATE_FREE && this.available(slot)) {
+				availableSize++;
+			}
+		}
+		return availableSize;
+	}
+	
+	/**
+	 * <p>获取Peer数量</p>
+	 * 
+	 * @return Peer数量
+	 */
+	public int size() {
+		return this.size;
+	}
+	
+	/**
+	 * <p>判断是否没有Peer</p>
+	 * 
+	 * @return 是否没有Peer
+	 */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+	
+	/**
+	 * <p>判断Peer是否可用</p>
+	 * 
+	 * @param slot 位置
+	 * 
+	 * @return 是否可用
+	 */
+	private boolean available(int slot) {
+		final PeerSession session = this.sessions[slot];
+		if(session != null) {
+			return session.available();
+		}
+		return
+			this.ports[slot] != 0 &&
+			this.failTimes[slot] < PeerConfig.MAX_FAIL_TIMES;
+	}
+	
+	/**
+	 * <p>新建Peer信息</p>
+	 * 
+	 * @param slot 位置
+	 * 
+	 * @return Peer信息
+	 */
+	private PeerSession material(int slot) {
+		PeerSession session = this.sessions[slot];
+		if(session != null) {
+			return session;
+		}
+		final int port = this.ports[slot];
+		session = PeerSession.newInstance(this.parent, host(this.highs[slot], this.lows[slot]), port == 0 ? null : port);
+		session.source(this.sources[slot]);
+		session.flags(this.flags[slot]);
+		session.failTimes(this.failTimes[slot]);
+		session.pexSource(this.pexSources[slot]);
+		this.sessions[slot] = session;
+		this.materials.put(session, slot);
+		return session;
+	}
+	
+	/**
+	 * <p>合并属性和来源</p>
+	 * 
+	 * @param slot 位置
+	 * @param source 来源
+	 * @param flags pex flags
+	 * @param pexSource PEX来源
+	 */
+	private void merge(int slot, byte source, byte flags, PeerSession pexSource) {
+		this.sources[slot] |= source;
+		this.flags[slot] |= flags;
+		if(pexSource != null) {
+			this.pexSources[slot] = pexSource;
+		}
+	}
+	
+	/**
+	 * <p>Peer加入队列</p>
+	 * 
+	 * @param slot 位置
+	 * @param level 等级
+	 * @param last 是否插入尾部
+	 */
+	private void queue(int slot, int level, boolean last) {
+		final int ticket = ++this.tickets[slot];
+		final long value = ((long) ticket << 32) | slot;
+		this.states[slot] = STATE_QUEUED;
+		if(last) {
+			this.levels[level].offerLast(value);
+		} else {
+			this.levels[level].offerFirst(value);
+		}
+	}
+	
+	/**
+	 * <p>验证队列记录</p>
+	 * 
+	 * @param value 队列记录
+	 * 
+	 * @return 有效位置（无效：-1）
+	 */
+	private int valid(long value) {
+		final int slot = (int) value;
+		final int ticket = (int) (value >>> 32);
+		if(
+			slot >= 0 &&
+			slot < this.limit &&
+			this.states[slot] == STATE_QUEUED &&
+			this.tickets[slot] == ticket
+		) {
+			return slot;
+		}
+		return -1;
+	}
+	
+	/**
+	 * <p>剔除Peer：超过存档数量时剔除等级最低并且最早加入的没有连接的Peer</p>
+	 */
+	private void evict() {
+		while(this.size - this.materials.size() > this.maxSize) {
+			boolean evict = false;
+			for (int level = LEVEL_INFERIOR; level < LEVEL_SIZE && !evict; level++) {
+				final LongDeque deque = this.levels[level];
+				while(!deque.isEmpty()) {
+					final int slot = this.valid(deque.pollFirst());
+					if(slot >= 0 && this.sessions[slot] == null) {
+						this.delete(slot);
+						evict = true;
+						break;
+					} else if(slot >= 0) {
+						// 已经新建Peer信息：重新放回
+						this.states[slot] = STATE_USED;
+					}
+				}
+			}
+			if(!evict) {
+				break;
+			}
+		}
+	}
+	
+	/**
+	 * <p>查找位置</p>
+	 * 
+	 * @param high 地址高位
+	 * @param low 地址低位
+	 * @param port 端口
+	 * 
+	 * @return 位置（没有：-1）
+	 */
+	private int find(long high, long low, int port) {
+		final int mask = this.table.length - 1;
+		int index = hash(high, low, port) & mask;
+		int value;
+		while((value = this.table[index]) != 0) {
+			final int slot = value - 1;
+			if(this.highs[slot] == high && this.lows[slot] == low && this.ports[slot] == port) {
+				return slot;
+			}
+			index = (index + 1) & mask;
+		}
+		return -1;
+	}
+	
+	/**
+	 * <p>查找接入Peer：接入Peer通过扩展协议获取端口</p>
+	 * 
+	 * @param high 地址高位
+	 * @param low 地址低位
+	 * @param port 端口
+	 * 
+	 * @return Peer信息
+	 */
+	private PeerSession findAccept(long high, long low, int port) {
+		if(port == 0) {
+			return null;
+		}
+		final int slot = this.find(high, low, 0);
+		if(slot < 0) {
+			return null;
+		}
+		final PeerSession session = this.sessions[slot];
+		if(session != null && Integer.valueOf(port).equals(session.port())) {
+			return session;
+		}
+		return null;
+	}
+	
+	/**
+	 * <p>新建位置</p>
+	 * 
+	 * @param high 地址高位
+	 * @param low 地址低位
+	 * @param port 端口
+	 * 
+	 * @return 位置
+	 */
+	private int insert(long high, long low, int port) {
+		final int slot;
+		if(this.freeSize > 0) {
+			slot = this.frees[--this.freeSize];
+		} else {
+			if(this.limit >= this.highs.length) {
+				this.resize(this.highs.length * 2);
+			}
+			slot = this.limit++;
+		}
+		this.highs[slot] = high;
+		this.lows[slot] = low;
+		this.ports[slot] = (char) port;
+		this.flags[slot] = 0;
+		this.sources[slot] = 0;
+		this.failTimes[slot] = 0;
+		this.states[slot] = STATE_USED;
+		this.sessions[slot] = null;
+		this.pexSources[slot] = null;
+		this.size++;
+		if(this.size * 2 > this.table.length) {
+			this.rehash(this.table.length * 2);
+		}
+		final int mask = this.table.length - 1;
+		int index = hash(high, low, port) & mask;
+		while(this.table[index] != 0) {
+			index = (index + 1) & mask;
+		}
+		this.table[index] = slot + 1;
+		return slot;
+	}
+	
+	/**
+	 * <p>删除位置</p>
+	 * <p>线性探测删除：后移数据填补空位</p>
+	 * 
+	 * @param slot 位置
+	 */
+	private void delete(int slot) {
+		final int mask = this.table.length - 1;
+		int index = hash(this.highs[slot], this.lows[slot], this.ports[slot]) & mask;
+		while(this.table[index] != slot + 1) {
+			index = (index + 1) & mask;
+		}
+		int next = index;
+		while(true) {
+			next = (next + 1) & mask;
+			final int value = this.table[next];
+			if(value == 0) {
+				break;
+			}
+			final int target = value - 1;
+			final int home = hash(this.highs[target], this.lows[target], this.ports[target]) & mask;
+			// 判断home是否在(index, next]区间：不在区间移动数据
+			final boolean move = index <= next ? (home <= index || home > next) : (home <= index && home > next);
+			if(move) {
+				this.table[index] = value;
+				index = next;
+			}
+		}
+		this.table[index] = 0;
+		final PeerSession session = this.sessions[slot];
+		if(session != null) {
+			this.materials.remove(session);
+		}
+		this.states[slot] = STATE_FREE;
+		this.tickets[slot]++;
+		this.sessions[slot] = null;
+		this.pexSources[slot] = null;
+		this.frees[this.freeSize++] = slot;
+		this.size--;
+	}
+	
+	/**
+	 * <p>扩容数组</p>
+	 * 
+	 * @param capacity 容量
+	 */
+	private void resize(int capacity) {
+		if(this.highs == null) {
+			this.highs = new long[capacity];
+			this.lows = new long[capacity];
+			this.ports = new char[capacity];
+			this.flags = new byte[capacity];
+			this.sources = new byte[capacity];
+			this.failTimes = new byte[capacity];
+			this.states = new byte[capacity];
+			this.tickets = new int[capacity];
+			this.sessions = new PeerSession[capacity];
+			this.pexSources = new PeerSession[capacity];
+			this.frees = new int[capacity];
+		} else {
+			this.highs = Arrays.copyOf(this.highs, capacity);
+			this.lows = Arrays.copyOf(this.lows, capacity);
+			this.ports = Arrays.copyOf(this.ports, capacity);
+			this.flags = Arrays.copyOf(this.flags, capacity);
+			this.sources = Arrays.copyOf(this.sources, capacity);
+			this.failTimes = Arrays.copyOf(this.failTimes, capacity);
+			this.states = Arrays.copyOf(this.states, capacity);
+			this.tickets = Arrays.copyOf(this.tickets, capacity);
+			this.sessions = Arrays.copyOf(this.sessions, capacity);
+			this.pexSources = Arrays.copyOf(this.pexSources, capacity);
+			this.frees = Arrays.copyOf(this.frees, capacity);
+		}
+	}
+	
+	/**
+	 * <p>扩容散列表</p>
+	 * 
+	 * @param capacity 容量
+	 */
+	private void rehash(int capacity) {
+		final int[] oldTable = this.table;
+		this.table = new int[capacity];
+		final int mask = capacity - 1;
+		for (int value : oldTable) {
+			if(value == 0) {
+				continue;
+			}
+			final int slot = value - 1;
+			int index = hash(this.highs[slot], this.lows[slot], this.ports[slot]) & mask;
+			while(this.table[index] != 0) {
+				index = (index + 1) & mask;
+			}
+			this.table[index] = value;
+		}
+	}
+	
+	/**
+	 * <p>计算散列值</p>
+	 * 
+	 * @param high 地址高位
+	 * @param low 地址低位
+	 * @param port 端口
+	 * 
+	 * @return 散列值
+	 */
+	private static final int hash(long high, long low, int port) {
+		long hash = high * 0x9E3779B97F4A7C15L;
+		hash = (hash ^ low) * 0x9E3779B97F4A7C15L;
+		hash = (hash ^ port) * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32));
+	}
+	
+	/**
+	 * <p>地址编码：IPv4使用IPv4映射地址</p>
+	 * 
+	 * @param host 地址
+	 * 
+	 * @return 地址高位和低位（无效地址：null）
+	 */
+	private static final long[] address(String host) {
+		if(NetUtils.ipv4(host)) {
+			return new long[] { 0L, IPV4_MAPPED | (NetUtils.ipToInt(host) & 0xFFFFFFFFL) };
+		}
+		if(NetUtils.ipv6(host)) {
+			final byte[] bytes = NetUtils.ipToBytes(host);
+			if(bytes == null || bytes.length != 16) {
+				return null;
+			}
+			long high = 0L;
+			long low = 0L;
+			for (int index = 0; index < 8; index++) {
+				high = (high << 8) | (bytes[index] & 0xFF);
+				low = (low << 8) | (bytes[index + 8] & 0xFF);
+			}
+			return new long[] { high, low };
+		}
+		return null;
+	}
+	
+	/**
+	 * <p>地址解码</p>
+	 * 
+	 * @param high 地址高位
+	 * @param low 地址低位
+	 * 
+	 * @return 地址
+	 */
+	private static final String host(long high, long low) {
+		if(high == 0L && (low >>> 32) == 0xFFFFL) {
+			return NetUtils.intToIP((int) low);
+		}
+		final byte[] bytes = new byte[16];
+		for (int index = 7; index >= 0; index--) {
+			bytes[index] = (byte) high;
+			bytes[index + 8] = (byte) low;
+			high >>>= 8;
+			low >>>= 8;
+		}
+		return NetUtils.bytesToIP(bytes);
+	}
+	
+	/**
+	 * <p>基本类型双端队列</p>
+	 * 
+	 * @author acgist
+	 */
+	private static final class LongDeque {
+		
+		/**
+		 * <p>数据</p>
+		 */
+		private long[] values = new long[16];
+		/**
+		 * <p>头部索引</p>
+		 */
+		private int head;
+		/**
+		 * <p>数量</p>
+		 */
+		private int size;
+		
+		/**
+		 * @return 数量
+		 */
+		private int size() {
+			return this.size;
+		}
+		
+		/**
+		 * @return 是否为空
+		 */
+		private boolean isEmpty() {
+			return this.size == 0;
+		}
+		
+		/**
+		 * @param value 数据
+		 */
+		private void offerFirst(long value) {
+			this.ensure();
+			this.head = (this.head - 1) & (this.values.length - 1);
+			this.values[this.head] = value;
+			this.size++;
+		}
+		
+		/**
+		 * @param value 数据
+		 */
+		private void offerLast(long value) {
+			this.ensure();
+			this.values[(this.head + this.size) & (this.values.length - 1)] = value;
+			this.size++;
+		}
+		
+		/**
+		 * @return 数据（没有数据：-1）
+		 */
+		private long pollFirst() {
+			if(this.size == 0) {
+				return -1L;
+			}
+			final long value = this.values[this.head];
+			this.head = (this.head + 1) & (this.values.length - 1);
+			this.size--;
+			return value;
+		}
+		
+		/**
+		 * @return 数据（没有数据：-1）
+		 */
+		private long pollLast() {
+			if(this.size == 0) {
+				return -1L;
+			}
+			this.size--;
+			return this.values[(this.head + this.size) & (this.values.length - 1)];
+		}
+		
+		/**
+		 * <p>扩容</p>
+		 */
+		private void ensure() {
+			if(this.size < this.values.length) {
+				return;
+			}
+			final long[] newValues = new long[this.values.length * 2];
+			for (int index = 0; index < this.size; index++) {
+				newValues[index] = this.values[(this.head + index) & (this.values.length - 1)];
+			}
+			this.values = newValues;
+			this.head = 0;
+		}
+		
+	}
+	
+}
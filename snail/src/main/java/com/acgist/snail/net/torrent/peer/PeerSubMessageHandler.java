@@ -4,6 +4,7 @@ import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.BitSet;
+import java.util.List;
 
 import com.acgist.snail.config.PeerConfig;
 import com.acgist.snail.config.PeerConfig.Type;
@@ -14,11 +15,14 @@ import com.acgist.snail.net.NetException;
 import com.acgist.snail.net.codec.IMessageDecoder;
 import com.acgist.snail.net.torrent.IEncryptMessageSender;
 import com.acgist.snail.net.torrent.IPeerConnect;
+import com.acgist.snail.net.torrent.Torrent;
 import com.acgist.snail.net.torrent.TorrentContext;
+import com.acgist.snail.net.torrent.TorrentFile;
 import com.acgist.snail.net.torrent.TorrentSession;
 import com.acgist.snail.utils.ArrayUtils;
 import com.acgist.snail.utils.BitfieldUtils;
 import com.acgist.snail.utils.ByteUtils;
+import com.acgist.snail.utils.MerkleUtils;
 import com.acgist.snail.utils.NumberUtils;
 import com.acgist.snail.utils.StringUtils;
 
@@ -42,6 +46,18 @@ public final class PeerSubMessageHandler implements IMessageDecoder<ByteBuffer>,
 	 * <p>检查是否使用最大次数：{@value}</p>
 	 */
 	private static final int MAX_USELESS_CHECK = 3;
+	/**
+	 * <p>hashRequest消息长度：{@value}</p>
+	 */
+	private static final int HASH_REQUEST_LENGTH = 48;
+	/**
+	 * <p>hashRequest最小请求Hash数量：{@value}</p>
+	 */
+	private static final int MIN_HASH_LENGTH = 2;
+	/**
+	 * <p>hashRequest最大请求Hash数量：{@value}</p>
+	 */
+	private static final int MAX_HASH_LENGTH = 512;
 	
 	/**
 	 * <p>检查是否使用次数</p>
@@ -59,6 +75,11 @@ public final class PeerSubMessageHandler implements IMessageDecoder<ByteBuffer>,
 	 * <p>是否已经处理握手</p>
 	 */
 	private volatile boolean handshakeRecv = false;
+	/**
+	 * <p>握手InfoHash</p>
+	 * <p>服务端使用Peer握手InfoHash响应：混合种子Peer可以使用截断InfoHash（v2）握手</p>
+	 */
+	private byte[] handshakeInfoHash;
 	/**
 	 * <p>是否是服务端</p>
 	 */
@@ -174,6 +195,10 @@ public final class PeerSubMessageHandler implements IMessageDecoder<ByteBuffer>,
 			LOGGER.debug("Peer接入失败（远程客户端获取失败）：{}", infoHashHex);
 			return false;
 		}
+		if(PeerContext.getInstance().banned(socketAddress.getHostString())) {
+			LOGGER.debug("Peer接入失败（禁用Peer）：{}", socketAddress);
+			return false;
+		}
 		// 禁止自动获取端口：通过PEX消息获取端口
 		final PeerSession peerSession = PeerContext.getInstance().newPeerSession(
 			infoHashHex,
@@ -304,6 +329,10 @@ public final class PeerSubMessageHandler implements IMessageDecoder<ByteBuffer>,
 				case SUGGEST_PIECE -> this.suggestPiece(buffer);
 				case REJECT_REQUEST -> this.rejectRequest(buffer);
 				case ALLOWED_FAST -> this.allowedFast(buffer);
+				// BitTorrent v2
+				case HASH_REQUEST -> this.hashRequest(buffer);
+				case HASHES -> this.hashes(buffer);
+				case HASH_REJECT -> this.hashReject(buffer);
 				default -> LOGGER.warn("处理Peer消息错误（类型未适配）：{}", type);
 			}
 		} else {
@@ -339,7 +368,7 @@ public final class PeerSubMessageHandler implements IMessageDecoder<ByteBuffer>,
 		buffer.put((byte) PeerConfig.PROTOCOL_NAME_LENGTH);
 		buffer.put(PeerConfig.PROTOCOL_NAME_BYTES);
 		buffer.put(PeerConfig.RESERVED);
-		buffer.put(this.torrentSession.infoHash().infoHash());
+		buffer.put(this.handshakeInfoHash == null ? this.torrentSession.infoHash().infoHash() : this.handshakeInfoHash);
 		buffer.put(PeerConfig.getInstance().peerId());
 		this.sendEncrypt(buffer, SystemConfig.CONNECT_TIMEOUT);
 	}
@@ -379,6 +408,7 @@ public final class PeerSubMessageHandler implements IMessageDecoder<ByteBuffer>,
 		buffer.get(peerId);
 		if(this.server) {
 			if(this.initServer(infoHashHex, peerId)) {
+				this.handshakeInfoHash = infoHash;
 				this.available = true;
 			} else {
 				return false;
@@ -393,7 +423,7 @@ public final class PeerSubMessageHandler implements IMessageDecoder<ByteBuffer>,
 		this.fastBitfield();
 		this.extension();
 		this.dht();
-		this.unchoke();
+		this.unchokeSlot();
 		return true;
 	}
 
@@ -432,7 +462,7 @@ public final class PeerSubMessageHandler implements IMessageDecoder<ByteBuffer>,
 	 * <p>发送解除阻塞消息</p>
 	 * <p>格式：len=0001 id=0x01</p>
 	 */
-	private void unchoke() {
+	public void unchoke() {
 		if(!this.torrentSession.uploadable()) {
 			LOGGER.debug("发送解除阻塞消息：任务不可上传");
 			return;
@@ -450,6 +480,24 @@ public final class PeerSubMessageHandler implements IMessageDecoder<ByteBuffer>,
 		this.pushMessage(PeerConfig.Type.UNCHOKE);
 	}
 	
+	/**
+	 * <p>申请上传位置</p>
+	 * <p>上传位置空闲：立即解除阻塞</p>
+	 * <p>上传位置已满：等待阻塞管理定时选择</p>
+	 * 
+	 * @see PeerChoker
+	 */
+	private void unchokeSlot() {
+		if(this.peerConnectSession.isAmUnchoked()) {
+			return;
+		}
+		if(this.torrentSession.unchokeable(this.peerConnect)) {
+			this.unchoke();
+		} else {
+			LOGGER.debug("发送解除阻塞消息：没有空闲上传位置");
+		}
+	}
+	
 	/**
 	 * <p>处理解除阻塞消息</p>
 	 * 
@@ -489,6 +537,7 @@ public final class PeerSubMessageHandler implements IMessageDecoder<ByteBuffer>,
 	private void interested(ByteBuffer buffer) {
 		LOGGER.debug("处理感兴趣消息");
 		this.peerConnectSession.peerInterested();
+		this.unchokeSlot();
 	}
 
 	/**
@@ -764,6 +813,160 @@ public final class PeerSubMessageHandler implements IMessageDecoder<ByteBuffer>,
 		this.allowedFastDownload();
 	}
 	
+	/**
+	 * <p>发送hashRequest消息</p>
+	 * <p>格式：len=0049 id=0x15 pieces_root base_layer index length proof_layers</p>
+	 * <p>pieces_root：文件Hash树根</p>
+	 * <p>base_layer：请求层级（叶子节点层级为零）</p>
+	 * <p>index：请求层级开始节点索引</p>
+	 * <p>length：请求节点数量</p>
+	 * <p>proof_layers：证明层级数量</p>
+	 * <p>请求Piece数据块Hash（叶子节点）：Piece层级Hash已知（不用证明Hash）</p>
+	 * 
+	 * @param index Piece索引
+	 */
+	public void hashRequest(int index) {
+		if(!this.peerSession.supportV2Protocol()) {
+			LOGGER.debug("发送hashRequest消息：Peer不支持BitTorrent v2");
+			return;
+		}
+		final Torrent torrent = this.torrentSession.torrent();
+		final TorrentFile file = torrent == null ? null : torrent.fileTreeFile(index);
+		if(file == null || file.getPiecesRoot() == null) {
+			LOGGER.debug("发送hashRequest消息：没有文件Hash树根");
+			return;
+		}
+		final long pieceLeafs = torrent.getInfo().getPieceLength() / MerkleUtils.LEAF_LENGTH;
+		final long fileLeafs = (file.getLength() + MerkleUtils.LEAF_LENGTH - 1) / MerkleUtils.LEAF_LENGTH;
+		final int length = (int) (fileLeafs >= pieceLeafs ? pieceLeafs : MerkleUtils.powerOfTwo((int) fileLeafs));
+		if(length < MIN_HASH_LENGTH || length > MAX_HASH_LENGTH) {
+			LOGGER.debug("发送hashRequest消息：数据块数量错误：{}", length);
+			return;
+		}
+		LOGGER.debug("发送hashRequest消息：{}", index);
+		final ByteBuffer buffer = ByteBuffer.allocate(HASH_REQUEST_LENGTH);
+		buffer.put(file.getPiecesRoot());
+		buffer.putInt(0);
+		buffer.putInt(torrent.fileTreePieceIndex(index) * length);
+		buffer.putInt(length);
+		buffer.putInt(0);
+		this.pushMessage(PeerConfig.Type.HASH_REQUEST, buffer.array());
+	}
+	
+	/**
+	 * <p>处理hashRequest消息</p>
+	 * <p>只响应Piece层级Hash请求（不保存叶子节点Hash）：其他层级发送hashReject消息</p>
+	 * 
+	 * @param buffer 消息
+	 */
+	private void hashRequest(ByteBuffer buffer) {
+		if(buffer.remaining() < HASH_REQUEST_LENGTH) {
+			LOGGER.debug("处理hashRequest消息：消息长度错误");
+			return;
+		}
+		final byte[] header = new byte[HASH_REQUEST_LENGTH];
+		buffer.get(header);
+		final ByteBuffer headerBuffer = ByteBuffer.wrap(header);
+		final byte[] piecesRoot = new byte[SystemConfig.SHA256_HASH_LENGTH];
+		headerBuffer.get(piecesRoot);
+		final int baseLayer = headerBuffer.getInt();
+		final int index = headerBuffer.getInt();
+		final int length = headerBuffer.getInt();
+		final int proofLayers = headerBuffer.getInt();
+		LOGGER.debug("处理hashRequest消息：{}-{}-{}-{}", baseLayer, index, length, proofLayers);
+		final Torrent torrent = this.torrentSession.torrent();
+		final byte[] layer = torrent == null ? null : torrent.pieceLayer(piecesRoot);
+		final long pieceLeafs = layer == null ? 0 : torrent.getInfo().getPieceLength() / MerkleUtils.LEAF_LENGTH;
+		if(
+			layer == null ||
+			baseLayer != Long.numberOfTrailingZeros(pieceLeafs) ||
+			!MerkleUtils.isPowerOfTwo(length) ||
+			length < MIN_HASH_LENGTH ||
+			length > MAX_HASH_LENGTH ||
+			index < 0 ||
+			index % length != 0 ||
+			proofLayers < 0
+		) {
+			this.pushMessage(PeerConfig.Type.HASH_REJECT, header);
+			return;
+		}
+		final int hashSize = layer.length / SystemConfig.SHA256_HASH_LENGTH;
+		final byte[][] hashs = new byte[hashSize][];
+		for (int pos = 0; pos < hashSize; pos++) {
+			hashs[pos] = Arrays.copyOfRange(layer, pos * SystemConfig.SHA256_HASH_LENGTH, (pos + 1) * SystemConfig.SHA256_HASH_LENGTH);
+		}
+		final List<byte[][]> tree = MerkleUtils.tree(hashs, 0, MerkleUtils.padding(baseLayer));
+		final byte[][] base = tree.get(0);
+		if(index + length > base.length) {
+			this.pushMessage(PeerConfig.Type.HASH_REJECT, header);
+			return;
+		}
+		final List<byte[]> proofs = MerkleUtils.proof(tree, index, length, proofLayers);
+		final ByteBuffer message = ByteBuffer.allocate(HASH_REQUEST_LENGTH + (length + proofs.size()) * SystemConfig.SHA256_HASH_LENGTH);
+		message.put(header);
+		for (int pos = index; pos < index + length; pos++) {
+			message.put(base[pos]);
+		}
+		proofs.forEach(message::put);
+		this.pushMessage(PeerConfig.Type.HASHES, message.array());
+	}
+	
+	/**
+	 * <p>处理hashes消息</p>
+	 * <p>格式：len=0049+X id=0x16 pieces_root base_layer index length proof_layers hashes</p>
+	 * <p>数据块Hash（叶子节点）计算Hash树根和Piece层级Hash一致时保存</p>
+	 * 
+	 * @param buffer 消息
+	 */
+	private void hashes(ByteBuffer buffer) {
+		if(buffer.remaining() < HASH_REQUEST_LENGTH) {
+			LOGGER.debug("处理hashes消息：消息长度错误");
+			return;
+		}
+		final byte[] piecesRoot = new byte[SystemConfig.SHA256_HASH_LENGTH];
+		buffer.get(piecesRoot);
+		final int baseLayer = buffer.getInt();
+		final int index = buffer.getInt();
+		final int length = buffer.getInt();
+		buffer.getInt();
+		LOGGER.debug("处理hashes消息：{}-{}-{}", baseLayer, index, length);
+		final Torrent torrent = this.torrentSession.torrent();
+		if(
+			torrent == null ||
+			baseLayer != 0 ||
+			length < MIN_HASH_LENGTH ||
+			length > MAX_HASH_LENGTH ||
+			buffer.remaining() < length * SystemConfig.SHA256_HASH_LENGTH
+		) {
+			return;
+		}
+		final long pieceLeafs = torrent.getInfo().getPieceLength() / MerkleUtils.LEAF_LENGTH;
+		final int pieceIndex = torrent.pieceIndex(piecesRoot, (int) (index / pieceLeafs));
+		final byte[] pieceHash = pieceIndex < 0 ? null : torrent.pieceHashV2(pieceIndex);
+		if(pieceHash == null) {
+			return;
+		}
+		final byte[][] hashs = new byte[length][];
+		for (int pos = 0; pos < length; pos++) {
+			hashs[pos] = new byte[SystemConfig.SHA256_HASH_LENGTH];
+			buffer.get(hashs[pos]);
+		}
+		if(Arrays.equals(MerkleUtils.root(hashs, length, MerkleUtils.padding(0)), pieceHash)) {
+			this.torrentSession.blockHashs(pieceIndex, hashs);
+		} else {
+			LOGGER.warn("处理hashes消息：数据块Hash校验失败：{}-{}", this.peerSession, pieceIndex);
+		}
+	}
+	
+	/**
+	 * <p>处理hashReject消息</p>
+	 * 
+	 * @param buffer 消息
+	 */
+	private void hashReject(ByteBuffer buffer) {
+		LOGGER.debug("处理hashReject消息：{}", this.peerSession);
+	}
+	
 	/**
 	 * <p>快速交换Piece位图</p>
 	 * 
@@ -904,6 +1107,12 @@ public final class PeerSubMessageHandler implements IMessageDecoder<ByteBuffer>,
 			this.rejectRequest(index, begin, length);
 			return;
 		}
+		if(!this.messageEncryptSender.writable()) {
+			// 发送队列拥塞：拒绝请求（不支持Fast扩展直接忽略）等待Peer重新请求
+			LOGGER.debug("处理request消息：发送队列拥塞");
+			this.rejectRequest(index, begin, length);
+			return;
+		}
 		if(this.torrentSession.hasPiece(index)) {
 			LOGGER.debug("处理request消息：{}-{}-{}", index, begin, length);
 			try {
@@ -59,8 +59,10 @@ public final class PeerUploader extends PeerConnect {
 		} catch (Exception e) {
 			LOGGER.error("关闭PeerUploader异常", e);
 		} finally {
+			PeerConnectContext.getInstance().release(this);
 			this.peerSession.statusOff(PeerConfig.STATUS_UPLOAD);
 			this.peerSession.peerUploader(null);
+			PeerContext.getInstance().release(this.torrentSession.infoHashHex(), this.peerSession);
 		}
 	}
 	
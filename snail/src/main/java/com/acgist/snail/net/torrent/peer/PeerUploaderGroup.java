@@ -12,7 +12,7 @@ import com.acgist.snail.net.torrent.TorrentSession;
 
 /**
  * <p>PeerUploader组</p>
- * <p>主要功能：接入PeerUploader、清除劣质PeerUploader</p>
+ * <p>主要功能：接入PeerUploader、清除劣质PeerUploader、阻塞管理</p>
  * 
  * @author acgist
  */
@@ -28,6 +28,10 @@ public final class PeerUploaderGroup {
 	 * <p>PeerUploader队列</p>
 	 */
 	private final BlockingQueue<PeerUploader> peerUploaders;
+	/**
+	 * <p>Peer阻塞管理</p>
+	 */
+	private final PeerChoker peerChoker;
 	
 	/**
 	 * @param torrentSession BT任务信息
@@ -35,6 +39,7 @@ public final class PeerUploaderGroup {
 	private PeerUploaderGroup(TorrentSession torrentSession) {
 		this.torrentSession = torrentSession;
 		this.peerUploaders = new LinkedBlockingQueue<>();
+		this.peerChoker = PeerChoker.newInstance(torrentSession);
 	}
 	
 	/**
@@ -76,6 +81,7 @@ public final class PeerUploaderGroup {
 			}
 			final PeerUploader peerUploader = PeerUploader.newInstance(peerSession, this.torrentSession, peerSubMessageHandler);
 			peerSession.status(PeerConfig.STATUS_UPLOAD);
+			PeerConnectContext.getInstance().connect(peerUploader);
 			this.offer(peerUploader);
 			return peerUploader;
 		}
@@ -93,7 +99,10 @@ public final class PeerUploaderGroup {
 			// 正在下载：允许连接
 			return true;
 		} else {
-			return this.peerUploaders.size() < SystemConfig.getPeerSize();
+			return
+				this.peerUploaders.size() < SystemConfig.getPeerSize() &&
+				// 全局连接数量和任务分配数量
+				PeerConnectContext.getInstance().connectable(this.torrentSession);
 		}
 	}
 	
@@ -111,6 +120,32 @@ public final class PeerUploaderGroup {
 		}
 	}
 	
+	/**
+	 * <p>阻塞管理</p>
+	 * 
+	 * @see PeerChoker#choke()
+	 */
+	public void choke() {
+		try {
+			this.peerChoker.choke();
+		} catch (Exception e) {
+			LOGGER.error("Peer阻塞管理异常", e);
+		}
+	}
+	
+	/**
+	 * <p>申请上传位置</p>
+	 * 
+	 * @param peerConnect Peer连接
+	 * 
+	 * @return 是否申请成功
+	 * 
+	 * @see PeerChoker#unchokeable(PeerConnect)
+	 */
+	public boolean unchokeable(PeerConnect peerConnect) {
+		return this.peerChoker.unchokeable(peerConnect);
+	}
+	
 	/**
 	 * <p>释放资源</p>
 	 */
@@ -120,6 +155,7 @@ public final class PeerUploaderGroup {
 			this.peerUploaders.forEach(uploader -> SystemThreadContext.submit(uploader::release));
 			this.peerUploaders.clear();
 		}
+		this.peerChoker.release();
 	}
 	
 	/**
@@ -181,6 +181,10 @@ public final class HolepunchMessageHnadler extends ExtensionTypeMessageHandler {
 	 */
 	private void onConnect(String host, int port) {
 		LOGGER.debug("处理holepunch消息-connect：{}-{}", host, port);
+		if(PeerContext.getInstance().banned(host)) {
+			LOGGER.debug("处理holepunch消息-connect：禁用Peer");
+			return;
+		}
 		var peerSession = PeerContext.getInstance().findPeerSession(this.torrentSession.infoHashHex(), host, port);
 		if(peerSession == null) {
 			peerSession = PeerContext.getInstance().newPeerSession(
@@ -0,0 +1,497 @@
+package com.acgist.snail.net.torrent.peer.extension;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.logger.Logger;
+import com.acgist.snail.logger.LoggerFactory;
+import com.acgist.snail.net.torrent.InfoHash;
+import com.acgist.snail.net.torrent.TorrentSession;
+import com.acgist.snail.net.torrent.peer.PeerSession;
+import com.acgist.snail.utils.DigestUtils;
+import com.acgist.snail.utils.NumberUtils;
+
+/**
+ * <p>种子文件信息组装</p>
+ * <p>磁力链接任务所有Peer共享：Slice分配给不同Peer下载，每个Peer同时请求数量有限，超时或者拒绝的Slice重新分配。</p>
+ * <p>所有Slice下载完成以后计算一次Hash，Hash错误时记录每个Slice的来源和Hash并且重新下载：下次组装成功以后只禁用提供错误Slice的Peer。</p>
+ * <p>Peer重连以后会新建Peer信息：禁用、拒绝、请求和来源使用Peer地址记录。</p>
+ * <p>协议链接：http://www.bittorrent.org/beps/bep_0009.html</p>
+ * 
+ * @author acgist
+ */
+public final class MetadataAssembler {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(MetadataAssembler.class);
+	
+	/**
+	 * <p>单个Peer同时请求Slice数量：{@value}</p>
+	 */
+	private static final int MAX_REQUEST_SIZE = 4;
+	/**
+	 * <p>Slice请求超时时间（毫秒）：{@value}</p>
+	 */
+	private static final long REQUEST_TIMEOUT = 2L * SystemConfig.RECEIVE_TIMEOUT_MILLIS;
+	/**
+	 * <p>请求超时检查周期（秒）：{@value}</p>
+	 */
+	public static final int TIMEOUT_INTERVAL = SystemConfig.RECEIVE_TIMEOUT;
+	/**
+	 * <p>Hash错误最大次数：{@value}</p>
+	 * <p>超过最大次数没有组装成功禁用本次提供数据的所有Peer</p>
+	 */
+	private static final int MAX_FAIL_TIMES = 3;
+	/**
+	 * <p>种子文件信息最大长度：{@value}</p>
+	 */
+	private static final int MAX_SIZE = 32 * SystemConfig.ONE_MB;
+	
+	/**
+	 * <p>处理结果</p>
+	 * 
+	 * @author acgist
+	 */
+	enum Status {
+		
+		/**
+		 * <p>继续下载</p>
+		 */
+		CONTINUE,
+		/**
+		 * <p>下载完成</p>
+		 */
+		COMPLETED,
+		/**
+		 * <p>Hash错误：重新下载</p>
+		 */
+		FAIL;
+		
+	}
+	
+	/**
+	 * <p>InfoHash</p>
+	 */
+	private final InfoHash infoHash;
+	/**
+	 * <p>BT任务信息</p>
+	 */
+	private final TorrentSession torrentSession;
+	/**
+	 * <p>种子文件信息</p>
+	 */
+	private byte[] bytes;
+	/**
+	 * <p>Slice数量</p>
+	 */
+	private int sliceSize;
+	/**
+	 * <p>是否完成</p>
+	 */
+	private volatile boolean completed;
+	/**
+	 * <p>已经下载Slice</p>
+	 */
+	private final BitSet completes;
+	/**
+	 * <p>Slice请求Peer地址</p>
+	 */
+	private String[] requests;
+	/**
+	 * <p>Slice请求时间</p>
+	 */
+	private long[] requestTimes;
+	/**
+	 * <p>Slice数据来源Peer地址</p>
+	 */
+	private String[] sources;
+	/**
+	 * <p>Hash错误次数</p>
+	 */
+	private int failTimes;
+	/**
+	 * <p>Hash错误时Slice来源和Hash</p>
+	 */
+	private final List<Evidence> evidences;
+	/**
+	 * <p>禁用Peer地址：提供错误数据</p>
+	 */
+	private final Set<String> bans;
+	/**
+	 * <p>拒绝Peer地址：没有种子文件信息</p>
+	 */
+	private final Set<String> rejects;
+	/**
+	 * <p>支持扩展协议的Peer</p>
+	 */
+	private final List<MetadataMessageHandler> handlers;
+	
+	/**
+	 * @param infoHash InfoHash
+	 * @param torrentSession BT任务信息
+	 */
+	MetadataAssembler(InfoHash infoHash, TorrentSession torrentSession) {
+		this.infoHash = infoHash;
+		this.torrentSession = torrentSession;
+		this.completes = new BitSet();
+		this.evidences = new ArrayList<>();
+		this.bans = new HashSet<>();
+		this.rejects = new HashSet<>();
+		this.handlers = new ArrayList<>();
+	}
+	
+	/**
+	 * <p>新建种子文件信息组装</p>
+	 * 
+	 * @param torrentSession BT任务信息
+	 * 
+	 * @return {@link MetadataAssembler}
+	 */
+	public static final MetadataAssembler newInstance(TorrentSession torrentSession) {
+		return new MetadataAssembler(torrentSession.infoHash(), torrentSession);
+	}
+	
+	/**
+	 * <p>发送请求：分配空闲Slice</p>
+	 * 
+	 * @param handler Metadata扩展协议代理
+	 */
+	public void request(MetadataMessageHandler handler) {
+		final List<Integer> pieces;
+		synchronized (this) {
+			if(!this.handlers.contains(handler)) {
+				this.handlers.add(handler);
+			}
+			pieces = this.pick(handler.peerSession());
+		}
+		pieces.forEach(handler::request);
+	}
+	
+	/**
+	 * <p>处理数据</p>
+	 * 
+	 * @param handler Metadata扩展协议代理
+	 * @param piece Slice索引
+	 * @param totalSize 种子文件信息长度
+	 * @param x Slice数据
+	 */
+	public void data(MetadataMessageHandler handler, int piece, int totalSize, byte[] x) {
+		final Status status;
+		synchronized (this) {
+			status = this.receive(handler.peerSession(), piece, totalSize, x);
+		}
+		switch (status) {
+			case COMPLETED -> this.torrentSession.saveTorrent();
+			case FAIL -> this.dispatch();
+			default -> this.request(handler);
+		}
+	}
+	
+	/**
+	 * <p>处理拒绝</p>
+	 * <p>Peer拒绝以后不再分配Slice，已经分配的Slice分配给其他Peer。</p>
+	 * 
+	 * @param handler Metadata扩展协议代理
+	 */
+	public void reject(MetadataMessageHandler handler) {
+		synchronized (this) {
+			this.handlers.remove(handler);
+			this.refuse(handler.peerSession());
+		}
+		this.dispatch();
+	}
+	
+	/**
+	 * <p>检查请求超时</p>
+	 * <p>超时Slice释放以后重新分配</p>
+	 */
+	public void timeout() {
+		boolean timeout = false;
+		synchronized (this) {
+			if(this.completed || this.requests == null) {
+				return;
+			}
+			final long nowTime = System.currentTimeMillis();
+			for (int index = 0; index < this.requests.length; index++) {
+				if(this.requests[index] != null && nowTime - this.requestTimes[index] > REQUEST_TIMEOUT) {
+					LOGGER.debug("种子文件信息Slice请求超时：{}-{}", index, this.requests[index]);
+					this.requests[index] = null;
+					timeout = true;
+				}
+			}
+		}
+		if(timeout) {
+			this.dispatch();
+		}
+	}
+	
+	/**
+	 * <p>判断是否完成</p>
+	 * 
+	 * @return 是否完成
+	 */
+	public boolean completed() {
+		return this.completed;
+	}
+	
+	/**
+	 * <p>释放资源</p>
+	 */
+	public void release() {
+		synchronized (this) {
+			this.handlers.clear();
+			this.evidences.clear();
+			this.bans.clear();
+			this.rejects.clear();
+			if(!this.completed) {
+				this.reset();
+			}
+		}
+	}
+	
+	/**
+	 * <p>判断Peer是否禁用</p>
+	 * 
+	 * @param peerSession Peer信息
+	 * 
+	 * @return 是否禁用
+	 */
+	boolean banned(PeerSession peerSession) {
+		synchronized (this) {
+			return this.bans.contains(peerSession.host());
+		}
+	}
+	
+	/**
+	 * <p>重新分配Slice给其他Peer</p>
+	 */
+	private void dispatch() {
+		final List<MetadataMessageHandler> list;
+		synchronized (this) {
+			this.handlers.removeIf(handler -> !handler.available());
+			list = new ArrayList<>(this.handlers);
+		}
+		list.forEach(this::request);
+	}
+	
+	/**
+	 * <p>挑选Slice</p>
+	 * <p>没有下载并且没有请求（请求超时、请求Peer无效）的Slice</p>
+	 * 
+	 * @param peerSession Peer信息
+	 * 
+	 * @return Slice索引列表
+	 */
+	List<Integer> pick(PeerSession peerSession) {
+		final String host = peerSession.host();
+		if(
+			this.completed ||
+			this.bans.contains(host) ||
+			this.rejects.contains(host) ||
+			!this.init(this.infoHash.size())
+		) {
+			return List.of();
+		}
+		int requestSize = 0;
+		for (String value : this.requests) {
+			if(host.equals(value)) {
+				requestSize++;
+			}
+		}
+		final long nowTime = System.currentTimeMillis();
+		final List<Integer> pieces = new ArrayList<>();
+		int index = this.completes.nextClearBit(0);
+		while(index < this.sliceSize && requestSize < MAX_REQUEST_SIZE) {
+			final String value = this.requests[index];
+			if(
+				value == null ||
+				!host.equals(value) && nowTime - this.requestTimes[index] > REQUEST_TIMEOUT
+			) {
+				this.requests[index] = host;
+				this.requestTimes[index] = nowTime;
+				pieces.add(index);
+				requestSize++;
+			}
+			index = this.completes.nextClearBit(index + 1);
+		}
+		return pieces;
+	}
+	
+	/**
+	 * <p>保存Slice数据</p>
+	 * 
+	 * @param peerSession Peer信息
+	 * @param piece Slice索引
+	 * @param totalSize 种子文件信息长度
+	 * @param x Slice数据
+	 * 
+	 * @return 处理结果
+	 */
+	Status receive(PeerSession peerSession, int piece, int totalSize, byte[] x) {
+		final String host = peerSession.host();
+		if(this.completed || this.bans.contains(host)) {
+			return Status.CONTINUE;
+		}
+		if(this.infoHash.size() <= 0 && totalSize > 0) {
+			this.infoHash.size(totalSize);
+		}
+		if(!this.init(this.infoHash.size()) || totalSize != this.bytes.length) {
+			LOGGER.debug("处理metadata消息-data失败（数据长度错误）：{}-{}", totalSize, this.infoHash.size());
+			return Status.CONTINUE;
+		}
+		if(piece < 0 || piece >= this.sliceSize) {
+			LOGGER.debug("处理metadata消息-data失败（Slice索引错误）：{}-{}", piece, this.sliceSize);
+			return Status.CONTINUE;
+		}
+		final int pos = piece * MetadataMessageHandler.SLICE_LENGTH;
+		final int length = Math.min(MetadataMessageHandler.SLICE_LENGTH, this.bytes.length - pos);
+		if(x == null || x.length < length) {
+			LOGGER.debug("处理metadata消息-data失败（Slice长度错误）：{}-{}", piece, length);
+			if(host.equals(this.requests[piece])) {
+				this.requests[piece] = null;
+			}
+			return Status.CONTINUE;
+		}
+		if(this.completes.get(piece)) {
+			// 重复数据
+			return Status.CONTINUE;
+		}
+		System.arraycopy(x, 0, this.bytes, pos, length);
+		this.completes.set(piece);
+		this.sources[piece] = host;
+		this.requests[piece] = null;
+		if(this.completes.cardinality() < this.sliceSize) {
+			return Status.CONTINUE;
+		}
+		// 所有Slice下载完成：计算Hash
+		if(Arrays.equals(this.infoHash.infoHash(), DigestUtils.sha1(this.bytes))) {
+			LOGGER.debug("种子文件信息下载完成：{}", this.infoHash);
+			this.banEvidences();
+			this.infoHash.info(this.bytes);
+			this.completed = true;
+			return Status.COMPLETED;
+		}
+		if(++this.failTimes >= MAX_FAIL_TIMES) {
+			// 多次Hash错误：禁用本次提供数据的所有Peer
+			for (String source : this.sources) {
+				if(source != null && this.bans.add(source)) {
+					LOGGER.debug("种子文件信息Hash错误（禁用Peer）：{}", source);
+				}
+			}
+			this.failTimes = 0;
+			this.evidences.clear();
+		} else {
+			// 记录Slice来源和Hash：下次组装成功以后判断
+			final MessageDigest digest = DigestUtils.sha1();
+			for (int index = 0; index < this.sliceSize; index++) {
+				this.evidences.add(new Evidence(this.sources[index], index, this.sliceHash(digest, index)));
+			}
+			LOGGER.debug("种子文件信息Hash错误（重新下载）：{}-{}", this.infoHash, this.failTimes);
+		}
+		this.reset();
+		return Status.FAIL;
+	}
+	
+	/**
+	 * <p>禁用提供错误Slice的Peer</p>
+	 * <p>组装成功以后比较Hash错误时记录的Slice Hash</p>
+	 */
+	private void banEvidences() {
+		final MessageDigest digest = DigestUtils.sha1();
+		for (Evidence evidence : this.evidences) {
+			if(
+				!Arrays.equals(evidence.hash(), this.sliceHash(digest, evidence.slice())) &&
+				this.bans.add(evidence.source())
+			) {
+				LOGGER.debug("种子文件信息Slice错误（禁用Peer）：{}-{}", evidence.source(), evidence.slice());
+			}
+		}
+		this.evidences.clear();
+	}
+	
+	/**
+	 * <p>计算Slice Hash</p>
+	 * 
+	 * @param digest SHA-1算法工具
+	 * @param slice Slice索引
+	 * 
+	 * @return Slice Hash
+	 */
+	private byte[] sliceHash(MessageDigest digest, int slice) {
+		final int pos = slice * MetadataMessageHandler.SLICE_LENGTH;
+		final int length = Math.min(MetadataMessageHandler.SLICE_LENGTH, this.bytes.length - pos);
+		digest.update(this.bytes, pos, length);
+		return digest.digest();
+	}
+	
+	/**
+	 * <p>Peer拒绝：释放请求</p>
+	 * 
+	 * @param peerSession Peer信息
+	 */
+	void refuse(PeerSession peerSession) {
+		LOGGER.debug("处理metadata消息-reject：{}", peerSession);
+		final String host = peerSession.host();
+		this.rejects.add(host);
+		if(this.requests == null) {
+			return;
+		}
+		for (int index = 0; index < this.requests.length; index++) {
+			if(host.equals(this.requests[index])) {
+				this.requests[index] = null;
+			}
+		}
+	}
+	
+	/**
+	 * <p>初始化数据</p>
+	 * 
+	 * @param size 种子文件信息长度
+	 * 
+	 * @return 是否成功
+	 */
+	private boolean init(int size) {
+		if(this.bytes != null) {
+			return true;
+		}
+		if(size <= 0 || size > MAX_SIZE) {
+			return false;
+		}
+		this.bytes = new byte[size];
+		this.sliceSize = NumberUtils.ceilDiv(size, MetadataMessageHandler.SLICE_LENGTH);
+		this.requests = new String[this.sliceSize];
+		this.requestTimes = new long[this.sliceSize];
+		this.sources = new String[this.sliceSize];
+		return true;
+	}
+	
+	/**
+	 * <p>重置数据</p>
+	 */
+	private void reset() {
+		this.bytes = null;
+		this.sliceSize = 0;
+		this.requests = null;
+		this.requestTimes = null;
+		this.sources = null;
+		this.completes.clear();
+	}
+	
+	/**
+	 * <p>Hash错误时Slice来源和Hash</p>
+	 * 
+	 * @param source Peer地址
+	 * @param slice Slice索引
+	 * @param hash Slice Hash
+	 * 
+	 * @author acgist
+	 */
+	private static final record Evidence(String source, int slice, byte[] hash) {
+	}
+	
+}
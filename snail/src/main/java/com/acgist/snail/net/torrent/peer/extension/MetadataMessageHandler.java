@@ -1,7 +1,6 @@
 package com.acgist.snail.net.torrent.peer.extension;
 
 import java.nio.ByteBuffer;
-import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -20,8 +19,6 @@ import com.acgist.snail.net.torrent.TorrentSession;
 import com.acgist.snail.net.torrent.peer.ExtensionMessageHandler;
 import com.acgist.snail.net.torrent.peer.ExtensionTypeMessageHandler;
 import com.acgist.snail.net.torrent.peer.PeerSession;
-import com.acgist.snail.utils.DigestUtils;
-import com.acgist.snail.utils.NumberUtils;
 
 /**
  * <p>Extension for Peers to Send Metadata Files</p>
@@ -110,15 +107,28 @@ public final class MetadataMessageHandler extends ExtensionTypeMessageHandler {
 	
 	/**
 	 * <p>发送消息：request</p>
+	 * <p>种子文件信息组装分配Slice</p>
+	 * 
+	 * @see MetadataAssembler#request(MetadataMessageHandler)
 	 */
 	public void request() {
-		LOGGER.debug("发送metadata消息-request");
-		final int size = this.infoHash.size();
-		final int messageSize = NumberUtils.ceilDiv(size, SLICE_LENGTH);
-		for (int index = 0; index < messageSize; index++) {
-			final var request = this.buildMessage(PeerConfig.MetadataType.REQUEST, index);
-			this.pushMessage(request);
+		final MetadataAssembler metadataAssembler = this.torrentSession.metadataAssembler();
+		if(metadataAssembler == null) {
+			LOGGER.debug("发送metadata消息-request失败（没有种子文件信息组装）");
+			return;
 		}
+		metadataAssembler.request(this);
+	}
+	
+	/**
+	 * <p>发送消息：request</p>
+	 * 
+	 * @param piece Slice索引
+	 */
+	public void request(int piece) {
+		LOGGER.debug("发送metadata消息-request：{}", piece);
+		final var request = this.buildMessage(PeerConfig.MetadataType.REQUEST, piece);
+		this.pushMessage(request);
 	}
 	
 	/**
@@ -168,32 +178,19 @@ public final class MetadataMessageHandler extends ExtensionTypeMessageHandler {
 	 */
 	private void data(BEncodeDecoder decoder) {
 		LOGGER.debug("处理metadata消息-data");
-		byte[] bytes = this.infoHash.info();
-		if(bytes == null) {
-			// 设置种子Info
-			final int totalSize = decoder.getInteger(ARG_TOTAL_SIZE);
-			bytes = new byte[totalSize];
-			this.infoHash.info(bytes);
-		}
-		final int piece = decoder.getInteger(ARG_PIECE);
-		final int pos = piece * SLICE_LENGTH;
-		if(pos > bytes.length) {
-			LOGGER.warn("处理metadata消息-data失败（数据长度错误）：{}-{}", pos, bytes.length);
+		final MetadataAssembler metadataAssembler = this.torrentSession.metadataAssembler();
+		if(metadataAssembler == null || metadataAssembler.completed()) {
+			LOGGER.debug("处理metadata消息-data失败（不需要种子文件信息）");
 			return;
 		}
-		int length = SLICE_LENGTH;
-		if(pos + SLICE_LENGTH > bytes.length) {
-			length = bytes.length - pos;
+		final Integer piece = decoder.getInteger(ARG_PIECE);
+		final Integer totalSize = decoder.getInteger(ARG_TOTAL_SIZE);
+		if(piece == null || totalSize == null) {
+			LOGGER.warn("处理metadata消息-data失败（格式）：{}", decoder);
+			return;
 		}
 		// 剩余数据作为Slice数据
-		final byte[] x = decoder.oddBytes();
-		System.arraycopy(x, 0, bytes, pos, length);
-		final byte[] sourceHash = this.infoHash.infoHash();
-		final byte[] targetHash = DigestUtils.sha1(bytes);
-		// 判断Hash值是否相等（相等表示已经下载完成：保存种子文件）
-		if(Arrays.equals(sourceHash, targetHash)) {
-			this.torrentSession.saveTorrent();
-		}
+		metadataAssembler.data(this, piece, totalSize, decoder.oddBytes());
 	}
 	
 	/**
@@ -212,6 +209,28 @@ public final class MetadataMessageHandler extends ExtensionTypeMessageHandler {
 	 */
 	private void reject(BEncodeDecoder decoder) {
 		LOGGER.debug("处理metadata消息-reject：{}", decoder);
+		final MetadataAssembler metadataAssembler = this.torrentSession.metadataAssembler();
+		if(metadataAssembler != null) {
+			metadataAssembler.reject(this);
+		}
+	}
+	
+	/**
+	 * <p>获取Peer信息</p>
+	 * 
+	 * @return Peer信息
+	 */
+	PeerSession peerSession() {
+		return this.peerSession;
+	}
+	
+	/**
+	 * <p>判断是否可用</p>
+	 * 
+	 * @return 是否可用
+	 */
+	boolean available() {
+		return this.supportExtensionType() && this.extensionMessageHandler.available();
 	}
 	
 	/**
@@ -138,18 +138,20 @@ public final class PeerExchangeMessageHandler extends ExtensionTypeMessageHandle
 		if(MapUtils.isNotEmpty(peers)) {
 			final AtomicInteger index = new AtomicInteger(0);
 			peers.forEach((host, port) -> {
-				final PeerSession peerSession = PeerContext.getInstance().newPeerSession(
+				byte peerFlags = 0;
+				if(flags != null && flags.length > index.get()) {
+					peerFlags = flags[index.getAndIncrement()];
+				}
+				// 设置Pex来源
+				PeerContext.getInstance().newPeer(
 					this.torrentSession.infoHashHex(),
 					this.torrentSession.statistics(),
 					host,
 					port,
-					PeerConfig.Source.PEX
+					PeerConfig.Source.PEX,
+					peerFlags,
+					this.peerSession
 				);
-				if(flags != null && flags.length > index.get()) {
-					peerSession.flags(flags[index.getAndIncrement()]);
-				}
-				// 设置Pex来源
-				peerSession.pexSource(this.peerSession);
 			});
 		}
 	}
@@ -1,14 +1,21 @@
 package com.acgist.snail.net.torrent.tracker;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import com.acgist.snail.config.PeerConfig;
 import com.acgist.snail.config.SystemConfig;
 import com.acgist.snail.config.TrackerConfig;
+import com.acgist.snail.context.SystemThreadContext;
 import com.acgist.snail.format.BEncodeDecoder;
 import com.acgist.snail.logger.Logger;
 import com.acgist.snail.logger.LoggerFactory;
@@ -29,6 +36,8 @@ import com.acgist.snail.utils.StringUtils;
  * <p>协议链接：http://www.bittorrent.org/beps/bep_0023.html</p>
  * <p>Tracker Protocol Extension: Scrape</p>
  * <p>协议链接：http://www.bittorrent.org/beps/bep_0048.html</p>
+ * <p>请求使用Tracker线程池异步执行：声明响应通过{@link TrackerContext#announce(AnnounceMessage)}回调</p>
+ * <p>同一个Tracker并发请求数量不能超过{@value #MAX_REQUEST_SIZE}个：底层连接可以复用（长连接）</p>
  * 
  * @author acgist
  */
@@ -36,6 +45,35 @@ public final class HttpTrackerSession extends TrackerSession {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(HttpTrackerSession.class);
 	
+	/**
+	 * <p>Tracker线程池</p>
+	 */
+	private static final ExecutorService EXECUTOR;
+	
+	static {
+		EXECUTOR = SystemThreadContext.newExecutor(
+			SystemThreadContext.threadSize(4, 16),
+			SystemThreadContext.threadSize(4, 16),
+			Short.MAX_VALUE,
+			60L,
+			SystemThreadContext.SNAIL_THREAD_TRACKER
+		);
+	}
+	
+	/**
+	 * <p>单个Tracker最大并发请求数量：{@value}</p>
+	 * <p>不要超过HTTP长连接缓存数量（http.maxConnections）</p>
+	 */
+	private static final int MAX_REQUEST_SIZE = 4;
+	/**
+	 * <p>单个刮擦请求最大InfoHash数量：{@value}</p>
+	 */
+	private static final int SCRAPE_MAX_SIZE = 64;
+	/**
+	 * <p>刮擦请求合并等待时间（秒）：{@value}</p>
+	 */
+	private static final int SCRAPE_DELAY = 2;
+	
 	/**
 	 * <p>刮擦地址：{@value}</p>
 	 */
@@ -60,6 +98,23 @@ public final class HttpTrackerSession extends TrackerSession {
 	 * <p>跟踪器ID</p>
 	 */
 	private String trackerId;
+	/**
+	 * <p>正在执行请求数量</p>
+	 */
+	private int requestSize = 0;
+	/**
+	 * <p>等待执行请求</p>
+	 */
+	private final Queue<Runnable> requests = new LinkedList<>();
+	/**
+	 * <p>是否已经添加刮擦定时任务</p>
+	 */
+	private boolean scrapeScheduled = false;
+	/**
+	 * <p>等待发送的刮擦请求</p>
+	 * <p>{@link TrackerLauncher#id()}=BT任务信息</p>
+	 */
+	private final Map<Integer, TorrentSession> pendingScrapes = new LinkedHashMap<>();
 	
 	/**
 	 * @param scrapeUrl 刮擦地址
@@ -85,6 +140,19 @@ public final class HttpTrackerSession extends TrackerSession {
 		return new HttpTrackerSession(scrapeUrl, announceUrl);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>异步执行：不会阻塞Tracker定时任务</p>
+	 */
+	@Override
+	public void findPeers(Integer sid, TorrentSession torrentSession) {
+		if(!this.available()) {
+			return;
+		}
+		this.submit(() -> super.findPeers(sid, torrentSession));
+	}
+	
 	@Override
 	public void started(Integer sid, TorrentSession torrentSession) throws NetException {
 		final String announceMessage = (String) this.buildAnnounceMessage(sid, torrentSession, TrackerConfig.Event.STARTED);
@@ -107,35 +175,151 @@ public final class HttpTrackerSession extends TrackerSession {
 	
 	@Override
 	public void completed(Integer sid, TorrentSession torrentSession) throws NetException {
-		HttpClient.newInstance((String) this.buildAnnounceMessage(sid, torrentSession, TrackerConfig.Event.COMPLETED)).get();
+		final String announceMessage = (String) this.buildAnnounceMessage(sid, torrentSession, TrackerConfig.Event.COMPLETED);
+		this.submit(() -> this.notice(announceMessage));
 	}
 	
 	@Override
 	public void stopped(Integer sid, TorrentSession torrentSession) throws NetException {
-		HttpClient.newInstance((String) this.buildAnnounceMessage(sid, torrentSession, TrackerConfig.Event.STOPPED)).get();
+		final String announceMessage = (String) this.buildAnnounceMessage(sid, torrentSession, TrackerConfig.Event.STOPPED);
+		this.submit(() -> this.notice(announceMessage));
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>合并刮擦请求：一个请求携带多个InfoHash</p>
+	 */
 	@Override
 	public void scrape(Integer sid, TorrentSession torrentSession) throws NetException {
-		final String scrapeMessage = this.buildScrapeMessage(sid, torrentSession);
-		if(scrapeMessage == null) {
-			throw new NetException("HTTP Tracker刮擦失败：" + this.scrapeUrl);
+		if(StringUtils.isEmpty(this.scrapeUrl)) {
+			throw new NetException("HTTP Tracker刮擦失败：" + this.announceUrl);
+		}
+		final boolean flush;
+		synchronized (this) {
+			this.pendingScrapes.put(sid, torrentSession);
+			flush = this.pendingScrapes.size() >= SCRAPE_MAX_SIZE;
+			if(!flush && !this.scrapeScheduled) {
+				this.scrapeScheduled = true;
+				SystemThreadContext.scheduled(SCRAPE_DELAY, TimeUnit.SECONDS, this::scheduledScrape);
+			}
+		}
+		if(flush) {
+			this.flushScrape();
+		}
+	}
+	
+	/**
+	 * <p>定时发送刮擦请求</p>
+	 */
+	private void scheduledScrape() {
+		synchronized (this) {
+			this.scrapeScheduled = false;
+		}
+		this.flushScrape();
+	}
+	
+	/**
+	 * <p>发送刮擦请求</p>
+	 */
+	private void flushScrape() {
+		final Map<Integer, TorrentSession> batch;
+		synchronized (this) {
+			if(this.pendingScrapes.isEmpty()) {
+				return;
+			}
+			batch = new LinkedHashMap<>(this.pendingScrapes);
+			this.pendingScrapes.clear();
 		}
+		this.submit(() -> {
+			try {
+				this.scrape(batch);
+			} catch (NetException e) {
+				LOGGER.debug("HTTP Tracker刮擦异常：{}", this.scrapeUrl, e);
+			}
+		});
+	}
+	
+	/**
+	 * <p>刮擦</p>
+	 * 
+	 * @param batch 刮擦列表（{@link TrackerLauncher#id()}=BT任务信息）
+	 * 
+	 * @throws NetException 网络异常
+	 */
+	private void scrape(Map<Integer, TorrentSession> batch) throws NetException {
 		final var client = HttpClient
-			.newInstance(scrapeMessage)
+			.newInstance(this.buildScrapeMessage(batch))
 			.get();
 		if(!client.ok()) {
 			throw new NetException("HTTP Tracker刮擦失败");
 		}
 		final var body = client.responseToBytes();
-		final var decoder = BEncodeDecoder.newInstance(body).next();
+		// files键为InfoHash二进制数据：使用单字节编码无损解码
+		final var decoder = BEncodeDecoder.newInstance(body).keyCharset(StandardCharsets.ISO_8859_1).next();
 		if(decoder.isEmpty()) {
 			throw new NetException("HTTP Tracker刮擦消息错误（格式）：" + new String(body));
 		}
-		final var messages = convertScrapeMessage(sid, decoder);
+		final var messages = convertScrapeMessage(batch, decoder);
 		messages.forEach(TrackerContext.getInstance()::scrape);
 	}
 	
+	/**
+	 * <p>发送通知</p>
+	 * <p>读取响应数据：归还连接</p>
+	 * 
+	 * @param announceMessage 声明消息
+	 */
+	private void notice(String announceMessage) {
+		try {
+			HttpClient.newInstance(announceMessage).get().responseToBytes();
+		} catch (NetException e) {
+			LOGGER.debug("HTTP Tracker发送通知异常：{}", this.announceUrl, e);
+		}
+	}
+	
+	/**
+	 * <p>执行请求</p>
+	 * <p>超过并发请求数量放入等待队列</p>
+	 * 
+	 * @param request 请求
+	 */
+	private void submit(Runnable request) {
+		synchronized (this) {
+			if(this.requestSize >= MAX_REQUEST_SIZE) {
+				this.requests.offer(request);
+				return;
+			}
+			this.requestSize++;
+		}
+		this.execute(request);
+	}
+	
+	/**
+	 * <p>执行请求</p>
+	 * <p>执行完成之后继续执行等待请求</p>
+	 * 
+	 * @param request 请求
+	 */
+	private void execute(Runnable request) {
+		EXECUTOR.submit(() -> {
+			Runnable next = request;
+			while(next != null) {
+				try {
+					next.run();
+				} catch (Exception e) {
+					LOGGER.error("HTTP Tracker执行请求异常：{}", this.announceUrl, e);
+				}
+				synchronized (this) {
+					next = this.requests.poll();
+					if(next == null) {
+						this.requestSize--;
+					}
+				}
+			}
+		});
+	}
+	
 	@Override
 	protected String buildAnnounceMessageEx(Integer sid, TorrentSession torrentSession, TrackerConfig.Event event, long upload, long download, long left) {
 		final StringBuilder builder = new StringBuilder(this.announceUrl);
@@ -159,18 +343,18 @@ public final class HttpTrackerSession extends TrackerSession {
 	/**
 	 * <p>新建刮擦消息</p>
 	 * 
-	 * @param sid {@link TrackerLauncher#id()}
-	 * @param torrentSession BT任务信息
+	 * @param batch 刮擦列表（{@link TrackerLauncher#id()}=BT任务信息）
 	 * 
 	 * @return 刮擦消息
 	 */
-	private String buildScrapeMessage(Integer sid, TorrentSession torrentSession) {
-		if(StringUtils.isEmpty(this.scrapeUrl)) {
-			return null;
-		}
+	private String buildScrapeMessage(Map<Integer, TorrentSession> batch) {
 		final StringBuilder builder = new StringBuilder(this.scrapeUrl);
-		builder.append("?")
-			.append("info_hash").append("=").append(torrentSession.infoHash().infoHashUrl());
+		// 多个InfoHash：info_hash=A&info_hash=B
+		builder.append(this.scrapeUrl.indexOf('?') < 0 ? "?" : "&");
+		batch.values().forEach(torrentSession -> builder
+			.append("info_hash").append("=").append(torrentSession.infoHash().infoHashUrl()).append("&")
+		);
+		builder.setLength(builder.length() - 1);
 		return builder.toString();
 	}
 
@@ -209,29 +393,35 @@ public final class HttpTrackerSession extends TrackerSession {
 	
 	/**
 	 * <p>解析刮擦消息</p>
+	 * <p>响应Key（InfoHash）无损解码转为十六进制之后和请求InfoHash匹配</p>
 	 * 
-	 * @param sid {@link TrackerLauncher#id()}
+	 * @param batch 刮擦列表（{@link TrackerLauncher#id()}=BT任务信息）
 	 * @param decoder B编码解码器
 	 * 
 	 * @return 刮擦消息
 	 */
-	private static final List<ScrapeMessage> convertScrapeMessage(Integer sid, BEncodeDecoder decoder) {
+	static final List<ScrapeMessage> convertScrapeMessage(Map<Integer, TorrentSession> batch, BEncodeDecoder decoder) {
 		final var files = decoder.getMap("files");
 		if(files == null) {
 			return List.of();
 		}
-		return files.entrySet().stream()
-			.map(entry -> {
-				// key：InfoHash
-				final Map<?, ?> map = (Map<?, ?>) entry.getValue();
-				return ScrapeMessage.newInstance(
-					sid,
-					MapUtils.getInteger(map, "complete"),
-					MapUtils.getInteger(map, "downloaded"),
-					MapUtils.getInteger(map, "incomplete")
-				);
-			})
-			.collect(Collectors.toList());
+		final Map<String, Integer> sids = new HashMap<>();
+		batch.forEach((sid, torrentSession) -> sids.put(torrentSession.infoHashHex(), sid));
+		final List<ScrapeMessage> messages = new ArrayList<>();
+		files.forEach((key, value) -> {
+			final Integer sid = sids.get(StringUtils.hex(key.getBytes(StandardCharsets.ISO_8859_1)));
+			if(sid == null || !(value instanceof Map<?, ?> map)) {
+				LOGGER.debug("HTTP Tracker刮擦消息没有匹配任务：{}", key);
+				return;
+			}
+			messages.add(ScrapeMessage.newInstance(
+				sid,
+				MapUtils.getInteger(map, "complete"),
+				MapUtils.getInteger(map, "downloaded"),
+				MapUtils.getInteger(map, "incomplete")
+			));
+		});
+		return messages;
 	}
 	
 	/**
@@ -256,6 +446,14 @@ public final class HttpTrackerSession extends TrackerSession {
 		return null;
 	}
 	
+	/**
+	 * <p>关闭Tracker线程池</p>
+	 */
+	public static final void shutdown() {
+		LOGGER.debug("关闭HTTP Tracker线程池");
+		SystemThreadContext.shutdown(EXECUTOR);
+	}
+	
 	@Override
 	public int hashCode() {
 		return Objects.hash(this.announceUrl);
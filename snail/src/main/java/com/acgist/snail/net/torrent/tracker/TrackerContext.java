@@ -34,6 +34,11 @@ public final class TrackerContext implements IContext {
 	public static final TrackerContext getInstance() {
 		return INSTANCE;
 	}
+	
+	/**
+	 * <p>合并刮擦请求超时时间（毫秒）：{@value}</p>
+	 */
+	private static final long SCRAPE_BATCH_TIMEOUT = 60L * SystemConfig.ONE_SECOND_MILLIS;
 
 	/**
 	 * <p>TrackerSession Map</p>
@@ -45,10 +50,16 @@ public final class TrackerContext implements IContext {
 	 * <p>{@link TrackerLauncher#id()}=TrackerLauncher</p>
 	 */
 	private final Map<Integer, TrackerLauncher> trackerLaunchers;
+	/**
+	 * <p>合并刮擦请求</p>
+	 * <p>transaction_id=合并刮擦请求</p>
+	 */
+	private final Map<Integer, ScrapeBatch> scrapeBatches;
 	
 	private TrackerContext() {
 		this.trackerSessions = new ConcurrentHashMap<>();
 		this.trackerLaunchers = new ConcurrentHashMap<>();
+		this.scrapeBatches = new ConcurrentHashMap<>();
 		this.register();
 	}
 
@@ -109,6 +120,56 @@ public final class TrackerContext implements IContext {
 		}
 	}
 	
+	/**
+	 * <p>注册合并刮擦请求</p>
+	 * 
+	 * @param transactionId transaction_id
+	 * @param ids {@link TrackerLauncher#id()}列表：按照请求InfoHash顺序
+	 */
+	public void scrapeBatch(Integer transactionId, List<Integer> ids) {
+		final long timeout = System.currentTimeMillis() - SCRAPE_BATCH_TIMEOUT;
+		// 清除没有响应的合并刮擦请求
+		this.scrapeBatches.values().removeIf(batch -> batch.time() < timeout);
+		this.scrapeBatches.put(transactionId, new ScrapeBatch(ids, System.currentTimeMillis()));
+	}
+	
+	/**
+	 * <p>处理刮擦消息</p>
+	 * <p>合并刮擦响应按照请求顺序对应TrackerLauncher</p>
+	 * 
+	 * @param messages 消息列表
+	 * 
+	 * @see #scrapeBatch(Integer, List)
+	 */
+	public void scrape(List<ScrapeMessage> messages) {
+		this.scrapeMessages(messages).forEach(this::scrape);
+	}
+	
+	/**
+	 * <p>合并刮擦响应转换为TrackerLauncher刮擦消息</p>
+	 * 
+	 * @param messages 消息列表
+	 * 
+	 * @return 刮擦消息列表（{@link ScrapeMessage#id()}={@link TrackerLauncher#id()}）
+	 */
+	List<ScrapeMessage> scrapeMessages(List<ScrapeMessage> messages) {
+		if(CollectionUtils.isEmpty(messages)) {
+			return List.of();
+		}
+		final ScrapeBatch batch = this.scrapeBatches.remove(messages.get(0).id());
+		if(batch == null) {
+			return messages;
+		}
+		final List<Integer> ids = batch.ids();
+		final int size = Math.min(ids.size(), messages.size());
+		final List<ScrapeMessage> list = new ArrayList<>(size);
+		for (int index = 0; index < size; index++) {
+			final ScrapeMessage message = messages.get(index);
+			list.add(ScrapeMessage.newInstance(ids.get(index), message.seeder(), message.completed(), message.leecher()));
+		}
+		return list;
+	}
+	
 	/**
 	 * <p>处理刮擦消息</p>
 	 * 
@@ -369,4 +430,15 @@ public final class TrackerContext implements IContext {
 		return null;
 	}
 	
+	/**
+	 * <p>合并刮擦请求</p>
+	 * 
+	 * @param ids {@link TrackerLauncher#id()}列表
+	 * @param time 请求时间
+	 * 
+	 * @author acgist
+	 */
+	private static final record ScrapeBatch(List<Integer> ids, long time) {
+	}
+	
 }
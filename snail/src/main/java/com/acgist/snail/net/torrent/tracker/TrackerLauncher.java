@@ -3,6 +3,7 @@ package com.acgist.snail.net.torrent.tracker;
 import java.util.Map;
 
 import com.acgist.snail.config.PeerConfig;
+import com.acgist.snail.config.SystemConfig;
 import com.acgist.snail.logger.Logger;
 import com.acgist.snail.logger.LoggerFactory;
 import com.acgist.snail.net.torrent.TorrentSession;
@@ -33,6 +34,11 @@ public final class TrackerLauncher {
 	 * <p>是否需要释放</p>
 	 */
 	private boolean needRelease = false;
+	/**
+	 * <p>下次声明时间</p>
+	 * <p>根据Tracker返回的声明周期计算：随机提前防止同一个Tracker所有任务同时声明</p>
+	 */
+	private volatile long nextAnnounceTime = 0L;
 	/**
 	 * <p>Tracker信息</p>
 	 */
@@ -86,6 +92,10 @@ public final class TrackerLauncher {
 	 * <p>查找Peer</p>
 	 */
 	public void findPeer() {
+		if(System.currentTimeMillis() < this.nextAnnounceTime) {
+			LOGGER.debug("TrackerLauncher没有到达声明时间：{}", this.session);
+			return;
+		}
 		if(this.available()) {
 			LOGGER.debug("TrackerLauncher查找Peer：{}", this.session);
 			this.needRelease = true;
@@ -103,12 +113,31 @@ public final class TrackerLauncher {
 			return;
 		}
 		if(this.available()) {
+			this.interval(message.interval());
 			this.peer(message.peers());
 		} else {
 			LOGGER.debug("收到声明响应消息（TrackerLauncher无效）：{}", this.session);
 		}
 	}
 	
+	/**
+	 * <p>设置下次声明时间</p>
+	 * <p>声明周期不能小于系统Tracker执行周期，最多随机提前十分之一声明周期。</p>
+	 * 
+	 * @param interval 声明周期（秒）
+	 * 
+	 * @see SystemConfig#getTrackerInterval()
+	 */
+	private void interval(Integer interval) {
+		if(interval == null || interval <= 0) {
+			return;
+		}
+		final long intervalMillis = Math.max(interval, SystemConfig.getTrackerInterval()) * (long) SystemConfig.ONE_SECOND_MILLIS;
+		final long jitter = (long) (intervalMillis * NumberUtils.random().nextDouble() / 10);
+		// 减去执行周期：定时任务到达时已经超过下次声明时间
+		this.nextAnnounceTime = System.currentTimeMillis() + intervalMillis - jitter - SystemConfig.getTrackerInterval() * (long) SystemConfig.ONE_SECOND_MILLIS;
+	}
+	
 	/**
 	 * <p>添加Peer</p>
 	 * 
@@ -119,7 +148,7 @@ public final class TrackerLauncher {
 			return;
 		}
 		final PeerContext peerContext = PeerContext.getInstance();
-		peers.forEach((host, port) -> peerContext.newPeerSession(
+		peers.forEach((host, port) -> peerContext.newPeer(
 			this.torrentSession.infoHashHex(),
 			this.torrentSession.statistics(),
 			host,
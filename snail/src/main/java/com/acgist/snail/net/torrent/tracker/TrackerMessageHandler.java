@@ -2,6 +2,8 @@ package com.acgist.snail.net.torrent.tracker;
 
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.acgist.snail.config.SystemConfig;
 import com.acgist.snail.config.TrackerConfig.Action;
@@ -120,13 +122,18 @@ public final class TrackerMessageHandler extends UdpMessageHandler {
 			LOGGER.debug("处理UDP Tracker刮擦消息错误（长度）：{}", remaining);
 			return;
 		}
-		final ScrapeMessage message = ScrapeMessage.newInstance(
-			buffer.getInt(),
-			buffer.getInt(),
-			buffer.getInt(),
-			buffer.getInt()
-		);
-		TrackerContext.getInstance().scrape(message);
+		final int id = buffer.getInt();
+		// 合并刮擦：按照请求顺序返回多个InfoHash结果
+		final List<ScrapeMessage> messages = new ArrayList<>();
+		while(buffer.remaining() >= SCRAPE_MIN_LENGTH - Integer.BYTES) {
+			messages.add(ScrapeMessage.newInstance(
+				id,
+				buffer.getInt(),
+				buffer.getInt(),
+				buffer.getInt()
+			));
+		}
+		TrackerContext.getInstance().scrape(messages);
 	}
 
 	/**
@@ -1,6 +1,7 @@
 package com.acgist.snail.net.torrent.tracker;
 
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.acgist.snail.config.TrackerConfig;
 import com.acgist.snail.logger.Logger;
@@ -48,8 +49,9 @@ public abstract class TrackerSession implements Comparable<TrackerSession> {
 	 * <p>权重</p>
 	 * <p>查询成功会使权重增加</p>
 	 * <p>查询失败会使权重减少</p>
+	 * <p>HTTP Tracker在线程池中并发查询：使用原子类型</p>
 	 */
-	protected int weight;
+	protected final AtomicInteger weight;
 	/**
 	 * <p>失败次数</p>
 	 * <p>查询成功会使失败次数增加</p>
@@ -57,11 +59,11 @@ public abstract class TrackerSession implements Comparable<TrackerSession> {
 	 * 
 	 * @see TrackerConfig#MAX_FAIL_TIMES
 	 */
-	protected int failTimes = 0;
+	protected final AtomicInteger failTimes;
 	/**
 	 * <p>是否可用</p>
 	 */
-	protected boolean available = true;
+	protected volatile boolean available = true;
 	
 	/**
 	 * <p>Tracker信息</p>
@@ -78,7 +80,8 @@ public abstract class TrackerSession implements Comparable<TrackerSession> {
 		}
 		this.id = NumberUtils.build();
 		this.type = type;
-		this.weight = 0;
+		this.weight = new AtomicInteger(0);
+		this.failTimes = new AtomicInteger(0);
 		this.scrapeUrl = scrapeUrl;
 		this.announceUrl = announceUrl;
 	}
@@ -97,16 +100,16 @@ public abstract class TrackerSession implements Comparable<TrackerSession> {
 		try {
 			// 发送声明消息
 			this.started(sid, torrentSession);
-			this.weight++;
-			this.failTimes = 0;
+			this.weight.incrementAndGet();
+			this.failTimes.set(0);
 		} catch (Exception e) {
-			this.weight--;
-			this.failTimes++;
-			if(this.failTimes >= TrackerConfig.MAX_FAIL_TIMES) {
+			this.weight.decrementAndGet();
+			final int failTimes = this.failTimes.incrementAndGet();
+			if(failTimes >= TrackerConfig.MAX_FAIL_TIMES) {
 				this.available = false;
-				LOGGER.error("Tracker停用，失败次数：{}，声明地址：{}", this.failTimes, this.announceUrl, e);
+				LOGGER.error("Tracker停用，失败次数：{}，声明地址：{}", failTimes, this.announceUrl, e);
 			} else {
-				LOGGER.debug("查找Peer异常，失败次数：{}，声明地址：{}", this.failTimes, this.announceUrl, e);
+				LOGGER.debug("查找Peer异常，失败次数：{}，声明地址：{}", failTimes, this.announceUrl, e);
 			}
 		}
 	}
@@ -251,7 +254,7 @@ public abstract class TrackerSession implements Comparable<TrackerSession> {
 	
 	@Override
 	public int compareTo(TrackerSession session) {
-		return Integer.compare(this.weight, session.weight);
+		return Integer.compare(this.weight.get(), session.weight.get());
 	}
 	
 	@Override
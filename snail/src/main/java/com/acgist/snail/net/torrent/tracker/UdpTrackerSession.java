@@ -1,11 +1,18 @@
 package com.acgist.snail.net.torrent.tracker;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 import com.acgist.snail.config.PeerConfig;
 import com.acgist.snail.config.SystemConfig;
 import com.acgist.snail.config.TrackerConfig;
+import com.acgist.snail.context.SystemThreadContext;
 import com.acgist.snail.context.wrapper.URIWrapper;
 import com.acgist.snail.logger.Logger;
 import com.acgist.snail.logger.LoggerFactory;
@@ -20,6 +27,8 @@ import com.acgist.snail.utils.StringUtils;
  * <p>UDP Tracker信息</p>
  * <p>UDP Tracker Protocol for BitTorrent</p>
  * <p>协议链接：http://www.bittorrent.org/beps/bep_0015.html</p>
+ * <p>连接消息异步发送：没有连接ID时声明消息进入等待队列，收到连接ID之后统一发送。</p>
+ * <p>刮擦消息合并发送：同一个Tracker的刮擦请求合并成一个消息（最多{@value #SCRAPE_MAX_SIZE}个InfoHash）。</p>
  * 
  * @author acgist
  */
@@ -35,6 +44,19 @@ public final class UdpTrackerSession extends TrackerSession {
 	 * <p>UDP Tracker默认端口：{@value}</p>
 	 */
 	private static final int DEFAULT_PORT = 80;
+	/**
+	 * <p>连接ID有效时间（毫秒）：{@value}</p>
+	 * <p>协议规定客户端连接ID有效时间一分钟</p>
+	 */
+	private static final long CONNECTION_ID_TIMEOUT = 60L * SystemConfig.ONE_SECOND_MILLIS;
+	/**
+	 * <p>单个刮擦消息最大InfoHash数量：{@value}</p>
+	 */
+	private static final int SCRAPE_MAX_SIZE = 74;
+	/**
+	 * <p>刮擦消息合并等待时间（秒）：{@value}</p>
+	 */
+	private static final int SCRAPE_DELAY = 2;
 	
 	/**
 	 * <p>地址</p>
@@ -48,6 +70,28 @@ public final class UdpTrackerSession extends TrackerSession {
 	 * <p>连接ID</p>
 	 */
 	private Long connectionId;
+	/**
+	 * <p>连接ID获取时间</p>
+	 */
+	private long connectionIdTime;
+	/**
+	 * <p>连接消息发送时间</p>
+	 * <p>等于零表示没有等待响应的连接消息</p>
+	 */
+	private long connectTime;
+	/**
+	 * <p>是否已经添加刮擦定时任务</p>
+	 */
+	private boolean scrapeScheduled;
+	/**
+	 * <p>等待连接ID的声明消息</p>
+	 */
+	private final List<PendingAnnounce> pendingAnnounces;
+	/**
+	 * <p>等待发送的刮擦消息</p>
+	 * <p>{@link TrackerLauncher#id()}=BT任务信息</p>
+	 */
+	private final Map<Integer, TorrentSession> pendingScrapes;
 	/**
 	 * <p>TrackerClient</p>
 	 */
@@ -65,6 +109,8 @@ public final class UdpTrackerSession extends TrackerSession {
 		this.host = wrapper.host();
 		this.port = wrapper.port();
 		this.trackerClient = TrackerClient.newInstance(NetUtils.buildSocketAddress(this.host, this.port));
+		this.pendingAnnounces = new ArrayList<>();
+		this.pendingScrapes = new LinkedHashMap<>();
 	}
 
 	/**
@@ -82,60 +128,169 @@ public final class UdpTrackerSession extends TrackerSession {
 	
 	@Override
 	public void started(Integer sid, TorrentSession torrentSession) throws NetException {
-		if(this.connectionId == null) {
-			// 获取连接ID
-			synchronized (this) {
-				if(this.connectionId == null) {
-					// 发送连接消息
-					this.send(this.buildConnectionMessage());
-					// 添加连接锁
-					try {
-						this.wait(SystemConfig.CONNECT_TIMEOUT_MILLIS);
-					} catch (InterruptedException e) {
-						Thread.currentThread().interrupt();
-						LOGGER.debug("线程等待异常", e);
-					}
-				}
-			}
-		}
-		if(this.connectionId == null) {
-			throw new NetException("UDP Tracker声明失败（connectionId）");
-		} else {
-			this.send((ByteBuffer) this.buildAnnounceMessage(sid, torrentSession, TrackerConfig.Event.STARTED));
-		}
+		this.announce(sid, torrentSession, TrackerConfig.Event.STARTED);
 	}
 
 	@Override
 	public void completed(Integer sid, TorrentSession torrentSession) throws NetException {
-		if(this.connectionId != null) {
-			this.send((ByteBuffer) this.buildAnnounceMessage(sid, torrentSession, TrackerConfig.Event.COMPLETED));
-		}
+		this.announce(sid, torrentSession, TrackerConfig.Event.COMPLETED);
 	}
 	
 	@Override
 	public void stopped(Integer sid, TorrentSession torrentSession) throws NetException {
-		if(this.connectionId != null) {
-			this.send((ByteBuffer) this.buildAnnounceMessage(sid, torrentSession, TrackerConfig.Event.STOPPED));
-		}
+		this.announce(sid, torrentSession, TrackerConfig.Event.STOPPED);
 	}
 	
 	@Override
 	public void scrape(Integer sid, TorrentSession torrentSession) throws NetException {
-		if(this.connectionId != null) {
-			this.send(this.buildScrapeMessage(sid, torrentSession));
+		final boolean flush;
+		synchronized (this) {
+			this.pendingScrapes.put(sid, torrentSession);
+			flush = this.pendingScrapes.size() >= SCRAPE_MAX_SIZE;
+			if(!flush && !this.scrapeScheduled) {
+				this.scrapeScheduled = true;
+				SystemThreadContext.scheduled(SCRAPE_DELAY, TimeUnit.SECONDS, this::scheduledScrape);
+			}
+		}
+		if(flush) {
+			this.flushScrape();
+		}
+	}
+
+	/**
+	 * <p>声明</p>
+	 * <p>连接ID有效直接发送，否则放入等待队列并且异步获取连接ID。</p>
+	 * 
+	 * @param sid {@link TrackerLauncher#id()}
+	 * @param torrentSession BT任务信息
+	 * @param event 事件
+	 * 
+	 * @throws NetException 网络异常
+	 */
+	private void announce(Integer sid, TorrentSession torrentSession, TrackerConfig.Event event) throws NetException {
+		synchronized (this) {
+			if(!this.connectionAvailable()) {
+				final boolean timeout = this.connectTimeout();
+				// 同一个任务只保留最新声明消息
+				this.pendingAnnounces.removeIf(value -> value.sid().equals(sid));
+				this.pendingAnnounces.add(new PendingAnnounce(sid, torrentSession, event));
+				// 上次连接没有响应：重新发送连接消息，等待消息保留到收到连接ID之后发送。
+				this.connect();
+				if(timeout) {
+					throw new NetException("UDP Tracker连接超时（connectionId）");
+				}
+				return;
+			}
+		}
+		this.send((ByteBuffer) this.buildAnnounceMessage(sid, torrentSession, event));
+	}
+	
+	/**
+	 * <p>发送连接消息</p>
+	 * <p>已经发送连接消息并且没有超时不会重复发送</p>
+	 * 
+	 * @throws NetException 网络异常
+	 */
+	private void connect() throws NetException {
+		synchronized (this) {
+			if(this.connectTime != 0L && !this.connectTimeout()) {
+				return;
+			}
+			this.connectTime = System.currentTimeMillis();
 		}
+		this.send(this.buildConnectionMessage());
+	}
+	
+	/**
+	 * <p>判断连接ID是否有效</p>
+	 * 
+	 * @return 是否有效
+	 */
+	private boolean connectionAvailable() {
+		return this.connectionId != null && System.currentTimeMillis() - this.connectionIdTime < CONNECTION_ID_TIMEOUT;
+	}
+	
+	/**
+	 * <p>判断连接消息是否超时</p>
+	 * 
+	 * @return 是否超时
+	 */
+	private boolean connectTimeout() {
+		return this.connectTime != 0L && System.currentTimeMillis() - this.connectTime > SystemConfig.CONNECT_TIMEOUT_MILLIS;
 	}
 
 	/**
 	 * <p>设置connectionId</p>
+	 * <p>发送等待连接ID的声明消息和刮擦消息</p>
 	 * 
 	 * @param connectionId 连接ID
 	 */
 	public void connectionId(Long connectionId) {
-		this.connectionId = connectionId;
-		// 释放连接锁
+		final List<PendingAnnounce> announces;
+		synchronized (this) {
+			this.connectionId = connectionId;
+			this.connectionIdTime = System.currentTimeMillis();
+			this.connectTime = 0L;
+			announces = new ArrayList<>(this.pendingAnnounces);
+			this.pendingAnnounces.clear();
+		}
+		for (PendingAnnounce announce : announces) {
+			try {
+				this.send((ByteBuffer) this.buildAnnounceMessage(announce.sid(), announce.torrentSession(), announce.event()));
+			} catch (NetException e) {
+				LOGGER.error("UDP Tracker发送声明消息异常：{}", this.announceUrl, e);
+			}
+		}
+		this.flushScrape();
+	}
+	
+	/**
+	 * <p>定时发送刮擦消息</p>
+	 */
+	private void scheduledScrape() {
 		synchronized (this) {
-			this.notifyAll();
+			this.scrapeScheduled = false;
+		}
+		this.flushScrape();
+	}
+	
+	/**
+	 * <p>发送刮擦消息</p>
+	 * <p>连接ID无效时异步获取连接ID：收到连接ID之后重新发送</p>
+	 */
+	private void flushScrape() {
+		final List<List<Map.Entry<Integer, TorrentSession>>> batches = new ArrayList<>();
+		synchronized (this) {
+			if(this.pendingScrapes.isEmpty()) {
+				return;
+			}
+			if(!this.connectionAvailable()) {
+				// 上次连接没有响应：重新发送连接消息，等待消息保留到收到连接ID之后发送。
+				try {
+					this.connect();
+				} catch (NetException e) {
+					LOGGER.error("UDP Tracker发送连接消息异常：{}", this.announceUrl, e);
+				}
+				return;
+			}
+			List<Map.Entry<Integer, TorrentSession>> batch = null;
+			final Iterator<Map.Entry<Integer, TorrentSession>> iterator = this.pendingScrapes.entrySet().iterator();
+			while(iterator.hasNext()) {
+				if(batch == null || batch.size() >= SCRAPE_MAX_SIZE) {
+					batch = new ArrayList<>(SCRAPE_MAX_SIZE);
+					batches.add(batch);
+				}
+				final Map.Entry<Integer, TorrentSession> entry = iterator.next();
+				batch.add(Map.entry(entry.getKey(), entry.getValue()));
+				iterator.remove();
+			}
+		}
+		for (List<Map.Entry<Integer, TorrentSession>> batch : batches) {
+			try {
+				this.send(this.buildScrapeMessage(batch));
+			} catch (NetException e) {
+				LOGGER.error("UDP Tracker发送刮擦消息异常：{}", this.announceUrl, e);
+			}
 		}
 	}
 	
@@ -188,18 +343,28 @@ public final class UdpTrackerSession extends TrackerSession {
 
 	/**
 	 * <p>新建刮擦消息</p>
+	 * <p>多个InfoHash使用新的transaction_id：响应消息按照请求顺序返回</p>
 	 * 
-	 * @param sid {@link TrackerLauncher#id()}
-	 * @param torrentSession BT任务信息
+	 * @param batch 刮擦列表（{@link TrackerLauncher#id()}=BT任务信息）
 	 * 
 	 * @return 刮擦消息
+	 * 
+	 * @see TrackerContext#scrapeBatch(Integer, List)
 	 */
-	private ByteBuffer buildScrapeMessage(Integer sid, TorrentSession torrentSession) {
-		final ByteBuffer buffer = ByteBuffer.allocate(36);
+	ByteBuffer buildScrapeMessage(List<Map.Entry<Integer, TorrentSession>> batch) {
+		final int size = batch.size();
+		final Integer transactionId;
+		if(size == 1) {
+			transactionId = batch.get(0).getKey();
+		} else {
+			transactionId = NumberUtils.build();
+			TrackerContext.getInstance().scrapeBatch(transactionId, batch.stream().map(Map.Entry::getKey).toList());
+		}
+		final ByteBuffer buffer = ByteBuffer.allocate(16 + size * 20);
 		buffer.putLong(this.connectionId);
 		buffer.putInt(TrackerConfig.Action.SCRAPE.id());
-		buffer.putInt(sid);
-		buffer.put(torrentSession.infoHash().infoHash());
+		buffer.putInt(transactionId);
+		batch.forEach(entry -> buffer.put(entry.getValue().infoHash().infoHash()));
 		return buffer;
 	}
 	
@@ -219,4 +384,16 @@ public final class UdpTrackerSession extends TrackerSession {
 		return false;
 	}
 	
+	/**
+	 * <p>等待连接ID的声明消息</p>
+	 * 
+	 * @param sid {@link TrackerLauncher#id()}
+	 * @param torrentSession BT任务信息
+	 * @param event 事件
+	 * 
+	 * @author acgist
+	 */
+	private static final record PendingAnnounce(Integer sid, TorrentSession torrentSession, TrackerConfig.Event event) {
+	}
+	
 }
@@ -1,5 +1,7 @@
 package com.acgist.snail.net.torrent.utp;
 
+import java.util.function.Consumer;
+
 import com.acgist.snail.net.UdpClient;
 import com.acgist.snail.net.torrent.TorrentServer;
 import com.acgist.snail.net.torrent.peer.PeerSession;
@@ -56,6 +58,15 @@ public final class UtpClient extends UdpClient<UtpMessageHandler> {
 	public boolean connect() {
 		return this.handler.connect();
 	}
+	
+	/**
+	 * <p>异步连接</p>
+	 * 
+	 * @param callback 连接回调：是否连接成功
+	 */
+	public void connect(Consumer<Boolean> callback) {
+		this.handler.connect(callback);
+	}
 
 	/**
 	 * <p>获取Peer信息</p>
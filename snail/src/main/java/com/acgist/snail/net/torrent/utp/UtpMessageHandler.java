@@ -4,11 +4,16 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 import com.acgist.snail.config.SystemConfig;
 import com.acgist.snail.config.UtpConfig;
+import com.acgist.snail.context.SystemThreadContext;
 import com.acgist.snail.logger.Logger;
 import com.acgist.snail.logger.LoggerFactory;
 import com.acgist.snail.net.NetException;
@@ -85,6 +90,14 @@ public final class UtpMessageHandler extends UdpMessageHandler implements IEncry
 	 * <p>连接锁</p>
 	 */
 	private final AtomicBoolean connectLock;
+	/**
+	 * <p>异步连接回调</p>
+	 */
+	private final AtomicReference<Consumer<Boolean>> connectCallback;
+	/**
+	 * <p>异步连接超时定时任务</p>
+	 */
+	private volatile ScheduledFuture<?> connectTimeout;
 	/**
 	 * <p>消息编码器</p>
 	 */
@@ -133,6 +146,7 @@ public final class UtpMessageHandler extends UdpMessageHandler implements IEncry
 		this.recvWindow = UtpWindow.newRecvInstance(this.messageDecoder);
 		this.ackLossTimes = new AtomicInteger(0);
 		this.connectLock = new AtomicBoolean(false);
+		this.connectCallback = new AtomicReference<>();
 		if(server) {
 			this.sendId = connectionId;
 			this.recvId = (short) (this.sendId + 1);
@@ -279,6 +293,21 @@ public final class UtpMessageHandler extends UdpMessageHandler implements IEncry
 		return this.connect;
 	}
 	
+	/**
+	 * <p>异步连接</p>
+	 * <p>收到握手响应或者连接超时以后执行回调（只会执行一次）</p>
+	 * <p>回调在消息接收线程或者定时线程池执行：不能执行长时间阻塞任务</p>
+	 * 
+	 * @param callback 连接回调：是否连接成功
+	 */
+	public void connect(Consumer<Boolean> callback) {
+		this.connect = false;
+		this.connectLock.set(false);
+		this.connectCallback.set(callback);
+		this.connectTimeout = SystemThreadContext.scheduled(SystemConfig.CONNECT_TIMEOUT, TimeUnit.SECONDS, this::unlockConnect);
+		this.syn();
+	}
+	
 	/**
 	 * <p>超时数据包重新发送</p>
 	 * 
@@ -549,12 +578,27 @@ public final class UtpMessageHandler extends UdpMessageHandler implements IEncry
 	
 	/**
 	 * <p>释放连接锁</p>
+	 * <p>异步连接：取消连接超时定时任务并且执行连接回调</p>
 	 */
 	private void unlockConnect() {
 		synchronized (this.connectLock) {
 			this.connectLock.set(true);
 			this.connectLock.notifyAll();
 		}
+		final ScheduledFuture<?> timeout = this.connectTimeout;
+		if(timeout != null) {
+			this.connectTimeout = null;
+			SystemThreadContext.shutdown(timeout);
+		}
+		final Consumer<Boolean> callback = this.connectCallback.getAndSet(null);
+		if(callback != null) {
+			final boolean success = this.connect;
+			if(!success) {
+				// 连接失败移除
+				this.close();
+			}
+			callback.accept(success);
+		}
 	}
 	
 	/**
@@ -3,6 +3,7 @@ package com.acgist.snail.protocol.ftp;
 import com.acgist.snail.context.ITaskSession;
 import com.acgist.snail.downloader.IDownloader;
 import com.acgist.snail.downloader.ftp.FtpDownloader;
+import com.acgist.snail.downloader.ftp.FtpSegmentDownloader;
 import com.acgist.snail.net.DownloadException;
 import com.acgist.snail.net.NetException;
 import com.acgist.snail.net.ftp.FtpClient;
@@ -32,6 +33,10 @@ public final class FtpProtocol extends Protocol {
 	
 	@Override
 	public IDownloader buildDownloader(ITaskSession taskSession) {
+		// 已经分段下载的任务继续使用分段下载
+		if(taskSession.getPayload() != null || FtpSegmentDownloader.segmentable(taskSession.getSize())) {
+			return FtpSegmentDownloader.newInstance(taskSession);
+		}
 		return FtpDownloader.newInstance(taskSession);
 	}
 
@@ -22,6 +22,10 @@ public final class DigestUtils {
 	 * <p>散列算法：{@value}</p>
 	 */
 	public static final String ALGO_SHA1 = "SHA-1";
+	/**
+	 * <p>散列算法：{@value}</p>
+	 */
+	public static final String ALGO_SHA256 = "SHA-256";
 	
 	/**
 	 * <p>获取MD5散列算法对象</p>
@@ -45,6 +49,17 @@ public final class DigestUtils {
 		return digest(ALGO_SHA1);
 	}
 	
+	/**
+	 * <p>获取SHA-256散列算法对象</p>
+	 * 
+	 * @return SHA-256散列算法对象
+	 * 
+	 * @see #digest(String)
+	 */
+	public static final MessageDigest sha256() {
+		return digest(ALGO_SHA256);
+	}
+	
 	/**
 	 * <p>获取散列算法对象</p>
 	 * 
@@ -82,4 +97,15 @@ public final class DigestUtils {
 		return sha1().digest(bytes);
 	}
 	
+	/**
+	 * <p>计算字节数组的SHA-256散列值</p>
+	 * 
+	 * @param bytes 字节数组
+	 * 
+	 * @return SHA-256散列值
+	 */
+	public static final byte[] sha256(byte[] bytes) {
+		return sha256().digest(bytes);
+	}
+	
 }
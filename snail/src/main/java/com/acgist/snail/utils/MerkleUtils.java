@@ -0,0 +1,197 @@
+package com.acgist.snail.utils;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.acgist.snail.config.SystemConfig;
+
+/**
+ * <p>Merkle Hash树工具</p>
+ * <p>BitTorrent v2：数据按照16KB分块计算SHA-256叶子节点，叶子节点数量填充到2的幂（填充全零Hash），两两合并计算父节点直到树根。</p>
+ * <p>协议链接：http://www.bittorrent.org/beps/bep_0052.html</p>
+ * 
+ * @author acgist
+ */
+public final class MerkleUtils {
+	
+	private MerkleUtils() {
+	}
+	
+	/**
+	 * <p>叶子节点数据长度：{@value}</p>
+	 */
+	public static final int LEAF_LENGTH = 16 * SystemConfig.ONE_KB;
+	/**
+	 * <p>叶子节点填充Hash</p>
+	 */
+	private static final byte[] ZERO_HASH = new byte[SystemConfig.SHA256_HASH_LENGTH];
+	
+	/**
+	 * <p>计算叶子节点Hash</p>
+	 * <p>最后一块数据不足叶子节点数据长度时直接计算（不用填充）</p>
+	 * 
+	 * @param data 数据
+	 * @param offset 数据偏移
+	 * @param length 数据长度
+	 * 
+	 * @return 叶子节点Hash
+	 */
+	public static final byte[][] leafs(byte[] data, int offset, int length) {
+		final MessageDigest digest = DigestUtils.sha256();
+		final byte[][] hashs = new byte[NumberUtils.ceilDiv(length, LEAF_LENGTH)][];
+		for (int index = 0; index < hashs.length; index++) {
+			final int pos = index * LEAF_LENGTH;
+			digest.update(data, offset + pos, Math.min(LEAF_LENGTH, length - pos));
+			hashs[index] = digest.digest();
+		}
+		return hashs;
+	}
+	
+	/**
+	 * <p>计算数据Hash树根</p>
+	 * 
+	 * @param data 数据
+	 * 
+	 * @return Hash树根
+	 */
+	public static final byte[] root(byte[] data) {
+		return root(data, 0, data.length);
+	}
+	
+	/**
+	 * <p>计算数据Hash树根</p>
+	 * 
+	 * @param data 数据
+	 * @param offset 数据偏移
+	 * @param length 数据长度
+	 * 
+	 * @return Hash树根
+	 */
+	public static final byte[] root(byte[] data, int offset, int length) {
+		return root(leafs(data, offset, length), 0, ZERO_HASH);
+	}
+	
+	/**
+	 * <p>计算Hash树根</p>
+	 * 
+	 * @param hashs 节点Hash
+	 * @param size 节点数量（节点Hash数量不足时使用填充Hash）
+	 * @param padding 填充Hash
+	 * 
+	 * @return Hash树根
+	 */
+	public static final byte[] root(byte[][] hashs, int size, byte[] padding) {
+		final List<byte[][]> tree = tree(hashs, size, padding);
+		return tree.get(tree.size() - 1)[0];
+	}
+	
+	/**
+	 * <p>计算填充Hash</p>
+	 * <p>全零叶子节点组成的子树树根</p>
+	 * 
+	 * @param layer 子树高度（叶子节点所在层级为零）
+	 * 
+	 * @return 填充Hash
+	 */
+	public static final byte[] padding(int layer) {
+		final MessageDigest digest = DigestUtils.sha256();
+		byte[] padding = ZERO_HASH;
+		for (int index = 0; index < layer; index++) {
+			digest.update(padding);
+			digest.update(padding);
+			padding = digest.digest();
+		}
+		return padding;
+	}
+	
+	/**
+	 * <p>计算Piece子树叶子节点数量</p>
+	 * <p>文件大于Piece大小时Piece层级Hash是Piece子树树根（叶子节点填充到Piece大小），否则Piece层级Hash就是文件Hash树根（叶子节点填充到2的幂）。</p>
+	 * 
+	 * @param pieceLength Piece大小
+	 * @param fileLength 文件大小
+	 * 
+	 * @return 叶子节点数量（不用填充到Piece大小返回零）
+	 */
+	public static final int pieceLeafs(long pieceLength, long fileLength) {
+		return fileLength > pieceLength ? (int) (pieceLength / LEAF_LENGTH) : 0;
+	}
+	
+	/**
+	 * <p>计算Hash树所有层级</p>
+	 * <p>第一层级是节点Hash（填充到2的幂），最后层级是树根。</p>
+	 * 
+	 * @param hashs 节点Hash
+	 * @param size 节点数量（节点Hash数量不足时使用填充Hash）
+	 * @param padding 填充Hash
+	 * 
+	 * @return Hash树所有层级
+	 */
+	public static final List<byte[][]> tree(byte[][] hashs, int size, byte[] padding) {
+		final MessageDigest digest = DigestUtils.sha256();
+		final List<byte[][]> tree = new ArrayList<>();
+		byte[][] layer = new byte[powerOfTwo(Math.max(1, Math.max(size, hashs.length)))][];
+		for (int index = 0; index < layer.length; index++) {
+			layer[index] = index < hashs.length ? hashs[index] : padding;
+		}
+		tree.add(layer);
+		while(layer.length > 1) {
+			final byte[][] parent = new byte[layer.length / 2][];
+			for (int index = 0; index < parent.length; index++) {
+				digest.update(layer[2 * index]);
+				digest.update(layer[2 * index + 1]);
+				parent[index] = digest.digest();
+			}
+			layer = parent;
+			tree.add(layer);
+		}
+		return tree;
+	}
+	
+	/**
+	 * <p>计算证明Hash</p>
+	 * <p>请求节点组成子树的叔节点Hash：从低层级到高层级，超过树根的层级忽略。</p>
+	 * 
+	 * @param tree Hash树所有层级
+	 * @param index 开始节点索引
+	 * @param length 节点数量（2的幂）
+	 * @param proofLayers 证明层级数量
+	 * 
+	 * @return 证明Hash
+	 */
+	public static final List<byte[]> proof(List<byte[][]> tree, int index, int length, int proofLayers) {
+		final List<byte[]> proofs = new ArrayList<>();
+		int layer = Integer.numberOfTrailingZeros(length);
+		int position = index / length;
+		while(proofs.size() < proofLayers && layer < tree.size() - 1) {
+			proofs.add(tree.get(layer)[position ^ 1]);
+			position = position / 2;
+			layer++;
+		}
+		return proofs;
+	}
+	
+	/**
+	 * <p>判断是否是2的幂</p>
+	 * 
+	 * @param value 数值
+	 * 
+	 * @return 是否是2的幂
+	 */
+	public static final boolean isPowerOfTwo(long value) {
+		return value > 0 && (value & (value - 1)) == 0;
+	}
+	
+	/**
+	 * <p>向上取整到2的幂</p>
+	 * 
+	 * @param value 数值（大于零）
+	 * 
+	 * @return 2的幂
+	 */
+	public static final int powerOfTwo(int value) {
+		return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+	}
+	
+}
@@ -36,6 +36,7 @@ open module com.acgist.snail {
 	exports com.acgist.snail.net.torrent.dht;
 	exports com.acgist.snail.net.torrent.lsd;
 	exports com.acgist.snail.net.torrent.peer;
+	exports com.acgist.snail.net.torrent.peer.extension;
 	exports com.acgist.snail.net.torrent.tracker;
 	exports com.acgist.snail.net.torrent.utp;
 	exports com.acgist.snail.net.upnp;
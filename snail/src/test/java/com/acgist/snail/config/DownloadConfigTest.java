@@ -27,6 +27,20 @@ class DownloadConfigTest extends Performance {
 		assertTrue(FileUtils.userDirFile(DownloadConfig.DOWNLOAD_CONFIG).exists());
 	}
 
+	@Test
+	void testUploadSlots() {
+		final int buffer = DownloadConfig.getBuffer();
+		DownloadConfig.setBuffer(16);
+		assertEquals(2, DownloadConfig.getUploadSlots());
+		DownloadConfig.setBuffer(1024);
+		assertEquals(12, DownloadConfig.getUploadSlots());
+		DownloadConfig.setUploadSlots(6);
+		assertEquals(6, DownloadConfig.getUploadSlots());
+		DownloadConfig.setUploadSlots(0);
+		assertEquals(12, DownloadConfig.getUploadSlots());
+		DownloadConfig.setBuffer(buffer);
+	}
+	
 	@Test
 	void testPath() {
 		this.log("{}", DownloadConfig.getPath());
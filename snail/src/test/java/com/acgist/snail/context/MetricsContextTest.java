@@ -0,0 +1,71 @@
+package com.acgist.snail.context;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.context.MetricsContext.Counter;
+import com.acgist.snail.context.MetricsContext.Histogram;
+import com.acgist.snail.format.BEncodeDecoder;
+import com.acgist.snail.format.BEncodeEncoder;
+import com.acgist.snail.net.PacketSizeException;
+import com.acgist.snail.utils.Performance;
+
+class MetricsContextTest extends Performance {
+	
+	@Test
+	void testCounter() {
+		final MetricsContext context = MetricsContext.getInstance();
+		final Counter counter = context.counter("snail_test_counter", "测试计数器");
+		counter.increment();
+		counter.add(9);
+		assertEquals(10, counter.get());
+		assertEquals(counter, context.counter("snail_test_counter", "测试计数器"));
+		assertThrows(IllegalArgumentException.class, () -> context.histogram("snail_test_counter", "测试直方图"));
+		assertEquals(10L, context.metrics("snail_test_counter").get("snail_test_counter"));
+	}
+	
+	@Test
+	void testHistogram() {
+		final MetricsContext context = MetricsContext.getInstance();
+		final Histogram histogram = context.histogram("snail_test_histogram{type=\"test\"}", "测试直方图", 10L, 100L);
+		histogram.record(1);
+		histogram.record(10);
+		histogram.record(50);
+		histogram.record(1000);
+		assertEquals(4, histogram.count());
+		assertEquals(1061, histogram.sum());
+		final String exposition = context.exposition();
+		this.log(exposition);
+		assertTrue(exposition.contains("# TYPE snail_test_histogram histogram"));
+		assertTrue(exposition.contains("snail_test_histogram_bucket{type=\"test\",le=\"10\"} 2"));
+		assertTrue(exposition.contains("snail_test_histogram_bucket{type=\"test\",le=\"100\"} 3"));
+		assertTrue(exposition.contains("snail_test_histogram_bucket{type=\"test\",le=\"+Inf\"} 4"));
+		assertTrue(exposition.contains("snail_test_histogram_count{type=\"test\"} 4"));
+	}
+	
+	@Test
+	void testMetrics() throws PacketSizeException {
+		final MetricsContext context = MetricsContext.getInstance();
+		context.gauge("snail_test_gauge", "测试仪表", () -> 100L);
+		assertNotNull(TaskContext.getInstance());
+		assertNotNull(StatisticsContext.getInstance());
+		final Map<String, Object> metrics = context.metrics();
+		this.log(metrics);
+		assertTrue(metrics.containsKey("snail_task_size"));
+		assertTrue(metrics.containsKey("snail_download_speed"));
+		assertTrue(metrics.containsKey("snail_thread_pool_queue{pool=\"ST\"}"));
+		// 系统消息：B编码
+		final var decoder = BEncodeDecoder.newInstance(BEncodeEncoder.encodeMap(metrics)).next();
+		assertEquals(100L, decoder.getLong("snail_test_gauge"));
+		context.remove("snail_test_gauge");
+		assertTrue(!context.metrics().containsKey("snail_test_gauge"));
+		this.costed(100000, () -> context.counter("snail_test_costed", "测试计数器").increment());
+	}
+	
+}
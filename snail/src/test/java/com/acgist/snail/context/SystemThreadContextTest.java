@@ -9,6 +9,11 @@ import java.lang.reflect.Field;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.Test;
@@ -73,4 +78,75 @@ class SystemThreadContextTest extends Performance {
 		assertEquals(size - 1, count.get());
 	}
 	
+	@Test
+	void testVirtualExecutor() throws InterruptedException {
+		this.log("是否支持虚拟线程：{}", SystemThreadContext.supportVirtualThread());
+		final CountDownLatch latch = new CountDownLatch(1);
+		final var executor = SystemThreadContext.newVirtualExecutor("ACGIST");
+		executor.submit(() -> {
+			this.log(Thread.currentThread());
+			latch.countDown();
+		});
+		latch.await();
+		assertEquals(0, latch.getCount());
+		SystemThreadContext.shutdown(executor);
+	}
+	
+	@Test
+	void testTaskExecutorSoak() throws InterruptedException {
+		// 模拟下载任务：每个任务阻塞等待下载完成
+		final int size = 2000;
+		this.soak("缓存线程池", SystemThreadContext.newCacheExecutor(0, 60L, "ACGIST-Cache"), size);
+		this.soak("虚拟线程池", SystemThreadContext.newVirtualExecutor("ACGIST-Virtual"), size);
+	}
+	
+	private void soak(String name, ExecutorService executor, int size) throws InterruptedException {
+		System.gc();
+		final Runtime runtime = Runtime.getRuntime();
+		final int threadCount = Thread.activeCount();
+		final long memory = runtime.totalMemory() - runtime.freeMemory();
+		final Lock lock = new ReentrantLock();
+		final Condition condition = lock.newCondition();
+		final AtomicInteger running = new AtomicInteger(0);
+		final CountDownLatch started = new CountDownLatch(size);
+		final CountDownLatch finished = new CountDownLatch(size);
+		final boolean[] completed = { false };
+		this.cost();
+		for (int index = 0; index < size; index++) {
+			executor.submit(() -> {
+				running.incrementAndGet();
+				started.countDown();
+				lock.lock();
+				try {
+					while(!completed[0]) {
+						condition.await();
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					lock.unlock();
+				}
+				finished.countDown();
+			});
+		}
+		assertTrue(started.await(60, TimeUnit.SECONDS));
+		this.log(
+			"{}：任务数量：{}，平台线程数量：{}，内存：{}KB",
+			name,
+			running.get(),
+			Thread.activeCount() - threadCount,
+			(runtime.totalMemory() - runtime.freeMemory() - memory) / 1024
+		);
+		lock.lock();
+		try {
+			completed[0] = true;
+			condition.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		assertTrue(finished.await(60, TimeUnit.SECONDS));
+		this.costed();
+		SystemThreadContext.shutdown(executor);
+	}
+	
 }
@@ -1,5 +1,6 @@
 package com.acgist.snail.context;
 
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -9,6 +10,8 @@ import org.junit.jupiter.api.Test;
 import com.acgist.snail.Snail.SnailBuilder;
 import com.acgist.snail.config.DownloadConfig;
 import com.acgist.snail.context.ITaskSessionStatus.Status;
+import com.acgist.snail.context.entity.TaskEntity;
+import com.acgist.snail.context.session.TaskSession;
 import com.acgist.snail.downloader.magnet.MagnetDownloader;
 import com.acgist.snail.downloader.torrent.TorrentDownloader;
 import com.acgist.snail.net.DownloadException;
@@ -74,4 +77,18 @@ class TaskContextTest extends Performance {
 		taskSession.delete();
 	}
 	
+	@Test
+	void testDirtyTasks() throws DownloadException {
+		final var taskContext = TaskContext.getInstance();
+		final TaskEntity entity = new TaskEntity();
+		entity.setId("dirty");
+		final ITaskSession taskSession = TaskSession.newInstance(entity);
+		// 合并多次状态变化
+		taskSession.setStatus(Status.AWAIT);
+		taskSession.setStatus(Status.PAUSE);
+		final var dirtyTasks = taskContext.dirtyTasks();
+		assertTrue(dirtyTasks.contains(taskSession));
+		assertFalse(taskContext.dirtyTasks().contains(taskSession));
+	}
+	
 }
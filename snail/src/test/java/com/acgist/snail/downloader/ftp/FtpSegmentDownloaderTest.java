@@ -0,0 +1,176 @@
+package com.acgist.snail.downloader.ftp;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.net.DownloadException;
+import com.acgist.snail.protocol.ProtocolContext;
+import com.acgist.snail.protocol.ftp.FtpProtocol;
+import com.acgist.snail.utils.FileUtils;
+import com.acgist.snail.utils.IoUtils;
+import com.acgist.snail.utils.Performance;
+
+class FtpSegmentDownloaderTest extends Performance {
+
+	@Test
+	void testSegmentable() {
+		assertTrue(FtpSegmentDownloader.segmentable(2 * FtpSegmentDownloader.MIN_SEGMENT_LENGTH));
+		assertTrue(!FtpSegmentDownloader.segmentable(FtpSegmentDownloader.MIN_SEGMENT_LENGTH));
+		assertTrue(!FtpSegmentDownloader.segmentable(null));
+	}
+
+	@Test
+	void testFtpSegmentDownloader() throws DownloadException, IOException {
+		final byte[] data = new byte[10 * SystemConfig.ONE_MB + 1234];
+		new Random().nextBytes(data);
+		final FtpServer server = new FtpServer(data);
+		server.start();
+		try {
+			final String url = "ftp://127.0.0.1:" + server.port() + "/ftp/snail-segment.data";
+			ProtocolContext.getInstance().register(FtpProtocol.getInstance()).available(true);
+			final var taskSession = FtpProtocol.getInstance().buildTaskSession(url);
+			assertEquals(data.length, taskSession.getSize());
+			final var downloader = taskSession.buildDownloader();
+			assertTrue(downloader instanceof FtpSegmentDownloader);
+			this.cost();
+			downloader.run();
+			this.costed();
+			this.log("FTP命令：{}", server.commands);
+			assertTrue(taskSession.statusCompleted());
+			assertArrayEquals(data, Files.readAllBytes(Paths.get(taskSession.getFile())));
+			// 每个分段一个断点续传位置
+			assertTrue(server.commands.stream().anyMatch(command -> command.startsWith("REST ")));
+			assertNotNull(taskSession.getPayload());
+			assertEquals(2 * 3 * Long.BYTES, taskSession.getPayload().length);
+			FileUtils.delete(taskSession.getFile());
+			taskSession.delete();
+		} finally {
+			server.close();
+		}
+	}
+
+	/**
+	 * FTP服务端（测试）
+	 * 只支持匿名登陆、被动模式、断点续传、下载和列出文件命令
+	 */
+	private static final class FtpServer extends Thread {
+
+		private final byte[] data;
+		private final ServerSocket server;
+		private final List<String> commands = new CopyOnWriteArrayList<>();
+
+		private FtpServer(byte[] data) throws IOException {
+			this.data = data;
+			this.server = new ServerSocket(0, 16, InetAddress.getLoopbackAddress());
+			this.setDaemon(true);
+		}
+
+		private int port() {
+			return this.server.getLocalPort();
+		}
+
+		@Override
+		public void run() {
+			while(!this.server.isClosed()) {
+				try {
+					final Socket socket = this.server.accept();
+					final Thread thread = new Thread(() -> this.session(socket));
+					thread.setDaemon(true);
+					thread.start();
+				} catch (IOException e) {
+					// 关闭
+				}
+			}
+		}
+
+		private void session(Socket socket) {
+			ServerSocket passive = null;
+			long rest = 0L;
+			try (
+				socket;
+				final var reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+				final OutputStream output = socket.getOutputStream();
+			) {
+				this.reply(output, "220 Snail FTP");
+				String line;
+				while((line = reader.readLine()) != null) {
+					this.commands.add(line);
+					final String command = line.split(" ")[0].toUpperCase();
+					switch (command) {
+					case "USER" -> this.reply(output, "331 OK");
+					case "PASS" -> this.reply(output, "230 OK");
+					case "FEAT" -> this.reply(output, "211-Features\r\n REST STREAM\r\n211 End");
+					case "TYPE" -> this.reply(output, "200 OK");
+					case "PASV" -> {
+						IoUtils.close(passive);
+						passive = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+						final int port = passive.getLocalPort();
+						this.reply(output, "227 Entering Passive Mode (127,0,0,1," + (port >> 8) + "," + (port & 0xFF) + ")");
+					}
+					case "REST" -> {
+						rest = Long.parseLong(line.substring(5).trim());
+						this.reply(output, "350 OK");
+					}
+					case "LIST" -> {
+						this.reply(output, "150 OK");
+						try (final Socket dataSocket = passive.accept()) {
+							dataSocket.getOutputStream().write(("-rwx------ 1 user group " + this.data.length + " Jan 01 2020 snail-segment.data").getBytes());
+						}
+						this.reply(output, "226 OK");
+					}
+					case "RETR" -> {
+						this.reply(output, "150 OK");
+						try (final Socket dataSocket = passive.accept()) {
+							dataSocket.getOutputStream().write(this.data, (int) rest, this.data.length - (int) rest);
+							this.reply(output, "226 OK");
+						} catch (IOException e) {
+							// 客户端提前关闭数据连接：分段下载完成
+							this.reply(output, "426 Closed");
+						}
+						rest = 0L;
+					}
+					case "QUIT" -> {
+						this.reply(output, "221 Bye");
+						return;
+					}
+					default -> this.reply(output, "502 Not Implemented");
+					}
+				}
+			} catch (IOException e) {
+				// 客户端关闭
+			} finally {
+				IoUtils.close(passive);
+			}
+		}
+
+		private void reply(OutputStream output, String message) throws IOException {
+			output.write((message + "\r\n").getBytes(StandardCharsets.UTF_8));
+			output.flush();
+		}
+
+		private void close() {
+			IoUtils.close(this.server);
+		}
+
+	}
+
+}
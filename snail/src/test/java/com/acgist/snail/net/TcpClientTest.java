@@ -0,0 +1,76 @@
+package com.acgist.snail.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.ServerSocket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.utils.Performance;
+
+class TcpClientTest extends Performance {
+	
+	private TcpClient<TcpMessageHandler> client(int timeout) {
+		return new TcpClient<TcpMessageHandler>("Test Client", timeout, new TcpMessageHandler() {
+		}) {
+			@Override
+			public boolean connect() {
+				return false;
+			}
+		};
+	}
+	
+	@Test
+	void testConnect() throws Exception {
+		final int size = 100;
+		final AtomicInteger success = new AtomicInteger();
+		final CountDownLatch latch = new CountDownLatch(size);
+		try (
+			final ServerSocket server = new ServerSocket(0, size);
+		) {
+			this.cost();
+			// 异步连接：不会阻塞线程
+			for (int index = 0; index < size; index++) {
+				final var client = this.client(5);
+				client.connect("127.0.0.1", server.getLocalPort(), value -> {
+					if(value) {
+						success.incrementAndGet();
+					}
+					client.close();
+					latch.countDown();
+				});
+			}
+			this.log("异步发起连接：{}", this.costed());
+			assertTrue(latch.await(10, TimeUnit.SECONDS));
+			assertEquals(size, success.get());
+		}
+	}
+	
+	@Test
+	void testConnectFail() throws Exception {
+		final int port;
+		try (
+			final ServerSocket server = new ServerSocket(0);
+		) {
+			port = server.getLocalPort();
+		}
+		final var client = this.client(1);
+		final AtomicInteger count = new AtomicInteger();
+		final CountDownLatch latch = new CountDownLatch(1);
+		client.connect("127.0.0.1", port, value -> {
+			if(!value) {
+				count.incrementAndGet();
+			}
+			latch.countDown();
+		});
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		assertEquals(1, count.get());
+		assertFalse(client.available());
+	}
+	
+}
@@ -0,0 +1,98 @@
+package com.acgist.snail.net;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.DataInputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.utils.Performance;
+
+class TcpMessageHandlerTest extends Performance {
+	
+	private TcpMessageHandler handler(ServerSocket server) throws Exception {
+		final AsynchronousSocketChannel channel = AsynchronousSocketChannel.open();
+		channel.connect(new InetSocketAddress("127.0.0.1", server.getLocalPort())).get();
+		final TcpMessageHandler handler = new TcpMessageHandler() {
+		};
+		handler.handle(channel);
+		return handler;
+	}
+	
+	@Test
+	void testSend() throws Exception {
+		final int thread = 4;
+		final int count = 10000;
+		try (
+			final ServerSocket server = new ServerSocket(0);
+		) {
+			final TcpMessageHandler handler = this.handler(server);
+			try (
+				final Socket socket = server.accept();
+				final DataInputStream input = new DataInputStream(socket.getInputStream());
+			) {
+				// 多个线程同时发送：所有消息完整接收
+				final AtomicInteger index = new AtomicInteger();
+				this.costed(count, thread, () -> {
+					final ByteBuffer buffer = ByteBuffer.allocate(4);
+					buffer.putInt(index.getAndIncrement());
+					assertDoesNotThrow(() -> handler.send(buffer));
+				});
+				final boolean[] receives = new boolean[count];
+				for (int pos = 0; pos < count; pos++) {
+					receives[input.readInt()] = true;
+				}
+				for (boolean receive : receives) {
+					assertTrue(receive);
+				}
+				assertTrue(handler.writable());
+			}
+			handler.close();
+			assertFalse(handler.available());
+		}
+	}
+	
+	@Test
+	void testWritable() throws Exception {
+		try (
+			final ServerSocket server = new ServerSocket(0);
+		) {
+			final TcpMessageHandler handler = this.handler(server);
+			try (
+				final Socket socket = server.accept();
+			) {
+				// 服务端不读取数据：发送队列拥塞
+				int size = 0;
+				while(handler.writable()) {
+					handler.send(new byte[16 * 1024]);
+					size++;
+				}
+				this.log("发送队列拥塞：{}", size);
+				assertTrue(handler.available());
+				assertThrows(NetException.class, () -> {
+					while(true) {
+						handler.send(new byte[16 * 1024]);
+					}
+				});
+				// 读取数据以后恢复
+				final byte[] bytes = new byte[1024 * 1024];
+				long length = 0;
+				while(!handler.writable()) {
+					length += socket.getInputStream().read(bytes);
+				}
+				assertTrue(length > 0);
+			}
+			handler.close();
+		}
+	}
+	
+}
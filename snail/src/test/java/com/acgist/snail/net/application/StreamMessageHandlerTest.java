@@ -0,0 +1,36 @@
+package com.acgist.snail.net.application;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.utils.Performance;
+
+class StreamMessageHandlerTest extends Performance {
+	
+	@Test
+	void testRange() {
+		assertArrayEquals(new long[] { 0, 999 }, StreamMessageHandler.range(null, 1000));
+		assertArrayEquals(new long[] { 0, 499 }, StreamMessageHandler.range("bytes=0-499", 1000));
+		assertArrayEquals(new long[] { 500, 999 }, StreamMessageHandler.range("bytes=500-", 1000));
+		assertArrayEquals(new long[] { 500, 999 }, StreamMessageHandler.range("bytes=-500", 1000));
+		assertArrayEquals(new long[] { 0, 999 }, StreamMessageHandler.range("bytes=-5000", 1000));
+		assertArrayEquals(new long[] { 900, 999 }, StreamMessageHandler.range("Bytes=900-5000", 1000));
+		// 多个范围只使用第一个范围
+		assertArrayEquals(new long[] { 0, 0 }, StreamMessageHandler.range("bytes=0-0,-1", 1000));
+		assertNull(StreamMessageHandler.range("bytes=1000-", 1000));
+		assertNull(StreamMessageHandler.range("bytes=500-100", 1000));
+		assertNull(StreamMessageHandler.range("bytes=-0", 1000));
+		assertNull(StreamMessageHandler.range("bytes=a-b", 1000));
+		assertNull(StreamMessageHandler.range("items=0-1", 1000));
+		assertNull(StreamMessageHandler.range(null, 0));
+	}
+	
+	@Test
+	void testCosted() {
+		assertDoesNotThrow(() -> this.costed(100000, () -> StreamMessageHandler.range("bytes=500-999", 1000)));
+	}
+	
+}
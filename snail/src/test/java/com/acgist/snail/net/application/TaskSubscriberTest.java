@@ -0,0 +1,140 @@
+package com.acgist.snail.net.application;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.context.ITaskSession;
+import com.acgist.snail.context.ITaskSessionStatus.Status;
+import com.acgist.snail.context.entity.TaskEntity;
+import com.acgist.snail.context.session.TaskSession;
+import com.acgist.snail.format.BEncodeEncoder;
+import com.acgist.snail.net.DownloadException;
+import com.acgist.snail.net.PacketSizeException;
+import com.acgist.snail.protocol.Protocol.Type;
+import com.acgist.snail.utils.Performance;
+
+class TaskSubscriberTest extends Performance {
+	
+	private ITaskSession build(String id, Status status) throws DownloadException {
+		final TaskEntity entity = new TaskEntity();
+		entity.setId(id);
+		entity.setName(id);
+		entity.setType(Type.HTTP);
+		entity.setFile(System.getProperty("java.io.tmpdir"));
+		entity.setUrl("https://www.acgist.com/" + id);
+		entity.setSize(1024L);
+		entity.setStatus(status);
+		return TaskSession.newInstance(entity);
+	}
+	
+	@Test
+	@SuppressWarnings("unchecked")
+	void testDelta() throws DownloadException {
+		final ITaskSession await = this.build("1", Status.AWAIT);
+		final ITaskSession pause = this.build("2", Status.PAUSE);
+		final List<ITaskSession> list = new ArrayList<>(List.of(await, pause));
+		final TaskSubscriber subscriber = new TaskSubscriber(new ApplicationMessageHandler(), 1000, EnumSet.noneOf(Status.class), 0, 0);
+		// 首次推送：全部属性
+		var delta = subscriber.delta(list);
+		assertNotNull(delta);
+		assertEquals(2, delta.get(TaskSubscriber.TOTAL));
+		var tasks = (List<Map<String, Object>>) delta.get(TaskSubscriber.TASKS);
+		assertEquals(2, tasks.size());
+		assertEquals(await.taskMessage(), tasks.get(0));
+		subscriber.commit();
+		// 没有变化：不推送
+		assertNull(subscriber.delta(list));
+		// 修改属性：只推送变化属性
+		await.setName("rename");
+		delta = subscriber.delta(list);
+		tasks = (List<Map<String, Object>>) delta.get(TaskSubscriber.TASKS);
+		assertEquals(1, tasks.size());
+		assertEquals(Map.of(TaskSubscriber.ID, "1", "name", "rename"), tasks.get(0));
+		// 推送失败：变化合并到下次推送
+		assertNotNull(subscriber.delta(list));
+		subscriber.commit();
+		assertNull(subscriber.delta(list));
+		// 删除任务
+		list.remove(pause);
+		delta = subscriber.delta(list);
+		assertEquals(List.of("2"), delta.get(TaskSubscriber.REMOVES));
+		assertTrue(((List<?>) delta.get(TaskSubscriber.TASKS)).isEmpty());
+		subscriber.commit();
+		// 重置：全量推送
+		subscriber.reset();
+		assertNotNull(subscriber.delta(list));
+	}
+	
+	@Test
+	@SuppressWarnings("unchecked")
+	void testDirty() throws DownloadException {
+		final ITaskSession await = this.build("1", Status.AWAIT);
+		final ITaskSession pause = this.build("2", Status.PAUSE);
+		final List<ITaskSession> list = new ArrayList<>(List.of(await, pause));
+		final TaskSubscriber subscriber = new TaskSubscriber(new ApplicationMessageHandler(), 1000, EnumSet.noneOf(Status.class), 0, 0);
+		assertNotNull(subscriber.delta(list, Set.of()));
+		subscriber.commit();
+		// 没有标记状态变化：增量计算不推送
+		await.setName("rename");
+		assertNull(subscriber.delta(list, Set.of()));
+		// 标记状态变化：只计算变化任务
+		final var delta = subscriber.delta(list, Set.of(await));
+		final var tasks = (List<Map<String, Object>>) delta.get(TaskSubscriber.TASKS);
+		assertEquals(List.of(Map.of(TaskSubscriber.ID, "1", "name", "rename")), tasks);
+		subscriber.commit();
+		// 全量计算
+		pause.setName("rename");
+		assertNotNull(subscriber.delta(list));
+	}
+	
+	@Test
+	@SuppressWarnings("unchecked")
+	void testFilter() throws DownloadException, PacketSizeException {
+		final List<ITaskSession> list = new ArrayList<>();
+		for (int index = 0; index < 10; index++) {
+			list.add(this.build(String.valueOf(index), index % 2 == 0 ? Status.AWAIT : Status.PAUSE));
+		}
+		final String body = BEncodeEncoder.encodeMapString(Map.of(
+			TaskSubscriber.INTERVAL, 10L,
+			TaskSubscriber.STATUS, List.of("pause"),
+			TaskSubscriber.PAGE, 1L,
+			TaskSubscriber.SIZE, 2L
+		));
+		final TaskSubscriber subscriber = TaskSubscriber.newInstance(new ApplicationMessageHandler(), body);
+		assertEquals(TaskSubscriber.MIN_INTERVAL, subscriber.interval());
+		final var delta = subscriber.delta(list);
+		assertEquals(5, delta.get(TaskSubscriber.TOTAL));
+		final var tasks = (List<Map<String, Object>>) delta.get(TaskSubscriber.TASKS);
+		assertEquals(List.of("5", "7"), tasks.stream().map(task -> task.get(TaskSubscriber.ID)).toList());
+		subscriber.commit();
+		// 任务状态变化：离开订阅范围
+		list.get(5).setStatus(Status.AWAIT);
+		final var change = subscriber.delta(list);
+		assertEquals(4, change.get(TaskSubscriber.TOTAL));
+		assertEquals(List.of("5"), change.get(TaskSubscriber.REMOVES));
+	}
+	
+	@Test
+	void testCosted() throws DownloadException {
+		final List<ITaskSession> list = new ArrayList<>();
+		for (int index = 0; index < 1000; index++) {
+			list.add(this.build(String.valueOf(index), Status.AWAIT));
+		}
+		final TaskSubscriber subscriber = new TaskSubscriber(new ApplicationMessageHandler(), 1000, EnumSet.noneOf(Status.class), 0, 0);
+		subscriber.delta(list);
+		subscriber.commit();
+		this.costed(100, () -> subscriber.delta(list));
+		this.costed(100, () -> subscriber.delta(list, Set.of(list.get(0))));
+	}
+	
+}
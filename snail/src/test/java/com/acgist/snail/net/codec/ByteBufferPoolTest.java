@@ -0,0 +1,61 @@
+package com.acgist.snail.net.codec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.context.MetricsContext;
+import com.acgist.snail.utils.Performance;
+
+class ByteBufferPoolTest extends Performance {
+
+	@Test
+	void testAcquire() {
+		final ByteBufferPool pool = ByteBufferPool.getInstance();
+		final long using = pool.using();
+		final ByteBuffer buffer = pool.acquire(SystemConfig.TCP_BUFFER_LENGTH);
+		assertTrue(buffer.isDirect());
+		assertEquals(0, buffer.position());
+		assertEquals(SystemConfig.TCP_BUFFER_LENGTH, buffer.limit());
+		assertEquals(using + 1, pool.using());
+		buffer.put((byte) 1);
+		pool.release(buffer);
+		assertEquals(using, pool.using());
+		final ByteBuffer reuse = pool.acquire(SystemConfig.TCP_BUFFER_LENGTH);
+		assertSame(buffer, reuse);
+		assertEquals(0, reuse.position());
+		pool.release(reuse);
+		// 向上取整
+		final ByteBuffer udp = pool.acquire(1500);
+		assertEquals(2 * SystemConfig.ONE_KB, udp.capacity());
+		assertEquals(1500, udp.limit());
+		pool.release(udp);
+		this.log(pool);
+		assertEquals(using, pool.using());
+		final var metrics = MetricsContext.getInstance().metrics("snail_byte_buffer");
+		assertEquals(pool.using(), metrics.get("snail_byte_buffer_using"));
+		assertEquals(pool.idleLength(), metrics.get("snail_byte_buffer_idle_length"));
+	}
+
+	@Test
+	void testCosted() {
+		final ByteBufferPool pool = ByteBufferPool.getInstance();
+		final long using = pool.using();
+		final long allocate = pool.allocateCount();
+		this.costed(100000, 10, () -> {
+			final ByteBuffer buffer = pool.acquire(SystemConfig.UDP_BUFFER_LENGTH);
+			buffer.putInt(1);
+			pool.release(buffer);
+		});
+		this.log(pool);
+		// 没有泄漏
+		assertEquals(using, pool.using());
+		assertTrue(pool.allocateCount() - allocate < 100);
+	}
+
+}
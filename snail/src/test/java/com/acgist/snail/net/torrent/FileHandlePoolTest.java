@@ -0,0 +1,52 @@
+package com.acgist.snail.net.torrent;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.config.DownloadConfig;
+import com.acgist.snail.context.MetricsContext;
+import com.acgist.snail.utils.ArrayUtils;
+import com.acgist.snail.utils.FileUtils;
+import com.acgist.snail.utils.Performance;
+
+class FileHandlePoolTest extends Performance {
+	
+	@Test
+	void testPool() throws IOException {
+		final File folder = Files.createTempDirectory("snail-handle").toFile();
+		try {
+			final FileHandlePool pool = FileHandlePool.getInstance();
+			final long evict = MetricsContext.getInstance().counter("snail_file_handle_evict", "文件句柄淘汰次数").get();
+			final int size = DownloadConfig.getFileHandles() + 8;
+			final byte[][] datas = new byte[size][];
+			this.cost();
+			for (int index = 0; index < size; index++) {
+				datas[index] = ArrayUtils.random(64);
+				pool.write(FileUtils.file(folder.getAbsolutePath(), "file-" + index), 0L, datas[index], 0, datas[index].length);
+			}
+			this.costed();
+			assertEquals(DownloadConfig.getFileHandles(), pool.size());
+			assertTrue(MetricsContext.getInstance().counter("snail_file_handle_evict", "文件句柄淘汰次数").get() - evict >= 8);
+			// 淘汰文件句柄重新打开
+			for (int index = 0; index < size; index++) {
+				final byte[] bytes = new byte[datas[index].length];
+				pool.read(FileUtils.file(folder.getAbsolutePath(), "file-" + index), 0L, bytes);
+				assertArrayEquals(datas[index], bytes);
+			}
+			for (int index = 0; index < size; index++) {
+				pool.close(FileUtils.file(folder.getAbsolutePath(), "file-" + index));
+			}
+			assertEquals(0, pool.size());
+		} finally {
+			FileUtils.delete(folder);
+		}
+	}
+	
+}
@@ -0,0 +1,71 @@
+package com.acgist.snail.net.torrent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.utils.ArrayUtils;
+import com.acgist.snail.utils.DigestUtils;
+import com.acgist.snail.utils.Performance;
+
+class TorrentPieceHasherTest extends Performance {
+	
+	private TorrentPiece build(int index, int length, boolean success) {
+		final byte[] bytes = ArrayUtils.random(length);
+		final byte[] hash = success ? DigestUtils.sha1(bytes) : ArrayUtils.random(SystemConfig.SHA1_HASH_LENGTH);
+		final TorrentPiece piece = TorrentPiece.newInstance(length, index, 0, length, hash, true);
+		assertTrue(piece.write(0, bytes));
+		return piece;
+	}
+	
+	@Test
+	void testSubmit() throws InterruptedException {
+		final int size = 100;
+		final AtomicInteger success = new AtomicInteger();
+		final AtomicInteger fail = new AtomicInteger();
+		final CountDownLatch latch = new CountDownLatch(size);
+		for (int index = 0; index < size; index++) {
+			TorrentPieceHasher.getInstance().submit(this.build(index, 16 * 1024, index % 10 != 0), value -> {
+				if(value) {
+					success.incrementAndGet();
+				} else {
+					fail.incrementAndGet();
+				}
+				latch.countDown();
+			});
+		}
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		assertEquals(90, success.get());
+		assertEquals(10, fail.get());
+	}
+	
+	@Test
+	void testCosted() throws InterruptedException {
+		final int size = 32;
+		final TorrentPiece[] pieces = new TorrentPiece[size];
+		for (int index = 0; index < size; index++) {
+			pieces[index] = this.build(index, 4 * SystemConfig.ONE_MB, true);
+		}
+		this.cost();
+		for (TorrentPiece piece : pieces) {
+			assertTrue(piece.verify());
+		}
+		final long sync = this.costed();
+		final CountDownLatch latch = new CountDownLatch(size);
+		this.cost();
+		for (TorrentPiece piece : pieces) {
+			TorrentPieceHasher.getInstance().submit(piece, value -> latch.countDown());
+		}
+		final long submit = this.costed();
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		final long async = this.costed();
+		this.log("同步校验：{}，异步提交：{}，异步校验：{}", sync, submit, async);
+	}
+	
+}
@@ -0,0 +1,118 @@
+package com.acgist.snail.net.torrent;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.utils.ArrayUtils;
+import com.acgist.snail.utils.FileUtils;
+import com.acgist.snail.utils.Performance;
+
+class TorrentResumeTest extends Performance {
+	
+	private static final int PIECE_LENGTH = 4 * TorrentPiece.SLICE_LENGTH;
+	
+	@Test
+	void testResume() throws IOException {
+		final File folder = Files.createTempDirectory("snail-resume").toFile();
+		try {
+			final String path = FileUtils.file(folder.getAbsolutePath(), "test" + TorrentResume.RESUME_SUFFIX);
+			final byte[] data = ArrayUtils.random(PIECE_LENGTH);
+			final TorrentPiece partial = TorrentPiece.newInstance(PIECE_LENGTH, 2, 0, PIECE_LENGTH, null, false);
+			partial.write(TorrentPiece.SLICE_LENGTH, Arrays.copyOfRange(data, TorrentPiece.SLICE_LENGTH, 2 * TorrentPiece.SLICE_LENGTH));
+			partial.write(3 * TorrentPiece.SLICE_LENGTH, Arrays.copyOfRange(data, 3 * TorrentPiece.SLICE_LENGTH, PIECE_LENGTH));
+			final TorrentResume resume = TorrentResume.newInstance();
+			// 没有下载数据忽略
+			assertFalse(resume.put(TorrentPiece.newInstance(PIECE_LENGTH, 3, 0, PIECE_LENGTH, null, false)));
+			assertTrue(resume.put(partial));
+			assertEquals(1, resume.size());
+			resume.persistent(path, new BitSet());
+			assertTrue(new File(path).exists());
+			// 重新加载
+			final TorrentResume load = TorrentResume.newInstance();
+			this.cost();
+			load.load(path, PIECE_LENGTH);
+			this.costed();
+			assertTrue(load.pieces().get(2));
+			// 开始偏移不同不能恢复
+			assertNull(load.remove(TorrentPiece.newInstance(PIECE_LENGTH, 2, TorrentPiece.SLICE_LENGTH, PIECE_LENGTH, null, false)));
+			final TorrentPiece piece = TorrentPiece.newInstance(PIECE_LENGTH, 2, 0, PIECE_LENGTH, null, false);
+			final TorrentPiece resumePiece = load.remove(piece);
+			assertNotNull(resumePiece);
+			assertEquals(0, load.size());
+			piece.resume(resumePiece);
+			assertEquals(2 * TorrentPiece.SLICE_LENGTH, piece.downloadSize());
+			piece.write(0, Arrays.copyOfRange(data, 0, TorrentPiece.SLICE_LENGTH));
+			piece.write(2 * TorrentPiece.SLICE_LENGTH, Arrays.copyOfRange(data, 2 * TorrentPiece.SLICE_LENGTH, 3 * TorrentPiece.SLICE_LENGTH));
+			assertTrue(piece.completed());
+			assertArrayEquals(data, piece.getData());
+			// 已经下载完成Piece删除断点续传文件
+			final BitSet pieces = new BitSet();
+			pieces.set(2);
+			resume.persistent(path, pieces);
+			assertFalse(new File(path).exists());
+			assertEquals(0, resume.size());
+		} finally {
+			FileUtils.delete(folder);
+		}
+	}
+	
+	@Test
+	void testPaused() throws IOException {
+		final File folder = Files.createTempDirectory("snail-resume").toFile();
+		try {
+			final int pieceLength = 8 * 1024 * 1024;
+			final PieceBufferPool pool = PieceBufferPool.getInstance();
+			final long usedLength = pool.usedLength();
+			final TorrentResume[] resumes = new TorrentResume[8];
+			final String[] paths = new String[resumes.length];
+			for (int index = 0; index < resumes.length; index++) {
+				resumes[index] = TorrentResume.newInstance();
+				paths[index] = FileUtils.file(folder.getAbsolutePath(), index + TorrentResume.RESUME_SUFFIX);
+				for (int piece = 0; piece < 4; piece++) {
+					final TorrentPiece partial = TorrentPiece.newInstance(pieceLength, piece, 0, pieceLength, null, false);
+					partial.write(0, ArrayUtils.random(TorrentPiece.SLICE_LENGTH));
+					assertTrue(resumes[index].put(partial));
+				}
+				// 部分下载Piece不占用Piece内存
+				assertEquals(usedLength, pool.usedLength());
+				// 任务暂停：保存以后归还Piece内存
+				resumes[index].persistent(paths[index], new BitSet());
+				assertEquals(0, resumes[index].size());
+			}
+			assertEquals(usedLength, pool.usedLength());
+			// 暂停任务不会阻塞下载任务
+			assertTrue(pool.available());
+			final TorrentPiece running = TorrentPiece.newInstance(pieceLength, 0, 0, pieceLength, null, false);
+			assertTrue(pool.available());
+			running.release();
+			// 暂停以后保存的Piece和断点续传文件合并
+			final TorrentPiece late = TorrentPiece.newInstance(pieceLength, 8, 0, pieceLength, null, false);
+			late.write(0, ArrayUtils.random(TorrentPiece.SLICE_LENGTH));
+			assertTrue(resumes[0].put(late));
+			resumes[0].persistent(paths[0], new BitSet());
+			// 开始下载加载断点续传文件
+			resumes[0].load(paths[0], pieceLength);
+			assertEquals(5, resumes[0].size());
+			assertTrue(resumes[0].pieces().get(8));
+			resumes[0].load(paths[0], pieceLength);
+			assertEquals(5, resumes[0].size());
+			resumes[0].delete(paths[0]);
+			assertEquals(usedLength, pool.usedLength());
+		} finally {
+			FileUtils.delete(folder);
+		}
+	}
+	
+}
@@ -54,7 +54,7 @@ class TorrentStreamTest extends Performance {
 			group
 		);
 		oldStream.install();
-		oldStream.verify();
+		oldStream.verify(TorrentVerifier.newInstance(session.torrent(), List.of(oldStream)).verify());
 		final String targetFile = "D:/tmp/none/server/Scans/Vol.1/Box_1.png";
 		final var newStream = TorrentStream.newInstance(
 			pieceLength,
@@ -65,7 +65,7 @@ class TorrentStreamTest extends Performance {
 			group
 		);
 		newStream.install();
-		newStream.verify();
+		newStream.verify(TorrentVerifier.newInstance(session.torrent(), List.of(newStream)).verify());
 		int pieceBeginIndex = (int) (pos / pieceLength);
 		int pieceEndIndex = (int) ((pos + torrentFile.getLength()) / pieceLength) + 1;
 		final BitSet peerPieces = new BitSet();
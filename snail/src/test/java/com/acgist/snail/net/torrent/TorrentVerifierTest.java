@@ -0,0 +1,132 @@
+package com.acgist.snail.net.torrent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.context.ITaskSessionStatus.Status;
+import com.acgist.snail.context.entity.TaskEntity;
+import com.acgist.snail.context.session.TaskSession;
+import com.acgist.snail.context.wrapper.DescriptionWrapper;
+import com.acgist.snail.format.BEncodeDecoder;
+import com.acgist.snail.format.BEncodeEncoder;
+import com.acgist.snail.net.DownloadException;
+import com.acgist.snail.net.NetException;
+import com.acgist.snail.protocol.Protocol.Type;
+import com.acgist.snail.utils.ArrayUtils;
+import com.acgist.snail.utils.DigestUtils;
+import com.acgist.snail.utils.FileUtils;
+import com.acgist.snail.utils.Performance;
+
+class TorrentVerifierTest extends Performance {
+	
+	private static final int PIECE_LENGTH = 16 * SystemConfig.ONE_KB;
+	
+	/**
+	 * 文件大小：文件边界不和Piece对齐
+	 */
+	private static final int[] FILE_LENGTHS = { 40 * SystemConfig.ONE_KB, 8 * SystemConfig.ONE_KB, 50 * SystemConfig.ONE_KB };
+	
+	@Test
+	void testVerify() throws IOException, NetException, DownloadException {
+		final File folder = Files.createTempDirectory("snail-verify").toFile();
+		try {
+			final int totalLength = FILE_LENGTHS[0] + FILE_LENGTHS[1] + FILE_LENGTHS[2];
+			final byte[] data = ArrayUtils.random(totalLength);
+			final int pieceSize = (totalLength + PIECE_LENGTH - 1) / PIECE_LENGTH;
+			final byte[] pieces = new byte[pieceSize * SystemConfig.SHA1_HASH_LENGTH];
+			for (int index = 0; index < pieceSize; index++) {
+				final int begin = index * PIECE_LENGTH;
+				final int end = Math.min(totalLength, begin + PIECE_LENGTH);
+				final byte[] hash = DigestUtils.sha1().digest(Arrays.copyOfRange(data, begin, end));
+				System.arraycopy(hash, 0, pieces, index * SystemConfig.SHA1_HASH_LENGTH, hash.length);
+			}
+			final List<Object> files = new ArrayList<>();
+			for (int index = 0; index < FILE_LENGTHS.length; index++) {
+				final Map<String, Object> file = new LinkedHashMap<>();
+				file.put("length", (long) FILE_LENGTHS[index]);
+				file.put("path", List.of("file-" + index));
+				files.add(file);
+			}
+			final Map<String, Object> info = new LinkedHashMap<>();
+			info.put("files", files);
+			info.put("name", "verify");
+			info.put("piece length", (long) PIECE_LENGTH);
+			info.put("pieces", pieces);
+			final Map<String, Object> map = new LinkedHashMap<>();
+			map.put("info", info);
+			final Torrent torrent = Torrent.valueOf(BEncodeDecoder.newInstance(BEncodeEncoder.encodeMap(map)).next());
+			final InfoHash infoHash = InfoHash.newInstance(BEncodeEncoder.encodeMap(info));
+			torrent.infoHash(infoHash);
+			final TaskEntity entity = new TaskEntity();
+			entity.setName("verify");
+			entity.setType(Type.TORRENT);
+			entity.setFile(folder.getAbsolutePath());
+			entity.setStatus(Status.AWAIT);
+			entity.setDescription(DescriptionWrapper.newEncoder(List.of()).serialize());
+			final TorrentSession session = TorrentSession.newInstance(infoHash, torrent);
+			session.upload(TaskSession.newInstance(entity));
+			// 写入文件：最后一个Piece数据损坏
+			int pos = 0;
+			final List<TorrentStream> streams = new ArrayList<>();
+			for (int index = 0; index < FILE_LENGTHS.length; index++) {
+				final String path = FileUtils.file(folder.getAbsolutePath(), "file-" + index);
+				final byte[] bytes = Arrays.copyOfRange(data, pos, pos + FILE_LENGTHS[index]);
+				if(index == 2) {
+					bytes[bytes.length - 1] ^= 0xFF;
+				}
+				Files.write(new File(path).toPath(), bytes);
+				final TorrentStream stream = TorrentStream.newInstance(PIECE_LENGTH, path, FILE_LENGTHS[index], pos, false, session.torrentStreamGroup());
+				stream.install();
+				streams.add(stream);
+				pos += FILE_LENGTHS[index];
+			}
+			this.cost();
+			final BitSet successPieces = TorrentVerifier.newInstance(torrent, streams).verify();
+			this.costed();
+			this.log("校验成功Piece：{}", successPieces);
+			final BitSet expectPieces = new BitSet();
+			expectPieces.set(0, pieceSize - 1);
+			assertEquals(expectPieces, successPieces);
+			// 文件不存在
+			FileUtils.delete(FileUtils.file(folder.getAbsolutePath(), "file-0"));
+			final BitSet missPieces = TorrentVerifier.newInstance(torrent, streams).verify();
+			assertFalse(missPieces.get(0));
+			assertFalse(missPieces.get(1));
+			// 边界Piece数据不全：没有下载
+			assertFalse(missPieces.get(2));
+			assertTrue(missPieces.get(3));
+			// 文件大小不足
+			Files.write(new File(FileUtils.file(folder.getAbsolutePath(), "file-0")).toPath(), Arrays.copyOfRange(data, 0, FILE_LENGTHS[0]));
+			Files.write(new File(FileUtils.file(folder.getAbsolutePath(), "file-1")).toPath(), Arrays.copyOfRange(data, FILE_LENGTHS[0], FILE_LENGTHS[0] + 4 * SystemConfig.ONE_KB));
+			final BitSet partialPieces = TorrentVerifier.newInstance(torrent, streams).verify();
+			assertTrue(partialPieces.get(1));
+			assertFalse(partialPieces.get(2));
+			assertTrue(partialPieces.get(3));
+			// 取消校验
+			final TorrentVerifier verifier = TorrentVerifier.newInstance(torrent, streams);
+			verifier.cancel();
+			assertTrue(verifier.cancelled());
+			assertNull(verifier.verify());
+			streams.forEach(TorrentStream::release);
+			session.releaseUpload();
+		} finally {
+			FileUtils.delete(folder);
+		}
+	}
+	
+}
@@ -1,19 +1,26 @@
 package com.acgist.snail.net.torrent.codec;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
 import org.junit.jupiter.api.Test;
 
-import com.acgist.snail.net.NetException;
 import com.acgist.snail.net.torrent.InfoHash;
 import com.acgist.snail.utils.ArrayUtils;
+import com.acgist.snail.utils.DigestUtils;
 import com.acgist.snail.utils.Performance;
 
 class MSECipherTest extends Performance {
 
 	@Test
-	void testMSECipher() throws NetException {
+	void testMSECipher() {
 		final byte[] secret = ArrayUtils.random(16);
 		final InfoHash infoHash = InfoHash.newInstance(ArrayUtils.random(20));
 		final var sender = MSECipher.newSender(secret, infoHash);
@@ -33,7 +40,7 @@ class MSECipherTest extends Performance {
 	}
 	
 	@Test
-	void testMSECipherEquals() throws NetException {
+	void testMSECipherEquals() {
 		final byte[] secret = ArrayUtils.random(16);
 		final InfoHash infoHash = InfoHash.newInstance(ArrayUtils.random(20));
 		final var sender = MSECipher.newSender(secret, infoHash);
@@ -44,24 +51,67 @@ class MSECipherTest extends Performance {
 	}
 
 	@Test
-	void testCosted() throws NetException {
+	void testCosted() {
 		final byte[] secret = ArrayUtils.random(16);
 		final InfoHash infoHash = InfoHash.newInstance(ArrayUtils.random(20));
 		final var sender = MSECipher.newSender(secret, infoHash);
 		final var recver = MSECipher.newRecver(secret, infoHash);
 		final byte[] data = ArrayUtils.random(20);
 		final long costed = this.costed(100000, () -> {
-			try {
-				final byte[] senderEncryptData = sender.encrypt(data);
-				final byte[] recverDecryptData = recver.decrypt(senderEncryptData);
-				if(recverDecryptData == null) {
-					LOGGER.warn("解密失败");
-				}
-			} catch (NetException e) {
-				LOGGER.error("数据加解密异常", e);
+			final byte[] senderEncryptData = sender.encrypt(data);
+			final byte[] recverDecryptData = recver.decrypt(senderEncryptData);
+			if(recverDecryptData == null) {
+				LOGGER.warn("解密失败");
 			}
 		});
 		assertTrue(costed < 1000);
 	}
 	
+	@Test
+	void testByteBuffer() {
+		final byte[] secret = ArrayUtils.random(16);
+		final InfoHash infoHash = InfoHash.newInstance(ArrayUtils.random(20));
+		final var sender = MSECipher.newSender(secret, infoHash);
+		final var recver = MSECipher.newRecver(secret, infoHash);
+		final byte[] data = ArrayUtils.random(1024);
+		// 读模式：直接缓冲区
+		final ByteBuffer direct = ByteBuffer.allocateDirect(2048);
+		direct.put(data).flip();
+		sender.encrypt(direct);
+		assertEquals(0, direct.position());
+		assertEquals(data.length, direct.limit());
+		recver.decrypt(direct);
+		final byte[] directData = new byte[data.length];
+		direct.get(directData);
+		assertArrayEquals(data, directData);
+		// 写模式：堆缓冲区
+		final ByteBuffer heap = ByteBuffer.allocate(2048);
+		heap.put(data);
+		sender.encrypt(heap);
+		assertEquals(data.length, heap.position());
+		recver.decrypt(heap);
+		heap.flip();
+		final byte[] heapData = new byte[data.length];
+		heap.get(heapData);
+		assertArrayEquals(data, heapData);
+	}
+	
+	@Test
+	void testJCE() throws Exception {
+		final byte[] secret = ArrayUtils.random(16);
+		final InfoHash infoHash = InfoHash.newInstance(ArrayUtils.random(20));
+		final var sender = MSECipher.newSender(secret, infoHash);
+		final MessageDigest digest = DigestUtils.sha1();
+		digest.update("keyA".getBytes());
+		digest.update(secret);
+		digest.update(infoHash.infoHash());
+		final Cipher cipher = Cipher.getInstance("ARCFOUR/ECB/NoPadding");
+		cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(digest.digest(), "ARCFOUR"));
+		cipher.update(new byte[1024]);
+		for (int index = 0; index < 10; index++) {
+			final byte[] data = ArrayUtils.random(100);
+			assertArrayEquals(cipher.update(data), sender.encrypt(data));
+		}
+	}
+	
 }
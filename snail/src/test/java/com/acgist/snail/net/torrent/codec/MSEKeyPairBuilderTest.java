@@ -1,6 +1,8 @@
 package com.acgist.snail.net.torrent.codec;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 
 import java.nio.ByteBuffer;
 import java.security.InvalidKeyException;
@@ -38,6 +40,21 @@ class MSEKeyPairBuilderTest extends Performance {
 		assertArrayEquals(as, bs);
 	}
 
+	@Test
+	void testPollKeyPair() throws InterruptedException {
+		final MSEKeyPairBuilder mseKeyPairBuilder = MSEKeyPairBuilder.newInstance();
+		final var a = mseKeyPairBuilder.pollKeyPair();
+		// 等待后台补充密钥对池
+		Thread.sleep(1000);
+		final var b = mseKeyPairBuilder.pollKeyPair();
+		final var aKey = NumberUtils.decodeBigInteger(ByteBuffer.wrap(a.getPublic().getEncoded()), CryptConfig.PUBLIC_KEY_LENGTH);
+		final var bKey = NumberUtils.decodeBigInteger(ByteBuffer.wrap(b.getPublic().getEncoded()), CryptConfig.PUBLIC_KEY_LENGTH);
+		assertNotEquals(aKey, bKey);
+		final var as = ((MSEPrivateKey) b.getPrivate()).buildDHSecret(aKey);
+		final var bs = ((MSEPrivateKey) a.getPrivate()).buildDHSecret(bKey);
+		assertEquals(as, bs);
+	}
+	
 	@Test
 	void testCosted() {
 		final MSEKeyPairBuilder mseKeyPairBuilder = MSEKeyPairBuilder.newInstance();
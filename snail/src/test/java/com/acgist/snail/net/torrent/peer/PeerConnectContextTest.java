@@ -0,0 +1,82 @@
+package com.acgist.snail.net.torrent.peer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.config.PeerConfig;
+import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.context.ITaskSessionStatus.Status;
+import com.acgist.snail.context.entity.TaskEntity;
+import com.acgist.snail.context.session.TaskSession;
+import com.acgist.snail.context.wrapper.DescriptionWrapper;
+import com.acgist.snail.format.BEncodeDecoder;
+import com.acgist.snail.format.BEncodeEncoder;
+import com.acgist.snail.net.DownloadException;
+import com.acgist.snail.net.NetException;
+import com.acgist.snail.net.torrent.InfoHash;
+import com.acgist.snail.net.torrent.Torrent;
+import com.acgist.snail.net.torrent.TorrentSession;
+import com.acgist.snail.protocol.Protocol.Type;
+import com.acgist.snail.utils.ArrayUtils;
+import com.acgist.snail.utils.Performance;
+
+class PeerConnectContextTest extends Performance {
+	
+	@Test
+	void testHalfOpen() {
+		final var context = PeerConnectContext.getInstance();
+		final int size = SystemConfig.getPeerHalfOpenSize();
+		for (int index = 0; index < size; index++) {
+			assertTrue(context.tryAcquireHalfOpen());
+		}
+		// 半开连接已满：不会阻塞
+		assertFalse(context.tryAcquireHalfOpen());
+		for (int index = 0; index < size; index++) {
+			context.releaseHalfOpen();
+		}
+		this.costed(100000, () -> {
+			if(context.tryAcquireHalfOpen()) {
+				context.releaseHalfOpen();
+			}
+		});
+	}
+	
+	@Test
+	void testQuota() throws NetException, DownloadException {
+		final Map<String, Object> info = new LinkedHashMap<>();
+		info.put("length", 1024L);
+		info.put("name", "quota");
+		info.put("piece length", 1024L);
+		info.put("pieces", ArrayUtils.random(SystemConfig.SHA1_HASH_LENGTH));
+		final Map<String, Object> map = new LinkedHashMap<>();
+		map.put("info", info);
+		final Torrent torrent = Torrent.valueOf(BEncodeDecoder.newInstance(BEncodeEncoder.encodeMap(map)).next());
+		final InfoHash infoHash = InfoHash.newInstance(BEncodeEncoder.encodeMap(info));
+		torrent.infoHash(infoHash);
+		final TaskEntity entity = new TaskEntity();
+		entity.setName("quota");
+		entity.setType(Type.TORRENT);
+		entity.setFile(System.getProperty("java.io.tmpdir"));
+		entity.setStatus(Status.AWAIT);
+		entity.setDescription(DescriptionWrapper.newEncoder(List.of()).serialize());
+		final TorrentSession session = TorrentSession.newInstance(infoHash, torrent);
+		session.upload(TaskSession.newInstance(entity));
+		final var context = PeerConnectContext.getInstance();
+		// 做种任务：需求等于可用Peer数量
+		final int size = 3;
+		for (int index = 0; index < size; index++) {
+			PeerContext.getInstance().newPeer(session.infoHashHex(), session.statistics(), "10.20.30." + index, 18888, PeerConfig.Source.TRACKER);
+		}
+		assertEquals(size, context.quota(session));
+		assertTrue(context.connectable(session));
+		session.releaseUpload();
+	}
+	
+}
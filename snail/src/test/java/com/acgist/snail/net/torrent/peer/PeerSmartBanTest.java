@@ -0,0 +1,130 @@
+package com.acgist.snail.net.torrent.peer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.config.PeerConfig;
+import com.acgist.snail.context.StatisticsContext;
+import com.acgist.snail.net.torrent.TorrentPiece;
+import com.acgist.snail.utils.ArrayUtils;
+import com.acgist.snail.utils.DigestUtils;
+import com.acgist.snail.utils.Performance;
+
+class PeerSmartBanTest extends Performance {
+	
+	private TorrentPiece build(byte[] bytes, byte[] hash) {
+		return this.build(bytes, hash, null);
+	}
+	
+	private TorrentPiece build(byte[] bytes, byte[] hash, PeerSession source) {
+		final TorrentPiece piece = TorrentPiece.newInstance(bytes.length, 0, 0, bytes.length, hash, true);
+		for (int begin = 0; begin < bytes.length; begin += TorrentPiece.SLICE_LENGTH) {
+			piece.write(begin, this.slice(bytes, begin), source);
+		}
+		return piece;
+	}
+	
+	private byte[] slice(byte[] bytes, int begin) {
+		final byte[] slice = new byte[Math.min(TorrentPiece.SLICE_LENGTH, bytes.length - begin)];
+		System.arraycopy(bytes, begin, slice, 0, slice.length);
+		return slice;
+	}
+	
+	@Test
+	void testBan() {
+		final byte[] bytes = ArrayUtils.random(8 * TorrentPiece.SLICE_LENGTH);
+		final byte[] hash = DigestUtils.sha1(bytes);
+		final byte[] error = bytes.clone();
+		error[3 * TorrentPiece.SLICE_LENGTH + 100]++;
+		final var statistics = StatisticsContext.getInstance().statistics();
+		final PeerSession poison = PeerSession.newInstance(statistics, "10.10.10.1", 18888);
+		final PeerSession honest = PeerSession.newInstance(statistics, "10.10.10.2", 18888);
+		final PeerSmartBan smartBan = PeerSmartBan.newInstance();
+		final TorrentPiece errorPiece = this.build(error, hash, poison);
+		assertFalse(errorPiece.verify());
+		smartBan.fail(errorPiece);
+		// 相同数据：没有错误Slice
+		smartBan.fail(this.build(bytes, hash, honest));
+		assertEquals(1, smartBan.size());
+		final TorrentPiece piece = this.build(bytes, hash);
+		assertTrue(piece.verify());
+		assertEquals(List.of(poison), smartBan.success(piece));
+		assertEquals(0, smartBan.size());
+		assertTrue(PeerContext.getInstance().banned(poison.host()));
+		assertFalse(PeerContext.getInstance().banned(honest.host()));
+		assertFalse(poison.available());
+		assertTrue(honest.available());
+		// 禁用Peer不能添加
+		assertFalse(PeerContext.getInstance().newPeer("smart-ban", statistics, poison.host(), 18888, PeerConfig.Source.TRACKER));
+		// 没有记录
+		assertTrue(smartBan.success(piece).isEmpty());
+	}
+	
+	@Test
+	void testSlice() {
+		final byte[] bytes = ArrayUtils.random(4 * TorrentPiece.SLICE_LENGTH);
+		final byte[] hash = DigestUtils.sha1(bytes);
+		final var statistics = StatisticsContext.getInstance().statistics();
+		final PeerSession poison = PeerSession.newInstance(statistics, "10.10.10.4", 18888);
+		final PeerSmartBan smartBan = PeerSmartBan.newInstance();
+		final TorrentPiece piece = TorrentPiece.newInstance(bytes.length, 0, 0, bytes.length, hash, true);
+		final byte[] error = new byte[TorrentPiece.SLICE_LENGTH];
+		// Slice校验失败：只记录不禁用
+		smartBan.fail(piece, poison, TorrentPiece.SLICE_LENGTH, error);
+		assertEquals(1, smartBan.size());
+		assertTrue(poison.available());
+		final TorrentPiece success = this.build(bytes, hash);
+		assertTrue(success.verify());
+		assertEquals(List.of(poison), smartBan.success(success));
+		assertTrue(PeerContext.getInstance().banned(poison.host()));
+	}
+	
+	@Test
+	void testSource() {
+		final byte[] bytes = ArrayUtils.random(4 * TorrentPiece.SLICE_LENGTH);
+		final byte[] hash = DigestUtils.sha1(bytes);
+		final byte[] error = bytes.clone();
+		error[TorrentPiece.SLICE_LENGTH + 100]++;
+		error[2 * TorrentPiece.SLICE_LENGTH + 100]++;
+		final var statistics = StatisticsContext.getInstance().statistics();
+		final PeerSession poison = PeerSession.newInstance(statistics, "10.10.10.5", 18888);
+		final PeerSession honest = PeerSession.newInstance(statistics, "10.10.10.6", 18888);
+		final PeerSmartBan smartBan = PeerSmartBan.newInstance();
+		// 恢复数据块：错误数据没有来源
+		final TorrentPiece resume = TorrentPiece.newInstance(bytes.length, 0, 0, bytes.length, hash, true);
+		resume.write(2 * TorrentPiece.SLICE_LENGTH, this.slice(error, 2 * TorrentPiece.SLICE_LENGTH));
+		final TorrentPiece errorPiece = TorrentPiece.newInstance(bytes.length, 0, 0, bytes.length, hash, true);
+		errorPiece.resume(resume);
+		errorPiece.write(0, this.slice(error, 0), honest);
+		errorPiece.write(TorrentPiece.SLICE_LENGTH, this.slice(error, TorrentPiece.SLICE_LENGTH), poison);
+		errorPiece.write(3 * TorrentPiece.SLICE_LENGTH, this.slice(error, 3 * TorrentPiece.SLICE_LENGTH), honest);
+		assertFalse(errorPiece.verify());
+		smartBan.fail(errorPiece);
+		assertEquals(1, smartBan.size());
+		final TorrentPiece piece = this.build(bytes, hash);
+		assertTrue(piece.verify());
+		assertEquals(List.of(poison), smartBan.success(piece));
+		assertTrue(honest.available());
+		resume.release();
+		errorPiece.release();
+		piece.release();
+	}
+	
+	@Test
+	void testCosted() {
+		final byte[] bytes = ArrayUtils.random(4 * 1024 * 1024);
+		final PeerSession peerSession = PeerSession.newInstance(StatisticsContext.getInstance().statistics(), "10.10.10.3", 18888);
+		final TorrentPiece piece = this.build(bytes, DigestUtils.sha1(bytes), peerSession);
+		final PeerSmartBan smartBan = PeerSmartBan.newInstance();
+		this.costed(100, () -> {
+			smartBan.fail(piece);
+			smartBan.success(piece);
+		});
+	}
+	
+}
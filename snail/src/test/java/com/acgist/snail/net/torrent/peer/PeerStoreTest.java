@@ -0,0 +1,118 @@
+package com.acgist.snail.net.torrent.peer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.config.PeerConfig;
+import com.acgist.snail.context.StatisticsContext;
+import com.acgist.snail.utils.NetUtils;
+import com.acgist.snail.utils.Performance;
+
+class PeerStoreTest extends Performance {
+	
+	@Test
+	void testOffer() {
+		final PeerStore store = new PeerStore(100);
+		store.parent(StatisticsContext.getInstance().statistics());
+		assertTrue(store.offer("192.168.1.100", 18888, PeerConfig.Source.TRACKER, (byte) 0, null));
+		assertFalse(store.offer("192.168.1.100", 18888, PeerConfig.Source.DHT, PeerConfig.PEX_UTP, null));
+		assertTrue(store.offer("fe80::1", 18888, PeerConfig.Source.PEX, (byte) 0, null));
+		assertFalse(store.offer("localhost", 18888, PeerConfig.Source.TRACKER, (byte) 0, null));
+		assertEquals(2, store.size());
+		// 没有连接：没有Peer信息
+		assertNull(store.find("192.168.1.100", 18888));
+		assertTrue(store.sessions().isEmpty());
+		// 优先来源优先使用
+		final PeerSession ipv6 = store.pick();
+		assertNotNull(ipv6);
+		assertTrue(NetUtils.ipv6(ipv6.host()));
+		final PeerSession ipv4 = store.pick();
+		assertEquals("192.168.1.100", ipv4.host());
+		assertEquals(18888, ipv4.port().intValue());
+		assertTrue(ipv4.utp());
+		assertEquals(2, ipv4.sources().size());
+		assertNull(store.pick());
+		assertSame(ipv4, store.find("192.168.1.100", 18888));
+		assertEquals(2, store.sessions().size());
+		// 连接失败：释放Peer信息
+		ipv4.incrementFailTimes();
+		store.offer(ipv4, PeerStore.LEVEL_INFERIOR);
+		assertNull(store.find("192.168.1.100", 18888));
+		assertEquals(1, store.sessions().size());
+		final PeerSession retry = store.pick();
+		assertEquals("192.168.1.100", retry.host());
+		assertEquals(1, retry.failTimes());
+		// 失败次数超过限制：不再使用
+		retry.incrementFailTimes();
+		retry.incrementFailTimes();
+		store.offer(retry, PeerStore.LEVEL_INFERIOR);
+		assertNull(store.pick());
+		assertEquals(2, store.size());
+		assertEquals(1, store.availableSize());
+	}
+	
+	@Test
+	void testAccept() {
+		final PeerStore store = new PeerStore(100);
+		store.parent(StatisticsContext.getInstance().statistics());
+		final PeerSession session = store.session("192.168.1.100", null, PeerConfig.Source.CONNECT);
+		assertSame(session, store.session("192.168.1.100", null, PeerConfig.Source.CONNECT));
+		assertFalse(session.available());
+		// 扩展协议获取端口
+		session.port(18888);
+		assertSame(session, store.find("192.168.1.100", 18888));
+		assertSame(session, store.session("192.168.1.100", 18888, PeerConfig.Source.PEX));
+		// 释放以后使用端口存档
+		store.release(session);
+		assertNull(store.find("192.168.1.100", null));
+		assertNull(store.find("192.168.1.100", 18888));
+		assertEquals(1, store.size());
+		final PeerSession pick = store.pick();
+		assertEquals(18888, pick.port().intValue());
+		assertEquals(2, pick.sources().size());
+		// 没有端口直接删除
+		final PeerSession noPort = store.session("192.168.1.101", null, PeerConfig.Source.CONNECT);
+		store.release(noPort);
+		assertEquals(1, store.size());
+	}
+	
+	@Test
+	void testEvict() {
+		final int maxSize = 1000;
+		final PeerStore store = new PeerStore(maxSize);
+		store.parent(StatisticsContext.getInstance().statistics());
+		store.offer("10.0.0.1", 1000, PeerConfig.Source.PEX, (byte) 0, null);
+		for (int index = 0; index < 10 * maxSize; index++) {
+			store.offer(NetUtils.intToIP(0x0B000000 + index), 1000, PeerConfig.Source.TRACKER, (byte) 0, null);
+		}
+		assertEquals(maxSize, store.size());
+		// 优先来源没有剔除
+		final PeerSession session = store.pick();
+		assertEquals("10.0.0.1", session.host());
+		// 剔除最早加入的Peer
+		assertEquals(NetUtils.intToIP(0x0B000000 + 10 * maxSize - 1), store.pick().host());
+		int size = 0;
+		while(store.pick() != null) {
+			size++;
+		}
+		assertEquals(maxSize - 2, size);
+	}
+	
+	@Test
+	void testCosted() {
+		final PeerStore store = new PeerStore(100000);
+		this.costed(100000, () -> {
+			final int ip = (int) (System.nanoTime() & 0xFFFFF);
+			store.offer(NetUtils.intToIP(0x0A000000 + ip), 1000, PeerConfig.Source.TRACKER, (byte) 0, null);
+			store.find(NetUtils.intToIP(0x0A000000 + ip), 1000);
+		});
+		this.log("存档数量：{}", store.size());
+	}
+	
+}
@@ -0,0 +1,177 @@
+package com.acgist.snail.net.torrent.peer.extension;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.context.StatisticsContext;
+import com.acgist.snail.net.DownloadException;
+import com.acgist.snail.net.torrent.InfoHash;
+import com.acgist.snail.net.torrent.peer.PeerSession;
+import com.acgist.snail.utils.ArrayUtils;
+import com.acgist.snail.utils.DigestUtils;
+import com.acgist.snail.utils.Performance;
+import com.acgist.snail.utils.StringUtils;
+
+class MetadataAssemblerTest extends Performance {
+	
+	/**
+	 * 五个Slice：最后一个Slice不满
+	 */
+	private static final int SIZE = 4 * MetadataMessageHandler.SLICE_LENGTH + 100;
+	
+	@Test
+	void testAssemble() throws DownloadException {
+		final byte[] info = ArrayUtils.random(SIZE);
+		final InfoHash infoHash = this.buildInfoHash(info);
+		final MetadataAssembler assembler = new MetadataAssembler(infoHash, null);
+		final PeerSession peerA = this.buildPeerSession(1);
+		final PeerSession peerB = this.buildPeerSession(2);
+		// 每个Peer同时请求数量有限
+		assertEquals(List.of(0, 1, 2, 3), assembler.pick(peerA));
+		assertEquals(List.of(4), assembler.pick(peerB));
+		assertTrue(assembler.pick(peerA).isEmpty());
+		assertTrue(assembler.pick(peerB).isEmpty());
+		for (int index = 0; index < 4; index++) {
+			assertEquals(MetadataAssembler.Status.CONTINUE, assembler.receive(peerA, index, SIZE, this.slice(info, index)));
+		}
+		assertNull(infoHash.info());
+		assertEquals(MetadataAssembler.Status.COMPLETED, assembler.receive(peerB, 4, SIZE, this.slice(info, 4)));
+		assertTrue(assembler.completed());
+		assertArrayEquals(info, infoHash.info());
+		assertTrue(assembler.pick(peerA).isEmpty());
+	}
+	
+	@Test
+	void testBan() throws DownloadException {
+		final byte[] info = ArrayUtils.random(SIZE);
+		final InfoHash infoHash = this.buildInfoHash(info);
+		final MetadataAssembler assembler = new MetadataAssembler(infoHash, null);
+		final PeerSession peerA = this.buildPeerSession(1);
+		final PeerSession peerB = this.buildPeerSession(2);
+		final PeerSession peerC = this.buildPeerSession(3);
+		assembler.pick(peerA);
+		assembler.pick(peerB);
+		for (int index = 0; index < 4; index++) {
+			assembler.receive(peerA, index, SIZE, this.slice(info, index));
+		}
+		// 错误数据
+		final byte[] bad = this.slice(info, 4);
+		bad[0]++;
+		assertEquals(MetadataAssembler.Status.FAIL, assembler.receive(peerB, 4, SIZE, bad));
+		assertNull(infoHash.info());
+		// Hash错误不会立即禁用：重新下载
+		assertFalse(assembler.banned(peerA));
+		assertFalse(assembler.banned(peerB));
+		assertEquals(List.of(0, 1, 2, 3), assembler.pick(peerA));
+		assertEquals(List.of(4), assembler.pick(peerC));
+		for (int index = 0; index < 4; index++) {
+			assembler.receive(peerA, index, SIZE, this.slice(info, index));
+		}
+		assertEquals(MetadataAssembler.Status.COMPLETED, assembler.receive(peerC, 4, SIZE, this.slice(info, 4)));
+		assertArrayEquals(info, infoHash.info());
+		// 组装成功以后只禁用提供错误Slice的Peer：重连Peer同样禁用
+		assertFalse(assembler.banned(peerA));
+		assertTrue(assembler.banned(peerB));
+		assertTrue(assembler.banned(this.buildPeerSession(2)));
+		assertFalse(assembler.banned(peerC));
+	}
+	
+	@Test
+	void testBanFail() throws DownloadException {
+		final byte[] info = ArrayUtils.random(SIZE);
+		final InfoHash infoHash = this.buildInfoHash(info);
+		final MetadataAssembler assembler = new MetadataAssembler(infoHash, null);
+		final PeerSession peerA = this.buildPeerSession(1);
+		final byte[] bad = this.slice(info, 4);
+		bad[0]++;
+		// 多次Hash错误：禁用提供数据的所有Peer
+		for (int times = 0; times < 3; times++) {
+			assertFalse(assembler.banned(peerA));
+			for (int index = 0; index < 4; index++) {
+				assembler.receive(peerA, index, SIZE, this.slice(info, index));
+			}
+			assertEquals(MetadataAssembler.Status.FAIL, assembler.receive(peerA, 4, SIZE, bad));
+		}
+		assertTrue(assembler.banned(peerA));
+		assertTrue(assembler.pick(peerA).isEmpty());
+	}
+	
+	@Test
+	void testReject() throws DownloadException {
+		final byte[] info = ArrayUtils.random(SIZE);
+		final InfoHash infoHash = this.buildInfoHash(info);
+		final MetadataAssembler assembler = new MetadataAssembler(infoHash, null);
+		final PeerSession peerA = this.buildPeerSession(1);
+		final PeerSession peerB = this.buildPeerSession(2);
+		assertEquals(List.of(0, 1, 2, 3), assembler.pick(peerA));
+		assertEquals(List.of(4), assembler.pick(peerB));
+		// 拒绝以后重新分配
+		assembler.refuse(peerA);
+		assertTrue(assembler.pick(peerA).isEmpty());
+		assertEquals(List.of(0, 1, 2), assembler.pick(peerB));
+		// 数据长度错误
+		assertEquals(MetadataAssembler.Status.CONTINUE, assembler.receive(peerB, 0, SIZE + 1, this.slice(info, 0)));
+		assertEquals(MetadataAssembler.Status.CONTINUE, assembler.receive(peerB, 5, SIZE, this.slice(info, 0)));
+		assertNull(infoHash.info());
+	}
+	
+	@Test
+	void testCosted() throws DownloadException {
+		final int size = 4 * 1024 * 1024;
+		final byte[] info = ArrayUtils.random(size);
+		final InfoHash infoHash = this.buildInfoHash(info);
+		final MetadataAssembler assembler = new MetadataAssembler(infoHash, null);
+		final PeerSession peerSession = this.buildPeerSession(1);
+		this.cost();
+		List<Integer> pieces;
+		while(!(pieces = assembler.pick(peerSession)).isEmpty()) {
+			for (Integer piece : pieces) {
+				assembler.receive(peerSession, piece, size, this.slice(info, piece));
+			}
+		}
+		this.costed();
+		assertArrayEquals(info, infoHash.info());
+	}
+	
+	/**
+	 * @param info 种子文件信息
+	 * 
+	 * @return 磁力链接InfoHash
+	 * 
+	 * @throws DownloadException 下载异常
+	 */
+	private InfoHash buildInfoHash(byte[] info) throws DownloadException {
+		final InfoHash infoHash = InfoHash.newInstance(StringUtils.hex(DigestUtils.sha1(info)));
+		infoHash.size(info.length);
+		return infoHash;
+	}
+	
+	/**
+	 * @param index 序号
+	 * 
+	 * @return Peer信息
+	 */
+	private PeerSession buildPeerSession(int index) {
+		return PeerSession.newInstance(StatisticsContext.getInstance().statistics(), "192.168.1." + index, 18888);
+	}
+	
+	/**
+	 * @param info 种子文件信息
+	 * @param index Slice索引
+	 * 
+	 * @return Slice数据
+	 */
+	private byte[] slice(byte[] info, int index) {
+		final int pos = index * MetadataMessageHandler.SLICE_LENGTH;
+		return Arrays.copyOfRange(info, pos, Math.min(info.length, pos + MetadataMessageHandler.SLICE_LENGTH));
+	}
+	
+}
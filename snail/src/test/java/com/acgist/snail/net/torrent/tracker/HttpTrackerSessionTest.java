@@ -1,14 +1,26 @@
 package com.acgist.snail.net.torrent.tracker;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.junit.jupiter.api.Test;
 
+import com.acgist.snail.format.BEncodeDecoder;
 import com.acgist.snail.net.DownloadException;
 import com.acgist.snail.net.NetException;
+import com.acgist.snail.net.torrent.InfoHash;
 import com.acgist.snail.net.torrent.TorrentContext;
 import com.acgist.snail.net.torrent.TorrentSession;
 import com.acgist.snail.utils.Performance;
+import com.acgist.snail.utils.StringUtils;
+import com.acgist.snail.utils.ThreadUtils;
 
 class HttpTrackerSessionTest extends Performance {
 
@@ -22,4 +34,41 @@ class HttpTrackerSessionTest extends Performance {
 		assertNotNull(session);
 	}
 	
+	@Test
+	void testScrapeBatch() throws DownloadException, NetException {
+		final String path = "D:/tmp/snail/902FFAA29EE632C8DC966ED9AB573409BA9A518E.torrent";
+		final TorrentSession torrentSession = TorrentContext.getInstance().newTorrentSession(path);
+		final HttpTrackerSession session = HttpTrackerSession.newInstance("http://vps02.net.orel.ru:80/announce");
+		// 合并成为一个刮擦请求
+		session.scrape(1000, torrentSession);
+		session.scrape(1001, torrentSession);
+		ThreadUtils.sleep(4000);
+		assertNotNull(session);
+	}
+	
+	@Test
+	void testConvertScrapeMessage() throws Exception {
+		// 非法UTF-8字节：有损解码以后两个InfoHash相同
+		final byte[] hashA = new byte[20];
+		final byte[] hashB = new byte[20];
+		Arrays.fill(hashA, (byte) 0xFF);
+		Arrays.fill(hashB, (byte) 0xFE);
+		final Map<Integer, TorrentSession> batch = new LinkedHashMap<>();
+		batch.put(1000, TorrentSession.newInstance(InfoHash.newInstance(StringUtils.hex(hashA)), null));
+		batch.put(1001, TorrentSession.newInstance(InfoHash.newInstance(StringUtils.hex(hashB)), null));
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		output.write("d5:filesd20:".getBytes(StandardCharsets.US_ASCII));
+		output.write(hashA);
+		output.write("d8:completei1e10:downloadedi2e10:incompletei3ee20:".getBytes(StandardCharsets.US_ASCII));
+		output.write(hashB);
+		output.write("d8:completei4e10:downloadedi5e10:incompletei6eeee".getBytes(StandardCharsets.US_ASCII));
+		final var decoder = BEncodeDecoder.newInstance(output.toByteArray()).keyCharset(StandardCharsets.ISO_8859_1).next();
+		final List<ScrapeMessage> messages = HttpTrackerSession.convertScrapeMessage(batch, decoder);
+		assertEquals(2, messages.size());
+		assertEquals(1000, messages.get(0).id());
+		assertEquals(1, messages.get(0).seeder());
+		assertEquals(1001, messages.get(1).id());
+		assertEquals(4, messages.get(1).seeder());
+	}
+	
 }
@@ -1,13 +1,23 @@
 package com.acgist.snail.net.torrent.tracker;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 import org.junit.jupiter.api.Test;
 
+import com.acgist.snail.config.TrackerConfig;
 import com.acgist.snail.net.DownloadException;
 import com.acgist.snail.net.NetException;
+import com.acgist.snail.net.torrent.InfoHash;
 import com.acgist.snail.net.torrent.TorrentContext;
 import com.acgist.snail.net.torrent.TorrentSession;
+import com.acgist.snail.utils.ArrayUtils;
 import com.acgist.snail.utils.Performance;
 import com.acgist.snail.utils.ThreadUtils;
 
@@ -30,4 +40,41 @@ class UdpTrackerSessionTest extends Performance {
 		assertNotNull(session);
 	}
 	
+	@Test
+	void testScrapeBatch() throws NetException, DownloadException {
+		final UdpTrackerSession session = UdpTrackerSession.newInstance("udp://127.0.0.1:18888/announce");
+		session.connectionId(1024L);
+		// 多个任务刮擦合并成一个消息
+		final int size = 10;
+		final List<Map.Entry<Integer, TorrentSession>> batch = new ArrayList<>();
+		for (int index = 0; index < size; index++) {
+			final TorrentSession torrentSession = TorrentSession.newInstance(InfoHash.newInstance(ArrayUtils.random(20)), null);
+			batch.add(Map.entry(1000 + index, torrentSession));
+		}
+		final ByteBuffer message = session.buildScrapeMessage(batch);
+		message.flip();
+		assertEquals(16 + size * 20, message.remaining());
+		assertEquals(1024L, message.getLong());
+		assertEquals(TrackerConfig.Action.SCRAPE.id(), message.getInt());
+		final int transactionId = message.getInt();
+		final byte[] infoHash = new byte[20];
+		for (Map.Entry<Integer, TorrentSession> entry : batch) {
+			message.get(infoHash);
+			assertArrayEquals(entry.getValue().infoHash().infoHash(), infoHash);
+		}
+		// 模拟响应：按照请求顺序返回
+		final List<ScrapeMessage> response = new ArrayList<>();
+		for (int index = 0; index < size; index++) {
+			response.add(ScrapeMessage.newInstance(transactionId, index, index, index));
+		}
+		final List<ScrapeMessage> list = TrackerContext.getInstance().scrapeMessages(response);
+		assertEquals(size, list.size());
+		for (int index = 0; index < size; index++) {
+			assertEquals(batch.get(index).getKey(), list.get(index).id());
+			assertEquals(index, list.get(index).seeder());
+		}
+		// 合并刮擦只能匹配一次
+		assertEquals(transactionId, TrackerContext.getInstance().scrapeMessages(response).get(0).id());
+	}
+	
 }
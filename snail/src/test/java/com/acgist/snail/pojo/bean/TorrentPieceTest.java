@@ -9,6 +9,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.junit.jupiter.api.Test;
 
+import com.acgist.snail.net.torrent.PieceBufferPool;
 import com.acgist.snail.net.torrent.TorrentPiece;
 import com.acgist.snail.utils.DigestUtils;
 import com.acgist.snail.utils.Performance;
@@ -53,6 +54,67 @@ class TorrentPieceTest extends Performance {
 		assertNull(piece.read(20, 10));
 	}
 
+	@Test
+	void testResume() {
+		final int pieceLength = 4 * TorrentPiece.SLICE_LENGTH;
+		final var partial = TorrentPiece.newInstance(pieceLength, 1, 0, pieceLength, null, false);
+		partial.write(0, new byte[TorrentPiece.SLICE_LENGTH]);
+		partial.write(0, new byte[TorrentPiece.SLICE_LENGTH]);
+		partial.write(2 * TorrentPiece.SLICE_LENGTH, new byte[TorrentPiece.SLICE_LENGTH]);
+		assertEquals(2 * TorrentPiece.SLICE_LENGTH, partial.downloadSize());
+		final var piece = TorrentPiece.newInstance(pieceLength, 1, 0, pieceLength, null, false);
+		piece.resume(partial);
+		assertEquals(partial.blocks(), piece.blocks());
+		// 跳过已经下载数据块
+		assertEquals(TorrentPiece.SLICE_LENGTH, piece.position());
+		assertEquals(TorrentPiece.SLICE_LENGTH, piece.length());
+		assertEquals(3 * TorrentPiece.SLICE_LENGTH, piece.position());
+		assertEquals(TorrentPiece.SLICE_LENGTH, piece.length());
+		assertFalse(piece.hasMoreSlice());
+		piece.write(TorrentPiece.SLICE_LENGTH, new byte[TorrentPiece.SLICE_LENGTH]);
+		assertTrue(piece.write(3 * TorrentPiece.SLICE_LENGTH, new byte[TorrentPiece.SLICE_LENGTH]));
+	}
+	
+	@Test
+	void testRelease() {
+		final var pool = PieceBufferPool.getInstance();
+		final long used = pool.usedLength();
+		final int pieceLength = 2 * TorrentPiece.SLICE_LENGTH;
+		final var piece = TorrentPiece.newInstance(pieceLength, 0, 0, pieceLength, null, false);
+		assertEquals(used + pieceLength, pool.usedLength());
+		final var data = new byte[TorrentPiece.SLICE_LENGTH];
+		data[0] = 1;
+		// 没有对齐数据块
+		assertFalse(piece.write(1, data));
+		assertEquals(0, piece.downloadSize());
+		piece.write(0, data);
+		piece.write(TorrentPiece.SLICE_LENGTH, data);
+		assertTrue(piece.retain());
+		piece.release();
+		assertFalse(piece.released());
+		assertArrayEquals(new byte[] {1, 0}, piece.read(0, 2));
+		// 释放Piece内存：数据块继续使用
+		piece.unreserve();
+		piece.unreserve();
+		assertEquals(used, pool.usedLength());
+		assertArrayEquals(new byte[] {1, 0}, piece.read(0, 2));
+		final int idleSize = pool.idleSize();
+		piece.release();
+		assertTrue(piece.released());
+		assertFalse(piece.retain());
+		assertEquals(used, pool.usedLength());
+		assertEquals(idleSize + 2, pool.idleSize());
+		assertNull(piece.read(0, 2));
+		piece.write(0, data);
+		assertEquals(pieceLength, piece.downloadSize());
+		// 复用数据块
+		final var reuse = TorrentPiece.newInstance(pieceLength, 1, 0, pieceLength, null, false);
+		reuse.write(0, new byte[TorrentPiece.SLICE_LENGTH]);
+		assertEquals(idleSize + 1, pool.idleSize());
+		assertArrayEquals(new byte[] {0, 0}, reuse.read(0, 2));
+		reuse.release();
+	}
+	
 	@Test
 	void testCosted() {
 		final int pieceLength = 1024;
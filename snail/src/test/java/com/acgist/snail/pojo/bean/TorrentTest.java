@@ -1,21 +1,40 @@
 package com.acgist.snail.pojo.bean;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.junit.jupiter.api.Test;
 
+import com.acgist.snail.config.SystemConfig;
+import com.acgist.snail.format.BEncodeDecoder;
+import com.acgist.snail.format.BEncodeEncoder;
 import com.acgist.snail.net.DownloadException;
+import com.acgist.snail.net.PacketSizeException;
+import com.acgist.snail.net.torrent.InfoHash;
 import com.acgist.snail.net.torrent.Torrent;
 import com.acgist.snail.net.torrent.TorrentContext;
 import com.acgist.snail.net.torrent.TorrentFile;
 import com.acgist.snail.net.torrent.TorrentInfo;
+import com.acgist.snail.net.torrent.TorrentPiece;
 import com.acgist.snail.net.torrent.TorrentSession;
+import com.acgist.snail.utils.ArrayUtils;
 import com.acgist.snail.utils.DateUtils;
+import com.acgist.snail.utils.MerkleUtils;
 import com.acgist.snail.utils.Performance;
 import com.acgist.snail.utils.StringUtils;
 
 class TorrentTest extends Performance {
+	
+	private static final int PIECE_LENGTH = 2 * MerkleUtils.LEAF_LENGTH;
 
 	@Test
 	void testTorrent() throws Exception {
@@ -50,6 +69,107 @@ class TorrentTest extends Performance {
 		}
 	}
 	
+	@Test
+	void testV2() throws PacketSizeException {
+		// 文件A：3个Piece（最后一个Piece只有一个数据块），文件B：小于Piece大小
+		final byte[] fileA = ArrayUtils.random(5 * MerkleUtils.LEAF_LENGTH);
+		final byte[] fileB = ArrayUtils.random(10 * SystemConfig.ONE_KB);
+		final byte[][] layer = new byte[3][];
+		for (int index = 0; index < layer.length; index++) {
+			final int offset = index * PIECE_LENGTH;
+			final int length = Math.min(PIECE_LENGTH, fileA.length - offset);
+			layer[index] = MerkleUtils.root(MerkleUtils.leafs(fileA, offset, length), 2, MerkleUtils.padding(0));
+		}
+		final byte[] rootA = MerkleUtils.root(layer, 0, MerkleUtils.padding(1));
+		final byte[] rootB = MerkleUtils.root(fileB);
+		final Map<String, Object> info = new LinkedHashMap<>();
+		// 文件树按照文件名称排序
+		final Map<String, Object> fileTree = new LinkedHashMap<>();
+		fileTree.put("a.txt", Map.of("", Map.of(TorrentFile.ATTR_LENGTH, (long) fileA.length, TorrentFile.ATTR_PIECES_ROOT, rootA)));
+		fileTree.put("b.txt", Map.of("", Map.of(TorrentFile.ATTR_LENGTH, (long) fileB.length, TorrentFile.ATTR_PIECES_ROOT, rootB)));
+		info.put(TorrentInfo.ATTR_FILE_TREE, fileTree);
+		info.put(TorrentInfo.ATTR_META_VERSION, 2L);
+		info.put(TorrentInfo.ATTR_NAME, "v2");
+		info.put(TorrentInfo.ATTR_PIECE_LENGTH, (long) PIECE_LENGTH);
+		final byte[] layers = new byte[layer.length * SystemConfig.SHA256_HASH_LENGTH];
+		for (int index = 0; index < layer.length; index++) {
+			System.arraycopy(layer[index], 0, layers, index * SystemConfig.SHA256_HASH_LENGTH, SystemConfig.SHA256_HASH_LENGTH);
+		}
+		final Map<String, Object> map = new LinkedHashMap<>();
+		map.put(Torrent.ATTR_INFO, info);
+		// 错误Piece层级Hash忽略
+		map.put(Torrent.ATTR_PIECE_LAYERS, Map.of(StringUtils.hex(rootA), layers, StringUtils.hex(rootB), ArrayUtils.random(64)));
+		final Torrent torrent = Torrent.valueOf(BEncodeDecoder.newInstance(BEncodeEncoder.encodeMap(map)).next());
+		final TorrentInfo torrentInfo = torrent.getInfo();
+		assertTrue(torrentInfo.v2());
+		assertFalse(torrentInfo.v1());
+		assertEquals(1, torrent.getPieceLayers().size());
+		// 文件A后面填充Piece
+		final List<TorrentFile> files = torrentInfo.files();
+		assertEquals(3, files.size());
+		assertTrue(files.get(1).paddingFile());
+		assertEquals(MerkleUtils.LEAF_LENGTH, files.get(1).getLength());
+		assertEquals(4, torrentInfo.pieceSize());
+		assertArrayEquals(layer[0], torrent.pieceHash(0));
+		assertArrayEquals(layer[2], torrent.pieceHash(2));
+		assertArrayEquals(rootB, torrent.pieceHash(3));
+		assertEquals("b.txt", torrent.fileTreeFile(3).path());
+		assertEquals(2, torrent.fileTreePieceIndex(2));
+		assertEquals(3, torrent.pieceIndex(rootB, 0));
+		assertEquals(-1, torrent.pieceIndex(rootB, 1));
+		// Piece校验
+		final TorrentPiece piece = TorrentPiece.newInstance(PIECE_LENGTH, 1, 0, PIECE_LENGTH, torrent.pieceHash(1), true);
+		piece.blockHashs(MerkleUtils.leafs(fileA, PIECE_LENGTH, PIECE_LENGTH));
+		final byte[] slice = Arrays.copyOfRange(fileA, PIECE_LENGTH, PIECE_LENGTH + MerkleUtils.LEAF_LENGTH);
+		assertTrue(piece.verify(0, slice));
+		assertFalse(piece.verify(MerkleUtils.LEAF_LENGTH, slice));
+		piece.write(0, slice);
+		piece.write(MerkleUtils.LEAF_LENGTH, Arrays.copyOfRange(fileA, PIECE_LENGTH + MerkleUtils.LEAF_LENGTH, 2 * PIECE_LENGTH));
+		assertTrue(piece.completedAndVerify());
+		// 最后一块Piece：叶子节点填充到Piece大小
+		assertEquals(MerkleUtils.LEAF_LENGTH, torrent.pieceLengthV2(2));
+		assertEquals(2, torrent.pieceLeafsV2(2));
+		assertEquals(0, torrent.pieceLeafsV2(3));
+		final TorrentPiece lastPiece = TorrentPiece.newInstance(PIECE_LENGTH, 2, 0, MerkleUtils.LEAF_LENGTH, torrent.pieceHash(2), torrent.pieceLeafsV2(2), true);
+		lastPiece.write(0, Arrays.copyOfRange(fileA, 2 * PIECE_LENGTH, fileA.length));
+		assertTrue(lastPiece.completedAndVerify());
+		final TorrentPiece filePiece = TorrentPiece.newInstance(PIECE_LENGTH, 3, 0, fileB.length, torrent.pieceHash(3), torrent.pieceLeafsV2(3), true);
+		filePiece.write(0, fileB);
+		assertTrue(filePiece.completedAndVerify());
+		// InfoHash
+		final byte[] infoBytes = BEncodeEncoder.encodeMap(info);
+		final InfoHash infoHash = InfoHash.newInstance(infoBytes, false, true);
+		assertNotNull(infoHash.infoHashV2());
+		assertEquals(SystemConfig.SHA1_HASH_LENGTH, infoHash.infoHash().length);
+		assertArrayEquals(infoHash.truncatedInfoHash(), infoHash.infoHash());
+		assertFalse(infoHash.hybrid());
+		assertTrue(InfoHash.newInstance(infoBytes, true, true).hybrid());
+	}
+	
+	@Test
+	void testV2SingleFile() throws PacketSizeException {
+		final byte[] file = ArrayUtils.random(10 * SystemConfig.ONE_KB);
+		final byte[] root = MerkleUtils.root(file);
+		final Map<String, Object> info = new LinkedHashMap<>();
+		info.put(TorrentInfo.ATTR_FILE_TREE, Map.of("v2.txt", Map.of("", Map.of(TorrentFile.ATTR_LENGTH, (long) file.length, TorrentFile.ATTR_PIECES_ROOT, root))));
+		info.put(TorrentInfo.ATTR_META_VERSION, 2L);
+		info.put(TorrentInfo.ATTR_NAME, "v2.txt");
+		info.put(TorrentInfo.ATTR_PIECE_LENGTH, (long) PIECE_LENGTH);
+		final Map<String, Object> map = new LinkedHashMap<>();
+		map.put(Torrent.ATTR_INFO, info);
+		final Torrent torrent = Torrent.valueOf(BEncodeDecoder.newInstance(BEncodeEncoder.encodeMap(map)).next());
+		final TorrentInfo torrentInfo = torrent.getInfo();
+		assertTrue(torrentInfo.v2());
+		// 单文件种子：没有任务名称目录
+		assertTrue(torrentInfo.getFiles().isEmpty());
+		final List<TorrentFile> files = torrentInfo.files();
+		assertEquals(1, files.size());
+		assertEquals(List.of("v2.txt"), files.get(0).getPath());
+		assertEquals(file.length, files.get(0).getLength());
+		assertEquals(1, torrentInfo.pieceSize());
+		assertArrayEquals(root, torrent.pieceHash(0));
+	}
+	
 	@Test
 	void testCosted() throws DownloadException {
 		assertDoesNotThrow(() -> this.costed(1000, () -> {
@@ -0,0 +1,86 @@
+package com.acgist.snail.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.security.MessageDigest;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.acgist.snail.config.SystemConfig;
+
+class MerkleUtilsTest extends Performance {
+
+	@Test
+	void testRoot() {
+		final byte[] data = ArrayUtils.random(3 * MerkleUtils.LEAF_LENGTH + 100);
+		final byte[][] leafs = MerkleUtils.leafs(data, 0, data.length);
+		assertEquals(4, leafs.length);
+		final MessageDigest digest = DigestUtils.sha256();
+		digest.update(leafs[0]);
+		digest.update(leafs[1]);
+		final byte[] left = digest.digest();
+		digest.update(leafs[2]);
+		digest.update(leafs[3]);
+		final byte[] right = digest.digest();
+		digest.update(left);
+		digest.update(right);
+		assertArrayEquals(digest.digest(), MerkleUtils.root(data));
+		// 单个叶子节点：树根就是叶子节点
+		assertArrayEquals(DigestUtils.sha256(new byte[100]), MerkleUtils.root(new byte[100]));
+		// 填充Hash：全零叶子节点子树
+		final byte[][] zeros = new byte[4][];
+		for (int index = 0; index < zeros.length; index++) {
+			zeros[index] = new byte[SystemConfig.SHA256_HASH_LENGTH];
+		}
+		assertArrayEquals(MerkleUtils.padding(2), MerkleUtils.root(zeros, 0, MerkleUtils.padding(0)));
+	}
+	
+	@Test
+	void testProof() {
+		final byte[][] hashs = new byte[8][];
+		for (int index = 0; index < hashs.length; index++) {
+			hashs[index] = DigestUtils.sha256(new byte[] {(byte) index});
+		}
+		final List<byte[][]> tree = MerkleUtils.tree(hashs, 0, MerkleUtils.padding(0));
+		assertEquals(4, tree.size());
+		final List<byte[]> proofs = MerkleUtils.proof(tree, 2, 2, 8);
+		assertEquals(2, proofs.size());
+		assertArrayEquals(tree.get(1)[0], proofs.get(0));
+		assertArrayEquals(tree.get(2)[1], proofs.get(1));
+		// 使用证明Hash计算树根
+		final MessageDigest digest = DigestUtils.sha256();
+		digest.update(hashs[2]);
+		digest.update(hashs[3]);
+		byte[] hash = digest.digest();
+		digest.update(proofs.get(0));
+		digest.update(hash);
+		hash = digest.digest();
+		digest.update(hash);
+		digest.update(proofs.get(1));
+		assertArrayEquals(tree.get(3)[0], digest.digest());
+	}
+	
+	@Test
+	void testPowerOfTwo() {
+		assertEquals(1, MerkleUtils.powerOfTwo(0));
+		assertEquals(1, MerkleUtils.powerOfTwo(1));
+		assertEquals(4, MerkleUtils.powerOfTwo(3));
+		assertEquals(4, MerkleUtils.powerOfTwo(4));
+		assertEquals(8, MerkleUtils.powerOfTwo(5));
+		assertTrue(MerkleUtils.isPowerOfTwo(512));
+		assertFalse(MerkleUtils.isPowerOfTwo(0));
+		assertFalse(MerkleUtils.isPowerOfTwo(3));
+	}
+	
+	@Test
+	void testCosted() {
+		final byte[] data = ArrayUtils.random(4 * SystemConfig.ONE_MB);
+		this.costed(10, () -> MerkleUtils.root(data));
+		this.costed(10, () -> DigestUtils.sha1(data));
+	}
+	
+}